@@ -6,12 +6,17 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Spliterator;
 import java.util.Spliterators;
-import java.util.function.BiFunction;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public abstract class AnnotationImpl implements Annotation {
     
+    // Truth tables for merge(): the bit at 2 * (in this) + (in other)
+    protected static final int INTERSECTION = 0b1000;
+    protected static final int UNION = 0b1110;
+    protected static final int MINUS = 0b0100;
+    protected static final int XOR = 0b0110;
+    
     protected final String ref;
     protected final Strand strand;
     protected final int start;
@@ -64,12 +69,98 @@ public abstract class AnnotationImpl implements Annotation {
     
     @Override
     public int getSpan() {
-        return getSize();
+        return end - start;
     }
     
+    /**
+     * Gets the start coordinate of the block at the given index, where the
+     * blocks are in ascending order.
+     * <p>
+     * Unlike <code>getBlocks()</code>, this allocates nothing. This
+     * implementation is for an <code>Annotation</code> with a single block.
+     * @param index - the index of the block
+     */
+    protected int getBlockStart(int index) {
+        return start;
+    }
+    
+    /**
+     * Gets the end coordinate of the block at the given index, where the
+     * blocks are in ascending order.
+     * <p>
+     * Unlike <code>getBlocks()</code>, this allocates nothing. This
+     * implementation is for an <code>Annotation</code> with a single block.
+     * @param index - the index of the block
+     */
+    protected int getBlockEnd(int index) {
+        return end;
+    }
+    
+    /**
+     * Whether or not this and the given <code>Annotation</code> have any
+     * position in common, i.e., whether or not their intersection is
+     * non-empty.
+     * <p>
+     * This walks the blocks of the two <code>Annotation</code>s in step,
+     * returning as soon as two of them overlap, rather than constructing
+     * the intersection.
+     */
     @Override
-    public boolean overlaps(Annotation a) {
-        return intersection(a).isPresent();
+    public boolean overlaps(Annotation other) {
+        if (other == null || !strandsIntersect(strand, other.getStrand())) {
+            return false;
+        }
+        if (start >= other.getEnd() || other.getStart() >= end) {
+            return false;
+        }
+
+        int numBlocks = getNumberOfBlocks();
+        int numOtherBlocks = other.getNumberOfBlocks();
+        if (numBlocks == 1 && numOtherBlocks == 1) {
+            return true;
+        }
+
+        if (other instanceof AnnotationImpl) {
+            AnnotationImpl o = (AnnotationImpl) other;
+            int i = 0;
+            int j = 0;
+            while (i < numBlocks && j < numOtherBlocks) {
+                if (getBlockEnd(i) <= o.getBlockStart(j)) {
+                    i++;
+                } else if (o.getBlockEnd(j) <= getBlockStart(i)) {
+                    j++;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int i = 0;
+        Iterator<Block> blocks = other.getBlocks();
+        Block b = blocks.next();
+        while (i < numBlocks) {
+            if (getBlockEnd(i) <= b.getStart()) {
+                i++;
+            } else if (b.getEnd() <= getBlockStart(i)) {
+                if (!blocks.hasNext()) {
+                    return false;
+                }
+                b = blocks.next();
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Whether or not <code>Annotation</code>s on the given strands can
+     * intersect, i.e., whether the strands are the same, or either is
+     * {@link Strand#BOTH}.
+     */
+    private static boolean strandsIntersect(Strand s, Strand t) {
+        return s.equals(t) || s.equals(Strand.BOTH) || t.equals(Strand.BOTH);
     }
     
     @Override
@@ -78,56 +169,95 @@ public abstract class AnnotationImpl implements Annotation {
         return StreamSupport.stream(s, false);
     }
     
-    protected int[] merge(Annotation other, BiFunction<Boolean, Boolean, Boolean> op) {
-        
-        // Flatten the annotations and add a sentinel value at the end
-        int[] thisEndpoints = new int[getNumberOfBlocks() * 2 + 1];
-        int idx = 0;
-        Iterator<Block> blocks = getBlocks();
-        while (blocks.hasNext()) {
-            Block block = blocks.next();
-            thisEndpoints[idx++] = block.getStart();
-            thisEndpoints[idx++] = block.getEnd();
-        }
-        
-        int[] otherEndpoints = new int[other.getNumberOfBlocks() * 2 + 1];
-        idx = 0;
-        blocks = other.getBlocks();
-        while (blocks.hasNext()) {
-            Block block = blocks.next();
-            otherEndpoints[idx++] = block.getStart();
-            otherEndpoints[idx++] = block.getEnd();
-        }
+    /**
+     * Computes a set operation on the positions of this and another
+     * <code>Annotation</code>, ignoring strand.
+     * <p>
+     * The operation is given by its truth table, as a bit mask: the bit at
+     * index 2 * (in this) + (in other) is whether or not a position belongs
+     * to the result, e.g., {@link #INTERSECTION} is <code>0b1000</code>. The
+     * blocks of both <code>Annotation</code>s are walked in step, and the
+     * result is written as alternating block starts and ends, in ascending
+     * order, to a buffer with room for every endpoint of both
+     * <code>Annotation</code>s.
+     * @param other - the other <code>Annotation</code>
+     * @param op - the truth table of the operation
+     * @param rtrn - the buffer to write the endpoints of the result to
+     * @return the number of endpoints in the result
+     */
+    protected int merge(Annotation other, int op, int[] rtrn) {
+        int[] thisEndpoints = endpoints(this);
+        int[] otherEndpoints = endpoints(other);
 
-        int sentinel = Math.max(thisEndpoints[thisEndpoints.length - 2],
-                                otherEndpoints[otherEndpoints.length - 2]) + 1;
-        thisEndpoints[thisEndpoints.length - 1] = sentinel;
-        otherEndpoints[otherEndpoints.length - 1] = sentinel;
-        
-        // Go through the flattened annotations and at each endpoint, determine whether
-        // it is in the result
         int thisIdx = 0;
         int otherIdx = 0;
-        List<Integer> rtrnEndpoints = new ArrayList<Integer>();
-        int scan = Math.min(thisEndpoints[thisIdx], otherEndpoints[otherIdx]);
-        while (scan < sentinel) {
-            boolean in_this = !((scan < thisEndpoints[thisIdx]) ^ (thisIdx % 2 == 1));
-            boolean in_other = !((scan < otherEndpoints[otherIdx]) ^ (otherIdx % 2 == 1));
-            boolean in_result = op.apply(in_this, in_other);
-            
-            if (in_result ^ (rtrnEndpoints.size() % 2 == 1)) {
-                rtrnEndpoints.add(scan);
-            }
-            if (scan == thisEndpoints[thisIdx]) {
+        int count = 0;
+        while (thisIdx < thisEndpoints.length || otherIdx < otherEndpoints.length) {
+            int scan = Math.min(
+                    thisIdx < thisEndpoints.length ? thisEndpoints[thisIdx] : Integer.MAX_VALUE,
+                    otherIdx < otherEndpoints.length ? otherEndpoints[otherIdx] : Integer.MAX_VALUE);
+            if (thisIdx < thisEndpoints.length && thisEndpoints[thisIdx] == scan) {
                 thisIdx++;
             }
-            if (scan == otherEndpoints[otherIdx]) {
+            if (otherIdx < otherEndpoints.length && otherEndpoints[otherIdx] == scan) {
                 otherIdx++;
             }
-            scan = Math.min(thisEndpoints[thisIdx], otherEndpoints[otherIdx]);
+
+            // Past an odd number of endpoints is inside a block
+            int bit = (thisIdx & 1) << 1 | (otherIdx & 1);
+            boolean inResult = (op >> bit & 1) == 1;
+            if (inResult ^ (count % 2 == 1)) {
+                rtrn[count++] = scan;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * The starts and ends of the blocks of the given <code>Annotation</code>,
+     * alternately, in ascending order.
+     */
+    private static int[] endpoints(Annotation a) {
+        int[] rtrn = new int[a.getNumberOfBlocks() * 2];
+        if (a instanceof AnnotationImpl) {
+            AnnotationImpl impl = (AnnotationImpl) a;
+            for (int i = 0; i < rtrn.length; i += 2) {
+                rtrn[i] = impl.getBlockStart(i / 2);
+                rtrn[i + 1] = impl.getBlockEnd(i / 2);
+            }
+        } else {
+            int idx = 0;
+            Iterator<Block> blocks = a.getBlocks();
+            while (blocks.hasNext()) {
+                Block block = blocks.next();
+                rtrn[idx++] = block.getStart();
+                rtrn[idx++] = block.getEnd();
+            }
+        }
+        return rtrn;
+    }
+    
+    /**
+     * Computes the given set operation on this and another
+     * <code>Annotation</code>, and constructs the result directly from the
+     * merged endpoints, which are already sorted and never touch.
+     * @return the result, or an empty <code>Optional</code> if the result
+     * has no positions
+     */
+    private Optional<Annotation> apply(Annotation other, int op, Strand returnStrand) {
+        int[] endpoints = new int[2 * (getNumberOfBlocks() + other.getNumberOfBlocks())];
+        int count = merge(other, op, endpoints);
+        if (count == 0) {
+            return Optional.empty();
         }
 
-        return rtrnEndpoints.stream().mapToInt(i -> i).toArray();
+        String ref = getReferenceName();
+        List<Block> blocks = new ArrayList<>(count / 2);
+        for (int i = 0; i < count; i += 2) {
+            blocks.add(new Block(ref, endpoints[i], endpoints[i + 1], returnStrand));
+        }
+        return Optional.of(new BlockedAnnotation(ref, endpoints[0], endpoints[count - 1],
+                returnStrand, blocks));
     }
     
     @Override
@@ -142,15 +272,7 @@ public abstract class AnnotationImpl implements Annotation {
             return Optional.of(this);
         }
         
-        int[] flattened = merge(other, (a, b) -> a && !b);
-        List<Block> blocks = new ArrayList<>();
-
-        for (int i = 0; i < flattened.length; i += 2) {
-            blocks.add(new Block(getReferenceName(), flattened[i], flattened[i + 1], strand));
-        }
-        
-        return blocks.isEmpty() ? Optional.empty()
-                                : Optional.of((new BlockedAnnotation.BlockedBuilder()).addBlocks(blocks).build());
+        return apply(other, MINUS, strand);
     }
     
     @Override
@@ -161,14 +283,7 @@ public abstract class AnnotationImpl implements Annotation {
         
         Strand returnStrand = strand.equals(other.getStrand()) ? strand : Strand.BOTH;
         
-        int[] flattened = merge(other, (a, b) -> a || b);
-        List<Block> blocks = new ArrayList<>();
-
-        for (int i = 0; i < flattened.length; i += 2) {
-            blocks.add(new Block(getReferenceName(), flattened[i], flattened[i + 1], returnStrand));
-        }
-        
-        return (new BlockedAnnotation.BlockedBuilder()).addBlocks(blocks).build();
+        return apply(other, UNION, returnStrand).get();
     }
     
     @Override
@@ -188,15 +303,7 @@ public abstract class AnnotationImpl implements Annotation {
             return Optional.empty();
         }
         
-        int[] flattened = merge(other, (a, b) -> a && b);
-        List<Block> blocks = new ArrayList<>();
-
-        for (int i = 0; i < flattened.length; i += 2) {
-            blocks.add(new Block(getReferenceName(), flattened[i], flattened[i + 1], returnStrand));
-        }
-        
-        return blocks.isEmpty() ? Optional.empty()
-                                : Optional.of((new BlockedAnnotation.BlockedBuilder()).addBlocks(blocks).build());
+        return apply(other, INTERSECTION, returnStrand);
     }
     
     @Override
@@ -207,15 +314,7 @@ public abstract class AnnotationImpl implements Annotation {
         
         Strand returnStrand = strand.equals(other.getStrand()) ? strand : Strand.BOTH;
         
-        int[] flattened = merge(other, (a, b) -> a ^ b);
-        List<Block> blocks = new ArrayList<>();
-
-        for (int i = 0; i < flattened.length; i += 2) {
-            blocks.add(new Block(getReferenceName(), flattened[i], flattened[i + 1], returnStrand));
-        }
-        
-        return blocks.isEmpty() ? Optional.empty()
-                : Optional.of((new BlockedAnnotation.BlockedBuilder()).addBlocks(blocks).build());
+        return apply(other, XOR, returnStrand);
     }
     
     public abstract static class AnnotationBuilder {
@@ -0,0 +1,470 @@
+package annotation;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import annotation.BEDFileRecord.BEDBuilder;
+
+/**
+ * A compact, append-only store of <code>Annotation</code>s, such as the
+ * records of a whole-genome BED file, which keeps each field of every
+ * <code>Annotation</code> in a column of primitives.
+ * <p>
+ * A <code>BEDFileRecord</code> holds a list of <code>Block</code>s, each with
+ * its own copy of the reference name and strand, besides a
+ * <code>Color</code> and a name. This store instead holds:
+ * <ul>
+ * <li>the start, end, coding start and coding end of each
+ * <code>Annotation</code>, in <code>int</code> arrays
+ * <li>its strand, as a <code>byte</code>
+ * <li>its score, as a <code>float</code>, and its RGB color, as an
+ * <code>int</code>
+ * <li>its reference name and name, as indexes into dictionaries in which
+ * each distinct <code>String</code> appears once
+ * <li>the blocks of every <code>Annotation</code> with more than one, packed
+ * into shared arrays of block starts (relative to the start of the
+ * <code>Annotation</code>) and block sizes
+ * </ul>
+ * This takes a small fraction of the heap of the equivalent
+ * <code>BEDFileRecord</code>s.
+ * <p>
+ * {@link #get(int)} returns a {@link Record}, a lightweight view of one
+ * <code>Annotation</code> in this store, which reads its blocks from the
+ * columns as they are needed. Views are created on demand, and are meant to
+ * be short-lived. Scores are stored with the precision of a
+ * <code>float</code>.
+ * <p>
+ * This class is not thread-safe while <code>Annotation</code>s are being
+ * added to it.
+ */
+public class AnnotationStore implements Iterable<AnnotationStore.Record> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Strand[] STRANDS = Strand.values();
+    
+    private int size;
+    private int[] refIds = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int[] cdsStarts = new int[INITIAL_CAPACITY];
+    private int[] cdsEnds = new int[INITIAL_CAPACITY];
+    private byte[] strands = new byte[INITIAL_CAPACITY];
+    private float[] scores = new float[INITIAL_CAPACITY];
+    private int[] colors = new int[INITIAL_CAPACITY];
+    private int[] nameIds = new int[INITIAL_CAPACITY];
+
+    // The blocks of Annotation i occupy [blockOffsets[i], blockOffsets[i + 1])
+    // of the block arrays. An Annotation with a single block stores none.
+    private int[] blockOffsets = new int[INITIAL_CAPACITY + 1];
+    private int numBlocks;
+    private int[] blockStarts = new int[INITIAL_CAPACITY];
+    private int[] blockSizes = new int[INITIAL_CAPACITY];
+    
+    private final Dictionary refs = new Dictionary();
+    private final Dictionary names = new Dictionary();
+    
+    /**
+     * Constructs an empty <code>AnnotationStore</code>.
+     */
+    public AnnotationStore() {}
+
+    /**
+     * Constructs an <code>AnnotationStore</code> containing the given
+     * <code>Annotation</code>s, in order.
+     * @param annotations - the <code>Annotation</code>s to add
+     */
+    public AnnotationStore(Iterable<? extends Annotation> annotations) {
+        annotations.forEach(this::add);
+    }
+    
+    /**
+     * Gets the number of <code>Annotation</code>s in this.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Whether or not this has any <code>Annotation</code>s stored in it.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Adds an <code>Annotation</code> to the end of this.
+     * <p>
+     * The name and coding region of a <code>Gene</code>, and the score and
+     * color of a <code>BEDFileRecord</code>, are kept. Any other
+     * <code>Annotation</code> is stored with the same defaults as a
+     * <code>BEDFileRecord</code> built without them.
+     * @param a - the <code>Annotation</code> to add
+     * @return the index of the <code>Annotation</code> in this
+     */
+    public int add(Annotation a) {
+        if (size == starts.length) {
+            grow();
+        }
+
+        int i = size;
+        refIds[i] = refs.id(a.getReferenceName());
+        starts[i] = a.getStart();
+        ends[i] = a.getEnd();
+        strands[i] = (byte) a.getStrand().ordinal();
+
+        if (a instanceof Gene) {
+            Gene g = (Gene) a;
+            nameIds[i] = names.id(g.getName());
+            cdsStarts[i] = g.getCodingStart();
+            cdsEnds[i] = g.getCodingEnd();
+        } else {
+            nameIds[i] = names.id("");
+            cdsStarts[i] = a.getStart();
+            cdsEnds[i] = a.getStart();
+        }
+
+        if (a instanceof BEDFileRecord) {
+            BEDFileRecord r = (BEDFileRecord) a;
+            scores[i] = (float) r.getScore();
+            colors[i] = r.getColor().getRGB();
+        } else {
+            scores[i] = 0;
+            colors[i] = Color.BLACK.getRGB();
+        }
+
+        int n = a.getNumberOfBlocks();
+        if (n > 1) {
+            if (numBlocks + n > blockStarts.length) {
+                int capacity = Math.max(2 * blockStarts.length, numBlocks + n);
+                blockStarts = Arrays.copyOf(blockStarts, capacity);
+                blockSizes = Arrays.copyOf(blockSizes, capacity);
+            }
+            Iterator<Block> blocks = a.getBlocks();
+            while (blocks.hasNext()) {
+                Block b = blocks.next();
+                blockStarts[numBlocks] = b.getStart() - a.getStart();
+                blockSizes[numBlocks] = b.getEnd() - b.getStart();
+                numBlocks++;
+            }
+        }
+        blockOffsets[i + 1] = numBlocks;
+
+        return size++;
+    }
+    
+    /**
+     * Gets a view of the <code>Annotation</code> at the given index.
+     * @param index - the index of the <code>Annotation</code>, in the order
+     * in which it was added
+     * @throws IndexOutOfBoundsException if the index is negative, or not less
+     * than the size of this
+     */
+    public Record get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Attempted to get Annotation " +
+                    index + " of an AnnotationStore of size " + size + ".");
+        }
+        return new Record(index);
+    }
+    
+    /**
+     * Gets an <code>Iterator</code> over views of the
+     * <code>Annotation</code>s in this, in the order in which they were
+     * added.
+     */
+    @Override
+    public Iterator<Record> iterator() {
+        return new Iterator<Record>() {
+            private int next = 0;
+            
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+            
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new Record(next++);
+            }
+        };
+    }
+    
+    /**
+     * Gets a <code>Stream</code> of views of the <code>Annotation</code>s in
+     * this, in the order in which they were added.
+     */
+    public Stream<Record> stream() {
+        Spliterator<Record> s = Spliterators.spliterator(iterator(), size,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(s, false);
+    }
+    
+    /**
+     * Releases the unused capacity of the columns of this, and the lookup
+     * tables used to add <code>Annotation</code>s to its dictionaries, which
+     * are rebuilt if another <code>Annotation</code> is added.
+     */
+    public void trimToSize() {
+        refIds = Arrays.copyOf(refIds, size);
+        starts = Arrays.copyOf(starts, size);
+        ends = Arrays.copyOf(ends, size);
+        cdsStarts = Arrays.copyOf(cdsStarts, size);
+        cdsEnds = Arrays.copyOf(cdsEnds, size);
+        strands = Arrays.copyOf(strands, size);
+        scores = Arrays.copyOf(scores, size);
+        colors = Arrays.copyOf(colors, size);
+        nameIds = Arrays.copyOf(nameIds, size);
+        blockOffsets = Arrays.copyOf(blockOffsets, size + 1);
+        blockStarts = Arrays.copyOf(blockStarts, numBlocks);
+        blockSizes = Arrays.copyOf(blockSizes, numBlocks);
+        refs.trimToSize();
+        names.trimToSize();
+    }
+    
+    /**
+     * Doubles the capacity of the per-<code>Annotation</code> columns.
+     */
+    private void grow() {
+        int capacity = Math.max(2 * starts.length, INITIAL_CAPACITY);
+        refIds = Arrays.copyOf(refIds, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        cdsStarts = Arrays.copyOf(cdsStarts, capacity);
+        cdsEnds = Arrays.copyOf(cdsEnds, capacity);
+        strands = Arrays.copyOf(strands, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+        colors = Arrays.copyOf(colors, capacity);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        blockOffsets = Arrays.copyOf(blockOffsets, capacity + 1);
+    }
+    
+    /**
+     * A lightweight view of one <code>Annotation</code> in an
+     * <code>AnnotationStore</code>.
+     * <p>
+     * A view holds only its index and the fields common to every
+     * <code>Annotation</code>. Its blocks are read from the store when they
+     * are needed, so overlap tests and set operations with other
+     * <code>Annotation</code>s allocate no <code>Block</code>s.
+     * <p>
+     * Views are compared by position rather than by value: two views are
+     * equal if and only if they are of the same index of the same store.
+     * Views of equal <code>Annotation</code>s at different indexes, or in
+     * different stores, are not equal, and a view is never equal to an
+     * <code>Annotation</code> of another class. So a set of views keeps every
+     * <code>Annotation</code> in a store, even duplicates. To compare
+     * <code>Annotation</code>s by value, compare the results of
+     * {@link #toBEDFileRecord()}.
+     */
+    public class Record extends AnnotationImpl {
+
+        private final int index;
+        
+        private Record(int index) {
+            super(refs.get(refIds[index]), starts[index], ends[index],
+                    STRANDS[strands[index]]);
+            this.index = index;
+        }
+        
+        /**
+         * Gets the index of this in its store.
+         */
+        public int getIndex() {
+            return index;
+        }
+        
+        /**
+         * Gets the name of this, or the empty <code>String</code> if it has
+         * none.
+         */
+        public String getName() {
+            return names.get(nameIds[index]);
+        }
+        
+        /**
+         * Gets the start coordinate of the coding region of this.
+         * @see Gene#getCodingStart()
+         */
+        public int getCodingStart() {
+            return cdsStarts[index];
+        }
+        
+        /**
+         * Gets the end coordinate of the coding region of this.
+         * @see Gene#getCodingEnd()
+         */
+        public int getCodingEnd() {
+            return cdsEnds[index];
+        }
+        
+        /**
+         * Whether or not this has a coding region.
+         */
+        public boolean hasNoCodingRegion() {
+            return cdsStarts[index] == cdsEnds[index];
+        }
+        
+        /**
+         * Gets the score of this.
+         */
+        public double getScore() {
+            return scores[index];
+        }
+        
+        /**
+         * Gets the color of this.
+         */
+        public Color getColor() {
+            return new Color(colors[index]);
+        }
+        
+        /**
+         * Constructs a <code>BEDFileRecord</code> with the same fields as
+         * this, e.g., to output it with
+         * {@link BEDFileRecord#toFormattedString()}.
+         */
+        public BEDFileRecord toBEDFileRecord() {
+            BEDBuilder b = new BEDBuilder();
+            Iterator<Block> blocks = getBlocks();
+            while (blocks.hasNext()) {
+                b.addBlock(blocks.next());
+            }
+            b.addName(getName())
+             .addScore(getScore())
+             .addColor(colors[index]);
+            if (!hasNoCodingRegion()) {
+                b.addCodingRegion(getCodingStart(), getCodingEnd());
+            }
+            return b.build();
+        }
+        
+        @Override
+        public int getNumberOfBlocks() {
+            return Math.max(1, blockOffsets[index + 1] - blockOffsets[index]);
+        }
+        
+        @Override
+        protected int getBlockStart(int i) {
+            return blockOffsets[index + 1] == blockOffsets[index]
+                    ? start
+                    : start + blockStarts[blockOffsets[index] + i];
+        }
+        
+        @Override
+        protected int getBlockEnd(int i) {
+            return blockOffsets[index + 1] == blockOffsets[index]
+                    ? end
+                    : getBlockStart(i) + blockSizes[blockOffsets[index] + i];
+        }
+        
+        @Override
+        public int getSize() {
+            int rtrn = 0;
+            for (int i = 0; i < getNumberOfBlocks(); i++) {
+                rtrn += getBlockEnd(i) - getBlockStart(i);
+            }
+            return rtrn;
+        }
+        
+        @Override
+        public Iterator<Block> getBlocks() {
+            List<Block> l = new ArrayList<>(getNumberOfBlocks());
+            for (int i = 0; i < getNumberOfBlocks(); i++) {
+                l.add(new Block(ref, getBlockStart(i), getBlockEnd(i), strand));
+            }
+            return l.iterator();
+        }
+        
+        @Override
+        public Annotation reverseComplement() {
+            return new BlockedAnnotation(this).reverseComplement();
+        }
+        
+        /**
+         * Whether or not the given object is a view of the same index of the
+         * same store as this.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Record)) {
+                return false;
+            }
+
+            Record other = (Record) o;
+            return index == other.index && store() == other.store();
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(store()) + index;
+        }
+        
+        private AnnotationStore store() {
+            return AnnotationStore.this;
+        }
+    }
+    
+    /**
+     * A dictionary in which each distinct <code>String</code> is stored once,
+     * and referred to by its index.
+     * <p>
+     * The map from each <code>String</code> to its index is needed only to add
+     * <code>String</code>s. It may be released once a store is loaded, and is
+     * rebuilt from the list of <code>String</code>s when it is next needed.
+     */
+    private static class Dictionary {
+
+        private final ArrayList<String> strings = new ArrayList<>();
+        private Map<String, Integer> ids = new HashMap<>();    // Null once released
+        
+        /**
+         * Gets the index of the given <code>String</code>, adding it if
+         * necessary.
+         */
+        private int id(String s) {
+            if (ids == null) {
+                ids = new HashMap<>();
+                for (int i = 0; i < strings.size(); i++) {
+                    ids.put(strings.get(i), i);
+                }
+            }
+            return ids.computeIfAbsent(s, k -> {
+                strings.add(k);
+                return strings.size() - 1;
+            });
+        }
+        
+        /**
+         * Gets the <code>String</code> at the given index.
+         */
+        private String get(int id) {
+            return strings.get(id);
+        }
+        
+        /**
+         * Releases the map from each <code>String</code> to its index, and
+         * the unused capacity of the list of <code>String</code>s.
+         */
+        private void trimToSize() {
+            ids = null;
+            strings.trimToSize();
+        }
+    }
+}
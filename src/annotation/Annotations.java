@@ -0,0 +1,364 @@
+package annotation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Static methods for set operations on whole collections, or tracks, of
+ * <code>Annotation</code>s, such as all exons minus all repeats.
+ * <p>
+ * Each operation sweeps along the genome once, merging its input tracks as it
+ * goes, and returns its result as a lazy <code>Stream</code>. Every track must
+ * be sorted by reference name (in the natural order of <code>String</code>s),
+ * then by start, as a sorted BED file is. Memory is bounded by the number of
+ * blocks which overlap any one position, not by the size of the tracks.
+ * <p>
+ * The operations are strand-aware, and apply their rule to each strand
+ * separately. A position on the positive strand is distinct from the same
+ * position on the negative strand, and an <code>Annotation</code> on
+ * {@link Strand#BOTH} covers both. A run of positions in the result which is
+ * on both strands is returned on <code>Strand.BOTH</code>.
+ * <p>
+ * This per-strand model deliberately differs from the pairwise operations of
+ * {@link AnnotationImpl}, which give their whole result a single strand.
+ * There, the union of [0, 10) on the positive strand and [5, 15) on the
+ * negative strand is [0, 15) on <code>Strand.BOTH</code>; here, it is [0, 5)
+ * on the positive strand, [5, 10) on both and [10, 15) on the negative
+ * strand. There, [0, 10) on <code>Strand.BOTH</code> minus [0, 10) on the
+ * positive strand is empty; here, [0, 10) on the negative strand is left.
+ * The result of the pairwise rules depends on the order in which
+ * <code>Annotation</code>s are combined, so they cannot be applied to whole
+ * tracks in one sweep. When every input is on the same strand, the two
+ * models agree.
+ * <p>
+ * The result is a sequence of <code>Block</code>s, each a maximal run of
+ * positions with the same strands, in the same order as the inputs. Two
+ * consecutive <code>Block</code>s on different strands may touch.
+ */
+public final class Annotations {
+
+    private Annotations() {}
+
+    /**
+     * Merges the given <code>Annotation</code>s into the runs of positions
+     * which they cover.
+     * @param annotations - the <code>Annotation</code>s to merge, sorted by
+     * reference name, then start
+     * @return the maximal runs of positions covered by any of the
+     * <code>Annotation</code>s
+     * @throws IllegalArgumentException when the result is consumed, if the
+     * <code>Annotation</code>s are out of order
+     */
+    public static Stream<Annotation> merge(Stream<? extends Annotation> annotations) {
+        return union(Collections.singletonList(annotations));
+    }
+    
+    /**
+     * The union of the given tracks: the positions covered by any of them.
+     * @param tracks - the tracks, each sorted by reference name, then start
+     * @throws IllegalArgumentException when the result is consumed, if any
+     * track is out of order
+     */
+    public static Stream<Annotation> union(List<? extends Stream<? extends Annotation>> tracks) {
+        return sweep(tracks, (numCovering, firstCovers) -> numCovering > 0);
+    }
+    
+    /**
+     * The intersection of the given tracks: the positions covered by every
+     * one of them.
+     * @param tracks - the tracks, each sorted by reference name, then start
+     * @throws IllegalArgumentException when the result is consumed, if any
+     * track is out of order
+     */
+    public static Stream<Annotation> intersection(List<? extends Stream<? extends Annotation>> tracks) {
+        int numTracks = tracks.size();
+        if (numTracks == 0) {
+            return Stream.empty();
+        }
+        return sweep(tracks, (numCovering, firstCovers) -> numCovering == numTracks);
+    }
+    
+    /**
+     * The positions covered by the given track, but not by any of the
+     * subtracted tracks.
+     * @param track - the track to subtract from, sorted by reference name,
+     * then start
+     * @param subtracted - the tracks to subtract, each sorted by reference
+     * name, then start
+     * @throws IllegalArgumentException when the result is consumed, if any
+     * track is out of order
+     */
+    public static Stream<Annotation> minus(Stream<? extends Annotation> track,
+            List<? extends Stream<? extends Annotation>> subtracted) {
+        List<Stream<? extends Annotation>> tracks = new ArrayList<>();
+        tracks.add(track);
+        tracks.addAll(subtracted);
+        return sweep(tracks, (numCovering, firstCovers) -> firstCovers && numCovering == 1);
+    }
+    
+    /**
+     * Sweeps along the given tracks, returning the runs of positions which
+     * belong to the result according to the given rule.
+     */
+    private static Stream<Annotation> sweep(List<? extends Stream<? extends Annotation>> tracks,
+            Rule rule) {
+        Spliterator<Annotation> s = Spliterators.spliteratorUnknownSize(new Sweep(tracks, rule),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(s, false)
+                            .onClose(() -> tracks.forEach(Stream::close));
+    }
+    
+    /**
+     * Whether or not a position on one strand belongs to the result of an
+     * operation.
+     */
+    @FunctionalInterface
+    private interface Rule {
+
+        /**
+         * @param numCovering - the number of tracks covering the position
+         * @param firstCovers - whether or not the first track covers it
+         */
+        boolean test(int numCovering, boolean firstCovers);
+    }
+    
+    /**
+     * A block of an input <code>Annotation</code>, which starts covering its
+     * strands at its start and stops at its end.
+     */
+    private static class Edge {
+
+        private final int start;
+        private final int end;
+        private final int track;
+        private final int strands;      // Bit 0: positive; bit 1: negative
+
+        private Edge(int start, int end, int track, int strands) {
+            this.start = start;
+            this.end = end;
+            this.track = track;
+            this.strands = strands;
+        }
+    }
+    
+    /**
+     * An Iterator over the result of an operation, which merges the tracks
+     * into a single sweep over their block starts and ends.
+     * <p>
+     * Blocks which have been read but not yet reached wait in a queue of
+     * starts, and blocks which have been reached wait in a queue of ends.
+     * At each position where a block starts or ends, the number of blocks
+     * of each track which cover each strand is updated, and the rule is
+     * evaluated. A run of the result ends wherever its strands change.
+     */
+    private static class Sweep implements Iterator<Annotation> {
+
+        private final List<Iterator<? extends Annotation>> inputs = new ArrayList<>();
+        private final Annotation[] heads;       // Next unread Annotation of each track
+        private final Annotation[] lasts;       // Last read Annotation of each track
+        private final Rule rule;
+        
+        private final int[][] depths;           // Blocks of each track over each strand
+        private final int[] numCovering = new int[2];   // Tracks over each strand
+        private final PriorityQueue<Edge> starts =
+                new PriorityQueue<>(Comparator.comparingInt((Edge e) -> e.start));
+        private final PriorityQueue<Edge> ends =
+                new PriorityQueue<>(Comparator.comparingInt((Edge e) -> e.end));
+
+        private String ref;                     // Reference being swept
+        private int runStart;
+        private int runStrands;                 // Strands of the current run
+        private Annotation next;
+        private boolean started;                // Tracks are not read until
+                                                // the result is consumed
+        
+        private Sweep(List<? extends Stream<? extends Annotation>> tracks, Rule rule) {
+            tracks.forEach(t -> inputs.add(t.iterator()));
+            heads = new Annotation[inputs.size()];
+            lasts = new Annotation[inputs.size()];
+            depths = new int[inputs.size()][2];
+            this.rule = rule;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (!started) {
+                started = true;
+                for (int i = 0; i < heads.length; i++) {
+                    advance(i);
+                }
+                next = findNext();
+            }
+            return next != null;
+        }
+        
+        @Override
+        public Annotation next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Annotation rtrn = next;
+            next = findNext();
+            return rtrn;
+        }
+        
+        /**
+         * The next run of the result, or null if there are no more.
+         */
+        private Annotation findNext() {
+            while (true) {
+                if (ref == null) {
+                    ref = nextReference();
+                    if (ref == null) {
+                        return null;
+                    }
+                }
+
+                int position = nextPosition();
+                if (position == Integer.MAX_VALUE && starts.isEmpty() && ends.isEmpty()) {
+                    ref = null;             // Every run on this reference has
+                    continue;               // ended, since nothing covers it
+                }
+
+                // Read every Annotation starting here, then pass every block
+                // starting or ending here.
+                for (int i = 0; i < heads.length; i++) {
+                    while (heads[i] != null && heads[i].getReferenceName().equals(ref) &&
+                            heads[i].getStart() == position) {
+                        read(i);
+                    }
+                }
+                while (!ends.isEmpty() && ends.peek().end == position) {
+                    cover(ends.poll(), -1);
+                }
+                while (!starts.isEmpty() && starts.peek().start == position) {
+                    Edge e = starts.poll();
+                    cover(e, 1);
+                    ends.add(e);
+                }
+
+                int strands = (rule.test(numCovering[0], depths[0][0] > 0) ? 1 : 0) |
+                              (rule.test(numCovering[1], depths[0][1] > 0) ? 2 : 0);
+                if (strands != runStrands) {
+                    Annotation run = runStrands == 0 ? null
+                            : new Block(ref, runStart, position, strand(runStrands));
+                    runStart = position;
+                    runStrands = strands;
+                    if (run != null) {
+                        return run;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * The least reference name of the unread <code>Annotation</code>s, or
+         * null if every track has been read.
+         */
+        private String nextReference() {
+            String rtrn = null;
+            for (Annotation a : heads) {
+                if (a != null && (rtrn == null || a.getReferenceName().compareTo(rtrn) < 0)) {
+                    rtrn = a.getReferenceName();
+                }
+            }
+            return rtrn;
+        }
+        
+        /**
+         * The next position on the current reference at which an
+         * <code>Annotation</code> or block starts, or a block ends.
+         */
+        private int nextPosition() {
+            int rtrn = Integer.MAX_VALUE;
+            for (Annotation a : heads) {
+                if (a != null && a.getReferenceName().equals(ref)) {
+                    rtrn = Math.min(rtrn, a.getStart());
+                }
+            }
+            if (!starts.isEmpty()) {
+                rtrn = Math.min(rtrn, starts.peek().start);
+            }
+            if (!ends.isEmpty()) {
+                rtrn = Math.min(rtrn, ends.peek().end);
+            }
+            return rtrn;
+        }
+        
+        /**
+         * Queues the blocks of the next <code>Annotation</code> of the given
+         * track, and moves on to the one after it.
+         */
+        private void read(int track) {
+            Annotation a = heads[track];
+            int strands = a.getStrand() == Strand.POSITIVE ? 1
+                        : a.getStrand() == Strand.NEGATIVE ? 2
+                        : 3;
+            Iterator<Block> blocks = a.getBlocks();
+            while (blocks.hasNext()) {
+                Block b = blocks.next();
+                starts.add(new Edge(b.getStart(), b.getEnd(), track, strands));
+            }
+            advance(track);
+        }
+        
+        /**
+         * Moves on to the next <code>Annotation</code> of the given track.
+         * @throws IllegalArgumentException if it is out of order
+         */
+        private void advance(int track) {
+            lasts[track] = heads[track];
+            Iterator<? extends Annotation> iter = inputs.get(track);
+            heads[track] = iter.hasNext() ? iter.next() : null;
+
+            Annotation last = lasts[track];
+            Annotation head = heads[track];
+            if (last != null && head != null) {
+                int cmp = head.getReferenceName().compareTo(last.getReferenceName());
+                if (cmp < 0 || cmp == 0 && head.getStart() < last.getStart()) {
+                    throw new IllegalArgumentException("Attempted to sweep a track " +
+                            "which is not sorted by reference name, then start: " +
+                            head.getReferenceName() + ":" + head.getStart() +
+                            " follows " + last.getReferenceName() + ":" +
+                            last.getStart() + ".");
+                }
+            }
+        }
+        
+        /**
+         * Adds the given number of blocks to the depth of the given block's
+         * track over each of its strands.
+         */
+        private void cover(Edge e, int delta) {
+            for (int s = 0; s < 2; s++) {
+                if ((e.strands >> s & 1) == 1) {
+                    int before = depths[e.track][s];
+                    depths[e.track][s] += delta;
+                    if (before == 0) {
+                        numCovering[s]++;
+                    } else if (depths[e.track][s] == 0) {
+                        numCovering[s]--;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * The <code>Strand</code> of a run on the given strands.
+         */
+        private static Strand strand(int strands) {
+            return strands == 1 ? Strand.POSITIVE
+                 : strands == 2 ? Strand.NEGATIVE
+                 : Strand.BOTH;
+        }
+    }
+}
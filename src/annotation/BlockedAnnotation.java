@@ -39,6 +39,12 @@ public class BlockedAnnotation extends AnnotationImpl implements Annotation {
         blocks = Collections.unmodifiableList(tmp);
     }
     
+    /**
+     * Constructs a <code>BlockedAnnotation</code> from blocks which are
+     * trusted to be in ascending order, to be on the given reference and
+     * strand, and to neither overlap nor touch, so that none of the checks of
+     * a {@link BlockedBuilder} are necessary.
+     */
     BlockedAnnotation(String ref, int start, int end, Strand strand, List<Block> blocks) {
         super(ref, start, end, strand);
         this.blocks = Collections.unmodifiableList(blocks);
@@ -68,6 +74,16 @@ public class BlockedAnnotation extends AnnotationImpl implements Annotation {
         return blocks.iterator();
     }
     
+    @Override
+    protected int getBlockStart(int index) {
+        return blocks.get(index).getStart();
+    }
+    
+    @Override
+    protected int getBlockEnd(int index) {
+        return blocks.get(index).getEnd();
+    }
+    
     @Override
     public boolean equals(Object o) {
         if (this == o) {
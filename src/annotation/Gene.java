@@ -61,6 +61,26 @@ public class Gene extends BlockedAnnotation {
         return name;
     }
 
+    /**
+     * Gets the start coordinate of the coding region of this.
+     * <p>
+     * If this has no coding region, the start and end coordinates of the
+     * coding region are equal.
+     */
+    public int getCodingStart() {
+        return cdsStartPos;
+    }
+    
+    /**
+     * Gets the end coordinate of the coding region of this.
+     * <p>
+     * If this has no coding region, the start and end coordinates of the
+     * coding region are equal.
+     */
+    public int getCodingEnd() {
+        return cdsEndPos;
+    }
+
     /**
      * Whether or not this has a coding region.
      */
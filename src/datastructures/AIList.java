@@ -0,0 +1,493 @@
+package datastructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * An immutable Augmented Interval List (AIList) of Intervals.
+ * <p>
+ * An AIList is a list of Intervals sorted by start, augmented with the
+ * running maximum of their ends. To find the overlappers of a query, binary
+ * search for the last Interval starting before the end of the query, then
+ * walk backwards until the running maximum end falls at or before the start
+ * of the query. A single long Interval keeps the running maximum high for
+ * every Interval after it, though, so the backwards walk could visit much of
+ * the list. To keep the walk short, Intervals which contain many of the
+ * Intervals following them are moved out into a separate component with its
+ * own running maximum, and this decomposition is repeated on the extracted
+ * Intervals. Each component is queried separately.
+ * <p>
+ * This makes an AIList well suited to data with a few very long Intervals,
+ * such as long-read alignments or large structural variants, which defeat
+ * the maxEnd pruning of an {@link IntervalTree}.
+ * <p>
+ * Reference: Feng, J., Ratan, A. and Sheffield, N.C. "Augmented Interval
+ * List: a novel data structure for efficient genomic interval search."
+ * Bioinformatics 35(23), 2019.
+ * @param <T> - the type of Interval this list contains
+ */
+public class AIList<T extends Interval> implements IntervalIndex<T> {
+
+    private static final int COVERAGE_WINDOW = 20; // Following Intervals to check for containment
+    private static final int MIN_COVERAGE = COVERAGE_WINDOW / 2;
+    private static final int MAX_COMPONENTS = 10;
+    
+    private final int size;               // Number of Intervals
+    private final int[] componentStarts;  // Component i occupies
+                                          // [componentStarts[i], componentStarts[i + 1])
+    private final int[] starts;           // Start of the Interval at each position
+    private final int[] ends;             // End of the Interval at each position
+    private final int[] maxEnds;          // Greatest end in the component up to each position
+    private final Object[] values;        // The Interval at each position
+    private volatile IntervalCounter counter;   // Built by the first count
+
+    /**
+     * Constructs an AIList containing the given Intervals.
+     * <p>
+     * Duplicates are retained.
+     * @param c - the Intervals to add to this AIList
+     */
+    public AIList(Collection<? extends T> c) {
+        Interval[] a = c.toArray(new Interval[c.size()]);
+        Arrays.sort(a);
+
+        size = a.length;
+        starts = new int[size];
+        ends = new int[size];
+        maxEnds = new int[size];
+        values = new Object[size];
+
+        List<Interval[]> components = decompose(a);
+        componentStarts = new int[components.size() + 1];
+
+        int pos = 0;
+        for (int i = 0; i < components.size(); i++) {
+            componentStarts[i] = pos;
+            int maxEnd = Integer.MIN_VALUE;
+            for (Interval t : components.get(i)) {
+                maxEnd = Math.max(maxEnd, t.getEnd());
+                starts[pos] = t.getStart();
+                ends[pos] = t.getEnd();
+                maxEnds[pos] = maxEnd;
+                values[pos] = t;
+                pos++;
+            }
+        }
+        componentStarts[components.size()] = pos;
+    }
+    
+    /**
+     * Splits the sorted Intervals into components, each of which remains
+     * sorted.
+     * <p>
+     * An Interval is moved to the next component if it contains at least
+     * MIN_COVERAGE of the COVERAGE_WINDOW Intervals following it. The final
+     * component holds whatever remains once MAX_COMPONENTS is reached, or once
+     * too few Intervals would be moved for a new component to be worthwhile.
+     */
+    private static List<Interval[]> decompose(Interval[] a) {
+        List<Interval[]> components = new ArrayList<>();
+        Interval[] remaining = a;
+
+        while (components.size() < MAX_COMPONENTS - 1 && remaining.length > COVERAGE_WINDOW) {
+            List<Interval> kept = new ArrayList<>();
+            List<Interval> moved = new ArrayList<>();
+
+            for (int i = 0; i < remaining.length; i++) {
+                int end = remaining[i].getEnd();
+                int limit = Math.min(remaining.length, i + 1 + COVERAGE_WINDOW);
+                int coverage = 0;
+                for (int j = i + 1; j < limit; j++) {
+                    if (remaining[j].getEnd() <= end) {
+                        coverage++;
+                    }
+                }
+                (coverage >= MIN_COVERAGE ? moved : kept).add(remaining[i]);
+            }
+
+            if (moved.size() < COVERAGE_WINDOW) {
+                break;
+            }
+            components.add(kept.toArray(new Interval[kept.size()]));
+            remaining = moved.toArray(new Interval[moved.size()]);
+        }
+
+        components.add(remaining);
+        return components;
+    }
+    
+    /**
+     * The number of Intervals stored in this AIList.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * The number of components this AIList's Intervals are split into.
+     */
+    public int numComponents() {
+        return componentStarts.length - 1;
+    }
+    
+    /**
+     * An Iterator over all Intervals in this AIList, in ascending order.
+     * <p>
+     * This merges the components, each of which is in ascending order.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final int[] positions = Arrays.copyOf(componentStarts, numComponents());
+            private int remaining = size;
+            
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+            
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("AIList has no more elements.");
+                }
+                int best = -1;  // The component whose next Interval is least
+                for (int c = 0; c < positions.length; c++) {
+                    int pos = positions[c];
+                    if (pos < componentStarts[c + 1] && (best == -1 ||
+                            starts[pos] < starts[positions[best]] ||
+                            starts[pos] == starts[positions[best]] &&
+                            ends[pos] < ends[positions[best]])) {
+                        best = c;
+                    }
+                }
+                remaining--;
+                return value(positions[best]++);
+            }
+        };
+    }
+    
+    /**
+     * An Iterator over the Intervals in this AIList that overlap the given
+     * Interval.
+     * <p>
+     * Overlappers are returned component by component, and in descending
+     * order within each component. They are therefore not necessarily in any
+     * particular order.
+     * @param t - the overlapping Interval
+     */
+    @Override
+    public Iterator<T> overlappers(T t) {
+        return overlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * An Iterator over the Intervals in this AIList that overlap [start, end),
+     * in the same order as overlappers(T).
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public Iterator<T> overlappers(int start, int end) {
+        return new OverlapperIterator(start, end);
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this AIList overlap the given
+     * Interval.
+     * @param t - the potentially overlapping Interval
+     */
+    @Override
+    public boolean overlaps(T t) {
+        return overlaps(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this AIList overlap [start, end).
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    @Override
+    public boolean overlaps(int start, int end) {
+        for (int c = 0; c < numComponents(); c++) {
+            int lo = componentStarts[c];
+            for (int pos = lastStartingBefore(c, end); pos >= lo && maxEnds[pos] > start; pos--) {
+                if (ends[pos] > start) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * The number of Intervals in this AIList that overlap the given Interval.
+     * @param t - the overlapping Interval
+     */
+    @Override
+    public int numOverlappers(T t) {
+        return numOverlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * The number of Intervals in this AIList that overlap [start, end).
+     * <p>
+     * Unless end is at or before start, this takes O(log n) time, regardless
+     * of the number of overlappers. The first such call also builds an
+     * {@link IntervalCounter}, in O(n log n) time, which holds sorted copies
+     * of the starts and ends of the Intervals.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public int numOverlappers(int start, int end) {
+        if (start < end) {
+            return counter().count(start, end);
+        }
+
+        int count = 0;
+        for (int c = 0; c < numComponents(); c++) {
+            int lo = componentStarts[c];
+            for (int pos = lastStartingBefore(c, end); pos >= lo && maxEnds[pos] > start; pos--) {
+                if (ends[pos] > start) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * The IntervalCounter over the Intervals in this AIList, which is built
+     * when it is first needed, so that a list which is never counted does
+     * not hold sorted copies of its coordinates.
+     * <p>
+     * Two threads may both build it, but the counters they build are
+     * identical, so it does not matter which one is kept.
+     */
+    private IntervalCounter counter() {
+        IntervalCounter c = counter;
+        if (c == null) {
+            c = new IntervalCounter(starts, ends);
+            counter = c;
+        }
+        return c;
+    }
+    
+    /**
+     * Passes each Interval in this AIList that overlaps [start, end) to the
+     * given visitor, in the same order as overlappers(), until the visitor
+     * returns false.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor) {
+        return forEachOverlapper(start, end, null, null, visitor);
+    }
+    
+    /**
+     * Passes each Interval in this AIList that overlaps [start, end), and
+     * which the given filter accepts, to the given visitor, in the same order
+     * as overlappers(), until the visitor returns false.
+     * <p>
+     * The filter is applied in the walk of the components, so nothing is
+     * allocated.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param query - passed to the filter with each overlapping Interval
+     * @param filter - whether or not to visit an overlapping Interval
+     * @param visitor - called with each accepted Interval; returns whether or
+     * not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public <Q> boolean forEachOverlapper(int start, int end, Q query,
+            OverlapFilter<? super Q, ? super T> filter, Predicate<? super T> visitor) {
+        for (int c = 0; c < numComponents(); c++) {
+            int lo = componentStarts[c];
+            for (int pos = lastStartingBefore(c, end); pos >= lo && maxEnds[pos] > start; pos--) {
+                if (ends[pos] <= start) {
+                    continue;
+                }
+                T t = value(pos);
+                if ((filter == null || filter.test(query, start, end, t)) && !visitor.test(t)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * An Iterator over the Intervals in this AIList which end at or before the
+     * given position, nearest first, i.e., in descending order of end.
+     * <p>
+     * Each component is walked backwards from its last Interval starting at
+     * or before the position, and an Interval found is returned once no
+     * component's running maximum end, capped at the position, exceeds its
+     * end. As for overlap queries, the decomposition into components keeps
+     * the running maximum close to the ends of the Intervals walked, so that
+     * few Intervals are walked beyond those returned.
+     * @param position - the position the Intervals must end at or before
+     */
+    @Override
+    public Iterator<T> preceding(int position) {
+        return new PrecedingIterator(position);
+    }
+    
+    /**
+     * The Interval at the given position.
+     */
+    @SuppressWarnings("unchecked")
+    private T value(int pos) {
+        return (T) values[pos];
+    }
+    
+    /**
+     * The last position in component c whose Interval starts before the
+     * given coordinate, or one less than the start of the component if there
+     * is none.
+     */
+    private int lastStartingBefore(int c, int coord) {
+        int lo = componentStarts[c];
+        int hi = componentStarts[c + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < coord) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+    
+    /**
+     * An Iterator which walks backwards through each component of this
+     * AIList, returning the Intervals that overlap [start, end).
+     */
+    private class OverlapperIterator implements Iterator<T> {
+
+        private final int start;
+        private final int end;
+        private int component;
+        private int pos;
+        private int next;
+        
+        private OverlapperIterator(int start, int end) {
+            this.start = start;
+            this.end = end;
+            component = -1;
+            pos = -1;
+            next = findNext();
+        }
+        
+        private int findNext() {
+            while (true) {
+                while (component >= 0 && pos >= componentStarts[component] && maxEnds[pos] > start) {
+                    int candidate = pos--;
+                    if (ends[candidate] > start) {
+                        return candidate;
+                    }
+                }
+                if (++component == numComponents()) {
+                    return -1;
+                }
+                pos = lastStartingBefore(component, end);
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != -1;
+        }
+        
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("AIList has no more overlapping elements.");
+            }
+            int rtrn = next;
+            next = findNext();
+            return value(rtrn);
+        }
+    }
+    
+    /**
+     * An Iterator which walks backwards through each component of this
+     * AIList, returning the Intervals that end at or before a given position
+     * in descending order of end.
+     */
+    private class PrecedingIterator implements Iterator<T> {
+
+        private final int position;
+        private final int[] positions;  // The next position to walk in each component
+        private final PriorityQueue<Integer> found =   // Walked, but not yet returned
+                new PriorityQueue<>((a, b) -> Integer.compare(ends[b], ends[a]));
+        private int next;
+        
+        private PrecedingIterator(int position) {
+            this.position = position;
+            positions = new int[numComponents()];
+            for (int c = 0; c < positions.length; c++) {
+                positions[c] = position == Integer.MAX_VALUE
+                        ? componentStarts[c + 1] - 1
+                        : lastStartingBefore(c, position + 1);
+            }
+            next = findNext();
+        }
+        
+        private int findNext() {
+            while (true) {
+                // The component whose unwalked Intervals may end latest
+                int best = -1;
+                int bestBound = Integer.MIN_VALUE;
+                for (int c = 0; c < positions.length; c++) {
+                    if (positions[c] >= componentStarts[c]) {
+                        int bound = Math.min(maxEnds[positions[c]], position);
+                        if (best == -1 || bound > bestBound) {
+                            best = c;
+                            bestBound = bound;
+                        }
+                    }
+                }
+                if (!found.isEmpty() && (best == -1 || ends[found.peek()] >= bestBound)) {
+                    return found.poll();
+                }
+                if (best == -1) {
+                    return -1;
+                }
+                int pos = positions[best]--;
+                if (ends[pos] <= position) {
+                    found.add(pos);
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != -1;
+        }
+        
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("AIList has no more preceding elements.");
+            }
+            int rtrn = next;
+            next = findNext();
+            return value(rtrn);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package datastructures;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A thread-safe {@link IntervalSetTree} for workloads in which reads far
+ * outnumber writes.
+ * <p>
+ * Modifications take the write mode of a <code>StampedLock</code>. Reads are
+ * first attempted without any lock at all: the read runs against the tree
+ * under an optimistic stamp, and its result is returned only if the stamp is
+ * still valid afterwards, i.e., if no modification began in the meantime.
+ * Unlike acquiring a read lock, an optimistic read writes nothing to shared
+ * memory, so concurrent readers do not contend with each other and reads
+ * scale with the number of cores. A read which overlaps a modification,
+ * or which fails because the tree was changed underneath it, is retried
+ * once under the read lock.
+ * <p>
+ * An optimistic read can see the tree half-way through a rotation, where its
+ * pointers may even form a cycle. It therefore validates its stamp before
+ * every step from one Node to another, and gives up as soon as the stamp is
+ * invalid, so it always terminates. Validation is also a load fence, so
+ * every step rereads the tree. A Node whose Intervals are kept in a Set,
+ * which only happens when many Intervals share the same coordinates, is
+ * always read under the read lock.
+ * <p>
+ * Because an optimistic read must be validated before its result can be
+ * trusted, every query materializes its result before returning it. The
+ * Iterators returned by this class are over copies, are never invalidated by
+ * later modifications, and do not support removal. For the same reason, the
+ * visitor passed to forEachOverlapper() is called only after the overlappers
+ * have been collected and no lock is held, so it may modify the tree.
+ * @param <T> - the type of Interval this tree contains
+ */
+public class ConcurrentIntervalSetTree<T extends Interval> implements IntervalIndex<T> {
+
+    private final IntervalSetTree<T> tree;
+    private final StampedLock lock = new StampedLock();
+    
+    /**
+     * Constructs an empty ConcurrentIntervalSetTree.
+     */
+    public ConcurrentIntervalSetTree() {
+        tree = new IntervalSetTree<>();
+    }
+    
+    /**
+     * Constructs a ConcurrentIntervalSetTree containing the given Intervals.
+     * @param c - the Intervals to add to this ConcurrentIntervalSetTree
+     * @see IntervalSetTree#IntervalSetTree(Collection)
+     */
+    public ConcurrentIntervalSetTree(Collection<? extends T> c) {
+        tree = new IntervalSetTree<>(c);
+    }
+    
+    /**
+     * Constructs a ConcurrentIntervalSetTree containing the Intervals of the
+     * given Stream.
+     * @param s - the Intervals to add to this ConcurrentIntervalSetTree
+     * @see IntervalSetTree#IntervalSetTree(Stream)
+     */
+    public ConcurrentIntervalSetTree(Stream<? extends T> s) {
+        tree = new IntervalSetTree<>(s);
+    }
+
+    ///////////////////////////////////
+    // Tree -- General query methods //
+    ///////////////////////////////////
+
+    /**
+     * The number of Intervals stored in this ConcurrentIntervalSetTree.
+     */
+    @Override
+    public int size() {
+        return read(guard -> tree.size(), tree::size);
+    }
+    
+    /**
+     * Whether or not this ConcurrentIntervalSetTree contains the given
+     * Interval.
+     * @param t - the Interval to search for
+     */
+    public boolean contains(T t) {
+        return read(guard -> tree.contains(t, guard), () -> tree.contains(t));
+    }
+    
+    /**
+     * An Iterator over a copy of this ConcurrentIntervalSetTree, in ascending
+     * order.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return read(guard -> {
+                        List<T> l = new ArrayList<>();
+                        tree.forEach(l::add, guard);
+                        return l;
+                    },
+                    () -> collect(tree.iterator())).iterator();
+    }
+    
+    /**
+     * An Iterator over the Intervals in this ConcurrentIntervalSetTree that
+     * overlap the given Interval, in ascending order.
+     * @param t - the overlapping Interval
+     */
+    @Override
+    public Iterator<T> overlappers(T t) {
+        return overlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * An Iterator over the Intervals in this ConcurrentIntervalSetTree that
+     * overlap [start, end), in ascending order.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public Iterator<T> overlappers(int start, int end) {
+        return collectOverlappers(start, end).iterator();
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this ConcurrentIntervalSetTree
+     * overlap the given Interval.
+     * @param t - the potentially overlapping Interval
+     */
+    @Override
+    public boolean overlaps(T t) {
+        return overlaps(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this ConcurrentIntervalSetTree
+     * overlap [start, end).
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    @Override
+    public boolean overlaps(int start, int end) {
+        return read(guard -> tree.overlaps(start, end, guard),
+                () -> tree.overlaps(start, end));
+    }
+    
+    /**
+     * The number of Intervals in this ConcurrentIntervalSetTree that overlap
+     * the given Interval.
+     * @param t - the overlapping Interval
+     */
+    @Override
+    public int numOverlappers(T t) {
+        return numOverlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * The number of Intervals in this ConcurrentIntervalSetTree that overlap
+     * [start, end).
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public int numOverlappers(int start, int end) {
+        return read(guard -> tree.numOverlappers(start, end, guard),
+                () -> tree.numOverlappers(start, end));
+    }
+    
+    /**
+     * The Intervals in the least Node of this ConcurrentIntervalSetTree that
+     * overlaps the given Interval.
+     * @param t - the overlapping Interval
+     * @return an Iterator, possibly empty, over a copy of the least
+     * overlapping Intervals
+     * @see IntervalSetTree#minimumOverlappers(Interval)
+     */
+    public Iterator<T> minimumOverlappers(T t) {
+        return read(guard -> {
+                        // The least overlapping Node holds the first overlappers
+                        // with the same coordinates.
+                        List<T> l = new ArrayList<>();
+                        tree.forEachOverlapper(t.getStart(), t.getEnd(), i -> {
+                            if (!l.isEmpty() && (i.getStart() != l.get(0).getStart() ||
+                                    i.getEnd() != l.get(0).getEnd())) {
+                                return false;
+                            }
+                            return l.add(i);
+                        }, guard);
+                        return l;
+                    },
+                    () -> collect(tree.minimumOverlappers(t))).iterator();
+    }
+    
+    /**
+     * Passes each Interval in this ConcurrentIntervalSetTree that overlaps
+     * [start, end) to the given visitor, in ascending order, until the visitor
+     * returns false.
+     * <p>
+     * The overlappers are collected first, and the visitor is called without
+     * any lock held.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor) {
+        for (T t : collectOverlappers(start, end)) {
+            if (!visitor.test(t)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //////////////////////////////////
+    // Tree -- Modification methods //
+    //////////////////////////////////
+
+    /**
+     * Inserts the given Interval into this ConcurrentIntervalSetTree.
+     * @param t - the Interval to insert
+     * @return whether or not the tree was changed
+     */
+    @Override
+    public boolean insert(T t) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.insert(t);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Deletes the given Interval from this ConcurrentIntervalSetTree.
+     * @param t - the Interval to delete
+     * @return whether or not an Interval was removed from the tree
+     */
+    public boolean delete(T t) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.delete(t);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Deletes all Intervals that overlap the given Interval from this
+     * ConcurrentIntervalSetTree.
+     * @param t - the overlapping Interval
+     * @return whether or not an Interval was removed from the tree
+     */
+    public boolean deleteOverlappers(T t) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.deleteOverlappers(t);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /////////////////////////////
+    // Tree -- Locking methods //
+    /////////////////////////////
+
+    /**
+     * The result of the given read of the tree.
+     * <p>
+     * The read is first run optimistically, under a stamp which it validates
+     * at every step (see {@link IntervalSetTree#forEachOverlapper(int, int,
+     * Predicate, BooleanSupplier)}), and once more afterwards. If the stamp is
+     * invalid, or the read fails, the result is discarded and the read is run
+     * again under the read lock.
+     * @param optimistic - reads the tree without a lock, given the guard it
+     * must check before every step
+     * @param locked - reads the tree under the read lock
+     */
+    private <R> R read(Function<BooleanSupplier, R> optimistic, Supplier<R> locked) {
+        long optimisticStamp = lock.tryOptimisticRead();
+        if (optimisticStamp != 0) {
+            try {
+                R result = optimistic.apply(() -> lock.validate(optimisticStamp));
+                if (lock.validate(optimisticStamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // The tree was modified during the read, or the read met a Set
+                // of Intervals. Retry under the lock.
+            }
+        }
+
+        long stamp = lock.readLock();
+        try {
+            return locked.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * A list of the Intervals in the tree that overlap [start, end), in
+     * ascending order.
+     */
+    private List<T> collectOverlappers(int start, int end) {
+        return read(guard -> {
+                    List<T> l = new ArrayList<>();
+                    tree.forEachOverlapper(start, end, l::add, guard);
+                    return l;
+                },
+                () -> collect(tree.overlappers(start, end)));
+    }
+    
+    /**
+     * A list of the Intervals remaining in the given Iterator over the tree.
+     */
+    private static <T> List<T> collect(Iterator<T> iter) {
+        List<T> l = new ArrayList<>();
+        iter.forEachRemaining(l::add);
+        return l;
+    }
+}
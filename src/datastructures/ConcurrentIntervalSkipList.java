@@ -0,0 +1,403 @@
+package datastructures;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import utils.FilteredIterator;
+
+/**
+ * A thread-safe, lock-free index of Intervals, for ingesting Intervals from
+ * several threads at once.
+ * <p>
+ * The Intervals are kept in <code>ConcurrentSkipListMap</code>s in
+ * ascending order. Like an {@link IntervalTree}, this index does not store
+ * two Intervals which compare as equal. Insertions, deletions and queries
+ * may all run concurrently, and none of them block.
+ * <p>
+ * The nodes of a lock-free skip list cannot be augmented with the maximum
+ * end of the Intervals beneath them, since no lock covers the nodes that
+ * such a value summarizes. Instead, the Intervals are split into levels by
+ * length: level 0 holds the empty Intervals, and level k the Intervals
+ * whose length is in [2^(k-1), 2^k). Each level has its own skip list, and
+ * records the length of the longest Interval it has ever held, which only
+ * ever grows, and so can be maintained with a single atomic update. Every
+ * Interval of a level overlapping [start, end) starts in
+ * (start - maxLength, end), and a query scans only that range of each
+ * level's skip list. Since every Interval of level k is at least half as
+ * long as its bound, few of the Intervals scanned fail to overlap, and a
+ * single long Interval only widens the scan of its own level.
+ * <p>
+ * As with the views of a <code>ConcurrentSkipListMap</code>, the Iterators
+ * returned by this class are weakly consistent: they never throw a
+ * ConcurrentModificationException, and reflect every modification that
+ * completed before they were created, but may or may not reflect
+ * modifications made while they are in use.
+ * @param <T> - the type of Interval this index contains
+ */
+public class ConcurrentIntervalSkipList<T extends Interval> implements IntervalIndex<T> {
+
+    private static final int NUM_LEVELS = 33;   // Lengths are less than 2^32
+    
+    private final AtomicReferenceArray<ConcurrentSkipListMap<Interval, T>> levels =
+            new AtomicReferenceArray<>(NUM_LEVELS);     // Created on first use
+    private final AtomicLongArray maxLengths = new AtomicLongArray(NUM_LEVELS);
+    private final LongAdder size = new LongAdder();     // ConcurrentSkipListMap
+                                                        // counts in linear time
+    
+    /**
+     * Constructs an empty ConcurrentIntervalSkipList.
+     */
+    public ConcurrentIntervalSkipList() {}
+
+    /**
+     * Constructs a ConcurrentIntervalSkipList containing the given Intervals.
+     * @param intervals - the Intervals to add to this ConcurrentIntervalSkipList
+     */
+    public ConcurrentIntervalSkipList(Iterable<? extends T> intervals) {
+        intervals.forEach(this::insert);
+    }
+    
+    /**
+     * The number of Intervals stored in this ConcurrentIntervalSkipList.
+     * <p>
+     * Unlike the size() of a <code>ConcurrentSkipListMap</code>, this takes
+     * constant time. If modifications are in progress, the result may not
+     * reflect them.
+     */
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+    
+    /**
+     * Whether or not this ConcurrentIntervalSkipList contains the given
+     * Interval.
+     * @param t - the Interval to search for
+     */
+    public boolean contains(T t) {
+        ConcurrentSkipListMap<Interval, T> level = levels.get(level(t));
+        return level != null && level.containsKey(t);
+    }
+    
+    /**
+     * An Iterator over the Intervals in this ConcurrentIntervalSkipList, in
+     * ascending order.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        List<Iterator<T>> iters = new ArrayList<>();
+        for (int i = 0; i < NUM_LEVELS; i++) {
+            ConcurrentSkipListMap<Interval, T> level = levels.get(i);
+            if (level != null) {
+                iters.add(level.values().iterator());
+            }
+        }
+        return new MergingIterator<>(iters);
+    }
+    
+    /**
+     * An Iterator over the Intervals in this ConcurrentIntervalSkipList that
+     * overlap the given Interval, in ascending order.
+     * @param t - the overlapping Interval
+     */
+    @Override
+    public Iterator<T> overlappers(T t) {
+        return overlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * An Iterator over the Intervals in this ConcurrentIntervalSkipList that
+     * overlap [start, end), in ascending order.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public Iterator<T> overlappers(int start, int end) {
+        List<Iterator<T>> iters = new ArrayList<>();
+        for (ConcurrentNavigableMap<Interval, T> candidates : candidates(start, end)) {
+            iters.add(new FilteredIterator<T>(candidates.values().iterator(),
+                    t -> t.getEnd() > start));
+        }
+        return new MergingIterator<>(iters);
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this ConcurrentIntervalSkipList
+     * overlap the given Interval.
+     * @param t - the potentially overlapping Interval
+     */
+    @Override
+    public boolean overlaps(T t) {
+        return overlaps(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this ConcurrentIntervalSkipList
+     * overlap [start, end).
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    @Override
+    public boolean overlaps(int start, int end) {
+        return !forEachOverlapper(start, end, t -> false);
+    }
+    
+    /**
+     * The number of Intervals in this ConcurrentIntervalSkipList that overlap
+     * the given Interval.
+     * @param t - the overlapping Interval
+     */
+    @Override
+    public int numOverlappers(T t) {
+        return numOverlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * The number of Intervals in this ConcurrentIntervalSkipList that overlap
+     * [start, end).
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public int numOverlappers(int start, int end) {
+        int count = 0;
+        for (ConcurrentNavigableMap<Interval, T> candidates : candidates(start, end)) {
+            for (T t : candidates.values()) {
+                if (t.getEnd() > start) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * The least Interval in this ConcurrentIntervalSkipList that overlaps the
+     * given Interval.
+     * @param t - the overlapping Interval
+     * @return an Optional containing, if it exists, the least Interval in this
+     * ConcurrentIntervalSkipList that overlaps the given Interval; otherwise
+     * (i.e., if there is no overlap), an empty Optional
+     */
+    public Optional<T> minimumOverlapper(T t) {
+        Iterator<T> iter = overlappers(t);
+        return iter.hasNext() ? Optional.of(iter.next()) : Optional.empty();
+    }
+    
+    /**
+     * Passes each Interval in this ConcurrentIntervalSkipList that overlaps
+     * [start, end) to the given visitor, in ascending order, until the visitor
+     * returns false.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor) {
+        Iterator<T> iter = overlappers(start, end);
+        while (iter.hasNext()) {
+            if (!visitor.test(iter.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * An Iterator over the Intervals in this ConcurrentIntervalSkipList which
+     * start at or after the given position, in ascending order.
+     * @param position - the position the Intervals must start at or after
+     */
+    @Override
+    public Iterator<T> following(int position) {
+        List<Iterator<T>> iters = new ArrayList<>();
+        for (int i = 0; i < NUM_LEVELS; i++) {
+            ConcurrentSkipListMap<Interval, T> level = levels.get(i);
+            if (level != null) {
+                iters.add(level.tailMap(new Bound(position)).values().iterator());
+            }
+        }
+        return new MergingIterator<>(iters);
+    }
+    
+    /**
+     * Inserts the given Interval into this ConcurrentIntervalSkipList.
+     * <p>
+     * If an equal Interval is already present, this ConcurrentIntervalSkipList
+     * remains unchanged.
+     * @param t - the Interval to insert
+     * @return whether or not this ConcurrentIntervalSkipList changed
+     */
+    @Override
+    public boolean insert(T t) {
+        // Widen the search range before the Interval becomes visible, so that
+        // any query which can see it also scans far enough back to find it.
+        int i = level(t);
+        maxLengths.accumulateAndGet(i, length(t), Math::max);
+        ConcurrentSkipListMap<Interval, T> level = levels.get(i);
+        if (level == null) {
+            levels.compareAndSet(i, null, new ConcurrentSkipListMap<>());
+            level = levels.get(i);
+        }
+        if (level.putIfAbsent(t, t) == null) {
+            size.increment();
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Deletes the given Interval from this ConcurrentIntervalSkipList.
+     * <p>
+     * If the Interval does not exist, this ConcurrentIntervalSkipList remains
+     * unchanged.
+     * @param t - the Interval to delete
+     * @return whether or not an Interval was removed
+     */
+    public boolean delete(T t) {
+        ConcurrentSkipListMap<Interval, T> level = levels.get(level(t));
+        if (level != null && level.remove(t) != null) {
+            size.decrement();
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Deletes all Intervals that overlap the given Interval from this
+     * ConcurrentIntervalSkipList.
+     * <p>
+     * The deletions are not atomic: a concurrent query may see some of the
+     * overlappers deleted and others not, and an overlapper inserted during
+     * this method may or may not be deleted.
+     * @param t - the overlapping Interval
+     * @return whether or not an Interval was removed
+     */
+    public boolean deleteOverlappers(T t) {
+        boolean changed = false;
+        for (ConcurrentNavigableMap<Interval, T> candidates :
+                candidates(t.getStart(), t.getEnd())) {
+            for (Interval key : candidates.keySet()) {
+                if (key.getEnd() > t.getStart() && candidates.remove(key) != null) {
+                    size.decrement();
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Views of the Intervals of each level which start in
+     * (start - maxLength, end), which together include every Interval that
+     * overlaps [start, end).
+     */
+    private List<ConcurrentNavigableMap<Interval, T>> candidates(int start, int end) {
+        List<ConcurrentNavigableMap<Interval, T>> candidates = new ArrayList<>();
+        Bound to = new Bound(end);
+        for (int i = 0; i < NUM_LEVELS; i++) {
+            ConcurrentSkipListMap<Interval, T> level = levels.get(i);
+            long lo = (long) start - maxLengths.get(i) + 1;
+            if (level != null && lo < end) {
+                Bound from = new Bound((int) Math.max(lo, Integer.MIN_VALUE));
+                candidates.add(level.subMap(from, true, to, false));
+            }
+        }
+        return candidates;
+    }
+    
+    /**
+     * The length of the given Interval, or 0 if it ends before it starts.
+     */
+    private static long length(Interval t) {
+        return Math.max((long) t.getEnd() - t.getStart(), 0);
+    }
+    
+    /**
+     * The level holding the given Interval: 0 if it is empty, and otherwise k
+     * where its length is in [2^(k-1), 2^k).
+     */
+    private static int level(Interval t) {
+        return Long.SIZE - Long.numberOfLeadingZeros(length(t));
+    }
+    
+    /**
+     * An Iterator which merges Iterators over ascending Intervals into a
+     * single ascending Iterator.
+     */
+    private static class MergingIterator<T extends Interval> implements Iterator<T> {
+
+        private final List<Iterator<T>> iters;
+        private final List<T> heads = new ArrayList<>();   // The next Interval of
+                                                            // each Iterator, or null
+        
+        private MergingIterator(List<Iterator<T>> iters) {
+            this.iters = iters;
+            for (Iterator<T> iter : iters) {
+                heads.add(iter.hasNext() ? iter.next() : null);
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            for (T head : heads) {
+                if (head != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        @Override
+        public T next() {
+            int best = -1;  // The Iterator whose next Interval is least
+            for (int i = 0; i < heads.size(); i++) {
+                T head = heads.get(i);
+                if (head != null && (best == -1 || head.compareTo(heads.get(best)) < 0)) {
+                    best = i;
+                }
+            }
+            if (best == -1) {
+                throw new NoSuchElementException("Skip list has no more elements.");
+            }
+            T next = heads.get(best);
+            heads.set(best, iters.get(best).hasNext() ? iters.get(best).next() : null);
+            return next;
+        }
+    }
+    
+    /**
+     * A key which compares as less than every Interval that starts at or
+     * after the given coordinate, and greater than every Interval that
+     * starts before it.
+     */
+    private static class Bound implements Interval {
+
+        private final int start;
+        
+        private Bound(int start) {
+            this.start = start;
+        }
+        
+        @Override
+        public int getStart() {
+            return start;
+        }
+        
+        @Override
+        public int getEnd() {
+            return Integer.MIN_VALUE;
+        }
+    }
+}
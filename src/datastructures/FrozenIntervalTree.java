@@ -0,0 +1,468 @@
+package datastructures;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * An immutable, array-backed snapshot of an IntervalTree.
+ * <p>
+ * Rather than linking Node objects together, this class stores its
+ * Intervals' coordinates in parallel primitive arrays laid out in Eytzinger
+ * (breadth-first) order: the root is at index 1, and the children of the
+ * node at index k are at indices 2k and 2k + 1. Each index also stores the
+ * maxEnd value of its implicit subtree, so overlap queries prune exactly as
+ * they do in an IntervalTree, but walk a handful of contiguous arrays rather
+ * than chasing pointers around the heap.
+ * <p>
+ * Query methods have the same semantics as their IntervalTree counterparts.
+ * Use {@link IntervalTree#freeze()} to construct one.
+ * @param <T> - the type of Interval this tree contains
+ */
+public class FrozenIntervalTree<T extends Interval> implements IntervalIndex<T> {
+
+    private final int size;        // Number of Intervals. Valid indices are [1..size]
+    private final int[] starts;    // Start of the Interval at each index
+    private final int[] ends;      // End of the Interval at each index
+    private final int[] maxEnds;   // Greatest end in the subtree at each index
+    private final Object[] values; // The Interval at each index
+    private final int height;      // Number of levels in the implicit tree
+    private volatile IntervalCounter counter;   // Built by the first count
+
+    /**
+     * Constructs a FrozenIntervalTree containing the Intervals in the given
+     * IntervalTree.
+     * <p>
+     * Later modifications to the IntervalTree are not reflected in this
+     * snapshot.
+     * @param tree - the IntervalTree to copy
+     */
+    public FrozenIntervalTree(IntervalTree<T> tree) {
+        size = tree.size();
+        starts = new int[size + 1];
+        ends = new int[size + 1];
+        maxEnds = new int[size + 1];
+        values = new Object[size + 1];
+        height = 32 - Integer.numberOfLeadingZeros(size);
+
+        fill(tree.iterator(), 1);
+
+        for (int k = size; k > 0; k--) {
+            int maxEnd = ends[k];
+            if (2 * k <= size) {
+                maxEnd = Math.max(maxEnd, maxEnds[2 * k]);
+            }
+            if (2 * k + 1 <= size) {
+                maxEnd = Math.max(maxEnd, maxEnds[2 * k + 1]);
+            }
+            maxEnds[k] = maxEnd;
+        }
+    }
+    
+    /**
+     * Copies Intervals from an ascending Iterator into the implicit subtree
+     * rooted at index k with an in-order traversal.
+     */
+    private void fill(Iterator<T> iter, int k) {
+        if (k > size) {
+            return;
+        }
+        fill(iter, 2 * k);
+        T t = iter.next();
+        starts[k] = t.getStart();
+        ends[k] = t.getEnd();
+        values[k] = t;
+        fill(iter, 2 * k + 1);
+    }
+
+    ///////////////////////////////////
+    // Tree -- General query methods //
+    ///////////////////////////////////
+
+    /**
+     * Whether this FrozenIntervalTree is empty or not.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * The number of intervals stored in this FrozenIntervalTree.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * An Iterator which traverses the tree in ascending order.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new OverlapperIterator(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * An Iterator over the Intervals in this FrozenIntervalTree that overlap
+     * the given Interval, in ascending order
+     * @param t - the overlapping Interval
+     */
+    public Iterator<T> overlappers(T t) {
+        return overlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * An Iterator over the Intervals in this FrozenIntervalTree that overlap
+     * [start, end), in ascending order
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public Iterator<T> overlappers(int start, int end) {
+        return new OverlapperIterator(start, end);
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this FrozenIntervalTree overlap
+     * the given Interval
+     * @param t - the potentially overlapping Interval
+     */
+    public boolean overlaps(T t) {
+        return overlaps(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this FrozenIntervalTree overlap
+     * [start, end)
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    @Override
+    public boolean overlaps(int start, int end) {
+        int k = 1;
+        while (k <= size && !overlaps(k, start, end)) {
+            k = 2 * k <= size && maxEnds[2 * k] > start ? 2 * k : 2 * k + 1;
+        }
+        return k <= size;
+    }
+    
+    /**
+     * The number of Intervals in this FrozenIntervalTree that overlap the
+     * given Interval
+     * @param t - the overlapping Interval
+     */
+    public int numOverlappers(T t) {
+        return numOverlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * The number of Intervals in this FrozenIntervalTree that overlap
+     * [start, end)
+     * <p>
+     * Unless end is at or before start, this takes O(log n) time, regardless
+     * of the number of overlappers. The first such call also builds an
+     * {@link IntervalCounter}, in O(n log n) time, which holds sorted copies
+     * of the starts and ends of the Intervals.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public int numOverlappers(int start, int end) {
+        if (start < end) {
+            return counter().count(start, end);
+        }
+
+        int count = 0;
+        Iterator<T> iter = overlappers(start, end);
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * The IntervalCounter over the Intervals in this FrozenIntervalTree, which is built
+     * when it is first needed, so that a tree which is never counted does
+     * not hold sorted copies of its coordinates.
+     * <p>
+     * Two threads may both build it, but the counters they build are
+     * identical, so it does not matter which one is kept.
+     */
+    private IntervalCounter counter() {
+        IntervalCounter c = counter;
+        if (c == null) {
+            c = new IntervalCounter(Arrays.copyOfRange(starts, 1, size + 1),
+                    Arrays.copyOfRange(ends, 1, size + 1));
+            counter = c;
+        }
+        return c;
+    }
+    
+    /**
+     * Passes each Interval in this FrozenIntervalTree that overlaps [start,
+     * end) to the given visitor, in ascending order, until the visitor
+     * returns false.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor) {
+        return forEachOverlapper(1, start, end, visitor);
+    }
+    
+    /**
+     * An Iterator over the Intervals in this FrozenIntervalTree which end at
+     * or before the given position, nearest first, i.e., in descending order
+     * of end.
+     * <p>
+     * As in an IntervalTree, this is a best-first search of the implicit
+     * tree, with subtrees queued by the least of their maxEnd and the
+     * position. The first k Intervals are found in O((k + c + 1) log^2 n)
+     * time, where c is the number of Intervals containing the position.
+     * @param position - the position the Intervals must end at or before
+     */
+    @Override
+    public Iterator<T> preceding(int position) {
+        return new PrecedingIterator(position);
+    }
+    
+    /**
+     * The least Interval in this FrozenIntervalTree that overlaps the given
+     * Interval
+     * @param t - the overlapping Interval
+     * @return an Optional containing, if it exists, the least Interval in this
+     * FrozenIntervalTree that overlaps the given Interval; otherwise (i.e., if
+     * there is no overlap), an empty Optional
+     */
+    public Optional<T> minimumOverlapper(T t) {
+        int k = minimumOverlappingIndex(t.getStart(), t.getEnd());
+        return k == 0 ? Optional.empty() : Optional.of(value(k));
+    }
+
+    /////////////////////////////////
+    // Tree -- Index-level methods //
+    /////////////////////////////////
+
+    /**
+     * Whether or not the Interval at index k overlaps [start, end).
+     */
+    private boolean overlaps(int k, int start, int end) {
+        return starts[k] < end && start < ends[k];
+    }
+    
+    /**
+     * The Interval at index k.
+     */
+    @SuppressWarnings("unchecked")
+    private T value(int k) {
+        return (T) values[k];
+    }
+    
+    /**
+     * Passes each Interval in the implicit subtree rooted at index k that
+     * overlaps [start, end) to the given visitor, with an in-order traversal.
+     * <p>
+     * The recursion is no deeper than the height of the tree.
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    private boolean forEachOverlapper(int k, int start, int end, Predicate<? super T> visitor) {
+        if (k > size || maxEnds[k] <= start) {
+            return true;
+        }
+        if (!forEachOverlapper(2 * k, start, end, visitor)) {
+            return false;
+        }
+        if (starts[k] >= end) {
+            return true;    // Nothing in the right subtree can overlap
+        }
+        if (start < ends[k] && !visitor.test(value(k))) {
+            return false;
+        }
+        return forEachOverlapper(2 * k + 1, start, end, visitor);
+    }
+    
+    /**
+     * The index of the least Interval that overlaps [start, end).
+     * <p>
+     * This mirrors IntervalTree.Node#minimumOverlappingNode().
+     * @return the index of the least overlapping Interval, if one exists;
+     * otherwise, 0
+     */
+    private int minimumOverlappingIndex(int start, int end) {
+
+        int result = 0;
+        int k = 1;
+
+        if (k <= size && maxEnds[k] > start) {
+            while (true) {
+                if (overlaps(k, start, end)) {
+
+                    // This index overlaps. There may be a lesser overlapper
+                    // down the left subtree.
+
+                    result = k;
+                    k = 2 * k;
+
+                    if (k > size || maxEnds[k] <= start) {
+                        break;
+                    }
+                } else {
+                    int left = 2 * k;
+                    if (left <= size && maxEnds[left] > start) {
+                        k = left;
+                    } else {
+                        if (starts[k] >= end) {
+                            break;  // Nothing in the right subtree can overlap
+                        }
+
+                        k = 2 * k + 1;
+                        if (k > size || maxEnds[k] <= start) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    ///////////////////////
+    // Tree -- Iterators //
+    ///////////////////////
+
+    /**
+     * An Iterator which walks along this FrozenIntervalTree's Intervals that
+     * overlap [start, end) in ascending order.
+     * <p>
+     * This is an in-order traversal of the implicit tree which skips any
+     * subtree whose maxEnd cannot reach the query, and stops at the first
+     * index which starts at or after the end of the query.
+     */
+    private class OverlapperIterator implements Iterator<T> {
+
+        private final int start;
+        private final int end;
+        private final int[] stack;
+        private int top;
+        private int next;
+        
+        private OverlapperIterator(int start, int end) {
+            this.start = start;
+            this.end = end;
+            stack = new int[height + 1];
+            top = 0;
+            pushLeft(1);
+            next = findNext();
+        }
+        
+        private void pushLeft(int k) {
+            while (k <= size && maxEnds[k] > start) {
+                stack[top++] = k;
+                k = 2 * k;
+            }
+        }
+        
+        private int findNext() {
+            while (top > 0) {
+                int k = stack[--top];
+                if (starts[k] >= end) {
+                    top = 0;
+                    break;
+                }
+                pushLeft(2 * k + 1);
+                if (start < ends[k]) {
+                    return k;
+                }
+            }
+            return 0;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != 0;
+        }
+        
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Interval tree has no more overlapping elements.");
+            }
+            int rtrn = next;
+            next = findNext();
+            return value(rtrn);
+        }
+    }
+    
+    /**
+     * An Iterator which walks along this FrozenIntervalTree's Intervals that
+     * end at or before a given position, in descending order of end.
+     * <p>
+     * The queue holds both subtrees still to be searched and indices already
+     * known to end at or before the position, each packed into a long with
+     * the greatest end it can contribute in the high bits, so that the
+     * greatest bound is at the head of the queue.
+     */
+    private class PrecedingIterator implements Iterator<T> {
+
+        private final int position;
+        private final PriorityQueue<Long> queue = new PriorityQueue<>(Comparator.reverseOrder());
+        private int next;
+        
+        private PrecedingIterator(int position) {
+            this.position = position;
+            addSubtree(1);
+            next = findNext();
+        }
+        
+        private void addSubtree(int k) {
+            if (k <= size) {
+                queue.add(candidate(Math.min(maxEnds[k], position), k, true));
+            }
+        }
+        
+        private int findNext() {
+            while (!queue.isEmpty()) {
+                int c = queue.poll().intValue();
+                int k = c >>> 1;
+                if ((c & 1) == 0) {
+                    return k;
+                }
+                if (ends[k] <= position) {
+                    queue.add(candidate(ends[k], k, false));
+                }
+                addSubtree(2 * k);
+                if (starts[k] <= position) {    // Indices to the right start at
+                    addSubtree(2 * k + 1);      // or after k
+                }
+            }
+            return 0;
+        }
+        
+        private long candidate(int bound, int k, boolean isSubtree) {
+            return (long) bound << 32 | (long) k << 1 | (isSubtree ? 1 : 0);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != 0;
+        }
+        
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Interval tree has no more preceding elements.");
+            }
+            int rtrn = next;
+            next = findNext();
+            return value(rtrn);
+        }
+    }
+}
@@ -1,27 +1,172 @@
 package datastructures;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import annotation.Annotation;
+import annotation.Block;
+import annotation.Strand;
 import utils.FilteredIterator;
 
 /**
  * This class is a tree structure suitable for storing <code>Annotation</code>s
  * across an entire genome, e.g., the records from a BED file or a collection
  * of reads from a BAM file.
+ * <p>
+ * The <code>Annotation</code>s on each reference are stored in a separate
+ * {@link IntervalIndex}. The kind of index is chosen by the {@link Backend}
+ * the <code>GenomeTree</code> is constructed with.
+ * <p>
+ * The indexes are held in a <code>ConcurrentHashMap</code>, so new
+ * references can be added from several threads at once. Each index is only
+ * as thread-safe as its backend: with {@link Backend#PERSISTENT}, any number
+ * of threads may query and insert concurrently, and insertions on different
+ * references never contend with each other. With any other backend, each
+ * reference may have only one writer at a time: several threads may insert
+ * at once only if no two of them insert on the same reference, and the
+ * <code>GenomeTree</code> must not be queried while it is being modified.
  */
 public class GenomeTree {
 
-    private Map<String, IntervalSetTree<Annotation>> chroms;
+    // The filters of forEachOverlapper(), which capture nothing, so that a
+    // visit allocates no Predicate
+    private static final IntervalIndex.OverlapFilter<Annotation, Annotation> OVERLAPS_ANNOTATION =
+            (a, start, end, o) -> o.overlaps(a);
+    private static final IntervalIndex.OverlapFilter<Strand, Annotation> OVERLAPS_ON_STRAND =
+            (strand, start, end, o) -> overlaps(o, start, end, strand);
+
+    private ConcurrentMap<String, IntervalIndex<Annotation>> chroms;
+    private final Backend backend;
     
     /**
      * Constructs an empty <code>GenomeTree</code>.
+     * <p>
+     * Each reference is stored in an {@link IntervalSetTree}.
      */
     public GenomeTree() {
-        chroms = new HashMap<>();
+        chroms = new ConcurrentHashMap<>();
+        backend = Backend.INTERVAL_SET_TREE;
+    }
+    
+    /**
+     * Constructs an empty <code>GenomeTree</code> which stores each reference
+     * in the given {@link Backend}.
+     * @param backend - the kind of index to store each reference in
+     * @throws UnsupportedOperationException if the backend cannot be modified
+     * after construction, since the <code>GenomeTree</code> would always be
+     * empty
+     */
+    public GenomeTree(Backend backend) {
+        if (!backend.isModifiable()) {
+            throw new UnsupportedOperationException("A GenomeTree backed by " +
+                    backend + " cannot be modified after construction.");
+        }
+        this.backend = backend;
+        chroms = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Constructs a <code>GenomeTree</code> containing the given
+     * <code>Annotation</code>s, stored per reference in the given
+     * {@link Backend}.
+     * <p>
+     * Each reference's index is bulk-loaded from its
+     * <code>Annotation</code>s in sorted order. Duplicate
+     * <code>Annotation</code>s are stored only once, regardless of backend.
+     * The references are loaded in parallel.
+     * @param annotations - the <code>Annotation</code>s to store
+     * @param backend - the kind of index to store each reference in
+     * @throws UnsupportedOperationException if the backend can only be
+     * opened from a snapshot file
+     */
+    public GenomeTree(Collection<? extends Annotation> annotations, Backend backend) {
+        checkBuildable(backend);
+        this.backend = backend;
+        chroms = new ConcurrentHashMap<>();
+        load(annotations.stream());
+    }
+    
+    /**
+     * Constructs a <code>GenomeTree</code> of the given indexes, whatever the
+     * backend.
+     */
+    private GenomeTree(ConcurrentMap<String, IntervalIndex<Annotation>> chroms, Backend backend) {
+        this.chroms = chroms;
+        this.backend = backend;
+    }
+    
+    /**
+     * Constructs a <code>GenomeTree</code> from <code>Annotation</code>s
+     * which have already been grouped by reference and sorted, stored per
+     * reference in the given {@link Backend}.
+     * <p>
+     * Unlike {@link #GenomeTree(Collection, Backend)}, this neither groups,
+     * sorts nor removes duplicates from the <code>Annotation</code>s, so
+     * each reference is bulk-loaded in linear time. It is meant for
+     * <code>Annotation</code>s read back from a source which was written from
+     * a <code>GenomeTree</code>, such as a binary snapshot. The references are
+     * loaded in parallel.
+     * @param references - for each reference name, the distinct
+     * <code>Annotation</code>s on that reference, in ascending order
+     * @param backend - the kind of index to store each reference in
+     * @throws UnsupportedOperationException if the backend can only be
+     * opened from a snapshot file
+     */
+    public static GenomeTree fromSorted(Map<String, ? extends List<Annotation>> references,
+            Backend backend) {
+        checkBuildable(backend);
+        ConcurrentMap<String, IntervalIndex<Annotation>> chroms = new ConcurrentHashMap<>();
+        references.entrySet()
+                  .parallelStream()
+                  .forEach(e -> chroms.put(e.getKey(), backend.newIndex(e.getValue())));
+        return new GenomeTree(chroms, backend);
+    }
+    
+    /**
+     * Throws an exception if the given backend cannot build its indexes from
+     * <code>Annotation</code>s, before any work is done in parallel.
+     */
+    private static void checkBuildable(Backend backend) {
+        if (backend.isSnapshotOnly()) {
+            throw new UnsupportedOperationException("A GenomeTree backed by " +
+                    backend + " can only be opened from a snapshot file.");
+        }
+    }
+    
+    /**
+     * Constructs a <code>GenomeTree</code> of indexes which have already been
+     * built, one per reference.
+     * <p>
+     * The indexes are not copied, and must hold only <code>Annotation</code>s
+     * on their own reference. The backend determines how references which
+     * are not among the indexes are stored, if any are inserted later.
+     * @param indexes - for each reference name, the index of the
+     * <code>Annotation</code>s on that reference
+     * @param backend - the kind of index the given indexes are
+     */
+    public static GenomeTree fromIndexes(
+            Map<String, ? extends IntervalIndex<Annotation>> indexes, Backend backend) {
+        return new GenomeTree(new ConcurrentHashMap<>(indexes), backend);
     }
     
     /**
@@ -37,20 +182,113 @@ public class GenomeTree {
     public int getSize() {
         return chroms.values()
                      .stream()
-                     .mapToInt(IntervalSetTree::size)
+                     .mapToInt(IntervalIndex::size)
                      .sum();
     }
     
+    /**
+     * Gets the names of the references which have <code>Annotation</code>s
+     * stored in this.
+     */
+    public Set<String> getReferenceNames() {
+        return Collections.unmodifiableSet(chroms.keySet());
+    }
+    
+    /**
+     * Gets an <code>Iterator</code> over all values in this on the given
+     * reference, in ascending order.
+     * @param ref - the name of the reference
+     */
+    public Iterator<Annotation> getAnnotations(String ref) {
+        IntervalIndex<Annotation> tree = chroms.get(ref);
+        return tree == null ? Collections.emptyIterator() : tree.iterator();
+    }
+    
     /**
      * Inserts an <code>Annotation</code> into this.
+     * <p>
+     * Unless this <code>GenomeTree</code>'s backend is
+     * {@link Backend#PERSISTENT}, no other thread may insert on the same
+     * reference while this method runs, or that reference's index may be
+     * corrupted. Threads inserting on different references do not interfere.
      * @param a - the <code>Annotation</code> to insert
      * @return <code>true</code> if the addition resulted in a change to the
      * tree; otherwise (if the value was already present, for example),
      * <code>false</code>
+     * @throws UnsupportedOperationException if this <code>GenomeTree</code>'s
+     * backend cannot be modified after construction
      */
     public boolean insert(Annotation a) {
-        return chroms.computeIfAbsent(a.getReferenceName(), 
-                t -> new IntervalSetTree<>()).insert(a);
+        return chroms.computeIfAbsent(a.getReferenceName(),
+                t -> backend.newIndex()).insert(a);
+    }
+    
+    /**
+     * Inserts the given <code>Annotation</code>s into this, using every
+     * available core.
+     * <p>
+     * The <code>Annotation</code>s are partitioned by reference, and each
+     * reference is then loaded by a single thread, so the time taken scales
+     * with the number of references rather than the number of
+     * <code>Annotation</code>s. A reference not yet in this is bulk-loaded
+     * into a new index; the <code>Annotation</code>s of any other reference
+     * are inserted into its existing index one at a time.
+     * <p>
+     * Unless this <code>GenomeTree</code>'s backend is
+     * {@link Backend#PERSISTENT}, it must not be queried or modified by any
+     * other thread while this method runs.
+     * @param annotations - the <code>Annotation</code>s to insert
+     * @return <code>true</code> if the insertion resulted in a change to the
+     * tree; otherwise, <code>false</code>
+     * @throws UnsupportedOperationException if this <code>GenomeTree</code>'s
+     * backend cannot be modified after construction
+     */
+    public boolean insertAll(Stream<? extends Annotation> annotations) {
+        if (!backend.isModifiable()) {
+            throw new UnsupportedOperationException("A GenomeTree backed by " +
+                    backend + " cannot be modified after construction.");
+        }
+        return load(annotations);
+    }
+    
+    /**
+     * Inserts the given <code>Annotation</code>s into this, loading each
+     * reference on its own thread.
+     * @return whether or not this changed
+     */
+    private boolean load(Stream<? extends Annotation> annotations) {
+        Map<String, List<Annotation>> byReference = annotations.parallel()
+                .collect(Collectors.groupingByConcurrent(Annotation::getReferenceName));
+
+        return byReference.entrySet()
+                .parallelStream()
+                .map(e -> load(e.getKey(), e.getValue()))
+                .reduce(false, (a, b) -> a || b);
+    }
+    
+    /**
+     * Inserts the given <code>Annotation</code>s, all on the given reference,
+     * into this.
+     * @return whether or not this changed
+     */
+    private boolean load(String ref, List<Annotation> annotations) {
+        IntervalIndex<Annotation> index = chroms.get(ref);
+        if (index == null) {
+            List<Annotation> l = annotations.stream()
+                                            .distinct()
+                                            .sorted()
+                                            .collect(Collectors.toList());
+            index = chroms.putIfAbsent(ref, backend.newIndex(l));
+            if (index == null) {
+                return true;
+            }
+        }
+
+        boolean changed = false;                // Another thread added the
+        for (Annotation a : annotations) {      // reference first, or it
+            changed |= index.insert(a);         // already existed.
+        }
+        return changed;
     }
     
     /**
@@ -59,8 +297,8 @@ public class GenomeTree {
      * @param a - the given <code>Annotation</code>
      */
     public Iterator<Annotation> getOverlappers(Annotation a) {
-        IntervalSetTree<Annotation> tree = chroms.get(a.getReferenceName());
-        
+        IntervalIndex<Annotation> tree = chroms.get(a.getReferenceName());
+
         if (tree == null) {
             return Collections.emptyIterator();
         } else {
@@ -68,4 +306,690 @@ public class GenomeTree {
                     o -> a.getReferenceName().equals(o.getReferenceName()) && o.overlaps(a));
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Passes each <code>Annotation</code> in this which overlaps a given
+     * <code>Annotation</code> to the given visitor, until the visitor returns
+     * <code>false</code>.
+     * <p>
+     * This method has the same semantics as {@link #getOverlappers(Annotation)},
+     * but walks the underlying index directly. The overlap test is passed down
+     * to the index with the query, rather than wrapping the visitor, so no
+     * <code>Predicate</code> is allocated for a query.
+     * @param a - the given <code>Annotation</code>
+     * @param visitor - called with each overlapping <code>Annotation</code>;
+     * returns whether or not to continue visiting
+     * @return <code>false</code> if the visitor stopped the visit early;
+     * otherwise, <code>true</code>
+     */
+    public boolean forEachOverlapper(Annotation a, Predicate<? super Annotation> visitor) {
+        IntervalIndex<Annotation> tree = chroms.get(a.getReferenceName());
+
+        if (tree == null) {
+            return true;
+        } else {
+            return tree.forEachOverlapper(a.getStart(), a.getEnd(), a, OVERLAPS_ANNOTATION,
+                    visitor);
+        }
+    }
+    
+    /**
+     * Gets an <code>Iterator</code> over all values in this which overlap the
+     * given coordinates, on either strand.
+     * <p>
+     * This is equivalent to calling
+     * {@link #getOverlappers(String, int, int, Strand)} with
+     * <code>Strand.BOTH</code>.
+     * @param ref - the name of the reference
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    public Iterator<Annotation> getOverlappers(String ref, int start, int end) {
+        return getOverlappers(ref, start, end, Strand.BOTH);
+    }
+    
+    /**
+     * Gets an <code>Iterator</code> over all values in this which overlap the
+     * given coordinates on the given strand.
+     * <p>
+     * A value overlaps if one of its blocks overlaps [start, end), and if its
+     * strand is compatible with the given strand, i.e., if the two strands
+     * are equal or either is <code>Strand.BOTH</code>. This is the same
+     * overlap {@link #getOverlappers(Annotation)} finds for a single-block
+     * <code>Annotation</code>, but no such <code>Annotation</code> needs to be
+     * constructed to query with.
+     * @param ref - the name of the reference
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param strand - the strand of the overlapping interval
+     */
+    public Iterator<Annotation> getOverlappers(String ref, int start, int end, Strand strand) {
+        IntervalIndex<Annotation> tree = chroms.get(ref);
+
+        if (tree == null) {
+            return Collections.emptyIterator();
+        } else {
+            return new FilteredIterator<Annotation>(tree.overlappers(start, end),
+                    o -> overlaps(o, start, end, strand));
+        }
+    }
+    
+    /**
+     * Passes each value in this which overlaps the given coordinates on the
+     * given strand to the given visitor, until the visitor returns
+     * <code>false</code>.
+     * <p>
+     * This method has the same semantics as
+     * {@link #getOverlappers(String, int, int, Strand)}, but walks the
+     * underlying index directly, passing the strand and block test down to it
+     * as {@link #forEachOverlapper(Annotation, Predicate)} does.
+     * @param ref - the name of the reference
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param strand - the strand of the overlapping interval
+     * @param visitor - called with each overlapping <code>Annotation</code>;
+     * returns whether or not to continue visiting
+     * @return <code>false</code> if the visitor stopped the visit early;
+     * otherwise, <code>true</code>
+     */
+    public boolean forEachOverlapper(String ref, int start, int end, Strand strand,
+            Predicate<? super Annotation> visitor) {
+        IntervalIndex<Annotation> tree = chroms.get(ref);
+
+        if (tree == null) {
+            return true;
+        } else {
+            return tree.forEachOverlapper(start, end, strand, OVERLAPS_ON_STRAND, visitor);
+        }
+    }
+    
+    /**
+     * Gets an <code>Iterator</code> over every pair of a query
+     * <code>Annotation</code> and a value in this which overlaps it.
+     * <p>
+     * The queries must be grouped by reference, and sorted by start within
+     * each reference, as in a coordinate-sorted BED or BAM file. Rather than
+     * searching this <code>GenomeTree</code> once per query, this method
+     * sweeps through each reference's values in ascending order alongside the
+     * queries, keeping only the values which might still overlap a later
+     * query. A value is only tested against queries whose span it overlaps,
+     * so the total work is O((n + q) log n + p), for n values, q queries and
+     * p pairs of a query and a value whose spans overlap.
+     * <p>
+     * The pairs for each query are returned together, in the order of the
+     * queries, though not in any particular order for one query. They contain
+     * the same values {@link #getOverlappers(Annotation)}
+     * would return for that query. This <code>GenomeTree</code> must not be
+     * modified while the returned <code>Iterator</code> is in use.
+     * @param queries - the query <code>Annotation</code>s, grouped by
+     * reference and sorted by start
+     * @throws IllegalArgumentException (while iterating) if the queries are
+     * not grouped by reference, or are not sorted by start
+     */
+    public Iterator<Overlap> joinOverlappers(Iterator<? extends Annotation> queries) {
+        return new SweepJoinIterator(queries);
+    }
+    
+    /**
+     * Gets a <code>Stream</code> of every pair of a query
+     * <code>Annotation</code> and a value in this which overlaps it.
+     * <p>
+     * See {@link #joinOverlappers(Iterator)}. Closing the returned
+     * <code>Stream</code> closes the stream of queries.
+     * @param queries - the query <code>Annotation</code>s, grouped by
+     * reference and sorted by start
+     */
+    public Stream<Overlap> joinOverlappers(Stream<? extends Annotation> queries) {
+        Spliterator<Overlap> spliterator = Spliterators.spliteratorUnknownSize(
+                joinOverlappers(queries.iterator()), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(queries::close);
+    }
+    
+    /**
+     * Gets the <code>k</code> values in this nearest to the given
+     * <code>Annotation</code>.
+     * @param a - the given <code>Annotation</code>
+     * @param k - the maximum number of values to return
+     * @see #nearest(Annotation, int, int)
+     */
+    public List<Annotation> nearest(Annotation a, int k) {
+        return nearest(a, k, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Gets the <code>k</code> values in this nearest to the given
+     * <code>Annotation</code>, and no further than <code>maxDistance</code>
+     * from it.
+     * <p>
+     * Only values on the same reference and on a compatible strand (i.e., the
+     * same strand, or either strand <code>Strand.BOTH</code>) are considered.
+     * Distances are measured between spans: a value whose span overlaps or
+     * is adjacent to the <code>Annotation</code>'s span is at distance zero.
+     * Overlapping values are returned first, then the nearest values on
+     * either side in ascending order of distance, upstream first in the case
+     * of a tie.
+     * @param a - the given <code>Annotation</code>
+     * @param k - the maximum number of values to return
+     * @param maxDistance - the maximum distance of any returned value
+     * @return a list of at most <code>k</code> values, nearest first
+     */
+    public List<Annotation> nearest(Annotation a, int k, int maxDistance) {
+        List<Annotation> rtrn = new ArrayList<>();
+        IntervalIndex<Annotation> index = chroms.get(a.getReferenceName());
+        if (index == null) {
+            return rtrn;
+        }
+
+        Iterator<Annotation> overlappers = new FilteredIterator<Annotation>(
+                index.overlappers(a.getStart(), a.getEnd()),
+                o -> isCompatible(o.getStrand(), a.getStrand()));
+        while (rtrn.size() < k && overlappers.hasNext()) {
+            rtrn.add(overlappers.next());
+        }
+
+        Iterator<Annotation> upstream = upstream(index, a);
+        Iterator<Annotation> downstream = downstream(index, a);
+        Annotation up = upstream.hasNext() ? upstream.next() : null;
+        Annotation down = downstream.hasNext() ? downstream.next() : null;
+        while (rtrn.size() < k) {
+            int upDistance = up == null ? Integer.MAX_VALUE : distance(a, up);
+            int downDistance = down == null ? Integer.MAX_VALUE : distance(a, down);
+            if (up == null && down == null || Math.min(upDistance, downDistance) > maxDistance) {
+                break;
+            }
+            if (down == null || up != null && upDistance <= downDistance) {
+                rtrn.add(up);
+                up = upstream.hasNext() ? upstream.next() : null;
+            } else {
+                rtrn.add(down);
+                down = downstream.hasNext() ? downstream.next() : null;
+            }
+        }
+        return rtrn;
+    }
+    
+    /**
+     * Gets the <code>k</code> values in this nearest to, and upstream of, the
+     * given <code>Annotation</code>.
+     * @param a - the given <code>Annotation</code>
+     * @param k - the maximum number of values to return
+     * @see #nearestUpstream(Annotation, int, int)
+     */
+    public List<Annotation> nearestUpstream(Annotation a, int k) {
+        return nearestUpstream(a, k, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Gets the <code>k</code> values in this nearest to, and upstream of, the
+     * given <code>Annotation</code>, and no further than
+     * <code>maxDistance</code> from it.
+     * <p>
+     * Upstream is relative to the <code>Annotation</code>'s strand: toward
+     * lower coordinates on the positive strand (or <code>Strand.BOTH</code>),
+     * and toward higher coordinates on the negative strand. An upstream value
+     * ends at or before the <code>Annotation</code> starts (or, on the
+     * negative strand, starts at or after it ends). Only values on the same
+     * reference and on a compatible strand are considered.
+     * @param a - the given <code>Annotation</code>
+     * @param k - the maximum number of values to return
+     * @param maxDistance - the maximum distance of any returned value
+     * @return a list of at most <code>k</code> values, nearest first
+     */
+    public List<Annotation> nearestUpstream(Annotation a, int k, int maxDistance) {
+        IntervalIndex<Annotation> index = chroms.get(a.getReferenceName());
+        return index == null ? new ArrayList<>() : take(upstream(index, a), a, k, maxDistance);
+    }
+    
+    /**
+     * Gets the <code>k</code> values in this nearest to, and downstream of,
+     * the given <code>Annotation</code>.
+     * @param a - the given <code>Annotation</code>
+     * @param k - the maximum number of values to return
+     * @see #nearestDownstream(Annotation, int, int)
+     */
+    public List<Annotation> nearestDownstream(Annotation a, int k) {
+        return nearestDownstream(a, k, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Gets the <code>k</code> values in this nearest to, and downstream of,
+     * the given <code>Annotation</code>, and no further than
+     * <code>maxDistance</code> from it.
+     * <p>
+     * Downstream is relative to the <code>Annotation</code>'s strand, as in
+     * {@link #nearestUpstream(Annotation, int, int)}.
+     * @param a - the given <code>Annotation</code>
+     * @param k - the maximum number of values to return
+     * @param maxDistance - the maximum distance of any returned value
+     * @return a list of at most <code>k</code> values, nearest first
+     */
+    public List<Annotation> nearestDownstream(Annotation a, int k, int maxDistance) {
+        IntervalIndex<Annotation> index = chroms.get(a.getReferenceName());
+        return index == null ? new ArrayList<>() : take(downstream(index, a), a, k, maxDistance);
+    }
+    
+    /**
+     * The values of the given index upstream of the given
+     * <code>Annotation</code> on a compatible strand, nearest first.
+     */
+    private static Iterator<Annotation> upstream(IntervalIndex<Annotation> index, Annotation a) {
+        Iterator<Annotation> iter = a.getStrand() == Strand.NEGATIVE
+                ? index.following(a.getEnd())
+                : index.preceding(a.getStart());
+        return new FilteredIterator<Annotation>(iter, o -> isCompatible(o.getStrand(), a.getStrand()));
+    }
+    
+    /**
+     * The values of the given index downstream of the given
+     * <code>Annotation</code> on a compatible strand, nearest first.
+     */
+    private static Iterator<Annotation> downstream(IntervalIndex<Annotation> index, Annotation a) {
+        Iterator<Annotation> iter = a.getStrand() == Strand.NEGATIVE
+                ? index.preceding(a.getStart())
+                : index.following(a.getEnd());
+        return new FilteredIterator<Annotation>(iter, o -> isCompatible(o.getStrand(), a.getStrand()));
+    }
+    
+    /**
+     * The first <code>k</code> values of the given <code>Iterator</code>,
+     * which returns values nearest first, that are no further than
+     * <code>maxDistance</code> from the given <code>Annotation</code>.
+     */
+    private static List<Annotation> take(Iterator<Annotation> iter, Annotation a, int k,
+            int maxDistance) {
+        List<Annotation> rtrn = new ArrayList<>();
+        while (rtrn.size() < k && iter.hasNext()) {
+            Annotation o = iter.next();
+            if (distance(a, o) > maxDistance) {
+                break;
+            }
+            rtrn.add(o);
+        }
+        return rtrn;
+    }
+    
+    /**
+     * The distance between the spans of two <code>Annotation</code>s, which
+     * is zero if they overlap or are adjacent.
+     */
+    private static int distance(Annotation a, Annotation b) {
+        return Math.max(0, Math.max(b.getStart() - a.getEnd(), a.getStart() - b.getEnd()));
+    }
+    
+    /**
+     * Whether or not two strands are compatible, i.e., equal, or either is
+     * <code>Strand.BOTH</code>.
+     */
+    private static boolean isCompatible(Strand s, Strand t) {
+        return s == t || s == Strand.BOTH || t == Strand.BOTH;
+    }
+    
+    /**
+     * Whether or not a block of the given <code>Annotation</code>, whose span
+     * is known to overlap [start, end), overlaps [start, end) on a compatible
+     * strand.
+     */
+    private static boolean overlaps(Annotation a, int start, int end, Strand strand) {
+        if (!isCompatible(a.getStrand(), strand)) {
+            return false;
+        }
+        if (a.getNumberOfBlocks() == 1) {
+            return true;
+        }
+        Iterator<Block> blocks = a.getBlocks();
+        while (blocks.hasNext()) {
+            Block b = blocks.next();
+            if (b.getStart() < end && start < b.getEnd()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * A query <code>Annotation</code> paired with an <code>Annotation</code>
+     * from a <code>GenomeTree</code> which overlaps it.
+     */
+    public static class Overlap {
+
+        private final Annotation query;
+        private final Annotation hit;
+        
+        private Overlap(Annotation query, Annotation hit) {
+            this.query = query;
+            this.hit = hit;
+        }
+        
+        /**
+         * The query <code>Annotation</code>.
+         */
+        public Annotation getQuery() {
+            return query;
+        }
+        
+        /**
+         * The <code>Annotation</code> from the <code>GenomeTree</code> which
+         * overlaps the query.
+         */
+        public Annotation getHit() {
+            return hit;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Overlap)) {
+                return false;
+            }
+            Overlap o = (Overlap) other;
+            return query.equals(o.query) && hit.equals(o.hit);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, hit);
+        }
+        
+        @Override
+        public String toString() {
+            return "(" + query + ", " + hit + ")";
+        }
+    }
+    
+    /**
+     * An Iterator which merge-joins a stream of sorted queries against the
+     * values of this <code>GenomeTree</code>.
+     * <p>
+     * For the current reference, this holds a cursor over the reference's
+     * index, which returns values in ascending order of start. Values read
+     * from the cursor are split in two by the start of the current query:
+     * <ul>
+     * <li>Open values start before the query. They are kept in a heap
+     * ordered by end, and dropped from its head once a query starts at or
+     * after their end. Because query starts never decrease, a dropped value
+     * cannot overlap any later query, and every value left in the heap
+     * overlaps the current query's span.
+     * <li>Values ahead of the query start at or after it. They are kept in
+     * a queue in ascending order of start, and opened once a query starts
+     * after them. Only the front of the queue, up to the first value
+     * starting at or after the query's end, overlaps the query.
+     * </ul>
+     * A value is therefore tested only against queries whose span it
+     * overlaps, and each value is opened and dropped at most once.
+     */
+    private class SweepJoinIterator implements Iterator<Overlap> {
+
+        private final Iterator<? extends Annotation> queries;
+        private final Set<String> finishedReferences = new HashSet<>();
+        private final PriorityQueue<Annotation> open =
+                new PriorityQueue<>(Comparator.comparingInt(Annotation::getEnd));
+        private final Deque<Annotation> ahead = new ArrayDeque<>();
+        
+        private String reference;             // Reference of the current query
+        private Iterator<Annotation> cursor;  // Values of the reference not yet read
+        private Annotation pending;           // Next value from the cursor, or null
+        private Annotation query;             // Current query, or null between queries
+        private Annotation previous;          // Most recent query
+        private Iterator<Annotation> openScan;    // Open values not yet tested
+        private Iterator<Annotation> aheadScan;   // Values ahead not yet tested
+        private Overlap next;
+        
+        private SweepJoinIterator(Iterator<? extends Annotation> queries) {
+            this.queries = queries;
+            next = findNext();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Overlap next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("GenomeTree join has no more overlaps.");
+            }
+            Overlap rtrn = next;
+            next = findNext();
+            return rtrn;
+        }
+        
+        private Overlap findNext() {
+            while (true) {
+                if (query != null) {
+                    while (openScan.hasNext()) {
+                        Annotation a = openScan.next();
+                        if (a.overlaps(query)) {
+                            return new Overlap(query, a);
+                        }
+                    }
+                    while (aheadScan.hasNext()) {
+                        Annotation a = aheadScan.next();
+                        if (a.getStart() >= query.getEnd()) {
+                            break;      // Neither this nor any later value overlaps.
+                        }
+                        if (a.overlaps(query)) {
+                            return new Overlap(query, a);
+                        }
+                    }
+                    query = null;
+                }
+                if (!queries.hasNext()) {
+                    return null;
+                }
+                advance(queries.next());
+            }
+        }
+        
+        /**
+         * Makes the given query current: opens every value which starts
+         * before it, drops every open value which ends at or before its
+         * start, and reads every value which starts before it ends.
+         */
+        private void advance(Annotation q) {
+            String ref = q.getReferenceName();
+            if (!ref.equals(reference)) {
+                if (reference != null) {
+                    finishedReferences.add(reference);
+                }
+                if (finishedReferences.contains(ref)) {
+                    throw new IllegalArgumentException("Queries are not grouped by reference. " +
+                            "Found a query on " + ref + " after queries on another reference.");
+                }
+                reference = ref;
+                open.clear();
+                ahead.clear();
+                IntervalIndex<Annotation> index = chroms.get(ref);
+                cursor = index == null ? Collections.emptyIterator() : index.iterator();
+                pending = cursor.hasNext() ? cursor.next() : null;
+            } else if (q.getStart() < previous.getStart()) {
+                throw new IllegalArgumentException("Queries are not sorted by start. Found " +
+                        q + " after " + previous);
+            }
+
+            while (!ahead.isEmpty() && ahead.peekFirst().getStart() < q.getStart()) {
+                open(ahead.pollFirst(), q);
+            }
+            while (pending != null && pending.getStart() < q.getEnd()) {
+                if (pending.getStart() < q.getStart()) {
+                    open(pending, q);
+                } else {
+                    ahead.addLast(pending);
+                }
+                pending = cursor.hasNext() ? cursor.next() : null;
+            }
+            while (!open.isEmpty() && open.peek().getEnd() <= q.getStart()) {
+                open.poll();
+            }
+
+            query = q;
+            previous = q;
+            openScan = open.iterator();
+            aheadScan = ahead.iterator();
+        }
+        
+        /**
+         * Opens the given value, unless it ends at or before the start of the
+         * given query.
+         */
+        private void open(Annotation a, Annotation q) {
+            if (a.getEnd() > q.getStart()) {
+                open.add(a);
+            }
+        }
+    }
+    
+    /**
+     * The data-structures a <code>GenomeTree</code> can store each
+     * reference's <code>Annotation</code>s in.
+     */
+    public enum Backend {
+
+        /**
+         * A mutable {@link IntervalSetTree}. This is the default.
+         */
+        INTERVAL_SET_TREE {
+            @Override
+            boolean isModifiable() {
+                return true;
+            }
+            
+            @Override
+            IntervalIndex<Annotation> newIndex() {
+                return new IntervalSetTree<>();
+            }
+            
+            @Override
+            IntervalIndex<Annotation> newIndex(List<Annotation> annotations) {
+                return new IntervalSetTree<>(annotations);
+            }
+        },
+        
+        /**
+         * A {@link PersistentIntervalSetTree}, which can be queried from any
+         * number of threads while other threads insert into it. Queries never
+         * block. Use this backend for a <code>GenomeTree</code> which is
+         * loaded in the background while it serves queries.
+         */
+        PERSISTENT {
+            @Override
+            boolean isModifiable() {
+                return true;
+            }
+            
+            @Override
+            IntervalIndex<Annotation> newIndex() {
+                return new PersistentIntervalSetTree<>();
+            }
+            
+            @Override
+            IntervalIndex<Annotation> newIndex(List<Annotation> annotations) {
+                return new PersistentIntervalSetTree<>(annotations);
+            }
+        },
+
+        /**
+         * An immutable {@link NCList}, which is smaller and faster than an
+         * <code>IntervalSetTree</code> for nested or sparsely overlapping
+         * <code>Annotation</code>s such as transcripts. A
+         * <code>GenomeTree</code> with this backend must be constructed with
+         * all of its <code>Annotation</code>s.
+         */
+        NCLIST {
+            @Override
+            IntervalIndex<Annotation> newIndex(List<Annotation> annotations) {
+                return new NCList<>(annotations);
+            }
+        },
+
+        /**
+         * An immutable {@link AIList}, which is faster than an
+         * <code>IntervalSetTree</code> for references with a few very long
+         * <code>Annotation</code>s, such as long-read alignments or large
+         * structural variants. A <code>GenomeTree</code> with this backend
+         * must be constructed with all of its <code>Annotation</code>s.
+         */
+        AILIST {
+            @Override
+            IntervalIndex<Annotation> newIndex(List<Annotation> annotations) {
+                return new AIList<>(annotations);
+            }
+        },
+
+        /**
+         * A read-only index over a memory-mapped snapshot file, which keeps
+         * no <code>Annotation</code>s on the heap and decodes each one only
+         * when a query returns it. Any number of processes mapping the same
+         * file share a single copy of it in the page cache. A
+         * <code>GenomeTree</code> with this backend can only be opened with
+         * {@link io.GenomeTreeSnapshot#map(java.nio.file.Path)}.
+         */
+        MAPPED {
+            @Override
+            boolean isSnapshotOnly() {
+                return true;
+            }
+            
+            @Override
+            IntervalIndex<Annotation> newIndex(List<Annotation> annotations) {
+                throw new UnsupportedOperationException("A GenomeTree backed by " +
+                        this + " can only be opened from a snapshot file.");
+            }
+        },
+
+        /**
+         * A read-only index over a snapshot file, which loads each reference
+         * into an {@link IntervalSetTree} when it is first queried, and
+         * evicts the least recently queried references once the loaded ones
+         * exceed a budget. A <code>GenomeTree</code> with this backend can
+         * only be opened with
+         * {@link io.GenomeTreeSnapshot#openPaged(java.nio.file.Path, long)}.
+         */
+        PAGED {
+            @Override
+            boolean isSnapshotOnly() {
+                return true;
+            }
+            
+            @Override
+            IntervalIndex<Annotation> newIndex(List<Annotation> annotations) {
+                throw new UnsupportedOperationException("A GenomeTree backed by " +
+                        this + " can only be opened from a snapshot file.");
+            }
+        };
+        
+        /**
+         * Whether or not the indexes of this backend can be modified after
+         * construction.
+         */
+        boolean isModifiable() {
+            return false;
+        }
+        
+        /**
+         * Whether or not the indexes of this backend can only be opened from
+         * a snapshot file, rather than built from <code>Annotation</code>s.
+         */
+        boolean isSnapshotOnly() {
+            return false;
+        }
+        
+        /**
+         * Constructs an empty, modifiable index.
+         * @throws UnsupportedOperationException if this backend cannot be
+         * modified after construction
+         */
+        IntervalIndex<Annotation> newIndex() {
+            throw new UnsupportedOperationException("A GenomeTree backed by " +
+                    this + " cannot be modified after construction.");
+        }
+        
+        /**
+         * Constructs an index containing the given <code>Annotation</code>s,
+         * which are in ascending order.
+         */
+        abstract IntervalIndex<Annotation> newIndex(List<Annotation> annotations);
+    }
+}
@@ -0,0 +1,829 @@
+package datastructures;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+
+/**
+ * A red-black interval tree over primitive int coordinates.
+ * <p>
+ * Unlike an IntervalTree, this tree does not hold Interval objects, and does
+ * not allocate a Node for each entry. Each entry is instead identified by an
+ * int id, which indexes into parallel arrays holding the entry's start, end,
+ * maxEnd, color, links to its parent and children, and its value. Insertion,
+ * deletion and overlap queries read only these arrays, and never call
+ * Interval#getStart() or Interval#getEnd() on a value.
+ * <p>
+ * Entries are ordered by start, then by end. Entries with the same start and
+ * end are all retained, whether or not their values are equal. The id of an
+ * entry is returned by {@link #insert(int, int, Object)} and remains valid
+ * until the entry is deleted, after which it may be reused.
+ * <p>
+ * This class follows Cormen et al. "Introduction to Algorithms", 3rd ed,
+ * chapters 13 and 14.3, with the sentinel stored at id 0.
+ * @param <V> - the type of value this tree contains
+ */
+public class IntIntervalTree<V> implements Iterable<V> {
+
+    private static final int NIL = 0;           // Id of the sentinel
+    private static final int INITIAL_CAPACITY = 16;
+    
+    private int root;           // Id of the root, or NIL if this tree is empty
+    private int size;           // Number of entries
+    private int nextUnused;     // Lowest id which has never been allocated
+    private int free;           // Head of the list of deleted ids, linked by lefts[]
+
+    private int[] starts;       // Start of the entry with each id
+    private int[] ends;         // End of the entry with each id
+    private int[] maxEnds;      // Greatest end in the subtree rooted at each id
+    private int[] parents;
+    private int[] lefts;
+    private int[] rights;
+    private boolean[] blacks;
+    private Object[] values;
+    
+    /**
+     * Constructs an empty IntIntervalTree.
+     */
+    public IntIntervalTree() {
+        this(INITIAL_CAPACITY);
+    }
+    
+    /**
+     * Constructs an empty IntIntervalTree with room for the given number of
+     * entries before its arrays must grow.
+     * @param capacity - the number of entries to allocate space for
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public IntIntervalTree(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Attempted to construct an IntIntervalTree " +
+                    "with a negative capacity: " + capacity);
+        }
+
+        int length = capacity + 1;  // Plus one for the sentinel
+        starts = new int[length];
+        ends = new int[length];
+        maxEnds = new int[length];
+        parents = new int[length];
+        lefts = new int[length];
+        rights = new int[length];
+        blacks = new boolean[length];
+        values = new Object[length];
+
+        blacks[NIL] = true;
+        maxEnds[NIL] = Integer.MIN_VALUE;
+        root = NIL;
+        size = 0;
+        nextUnused = 1;
+        free = NIL;
+    }
+
+    ///////////////////////////////////
+    // Tree -- General query methods //
+    ///////////////////////////////////
+
+    /**
+     * Whether this IntIntervalTree is empty or not.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * The number of entries stored in this IntIntervalTree.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * The start of the entry with the given id.
+     * @param id - the id of an entry in this tree
+     */
+    public int getStart(int id) {
+        return starts[id];
+    }
+    
+    /**
+     * The end of the entry with the given id.
+     * @param id - the id of an entry in this tree
+     */
+    public int getEnd(int id) {
+        return ends[id];
+    }
+    
+    /**
+     * The value of the entry with the given id.
+     * @param id - the id of an entry in this tree
+     */
+    @SuppressWarnings("unchecked")
+    public V getValue(int id) {
+        return (V) values[id];
+    }
+    
+    /**
+     * An Iterator over the values in this IntIntervalTree, in ascending order
+     * of their entries' coordinates.
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return overlappers(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * An Iterator over the values of the entries in this IntIntervalTree that
+     * overlap [start, end), in ascending order of their coordinates.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    public Iterator<V> overlappers(int start, int end) {
+        PrimitiveIterator.OfInt ids = overlapperIds(start, end);
+        return new Iterator<V>() {
+            @Override
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+            
+            @Override
+            public V next() {
+                return getValue(ids.nextInt());
+            }
+        };
+    }
+    
+    /**
+     * An Iterator over the ids of the entries in this IntIntervalTree that
+     * overlap [start, end), in ascending order of their coordinates.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    public PrimitiveIterator.OfInt overlapperIds(int start, int end) {
+        return new OverlapperIdIterator(start, end);
+    }
+    
+    /**
+     * Whether or not any of the entries in this IntIntervalTree overlap
+     * [start, end).
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    public boolean overlaps(int start, int end) {
+        int x = root;
+        while (x != NIL && !overlaps(x, start, end)) {
+            x = lefts[x] != NIL && maxEnds[lefts[x]] > start ? lefts[x] : rights[x];
+        }
+        return x != NIL;
+    }
+    
+    /**
+     * The number of entries in this IntIntervalTree that overlap [start, end).
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    public int numOverlappers(int start, int end) {
+        int count = 0;
+        for (int x = minimumOverlapping(root, start, end); x != NIL;
+                x = nextOverlapping(x, start, end)) {
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * The id of the least entry in this IntIntervalTree that overlaps
+     * [start, end), or -1 if there is no overlapping entry.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    public int minimumOverlapperId(int start, int end) {
+        int x = minimumOverlapping(root, start, end);
+        return x == NIL ? -1 : x;
+    }
+
+    ///////////////////////////////
+    // Tree -- Insertion methods //
+    ///////////////////////////////
+
+    /**
+     * Inserts an entry with the given coordinates and value into this
+     * IntIntervalTree.
+     * <p>
+     * The entry is inserted even if an equal entry already exists.
+     * @param start - the start of the entry
+     * @param end - the end of the entry
+     * @param value - the value of the entry
+     * @return the id of the new entry
+     * @throws IllegalArgumentException if end is less than or equal to start
+     */
+    public int insert(int start, int end, V value) {
+        if (end <= start) {
+            throw new IllegalArgumentException("Attempted to insert an interval with " +
+                    "end <= start: [" + start + ", " + end + ")");
+        }
+
+        int z = allocate(start, end, value);
+        int y = NIL;
+        int x = root;
+
+        while (x != NIL) {                         // Traverse the tree down to a leaf.
+            y = x;
+            maxEnds[x] = Math.max(maxEnds[x], end); // Update maxEnd on the way down.
+            x = compare(z, x) < 0 ? lefts[x] : rights[x];
+        }
+
+        parents[z] = y;
+
+        if (y == NIL) {
+            root = z;
+        } else if (compare(z, y) < 0) {
+            lefts[y] = z;
+        } else {
+            rights[y] = z;
+        }
+
+        insertFixup(z);
+        size++;
+        return z;
+    }
+
+    //////////////////////////////
+    // Tree -- Deletion methods //
+    //////////////////////////////
+
+    /**
+     * Deletes the entry with the given id from this IntIntervalTree.
+     * @param id - the id of an entry in this tree
+     * @throws IllegalArgumentException if id is not the id of an entry in
+     * this tree, e.g., because it has already been deleted
+     */
+    public void delete(int id) {
+        if (!isLive(id)) {
+            throw new IllegalArgumentException("Attempted to delete an entry " +
+                    "with an id which is not in this tree: " + id);
+        }
+
+        int z = id;
+        int y = z;
+        boolean yWasBlack = blacks[y];
+        int x;
+        int xParent;
+
+        if (lefts[z] == NIL) {
+            x = rights[z];
+            xParent = parents[z];
+            transplant(z, x);
+        } else if (rights[z] == NIL) {
+            x = lefts[z];
+            xParent = parents[z];
+            transplant(z, x);
+        } else {
+            y = minimum(rights[z]);   // The successor of z takes its place.
+            yWasBlack = blacks[y];    // It has no left child.
+            x = rights[y];
+            if (parents[y] == z) {
+                parents[x] = y;
+                xParent = y;
+            } else {
+                xParent = parents[y];
+                transplant(y, x);
+                rights[y] = rights[z];
+                parents[rights[y]] = y;
+            }
+            transplant(z, y);
+            lefts[y] = lefts[z];
+            parents[lefts[y]] = y;
+            blacks[y] = blacks[z];
+        }
+
+        maxEndFixup(xParent);
+
+        if (yWasBlack) {
+            deleteFixup(x);
+        }
+
+        release(z);
+        size--;
+    }
+    
+    /**
+     * Deletes one entry with the given coordinates and value from this
+     * IntIntervalTree.
+     * <p>
+     * If there is no such entry, this IntIntervalTree remains unchanged.
+     * @param start - the start of the entry
+     * @param end - the end of the entry
+     * @param value - the value of the entry
+     * @return whether or not an entry was removed from this IntIntervalTree
+     */
+    public boolean delete(int start, int end, V value) {
+        for (int x = lowerBound(start, end); x != NIL && starts[x] == start && ends[x] == end;
+                x = successor(x)) {
+            if (Objects.equals(values[x], value)) {
+                delete(x);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    ////////////////////////////////////
+    // Tree -- Id-level query methods //
+    ////////////////////////////////////
+
+    /**
+     * Compares the coordinates of the entries with ids a and b.
+     */
+    private int compare(int a, int b) {
+        int cmp = Integer.compare(starts[a], starts[b]);
+        return cmp != 0 ? cmp : Integer.compare(ends[a], ends[b]);
+    }
+    
+    /**
+     * Whether or not the entry with id x overlaps [start, end).
+     */
+    private boolean overlaps(int x, int start, int end) {
+        return starts[x] < end && start < ends[x];
+    }
+    
+    /**
+     * The id of the least entry in the subtree rooted at x.
+     */
+    private int minimum(int x) {
+        while (lefts[x] != NIL) {
+            x = lefts[x];
+        }
+        return x;
+    }
+    
+    /**
+     * The id of the entry following x, or NIL if x is the greatest entry.
+     */
+    private int successor(int x) {
+        if (rights[x] != NIL) {
+            return minimum(rights[x]);
+        }
+        int y = parents[x];
+        while (y != NIL && x == rights[y]) {
+            x = y;
+            y = parents[y];
+        }
+        return y;
+    }
+    
+    /**
+     * The id of the least entry whose coordinates are not less than
+     * [start, end), or NIL if there is none.
+     */
+    private int lowerBound(int start, int end) {
+        int rtrn = NIL;
+        int x = root;
+        while (x != NIL) {
+            if (starts[x] > start || starts[x] == start && ends[x] >= end) {
+                rtrn = x;
+                x = lefts[x];
+            } else {
+                x = rights[x];
+            }
+        }
+        return rtrn;
+    }
+    
+    /**
+     * The id of the least entry in the subtree rooted at n that overlaps
+     * [start, end), or NIL if there is none.
+     * <p>
+     * This mirrors IntervalTree.Node#minimumOverlappingNode().
+     */
+    private int minimumOverlapping(int n, int start, int end) {
+
+        int result = NIL;
+
+        if (n != NIL && maxEnds[n] > start) {
+            while (true) {
+                if (overlaps(n, start, end)) {
+
+                    // This entry overlaps. There may be a lesser overlapper
+                    // down the left subtree.
+
+                    result = n;
+                    n = lefts[n];
+
+                    if (n == NIL || maxEnds[n] <= start) {
+                        break;
+                    }
+                } else {
+                    int left = lefts[n];
+                    if (left != NIL && maxEnds[left] > start) {
+                        n = left;
+                    } else {
+                        if (starts[n] >= end) {
+                            break;  // Nothing in the right subtree can overlap
+                        }
+
+                        n = rights[n];
+                        if (n == NIL || maxEnds[n] <= start) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+    
+    /**
+     * The id of the entry following x that overlaps [start, end), or NIL if
+     * there is none.
+     * <p>
+     * This mirrors IntervalTree.Node#nextOverlappingNode().
+     */
+    private int nextOverlapping(int x, int start, int end) {
+        int rtrn = NIL;
+
+        if (rights[x] != NIL) {
+            rtrn = minimumOverlapping(rights[x], start, end);
+        }
+
+        while (parents[x] != NIL && rtrn == NIL) {
+            int p = parents[x];
+            if (x == lefts[p]) {
+                rtrn = overlaps(p, start, end) ? p : minimumOverlapping(rights[p], start, end);
+            }
+            x = p;
+        }
+        return rtrn;
+    }
+
+    ////////////////////////////////
+    // Tree -- Storage management //
+    ////////////////////////////////
+
+    /**
+     * Allocates an id for a new red entry with no children, reusing a deleted
+     * id if there is one.
+     */
+    private int allocate(int start, int end, V value) {
+        int id;
+        if (free != NIL) {
+            id = free;
+            free = lefts[free];
+        } else {
+            if (nextUnused == starts.length) {
+                grow();
+            }
+            id = nextUnused++;
+        }
+
+        starts[id] = start;
+        ends[id] = end;
+        maxEnds[id] = end;
+        parents[id] = NIL;
+        lefts[id] = NIL;
+        rights[id] = NIL;
+        blacks[id] = false;
+        values[id] = value;
+        return id;
+    }
+    
+    /**
+     * Whether or not the given id is that of an entry in this tree.
+     * <p>
+     * Every entry has end > start, so a deleted id, the sentinel, and an id
+     * which has never been allocated are marked by end <= start.
+     */
+    private boolean isLive(int id) {
+        return id > NIL && id < nextUnused && ends[id] > starts[id];
+    }
+    
+    /**
+     * Adds the given id to the list of deleted ids.
+     */
+    private void release(int id) {
+        values[id] = null;  // Allow the value to be garbage-collected
+        ends[id] = starts[id];  // Marks the id as deleted
+        lefts[id] = free;
+        free = id;
+    }
+    
+    /**
+     * Increases the capacity of this tree's arrays by half.
+     */
+    private void grow() {
+        int length = starts.length + Math.max(starts.length >> 1, 1);
+        starts = Arrays.copyOf(starts, length);
+        ends = Arrays.copyOf(ends, length);
+        maxEnds = Arrays.copyOf(maxEnds, length);
+        parents = Arrays.copyOf(parents, length);
+        lefts = Arrays.copyOf(lefts, length);
+        rights = Arrays.copyOf(rights, length);
+        blacks = Arrays.copyOf(blacks, length);
+        values = Arrays.copyOf(values, length);
+    }
+
+    ////////////////////////////////////////////////
+    // Tree -- Tree-invariant maintenance methods //
+    ////////////////////////////////////////////////
+
+    /**
+     * Sets the maxEnd value of x from its end and its children's maxEnds.
+     */
+    private void resetMaxEnd(int x) {
+        maxEnds[x] = Math.max(ends[x], Math.max(maxEnds[lefts[x]], maxEnds[rights[x]]));
+    }
+    
+    /**
+     * Sets the maxEnd value of x, and of all entries up to the root.
+     */
+    private void maxEndFixup(int x) {
+        while (x != NIL) {
+            resetMaxEnd(x);
+            x = parents[x];
+        }
+    }
+    
+    /**
+     * Replaces the subtree rooted at u with the subtree rooted at v.
+     */
+    private void transplant(int u, int v) {
+        int p = parents[u];
+        if (p == NIL) {
+            root = v;
+        } else if (u == lefts[p]) {
+            lefts[p] = v;
+        } else {
+            rights[p] = v;
+        }
+        parents[v] = p;
+    }
+    
+    /**
+     * Performs a left-rotation on x.
+     */
+    private void leftRotate(int x) {
+        int y = rights[x];
+        rights[x] = lefts[y];
+
+        if (lefts[y] != NIL) {
+            parents[lefts[y]] = x;
+        }
+
+        transplant(x, y);
+
+        lefts[y] = x;
+        parents[x] = y;
+
+        resetMaxEnd(x);
+        resetMaxEnd(y);
+    }
+    
+    /**
+     * Performs a right-rotation on x.
+     */
+    private void rightRotate(int x) {
+        int y = lefts[x];
+        lefts[x] = rights[y];
+
+        if (rights[y] != NIL) {
+            parents[rights[y]] = x;
+        }
+
+        transplant(x, y);
+
+        rights[y] = x;
+        parents[x] = y;
+
+        resetMaxEnd(x);
+        resetMaxEnd(y);
+    }
+    
+    /**
+     * Ensures that red-black constraints are maintained after inserting z.
+     */
+    private void insertFixup(int z) {
+        while (!blacks[parents[z]]) {
+            int p = parents[z];
+            int g = parents[p];
+            if (p == lefts[g]) {
+                int y = rights[g];
+                if (!blacks[y]) {
+                    blacks[p] = true;
+                    blacks[y] = true;
+                    blacks[g] = false;
+                    z = g;
+                } else {
+                    if (z == rights[p]) {
+                        z = p;
+                        leftRotate(z);
+                        p = parents[z];
+                    }
+                    blacks[p] = true;
+                    blacks[g] = false;
+                    rightRotate(g);
+                }
+            } else {
+                int y = lefts[g];
+                if (!blacks[y]) {
+                    blacks[p] = true;
+                    blacks[y] = true;
+                    blacks[g] = false;
+                    z = g;
+                } else {
+                    if (z == lefts[p]) {
+                        z = p;
+                        rightRotate(z);
+                        p = parents[z];
+                    }
+                    blacks[p] = true;
+                    blacks[g] = false;
+                    leftRotate(g);
+                }
+            }
+        }
+        blacks[root] = true;
+    }
+    
+    /**
+     * Ensures that red-black constraints are maintained after a deletion,
+     * where x is the entry which replaced the removed one.
+     */
+    private void deleteFixup(int x) {
+        while (x != root && blacks[x]) {
+            int p = parents[x];
+            if (x == lefts[p]) {
+                int w = rights[p];
+                if (!blacks[w]) {
+                    blacks[w] = true;
+                    blacks[p] = false;
+                    leftRotate(p);
+                    w = rights[p];
+                }
+                if (blacks[lefts[w]] && blacks[rights[w]]) {
+                    blacks[w] = false;
+                    x = p;
+                } else {
+                    if (blacks[rights[w]]) {
+                        blacks[lefts[w]] = true;
+                        blacks[w] = false;
+                        rightRotate(w);
+                        w = rights[p];
+                    }
+                    blacks[w] = blacks[p];
+                    blacks[p] = true;
+                    blacks[rights[w]] = true;
+                    leftRotate(p);
+                    x = root;
+                }
+            } else {
+                int w = lefts[p];
+                if (!blacks[w]) {
+                    blacks[w] = true;
+                    blacks[p] = false;
+                    rightRotate(p);
+                    w = lefts[p];
+                }
+                if (blacks[lefts[w]] && blacks[rights[w]]) {
+                    blacks[w] = false;
+                    x = p;
+                } else {
+                    if (blacks[lefts[w]]) {
+                        blacks[rights[w]] = true;
+                        blacks[w] = false;
+                        leftRotate(w);
+                        w = lefts[p];
+                    }
+                    blacks[w] = blacks[p];
+                    blacks[p] = true;
+                    blacks[lefts[w]] = true;
+                    rightRotate(p);
+                    x = root;
+                }
+            }
+        }
+        blacks[x] = true;
+    }
+
+    ///////////////////////
+    // Tree -- Iterators //
+    ///////////////////////
+
+    /**
+     * An Iterator over the ids of this IntIntervalTree's entries that overlap
+     * [start, end), in ascending order.
+     */
+    private class OverlapperIdIterator implements PrimitiveIterator.OfInt {
+
+        private final int start;
+        private final int end;
+        private int next;
+        
+        private OverlapperIdIterator(int start, int end) {
+            this.start = start;
+            this.end = end;
+            next = minimumOverlapping(root, start, end);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != NIL;
+        }
+        
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Interval tree has no more overlapping elements.");
+            }
+            int rtrn = next;
+            next = nextOverlapping(next, start, end);
+            return rtrn;
+        }
+    }
+
+    ///////////////////////////////
+    // Tree -- Debugging methods //
+    ///////////////////////////////
+
+    /**
+     * Whether or not this IntIntervalTree is a valid binary-search tree.
+     * <p>
+     * This method is used for debugging only, and its access is changed in
+     * testing.
+     */
+    @SuppressWarnings("unused")
+    private boolean isBST() {
+        int prev = NIL;
+        for (int x = root == NIL ? NIL : minimum(root); x != NIL; x = successor(x)) {
+            if (prev != NIL && compare(prev, x) > 0) {
+                return false;
+            }
+            prev = x;
+        }
+        return true;
+    }
+    
+    /**
+     * Whether or not this IntIntervalTree is balanced, i.e., whether every
+     * branch from root to leaf contains the same number of black entries.
+     * <p>
+     * This method is used for debugging only, and its access is changed in
+     * testing.
+     */
+    @SuppressWarnings("unused")
+    private boolean isBalanced() {
+        return blackHeight(root) != -1;
+    }
+    
+    /**
+     * The black-height of the subtree rooted at x, or -1 if its branches
+     * differ in black-height.
+     */
+    private int blackHeight(int x) {
+        if (x == NIL) {
+            return 0;
+        }
+        int left = blackHeight(lefts[x]);
+        int right = blackHeight(rights[x]);
+        if (left == -1 || left != right) {
+            return -1;
+        }
+        return blacks[x] ? left + 1 : left;
+    }
+    
+    /**
+     * Whether or not this IntIntervalTree has a valid red coloring, i.e.,
+     * whether every red entry has two black children.
+     * <p>
+     * This method is used for debugging only, and its access is changed in
+     * testing.
+     */
+    @SuppressWarnings("unused")
+    private boolean hasValidRedColoring() {
+        for (int x = root == NIL ? NIL : minimum(root); x != NIL; x = successor(x)) {
+            if (!blacks[x] && !(blacks[lefts[x]] && blacks[rights[x]])) {
+                return false;
+            }
+        }
+        return blacks[root];
+    }
+    
+    /**
+     * Whether or not this IntIntervalTree has consistent maxEnd values, i.e.,
+     * whether each entry's maxEnd is the greatest end in its subtree.
+     * <p>
+     * This method is used for debugging only, and its access is changed in
+     * testing.
+     */
+    @SuppressWarnings("unused")
+    private boolean hasConsistentMaxEnds() {
+        for (int x = root == NIL ? NIL : minimum(root); x != NIL; x = successor(x)) {
+            int expected = Math.max(ends[x], Math.max(maxEnds[lefts[x]], maxEnds[rights[x]]));
+            if (maxEnds[x] != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
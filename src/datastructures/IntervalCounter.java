@@ -0,0 +1,121 @@
+package datastructures;
+
+import java.util.Arrays;
+
+/**
+ * An immutable index which counts the Intervals overlapping a query in
+ * O(log n) time, regardless of how many there are.
+ * <p>
+ * An Interval overlaps [start, end) if it starts before end and ends after
+ * start. Every Interval which ends at or before start also starts before end,
+ * so the number of overlapping Intervals is the number starting before end,
+ * less the number ending at or before start. Each of these is found by binary
+ * search over the sorted starts or sorted ends of the Intervals.
+ * <p>
+ * Use an IntervalCounter for coverage-depth queries, where only the number of
+ * overlapping Intervals matters and enumerating them would be wasteful.
+ */
+public class IntervalCounter {
+
+    private final int[] starts;  // Starts of the Intervals, ascending
+    private final int[] ends;    // Ends of the Intervals, ascending
+
+    /**
+     * Constructs an IntervalCounter over the given Intervals.
+     * <p>
+     * Later modifications to the Intervals' source are not reflected in this
+     * IntervalCounter.
+     * @param intervals - the Intervals to count
+     */
+    public IntervalCounter(Iterable<? extends Interval> intervals) {
+        int[] s = new int[16];
+        int[] e = new int[16];
+        int n = 0;
+        for (Interval i : intervals) {
+            if (n == s.length) {
+                s = Arrays.copyOf(s, 2 * n);
+                e = Arrays.copyOf(e, 2 * n);
+            }
+            s[n] = i.getStart();
+            e[n] = i.getEnd();
+            n++;
+        }
+        starts = Arrays.copyOf(s, n);
+        ends = Arrays.copyOf(e, n);
+        Arrays.sort(starts);
+        Arrays.sort(ends);
+    }
+
+    /**
+     * Constructs an IntervalCounter over the Intervals with the given starts
+     * and ends, which are copied.
+     * @param starts - the starts of the Intervals, in any order
+     * @param ends - the ends of the Intervals, in any order
+     */
+    IntervalCounter(int[] starts, int[] ends) {
+        this.starts = starts.clone();
+        this.ends = ends.clone();
+        Arrays.sort(this.starts);
+        Arrays.sort(this.ends);
+    }
+
+    /**
+     * The number of Intervals in this IntervalCounter.
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * The number of Intervals in this IntervalCounter that overlap
+     * [start, end).
+     * <p>
+     * The coverage depth at a position p is count(p, p + 1).
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @throws IllegalArgumentException if end is less than or equal to start
+     */
+    public int count(int start, int end) {
+        if (end <= start) {
+            throw new IllegalArgumentException("Attempted to count overlappers of an " +
+                    "interval with end <= start: [" + start + ", " + end + ")");
+        }
+        return numLessThan(starts, end) - numAtMost(ends, start);
+    }
+
+    /**
+     * The number of elements of the ascending array a which are less than
+     * the given value.
+     */
+    private static int numLessThan(int[] a, int value) {
+        int lo = 0;
+        int hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * The number of elements of the ascending array a which are less than or
+     * equal to the given value.
+     */
+    private static int numAtMost(int[] a, int value) {
+        int lo = 0;
+        int hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,318 @@
+package datastructures;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import utils.FilteredIterator;
+
+/**
+ * A collection of Intervals which can be queried for overlaps.
+ * <p>
+ * This is the query surface shared by the interval data-structures in this
+ * package, and is what a {@link GenomeTree} uses to store the
+ * <code>Annotation</code>s on each reference. Implementations which cannot be
+ * modified after construction, such as an {@link NCList}, throw an
+ * UnsupportedOperationException from insert().
+ * <p>
+ * The Iterator of every IntervalIndex returns its Intervals in ascending
+ * order of start.
+ * @param <T> - the type of Interval this index contains
+ */
+public interface IntervalIndex<T extends Interval> extends Iterable<T> {
+
+    /**
+     * The number of Intervals stored in this.
+     */
+    int size();
+    
+    /**
+     * Whether this is empty or not.
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    /**
+     * An Iterator over the Intervals in this that overlap the given Interval.
+     * <p>
+     * Implementations document the order in which overlappers are returned.
+     * @param t - the overlapping Interval
+     */
+    Iterator<T> overlappers(T t);
+    
+    /**
+     * An Iterator over the Intervals in this that overlap [start, end).
+     * <p>
+     * Overlappers are returned in the same order as by overlappers(T).
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    Iterator<T> overlappers(int start, int end);
+    
+    /**
+     * Whether or not any of the Intervals in this overlap the given Interval.
+     * @param t - the potentially overlapping Interval
+     */
+    boolean overlaps(T t);
+    
+    /**
+     * Whether or not any of the Intervals in this overlap [start, end).
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    boolean overlaps(int start, int end);
+    
+    /**
+     * The number of Intervals in this that overlap the given Interval.
+     * @param t - the overlapping Interval
+     */
+    int numOverlappers(T t);
+    
+    /**
+     * The number of Intervals in this that overlap [start, end).
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    int numOverlappers(int start, int end);
+    
+    /**
+     * Passes each Interval in this that overlaps the given Interval to the
+     * given visitor, until the visitor returns false.
+     * <p>
+     * Intervals are visited in the same order as overlappers() would return
+     * them, but implementations walk their own storage directly rather than
+     * allocating an Iterator.
+     * @param t - the overlapping Interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    default boolean forEachOverlapper(T t, Predicate<? super T> visitor) {
+        return forEachOverlapper(t.getStart(), t.getEnd(), visitor);
+    }
+    
+    /**
+     * Passes each Interval in this that overlaps [start, end) to the given
+     * visitor, until the visitor returns false.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor);
+
+    /**
+     * Passes each Interval in this that overlaps [start, end), and which the
+     * given filter accepts, to the given visitor, until the visitor returns
+     * false.
+     * <p>
+     * The filter is passed the query and its coordinates with each Interval,
+     * rather than capturing them, so that a single filter can serve every
+     * query. This default implementation combines the filter and the visitor
+     * in a new Predicate. The indexes a {@link GenomeTree} builds override it
+     * to apply the filter in their own walk, which allocates nothing.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param query - passed to the filter with each overlapping Interval
+     * @param filter - whether or not to visit an overlapping Interval
+     * @param visitor - called with each accepted Interval; returns whether or
+     * not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    default <Q> boolean forEachOverlapper(int start, int end, Q query,
+            OverlapFilter<? super Q, ? super T> filter, Predicate<? super T> visitor) {
+        return forEachOverlapper(start, end,
+                t -> !filter.test(query, start, end, t) || visitor.test(t));
+    }
+
+    /**
+     * An Iterator over the Intervals in this which end at or before the given
+     * position, nearest first, i.e., in descending order of end.
+     * <p>
+     * This default implementation collects and sorts every such Interval.
+     * Implementations which can search for them should override it.
+     * @param position - the position the Intervals must end at or before
+     */
+    default Iterator<T> preceding(int position) {
+        List<T> l = new ArrayList<>();
+        for (T t : this) {
+            if (t.getEnd() <= position) {
+                l.add(t);
+            }
+        }
+        l.sort(Comparator.comparingInt(Interval::getEnd).reversed());
+        return l.iterator();
+    }
+    
+    /**
+     * An Iterator over the Intervals in this which start at or after the
+     * given position, nearest first, i.e., in ascending order of start.
+     * <p>
+     * This default implementation skips the Intervals which start before the
+     * position. Implementations which can search for the first Interval
+     * should override it.
+     * @param position - the position the Intervals must start at or after
+     */
+    default Iterator<T> following(int position) {
+        return new FilteredIterator<T>(iterator(), t -> t.getStart() >= position);
+    }
+    
+    /**
+     * The k Intervals in this nearest to the given Interval.
+     * @param t - the query Interval
+     * @param k - the maximum number of Intervals to return
+     * @see #nearest(Interval, int, int)
+     */
+    default List<T> nearest(T t, int k) {
+        return nearest(t, k, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * The k Intervals in this nearest to the given Interval, and no further
+     * than maxDistance from it.
+     * <p>
+     * The distance between two Intervals is zero if they overlap, and
+     * otherwise the number of positions between the end of the one and the
+     * start of the other; adjacent Intervals are also at distance zero. The
+     * overlapping Intervals are returned first, followed by the nearest
+     * Intervals on either side, in ascending order of distance. Of two
+     * Intervals at the same distance, the upstream one (i.e., the one
+     * preceding the query Interval) is returned first.
+     * @param t - the query Interval
+     * @param k - the maximum number of Intervals to return
+     * @param maxDistance - the maximum distance of any returned Interval
+     * @return a list of at most k Intervals, nearest first
+     */
+    default List<T> nearest(T t, int k, int maxDistance) {
+        List<T> rtrn = new ArrayList<>();
+        Iterator<T> overlappers = overlappers(t);
+        while (rtrn.size() < k && overlappers.hasNext()) {
+            rtrn.add(overlappers.next());
+        }
+
+        Iterator<T> upstream = preceding(t.getStart());
+        Iterator<T> downstream = following(t.getEnd());
+        T up = upstream.hasNext() ? upstream.next() : null;
+        T down = downstream.hasNext() ? downstream.next() : null;
+        while (rtrn.size() < k) {
+            long upDistance = up == null ? Long.MAX_VALUE : (long) t.getStart() - up.getEnd();
+            long downDistance = down == null ? Long.MAX_VALUE : (long) down.getStart() - t.getEnd();
+            if (Math.min(upDistance, downDistance) > maxDistance) {
+                break;
+            }
+            if (upDistance <= downDistance) {
+                rtrn.add(up);
+                up = upstream.hasNext() ? upstream.next() : null;
+            } else {
+                rtrn.add(down);
+                down = downstream.hasNext() ? downstream.next() : null;
+            }
+        }
+        return rtrn;
+    }
+    
+    /**
+     * The k Intervals in this which end nearest to, and at or before, the
+     * start of the given Interval.
+     * @param t - the query Interval
+     * @param k - the maximum number of Intervals to return
+     * @see #nearestUpstream(Interval, int, int)
+     */
+    default List<T> nearestUpstream(T t, int k) {
+        return nearestUpstream(t, k, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * The k Intervals in this which end nearest to, and at or before, the
+     * start of the given Interval, and no further than maxDistance from it.
+     * <p>
+     * Upstream is toward lower coordinates; this index is not aware of
+     * strands.
+     * @param t - the query Interval
+     * @param k - the maximum number of Intervals to return
+     * @param maxDistance - the maximum distance between the start of the
+     * query Interval and the end of any returned Interval
+     * @return a list of at most k Intervals, in descending order of end
+     */
+    default List<T> nearestUpstream(T t, int k, int maxDistance) {
+        List<T> rtrn = new ArrayList<>();
+        Iterator<T> iter = preceding(t.getStart());
+        while (rtrn.size() < k && iter.hasNext()) {
+            T u = iter.next();
+            if ((long) t.getStart() - u.getEnd() > maxDistance) {
+                break;
+            }
+            rtrn.add(u);
+        }
+        return rtrn;
+    }
+    
+    /**
+     * The k Intervals in this which start nearest to, and at or after, the
+     * end of the given Interval.
+     * @param t - the query Interval
+     * @param k - the maximum number of Intervals to return
+     * @see #nearestDownstream(Interval, int, int)
+     */
+    default List<T> nearestDownstream(T t, int k) {
+        return nearestDownstream(t, k, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * The k Intervals in this which start nearest to, and at or after, the
+     * end of the given Interval, and no further than maxDistance from it.
+     * <p>
+     * Downstream is toward higher coordinates; this index is not aware of
+     * strands.
+     * @param t - the query Interval
+     * @param k - the maximum number of Intervals to return
+     * @param maxDistance - the maximum distance between the end of the query
+     * Interval and the start of any returned Interval
+     * @return a list of at most k Intervals, in ascending order of start
+     */
+    default List<T> nearestDownstream(T t, int k, int maxDistance) {
+        List<T> rtrn = new ArrayList<>();
+        Iterator<T> iter = following(t.getEnd());
+        while (rtrn.size() < k && iter.hasNext()) {
+            T d = iter.next();
+            if ((long) d.getStart() - t.getEnd() > maxDistance) {
+                break;
+            }
+            rtrn.add(d);
+        }
+        return rtrn;
+    }
+    
+    /**
+     * Inserts the given Interval into this (optional operation).
+     * @param t - the Interval to insert
+     * @return whether or not this changed as a result of the insertion
+     * @throws UnsupportedOperationException if this cannot be modified
+     */
+    default boolean insert(T t) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() +
+                " cannot be modified after construction.");
+    }
+
+    /**
+     * Whether or not an Interval overlapping a query should be visited.
+     * @param <Q> - the type of the query
+     * @param <T> - the type of Interval tested
+     * @see IntervalIndex#forEachOverlapper(int, int, Object, OverlapFilter, Predicate)
+     */
+    @FunctionalInterface
+    interface OverlapFilter<Q, T> {
+
+        /**
+         * @param query - the query, as passed to forEachOverlapper()
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
+         * @param t - an Interval overlapping [start, end)
+         */
+        boolean test(Q query, int start, int end, T t);
+    }
+}
@@ -1,10 +1,20 @@
 package datastructures;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A balanced binary-search tree keyed by Interval objects.
@@ -25,12 +35,15 @@ import java.util.Set;
  * extensions mentioned in section 14.3
  * @param <I> - the type of Interval this tree contains
  */
-public class IntervalSetTree<T extends Interval> implements Iterable<T> {
+public class IntervalSetTree<T extends Interval> implements IntervalIndex<T> {
 
     private Node root;  // The root Node.
     private Node nil;   // The sentinel Node to represent the absence of a node.
     private int size;   // Size of the tree. Updated by insert() and delete()
 
+    private static final int MAX_ARRAY_INTERVALS = 8;   // Per Node, before
+                                                        // they move to a Set
+
     /**
      * Constructs an empty IntervalSetTree.
      */
@@ -51,6 +64,51 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
         root.blacken();
         size = 1;
     }
+    
+    /**
+     * Constructs an IntervalSetTree containing the given Intervals.
+     * <p>
+     * The tree is built bottom-up in linear time, so none of the rebalancing
+     * performed by repeated calls to insert() is necessary. The Intervals
+     * are expected to be in ascending order (as they would be when read from
+     * a sorted BED file, for example); if they are not, they are sorted
+     * first. Intervals with identical coordinates share a Node, exactly as
+     * if they had been inserted one at a time.
+     * @param c - the Intervals to add to this IntervalSetTree
+     */
+    public IntervalSetTree(Collection<? extends T> c) {
+        nil = new Node();
+
+        Interval[] a = c.toArray(new Interval[c.size()]);
+        if (!isSorted(a)) {
+            Arrays.sort(a);
+        }
+
+        List<Node> nodes = new ArrayList<>();
+        size = 0;
+        for (Interval i : a) {
+            @SuppressWarnings("unchecked")
+            T t = (T) i;
+            if (nodes.isEmpty() || t.compareTo(nodes.get(nodes.size() - 1)) != 0) {
+                nodes.add(new Node(t));
+                size++;
+            } else if (nodes.get(nodes.size() - 1).add(t)) {
+                size++;
+            }
+        }
+
+        root = buildSubtree(nodes, 0, nodes.size(), 0, redDepth(nodes.size()));
+    }
+    
+    /**
+     * Constructs an IntervalSetTree containing the Intervals of the given
+     * Stream.
+     * @param s - the Intervals to add to this IntervalSetTree
+     * @see #IntervalSetTree(Collection)
+     */
+    public IntervalSetTree(Stream<? extends T> s) {
+        this(s.collect(Collectors.toList()));
+    }
 
     ///////////////////////////////////
     // Tree -- General query methods //
@@ -88,7 +146,7 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
      * @param t - the Interval to search for
      */
     public boolean contains(T t) {
-        return search(t).intervals.contains(t);
+        return search(t).contains(t);
     }
     
     /**
@@ -97,7 +155,7 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
      */
     public Iterator<T> minimum() {
         Node n = root.minimumNode();
-        return n.isNil() ? Collections.emptyIterator() : n.intervals.iterator();
+        return n.isNil() ? Collections.emptyIterator() : n.iterator();
     }
 
     /**
@@ -106,7 +164,7 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
      */
     public Iterator<T> maximum() {
         Node n = root.maximumNode();
-        return n.isNil() ? Collections.emptyIterator() : n.intervals.iterator();
+        return n.isNil() ? Collections.emptyIterator() : n.iterator();
     }
     
     /**
@@ -129,7 +187,7 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
             return Collections.emptyIterator();
         }
 
-        return n.intervals.iterator();
+        return n.iterator();
     }
 
     /**
@@ -150,14 +208,14 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
             return Collections.emptyIterator();
         }
 
-        return n.intervals.iterator();
+        return n.iterator();
     }
 
     /**
      * An Iterator which traverses the tree in ascending order.
      */
     public Iterator<T> iterator() {
-        return new TreeIterator(root);
+        return new TreeIterator(root.minimumNode());
     }
     
     /**
@@ -166,7 +224,18 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
      * @param t - the overlapping Interval
      */
     public Iterator<T> overlappers(T t) {
-        return root.overlappers(t);
+        return root.overlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * An Iterator over the Intervals in this IntervalSetTree that overlap
+     * [start, end), in ascending order
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public Iterator<T> overlappers(int start, int end) {
+        return root.overlappers(start, end);
     }
     
     /**
@@ -178,13 +247,34 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
         return !root.anyOverlappingNode(t).isNil();
     }
     
+    /**
+     * Whether or not any of the Intervals in this IntervalSetTree overlap
+     * [start, end)
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    @Override
+    public boolean overlaps(int start, int end) {
+        return !root.anyOverlappingNode(start, end).isNil();
+    }
+    
     /**
      * The number of Intervals in this IntervalTree that overlap the given
      * Interval
      * @param t - the overlapping Interval
      */
     public int numOverlappers(T t) {
-        return root.numOverlappingIntervals(t);
+        return root.numOverlappingIntervals(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * The number of Intervals in this IntervalSetTree that overlap [start, end)
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public int numOverlappers(int start, int end) {
+        return root.numOverlappingIntervals(start, end);
     }
     
     /**
@@ -195,8 +285,283 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
      * is no overlap), an empty Optional
      */
     public Iterator<T> minimumOverlappers(T t) {
-        Node n = root.minimumOverlappingNode(t);
-        return n.isNil() ? Collections.emptyIterator() : n.intervals.iterator();
+        Node n = root.minimumOverlappingNode(t.getStart(), t.getEnd());
+        return n.isNil() ? Collections.emptyIterator() : n.iterator();
+    }
+    
+    /**
+     * Passes each Interval in this IntervalSetTree that overlaps [start, end)
+     * to the given visitor, in ascending order, until the visitor returns
+     * false.
+     * <p>
+     * This method walks the tree directly and, unless a Node holds more than
+     * MAX_ARRAY_INTERVALS Intervals, allocates nothing. Intervals sharing a
+     * Node are visited in no particular order.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor) {
+        return forEachOverlapper(start, end, null, null, visitor);
+    }
+    
+    /**
+     * Passes each Interval in this IntervalSetTree that overlaps [start, end),
+     * and which the given filter accepts, to the given visitor, in ascending
+     * order, until the visitor returns false.
+     * <p>
+     * Like {@link #forEachOverlapper(int, int, Predicate)}, this walks the
+     * tree directly, and the filter is applied in the walk.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param query - passed to the filter with each overlapping Interval
+     * @param filter - whether or not to visit an overlapping Interval
+     * @param visitor - called with each accepted Interval; returns whether or
+     * not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public <Q> boolean forEachOverlapper(int start, int end, Q query,
+            OverlapFilter<? super Q, ? super T> filter, Predicate<? super T> visitor) {
+        for (Node n = root.minimumOverlappingNode(start, end); !n.isNil();
+                n = n.nextOverlappingNode(start, end)) {
+            if (!visit(n, start, end, query, filter, visitor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Passes each Interval in the given Node which the given filter accepts,
+     * or every Interval if the filter is null, to the given visitor, until
+     * the visitor returns false.
+     * <p>
+     * The Intervals are read according to how the Node stores them, rather
+     * than through the Node's Iterator, so that only a Node which keeps its
+     * Intervals in a Set allocates one.
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @SuppressWarnings("unchecked")
+    private <Q> boolean visit(Node n, int start, int end, Q query,
+            OverlapFilter<? super Q, ? super T> filter, Predicate<? super T> visitor) {
+        if (n.numIntervals == 0) {
+            return true;
+        } else if (n.numIntervals == 1) {
+            T t = (T) n.intervals;
+            return filter != null && !filter.test(query, start, end, t) || visitor.test(t);
+        } else if (n.numIntervals > MAX_ARRAY_INTERVALS) {
+            for (T t : (Set<T>) n.intervals) {
+                if ((filter == null || filter.test(query, start, end, t)) && !visitor.test(t)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Interval[] a = (Interval[]) n.intervals;
+        for (int i = 0; i < n.numIntervals; i++) {
+            T t = (T) a[i];
+            if ((filter == null || filter.test(query, start, end, t)) && !visitor.test(t)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * An Iterator over the Intervals in this IntervalSetTree which end at or
+     * before the given position, nearest first, i.e., in descending order of
+     * end.
+     * <p>
+     * This is a best-first search of the tree. A subtree is entered only if
+     * its minimum end is at or before the position, and the subtrees and Nodes
+     * found so far are kept in a priority queue by the greatest end they can
+     * contain, bounded by their maxEnd. A subtree holding an Interval which
+     * contains the position can only be bounded by the position itself, so
+     * every such subtree is searched before any Interval is returned. The
+     * first k Intervals are therefore found in O((k + c + 1) log^2 n) time,
+     * where c is the number of Intervals containing the position.
+     * Intervals sharing a Node are returned together.
+     * @param position - the position the Intervals must end at or before
+     */
+    @Override
+    public Iterator<T> preceding(int position) {
+        return new PrecedingIterator(root, position);
+    }
+    
+    /**
+     * An Iterator over the Intervals in this IntervalSetTree which start at or
+     * after the given position, nearest first, i.e., in ascending order.
+     * <p>
+     * The first such Interval is found in O(log n) time, and each following
+     * one in amortized constant time.
+     * @param position - the position the Intervals must start at or after
+     */
+    @Override
+    public Iterator<T> following(int position) {
+        return new TreeIterator(root.ceilingNode(position));
+    }
+    
+    ///////////////////////////////////
+    // Tree -- Unlocked read methods //
+    ///////////////////////////////////
+
+    /* These methods are for a reader which holds no lock while another thread
+     * may be modifying this tree, such as an optimistic read of a
+     * ConcurrentIntervalSetTree. Such a reader can see a half-updated tree,
+     * e.g., pointers which form a cycle after a rotation, or a Node whose
+     * Intervals and count of Intervals disagree. Each method therefore checks
+     * the given guard before every step from one Node to another, and throws
+     * a ConcurrentModificationException as soon as the guard fails, so that
+     * a walk of a changing tree always terminates. The guard must also act
+     * as a load fence, so that the walk rereads the tree after each check.
+     *
+     * A Node which keeps its Intervals in a Set is never read this way, since
+     * a Set being modified might be walked forever; these methods throw a
+     * ConcurrentModificationException instead. Whatever these methods return
+     * must be discarded unless the guard still holds afterwards.
+     */
+    
+    /**
+     * Whether or not this IntervalSetTree contains the given Interval, for a
+     * reader holding no lock.
+     * @param t - the Interval to search for
+     * @param guard - whether or not the walk may continue
+     * @throws ConcurrentModificationException if the guard fails
+     */
+    boolean contains(T t, BooleanSupplier guard) {
+        Node n = root.search(t, guard);
+        if (n.isNil()) {
+            return false;
+        }
+
+        boolean[] found = new boolean[1];
+        visitUnlocked(n, i -> !(found[0] = t.equals(i)), guard);
+        return found[0];
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this IntervalSetTree overlap
+     * [start, end), for a reader holding no lock.
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     * @param guard - whether or not the walk may continue
+     * @throws ConcurrentModificationException if the guard fails
+     */
+    boolean overlaps(int start, int end, BooleanSupplier guard) {
+        return !root.minimumOverlappingNode(start, end, guard).isNil();
+    }
+    
+    /**
+     * The number of Intervals in this IntervalSetTree that overlap
+     * [start, end), for a reader holding no lock.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param guard - whether or not the walk may continue
+     * @throws ConcurrentModificationException if the guard fails
+     */
+    int numOverlappers(int start, int end, BooleanSupplier guard) {
+        int count = 0;
+        for (Node n = root.minimumOverlappingNode(start, end, guard); !n.isNil();
+                n = n.nextOverlappingNode(start, end, guard)) {
+            count += n.numIntervals;
+        }
+        return count;
+    }
+    
+    /**
+     * Passes each Interval in this IntervalSetTree to the given visitor, in
+     * ascending order, until the visitor returns false, for a reader holding
+     * no lock.
+     * @param visitor - called with each Interval; returns whether or not to
+     * continue visiting
+     * @param guard - whether or not the walk may continue
+     * @return false if the visitor stopped the visit early; otherwise, true
+     * @throws ConcurrentModificationException if the guard fails
+     */
+    boolean forEach(Predicate<? super T> visitor, BooleanSupplier guard) {
+        for (Node n = root.minimumNode(guard); !n.isNil(); n = n.successor(guard)) {
+            if (!visitUnlocked(n, visitor, guard)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Passes each Interval in this IntervalSetTree that overlaps [start, end)
+     * to the given visitor, in ascending order, until the visitor returns
+     * false, for a reader holding no lock.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @param guard - whether or not the walk may continue
+     * @return false if the visitor stopped the visit early; otherwise, true
+     * @throws ConcurrentModificationException if the guard fails
+     */
+    boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor,
+            BooleanSupplier guard) {
+        for (Node n = root.minimumOverlappingNode(start, end, guard); !n.isNil();
+                n = n.nextOverlappingNode(start, end, guard)) {
+            if (!visitUnlocked(n, visitor, guard)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Passes each Interval in the given Node to the given visitor, until the
+     * visitor returns false, for a reader holding no lock.
+     * <p>
+     * The Intervals and their number are each read once, so a Node being
+     * modified yields at worst a stale or mismatched pair. A mismatch fails
+     * with a RuntimeException, or yields Intervals which the guard then
+     * rejects.
+     * @return false if the visitor stopped the visit early; otherwise, true
+     * @throws ConcurrentModificationException if the guard fails, or if the
+     * Node keeps its Intervals in a Set
+     */
+    @SuppressWarnings("unchecked")
+    private boolean visitUnlocked(Node n, Predicate<? super T> visitor, BooleanSupplier guard) {
+        step(guard);
+        int num = n.numIntervals;
+        Object intervals = n.intervals;
+        if (num == 0) {
+            return true;
+        } else if (num == 1) {
+            return visitor.test((T) intervals);
+        } else if (num > MAX_ARRAY_INTERVALS || intervals instanceof Set) {
+            throw new ConcurrentModificationException("Attempted to read a Set of " +
+                    "Intervals without a lock.");
+        }
+
+        Interval[] a = (Interval[]) intervals;
+        for (int i = 0; i < num && i < a.length; i++) {
+            if (!visitor.test((T) a[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Checks the guard of a walk by a reader holding no lock, if there is
+     * one.
+     * @param guard - whether or not the walk may continue, or null if the
+     * reader holds a lock
+     * @throws ConcurrentModificationException if the guard fails
+     */
+    private static void step(BooleanSupplier guard) {
+        if (guard != null && !guard.getAsBoolean()) {
+            throw new ConcurrentModificationException("The tree was modified during " +
+                    "an unlocked read.");
+        }
     }
     
     ///////////////////////////////
@@ -222,14 +587,15 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
         while (!x.isNil()) {
             y = x;
             
-            // Update maxEnd on the way down.
+            // Update maxEnd and minEnd on the way down.
             x.maxEnd = Math.max(x.maxEnd, t.getEnd());
+            x.minEnd = Math.min(x.minEnd, t.getEnd());
 
             // If the Node for this Interval already exists, add the Interval
             // to its Set and increment size if successful.
             int cmp = t.compareTo(x);
             if (cmp == 0) {
-                if (x.intervals.add(t)) {
+                if (x.add(t)) {
                     size++;
                     return true;
                 } else {
@@ -285,14 +651,14 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
             //System.out.println("Found " + t.toString());
         }
         
-        boolean rtrn = n.intervals.remove(t);
+        boolean rtrn = n.remove(t);
         if (rtrn) {
             //System.out.println("Deleted " + t.toString() + " from internal set");
             size--;
         } else {
             //System.out.println("Did not delete " + t.toString() + " from nil");
         }
-        if (n.intervals.isEmpty()) {
+        if (n.numIntervals == 0) {
             //System.out.println("Node is now empty; deleting");
             n.delete(); // Node#delete does nothing if n.isNil()
         }
@@ -333,24 +699,334 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
      * unchanged.
      * @param t - the overlapping Interval
      * @return whether or not an Interval was removed from this IntervalTree
+     * @see #deleteOverlappers(int, int)
      */
     public boolean deleteOverlappers(T t) {
-        // TODO 
-        // Replacing the line
-        //    s.forEach(n -> delete(n.interval()))
-        // with
-        //    s.forEach(n -> n.delete())
-        // causes a NullPointerException in resetMaxEnd(). Why?!
-        //
-        // As it stands, every deletion operation causes the tree
-        // to be searched. Fix this, please.
+        return deleteOverlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * Deletes all Intervals that overlap [start, end) from this IntervalTree.
+     * <p>
+     * The Nodes which start within [start, end) are adjacent in the tree, so
+     * rather than being deleted one at a time, they are cut out all at once:
+     * the tree is split just before and just after them, and the two
+     * remaining pieces are joined back together, in O(log n) time. Only the
+     * overlapping Nodes which start before start are deleted individually, as
+     * the walk over the overlappers reaches them. The Nodes cut out are still
+     * visited, to count their Intervals, so deleting the Intervals of k
+     * Nodes, c of which contain start, takes O(k + (c + 1) log n) time.
+     * <p>
+     * If there are no overlapping Intervals, this IntervalTree remains
+     * unchanged.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @return whether or not an Interval was removed from this IntervalTree
+     * @see IntervalTree#deleteOverlappers(int, int)
+     */
+    public boolean deleteOverlappers(int start, int end) {
+        boolean changed = deleteContaining(start, end);
+        if (start < end) {
+            changed |= deleteStartingIn(start, end);
+        }
+        return changed;
+    }
+    
+    /**
+     * Deletes the Nodes which overlap [start, end) but start before start,
+     * i.e., which contain start, as the walk over the overlappers finds them.
+     * <p>
+     * A Node with two children is deleted by moving the Interval which
+     * follows it into it, so the walk then looks at the same Node again.
+     * Otherwise, the next overlapping Node is found before the Node is
+     * deleted. No Node is searched for from the root.
+     * @return whether or not an Interval was removed from this IntervalTree
+     */
+    private boolean deleteContaining(int start, int end) {
+        boolean changed = false;
+        Node n = root.minimumOverlappingNode(start, end);
+        while (!n.isNil() && n.getStart() < start) {
+            changed = true;
+            if (n.hasTwoChildren()) {
+                n.delete();
+                if (!n.overlaps(start, end)) {
+                    n = n.nextOverlappingNode(start, end);
+                }
+            } else {
+                Node next = n.nextOverlappingNode(start, end);
+                n.delete();
+                n = next;
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Cuts the Nodes which start in [start, end) out of this IntervalTree and
+     * deletes their Intervals, except for any empty Intervals which do not
+     * overlap [start, end).
+     * <p>
+     * Only empty Intervals which start at start can be such Intervals, and
+     * they would be in the first Node cut. That Node is taken off the cut and
+     * joined back between the two remaining pieces of the tree, rather than
+     * being inserted again.
+     * @return whether or not an Interval was removed from this IntervalTree
+     */
+    private boolean deleteStartingIn(int start, int end) {
+        Node n = detachRoot();
+        Split before = split(n, start);
+        Split after = split(before.right, end);
+
+        Node cut = after.left;
+        Node first = cut.minimumNode();
+        if (!first.isNil() && !first.overlaps(start, end)) {
+            cut = removeMinimum(cut);
+            root = join(before.left, first, after.right);
+        } else {
+            root = join(before.left, after.right);
+        }
+        root.blacken();
+
+        Iterator<Node> iter = new TreeNodeIterator(cut);
+        while (iter.hasNext()) {
+            size -= iter.next().numIntervals;
+        }
+        return !cut.isNil();
+    }
 
-        Set<Node> s = new HashSet<Node>();
-        Iterator<Node> iter = new OverlappingNodeIterator(root, t);
-        iter.forEachRemaining(s::add);
-        return s.stream()
-                .map(n -> deleteSameBounds(n.intervals.iterator().next()))
-                .reduce(false, (a, b) -> a || b);
+    //////////////////////////////////
+    // Tree -- Bulk-loading methods //
+    //////////////////////////////////
+    
+    /**
+     * Whether or not the given Intervals are in ascending order.
+     */
+    private static boolean isSorted(Interval[] a) {
+        for (int i = 1; i < a.length; i++) {
+            if (a[i - 1].compareTo(a[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * The depth at which the Nodes of a bulk-loaded tree are colored red.
+     * <p>
+     * A tree of n Nodes built by repeatedly splitting at the midpoint has
+     * floor(log2(n + 1)) completely filled levels. Coloring those levels
+     * black and the partially filled level beneath them red gives every
+     * root-to-leaf path the same black-height.
+     * @param n - the number of Nodes in the tree
+     */
+    private static int redDepth(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n + 1);
+    }
+    
+    /**
+     * Links the given Nodes, which must be in ascending order, into a
+     * balanced subtree.
+     * @param nodes - the Nodes to link
+     * @param lo - the index of the first Node in the subtree, inclusive
+     * @param hi - the index of the last Node in the subtree, exclusive
+     * @param depth - the depth of the subtree's root
+     * @param redDepth - the depth at which Nodes are colored red
+     * @return the root of the subtree, or the sentinel Node if it is empty
+     */
+    private Node buildSubtree(List<Node> nodes, int lo, int hi, int depth, int redDepth) {
+        if (lo >= hi) {
+            return nil;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        Node n = nodes.get(mid);
+
+        n.left = buildSubtree(nodes, lo, mid, depth + 1, redDepth);
+        if (!n.left.isNil()) {
+            n.left.parent = n;
+        }
+
+        n.right = buildSubtree(nodes, mid + 1, hi, depth + 1, redDepth);
+        if (!n.right.isNil()) {
+            n.right.parent = n;
+        }
+
+        if (depth == redDepth) {
+            n.redden();
+        } else {
+            n.blacken();
+        }
+        n.resetMaxEnd();
+        return n;
+    }
+
+    ////////////////////////////////////
+    // Tree -- Split and join methods //
+    ////////////////////////////////////
+    
+    /**
+     * The two subtrees a subtree is split into. Each is detached, i.e., its
+     * root has no parent, and either may be empty.
+     */
+    private class Split {
+        
+        private Node left;
+        private Node right;
+        
+        private Split(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+    
+    /**
+     * Splits the given detached subtree into the Nodes which start before the
+     * given coordinate and the Nodes which do not.
+     * @param n - the root of the subtree to split
+     * @param coord - the coordinate at which to split the subtree
+     * @see IntervalTree#split
+     */
+    private Split split(Node n, int coord) {
+        if (n.isNil()) {
+            return new Split(nil, nil);
+        }
+
+        Node l = n.left;
+        Node r = n.right;
+        detachChildren(n);
+
+        if (n.getStart() < coord) {
+            Split s = split(r, coord);
+            s.left = join(l, n, s.left);
+            return s;
+        }
+        Split s = split(l, coord);
+        s.right = join(s.right, n, r);
+        return s;
+    }
+    
+    /**
+     * Joins two detached subtrees, all of whose Nodes in l precede all of
+     * whose Nodes in r, into a single detached subtree.
+     * @return the root of the joined subtree
+     */
+    private Node join(Node l, Node r) {
+        if (l.isNil()) {
+            return r;
+        }
+        if (r.isNil()) {
+            return l;
+        }
+        Node k = r.minimumNode();
+        return join(l, k, removeMinimum(r));
+    }
+    
+    /**
+     * Joins two detached subtrees and a single Node into a single detached
+     * subtree, in which the Nodes of l precede k and the Nodes of r follow it.
+     * @return the root of the joined subtree
+     * @see IntervalTree#join
+     */
+    private Node join(Node l, Node k, Node r) {
+        l.blacken();
+        r.blacken();
+        int lh = l.blackHeight;
+        int rh = r.blackHeight;
+
+        k.parent = nil;
+        if (lh == rh) {
+            k.link(l, r);
+            k.blacken();
+            k.blackHeight = lh + 1;
+            return k;
+        }
+
+        Node p = nil;
+        Node c;
+        Node top;
+        if (lh > rh) {
+            c = l;
+            for (int h = lh; c.isRed() || h > rh; c = c.right) {
+                if (!c.isRed()) {
+                    h--;
+                }
+                p = c;
+            }
+            p.right = k;
+            k.link(c, r);
+            top = l;
+        } else {
+            c = r;
+            for (int h = rh; c.isRed() || h > lh; c = c.left) {
+                if (!c.isRed()) {
+                    h--;
+                }
+                p = c;
+            }
+            p.left = k;
+            k.link(l, c);
+            top = r;
+        }
+        k.parent = p;
+        k.redden();
+
+        for (Node x = k; !x.isNil(); x = x.parent) {    // Only the spine above k
+            x.resetMaxEnd();
+        }
+        k.insertFixup();
+        while (!top.parent.isNil()) {   // A rotation at the top lifts a Node
+            top = top.parent;           // above it
+        }
+        int h = Math.max(lh, rh);       // Unless the fixup reddened the top
+        top.blackHeight = top.isRed() ? h + 1 : h;
+        return top;
+    }
+    
+    /**
+     * Removes the least Node from the given detached subtree.
+     * @return the root of the remaining subtree, detached
+     */
+    private Node removeMinimum(Node n) {
+        Node l = n.left;
+        Node r = n.right;
+        detachChildren(n);
+        return l.isNil() ? r : join(removeMinimum(l), n, r);
+    }
+    
+    /**
+     * Detaches the root of this tree, leaving the tree empty, so that it can
+     * be split or joined.
+     * @return the root, detached
+     * @see IntervalTree#detachRoot
+     */
+    private Node detachRoot() {
+        Node n = root;
+        root = nil;     // The pieces are detached until they are rejoined
+        n.detach(blackHeight(n));
+        return n;
+    }
+    
+    /**
+     * Detaches both children of the given Node, itself the root of a detached
+     * subtree, and records their black heights.
+     */
+    private void detachChildren(Node n) {
+        n.left.detach(n.blackHeight - 1);
+        n.right.detach(n.blackHeight - 1);
+    }
+    
+    /**
+     * The number of black Nodes on any path from the given Node down to a
+     * leaf, including the Node itself.
+     */
+    private int blackHeight(Node n) {
+        int height = 0;
+        for (; !n.isNil(); n = n.left) {
+            if (!n.isRed()) {
+                height++;
+            }
+        }
+        return height;
     }
 
     /**
@@ -363,7 +1039,8 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
          * containing val; then that Node deletes itself with Node#delete().
          */
 
-        private Set<T> intervals;
+        private Object intervals;   // An Interval, an array or a Set of them
+        private int numIntervals;
         private int start;
         private int end;
         private Node parent;
@@ -371,6 +1048,8 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
         private Node right;
         private boolean isBlack;
         private int maxEnd;
+        private int minEnd;       // Least end in this Node's subtree
+        private int blackHeight;  // Of this Node's subtree, while detached
 
         /**
          * Constructs a Node with no data.
@@ -380,7 +1059,6 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
          * node in the tree ("nil" in CLRS).
          */
         private Node() {
-            intervals = Collections.emptySet();
             parent = this;
             left = this;
             right = this;
@@ -392,21 +1070,18 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
          * @param data - the Interval to be contained within this Node
          */
         public Node(T interval) {
-            intervals = new HashSet<T>();
-            intervals.add(interval);
+            intervals = interval;
+            numIntervals = 1;
             parent = nil;
             left = nil;
             right = nil;
             start = interval.getStart();
             end = interval.getEnd();
             maxEnd = end;
+            minEnd = end;
             redden();
         }
         
-        public Iterator<T> iterator() {
-            return intervals.iterator();
-        }
-        
         /**
          * The start of the Interval in this Node
          */
@@ -423,6 +1098,141 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
             return end;
         }
         
+        //////////////////////////////////
+        // Node -- Interval-set methods //
+        //////////////////////////////////
+        
+        /* Almost every Node holds a single Interval, so a Node does not keep
+         * its Intervals in a HashSet unless it has many of them. A Node with
+         * one Interval refers to it directly, and a Node with up to
+         * MAX_ARRAY_INTERVALS keeps them at the front of an array, which is
+         * searched linearly. Only beyond that are they moved into a HashSet.
+         * In every case Intervals are compared with equals(), as they would
+         * be by a HashSet.
+         */
+        
+        /**
+         * An Iterator over the Intervals in this Node.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<T> iterator() {
+            if (numIntervals == 0) {
+                return Collections.emptyIterator();
+            } else if (numIntervals == 1) {
+                return Collections.singleton((T) intervals).iterator();
+            } else if (numIntervals <= MAX_ARRAY_INTERVALS) {
+                return Arrays.asList((T[]) intervals).subList(0, numIntervals).iterator();
+            } else {
+                return ((Set<T>) intervals).iterator();
+            }
+        }
+        
+        /**
+         * Whether or not this Node contains the given Interval.
+         * @param t - the Interval to search for
+         */
+        @SuppressWarnings("unchecked")
+        private boolean contains(T t) {
+            if (numIntervals == 0) {
+                return false;
+            } else if (numIntervals == 1) {
+                return t.equals(intervals);
+            } else if (numIntervals <= MAX_ARRAY_INTERVALS) {
+                return indexOf(t) >= 0;
+            } else {
+                return ((Set<T>) intervals).contains(t);
+            }
+        }
+        
+        /**
+         * Adds the given Interval to this Node, if this Node does not already
+         * contain it.
+         * @param t - the Interval to add
+         * @return whether or not this Node changed
+         */
+        @SuppressWarnings("unchecked")
+        private boolean add(T t) {
+            if (numIntervals > MAX_ARRAY_INTERVALS) {
+                if (!((Set<T>) intervals).add(t)) {
+                    return false;
+                }
+            } else if (contains(t)) {
+                return false;
+            } else if (numIntervals == 1) {
+                Interval[] a = new Interval[4];
+                a[0] = (Interval) intervals;
+                a[1] = t;
+                intervals = a;
+            } else if (numIntervals < MAX_ARRAY_INTERVALS) {
+                Interval[] a = (Interval[]) intervals;
+                if (numIntervals == a.length) {
+                    a = Arrays.copyOf(a, Math.min(2 * a.length, MAX_ARRAY_INTERVALS));
+                    intervals = a;
+                }
+                a[numIntervals] = t;
+            } else {
+                Set<T> set = new HashSet<T>();
+                forEach(set::add);
+                set.add(t);
+                intervals = set;
+            }
+            numIntervals++;
+            return true;
+        }
+        
+        /**
+         * Removes the given Interval from this Node, if this Node contains it.
+         * @param t - the Interval to remove
+         * @return whether or not this Node changed
+         */
+        @SuppressWarnings("unchecked")
+        private boolean remove(T t) {
+            if (numIntervals == 0) {
+                return false;
+            } else if (numIntervals == 1) {
+                if (!t.equals(intervals)) {
+                    return false;
+                }
+                intervals = null;
+            } else if (numIntervals <= MAX_ARRAY_INTERVALS) {
+                int i = indexOf(t);
+                if (i < 0) {
+                    return false;
+                }
+                Interval[] a = (Interval[]) intervals;
+                a[i] = a[numIntervals - 1];
+                a[numIntervals - 1] = null;
+                if (numIntervals == 2) {
+                    intervals = a[0];
+                }
+            } else {
+                Set<T> set = (Set<T>) intervals;
+                if (!set.remove(t)) {
+                    return false;
+                }
+                if (set.size() == MAX_ARRAY_INTERVALS) {
+                    intervals = set.toArray(new Interval[MAX_ARRAY_INTERVALS]);
+                }
+            }
+            numIntervals--;
+            return true;
+        }
+        
+        /**
+         * The index of the given Interval in this Node's array of Intervals,
+         * or -1 if it is not present.
+         */
+        private int indexOf(T t) {
+            Interval[] a = (Interval[]) intervals;
+            for (int i = 0; i < numIntervals; i++) {
+                if (t.equals(a[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
         ///////////////////////////////////
         // Node -- General query methods //
         ///////////////////////////////////
@@ -434,10 +1244,24 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
          * the sentinel Node 
          */
         private Node search(T t) {
+            return search(t, null);
+        }
+        
+        /**
+         * Searches the subtree rooted at this Node for the given Interval,
+         * checking the given guard before every step.
+         * @param t - the Interval to search for
+         * @param guard - whether or not the walk may continue, or null if
+         * the reader holds a lock
+         * @return the Node with the given Interval, if it exists; otherwise,
+         * the sentinel Node 
+         */
+        private Node search(T t, BooleanSupplier guard) {
 
             Node n = this;
             
             while (!n.isNil() && t.compareTo(n) != 0) {
+                step(guard);
                 n = t.compareTo(n) == -1 ? n.left : n.right;
             }
             return n;
@@ -449,10 +1273,23 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
          * the sentinel Node
          */
         private Node minimumNode() {
+            return minimumNode(null);
+        }
+        
+        /**
+         * Searches the subtree rooted at this Node for its minimum Interval,
+         * checking the given guard before every step.
+         * @param guard - whether or not the walk may continue, or null if
+         * the reader holds a lock
+         * @return the Node with the minimum Interval, if it exists; otherwise,
+         * the sentinel Node
+         */
+        private Node minimumNode(BooleanSupplier guard) {
             
             Node n = this;
             
             while (!n.left.isNil()) {
+                step(guard);
                 n = n.left;
             }
             return n;
@@ -479,14 +1316,27 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
          * sentinel Node
          */
         private Node successor() {
+            return successor(null);
+        }
+        
+        /**
+         * The successor of this Node, checking the given guard before every
+         * step.
+         * @param guard - whether or not the walk may continue, or null if
+         * the reader holds a lock
+         * @return the Node following this Node, if it exists; otherwise the
+         * sentinel Node
+         */
+        private Node successor(BooleanSupplier guard) {
             
             if (!right.isNil()) {
-                return right.minimumNode();
+                return right.minimumNode(guard);
             }
             
             Node x = this;
             Node y = parent;
             while (!y.isNil() && x == y.right) {
+                step(guard);
                 x = y;
                 y = y.parent;
             }
@@ -515,10 +1365,37 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
             return y;
         }
         
+        /**
+         * The least Node in this Node's subtree which starts at or after the
+         * given position.
+         * @return the least such Node, if one exists; otherwise, the sentinel
+         * Node
+         */
+        private Node ceilingNode(int position) {
+            Node rtrn = nil;
+            Node x = this;
+            while (!x.isNil()) {
+                if (x.getStart() >= position) {
+                    rtrn = x;
+                    x = x.left;
+                } else {
+                    x = x.right;
+                }
+            }
+            return rtrn;
+        }
+        
         ///////////////////////////////////////
         // Node -- Overlapping query methods //
         ///////////////////////////////////////
         
+        /**
+         * Whether or not this Node overlaps [start, end).
+         */
+        private boolean overlaps(int start, int end) {
+            return this.start < end && start < this.end;
+        }
+        
         /**
          * Returns a Node from this Node's subtree that overlaps the given
          * Interval.
@@ -541,20 +1418,51 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
         }
         
         /**
-         * Returns the minimum Node from this Node's subtree that overlaps the
-         * given Interval.
-         * @param t - the given Interval
-         * @return the minimum Node from this Node's subtree that overlaps the
-         * Interval t, if one exists; otherwise, the sentinel Node
+         * Returns a Node from this Node's subtree that overlaps [start, end).
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
+         * @return an overlapping Node from this Node's subtree, if one exists;
+         * otherwise the sentinel Node
+         */
+        private Node anyOverlappingNode(int start, int end) {
+            Node x = this;
+            while (!x.isNil() && !x.overlaps(start, end)) {
+                x = !x.left.isNil() && x.left.maxEnd > start ? x.left : x.right;
+            }
+            return x;
+        }
+        
+        /**
+         * Returns the minimum Node from this Node's subtree that overlaps
+         * [start, end).
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
+         * @return the minimum Node from this Node's subtree that overlaps
+         * [start, end), if one exists; otherwise, the sentinel Node
          */
-        private Node minimumOverlappingNode(T t) {
+        private Node minimumOverlappingNode(int start, int end) {
+            return minimumOverlappingNode(start, end, null);
+        }
+        
+        /**
+         * Returns the minimum Node from this Node's subtree that overlaps
+         * [start, end), checking the given guard before every step.
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
+         * @param guard - whether or not the walk may continue, or null if
+         * the reader holds a lock
+         * @return the minimum Node from this Node's subtree that overlaps
+         * [start, end), if one exists; otherwise, the sentinel Node
+         */
+        private Node minimumOverlappingNode(int start, int end, BooleanSupplier guard) {
 
             Node result = nil;
             Node n = this;
 
-            if (!n.isNil() && n.maxEnd > t.getStart()) {
+            if (!n.isNil() && n.maxEnd > start) {
                 while (true) {
-                    if (n.overlaps(t)) {
+                    step(guard);
+                    if (n.overlaps(start, end)) {
 
                         // This node overlaps. There may be a lesser overlapper
                         // down the left subtree. No need to consider the right
@@ -563,7 +1471,7 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
                         result = n;
                         n = n.left;
 
-                        if (n.isNil() || n.maxEnd <= t.getStart()) {
+                        if (n.isNil() || n.maxEnd <= start) {
                             // Either no left subtree, or nodes can't overlap.
                             break;
                         }
@@ -573,20 +1481,20 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
                         // Check the left subtree if an overlapper may be there
 
                         Node left = n.left;
-                        if (!left.isNil() && left.maxEnd > t.getStart()) {
+                        if (!left.isNil() && left.maxEnd > start) {
                             n = left;
                         } else {
                             
                         // Left subtree cannot contain an overlapper. Check the
                         // right sub-tree.
                         
-                            if (n.getStart() >= t.getEnd()) {
+                            if (n.getStart() >= end) {
                                 // Nothing in the right subtree can overlap
                                 break;
                             }
 
                             n = n.right;
-                            if (n.isNil() || n.maxEnd <= t.getStart()) {
+                            if (n.isNil() || n.maxEnd <= start) {
                                 // No right subtree, or nodes can't overlap.
                                 break;
                             }
@@ -599,36 +1507,52 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
         }
         
         /**
-         * An Iterator over all values in this Node's subtree that overlap the
-         * given Interval t.
-         * @param t - the overlapping Interval
+         * An Iterator over all values in this Node's subtree that overlap
+         * [start, end).
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
+         */
+        private Iterator<T> overlappers(int start, int end) {
+            return new OverlapperIterator(this, start, end);
+        }
+        
+        /**
+         * The next Node (relative to this Node) which overlaps [start, end)
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
+         * @return the next Node that overlaps [start, end), if one exists;
+         * otherwise, the sentinel Node
          */
-        private Iterator<T> overlappers(T t) {
-            return new OverlapperIterator(this, t);
+        private Node nextOverlappingNode(int start, int end) {
+            return nextOverlappingNode(start, end, null);
         }
         
         /**
-         * The next Node (relative to this Node) which overlaps the given
-         * Interval t
-         * @param t - the overlapping Interval
-         * @return the next Node that overlaps the Interval t, if one exists;
+         * The next Node (relative to this Node) which overlaps [start, end),
+         * checking the given guard before every step.
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
+         * @param guard - whether or not the walk may continue, or null if
+         * the reader holds a lock
+         * @return the next Node that overlaps [start, end), if one exists;
          * otherwise, the sentinel Node
          */
-        private Node nextOverlappingNode(T t) {
+        private Node nextOverlappingNode(int start, int end, BooleanSupplier guard) {
             Node x = this;
             Node rtrn = nil;
 
             // First, check the right subtree for its minimum overlapper.
             if (!right.isNil()) {
-                rtrn = x.right.minimumOverlappingNode(t);
+                rtrn = x.right.minimumOverlappingNode(start, end, guard);
             }
             
             // If we didn't find it in the right subtree, walk up the tree and
             // check the parents of left-children as well as their right subtrees.
             while (!x.parent.isNil() && rtrn.isNil()) {
+                step(guard);
                 if (x.isLeftChild()) {
-                    rtrn = x.parent.overlaps(t) ? x.parent
-                                                : x.parent.right.minimumOverlappingNode(t);
+                    rtrn = x.parent.overlaps(start, end) ? x.parent
+                            : x.parent.right.minimumOverlappingNode(start, end, guard);
                 }
                 x = x.parent;
             }
@@ -636,22 +1560,23 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
         }
         
         /**
-         * The number of Nodes in this Node's subtree that overlap the given
-         * Interval t.
+         * The number of Nodes in this Node's subtree that overlap
+         * [start, end).
          * <p>
-         * This number includes this Node if this Node overlaps t. This method
+         * This number includes this Node if this Node overlaps [start, end). This method
          * iterates over all overlapping Nodes, so if you ultimately need to
          * inspect the Nodes, it will be more efficient to simply create the
          * Iterator yourself.
-         * @param t - the overlapping Interval
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
          * @return the number of overlapping Nodes
          */
-        private int numOverlappingIntervals(T t) {
+        private int numOverlappingIntervals(int start, int end) {
             int count = 0;
-            Iterator<Node> iter = new OverlappingNodeIterator(this, t);
+            Iterator<Node> iter = new OverlappingNodeIterator(this, start, end);
             
             while (iter.hasNext()) {
-                count += iter.next().intervals.size();
+                count += iter.next().numIntervals;
             }
             return count;
         }
@@ -679,7 +1604,7 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
                 return false;
             }
             
-            size -= this.intervals.size();
+            size -= numIntervals;
             Node y = this;
 
             if (hasTwoChildren()) { // If the node to remove has two children,
@@ -796,7 +1721,8 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
          * <li>the maxEnd value of this node's right child, if not null
          * </ul><p>
          * This method will be correct only if the left and right children have
-         * correct maxEnd values.
+         * correct maxEnd values. The minEnd value, the lowest end in this
+         * Node's subtree, is set in the same way.
          */
         private void resetMaxEnd() {
             int val = end;
@@ -807,6 +1733,15 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
                 val = Math.max(val, right.maxEnd);
             }
             maxEnd = val;
+            
+            val = getEnd();
+            if (!left.isNil()) {
+                val = Math.min(val, left.minEnd);
+            }
+            if (!right.isNil()) {
+                val = Math.min(val, right.minEnd);
+            }
+            minEnd = val;
         }
         
         /**
@@ -822,6 +1757,35 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
             }
         }
         
+        /**
+         * Makes this Node the root of a detached subtree, and records the
+         * black height the subtree will have once this Node is blackened.
+         * @param height - the number of black Nodes on any path from this
+         * Node down to a leaf, including this Node
+         */
+        private void detach(int height) {
+            if (!isNil()) {
+                parent = nil;
+                blackHeight = isRed() ? height + 1 : height;
+            }
+        }
+        
+        /**
+         * Makes the given Nodes the children of this Node, and resets this
+         * Node's maxEnd value from them.
+         */
+        private void link(Node l, Node r) {
+            left = l;
+            right = r;
+            if (!l.isNil()) {
+                l.parent = this;
+            }
+            if (!r.isNil()) {
+                r.parent = this;
+            }
+            resetMaxEnd();
+        }
+        
         /**
          * Performs a left-rotation on this Node.
          * @see - Cormen et al. "Introduction to Algorithms", 2nd ed, pp. 277-279.
@@ -837,7 +1801,9 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
             y.parent = parent;
             
             if (parent.isNil()) {
-                root = y;
+                if (this == root) {     // Not the top of a detached subtree
+                    root = y;
+                }
             } else if (isLeftChild()) {
                 parent.left = y;
             } else {
@@ -866,7 +1832,9 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
             y.parent = parent;
             
             if (parent.isNil()) {
-                root = y;
+                if (this == root) {     // Not the top of a detached subtree
+                    root = y;
+                }
             } else if (isLeftChild()) {
                 parent.left = y;
             } else {
@@ -886,6 +1854,7 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
          */
         private void copyData(Node o) {
             intervals = o.intervals;
+            numIntervals = o.numIntervals;
             start = o.start;
             end = o.end;
         }
@@ -1068,6 +2037,30 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
             }
         }
         
+        /**
+         * Whether or not the subtree rooted at this Node has consistent minEnd
+         * values.
+         * <p>
+         * The minEnd value of a Node is equal to the minimum of the end-values
+         * of all intervals contained in the Node's subtree.
+         */
+        private boolean hasConsistentMinEnds() {
+            int val = getEnd();
+            if (!left.isNil()) {
+                if (!left.hasConsistentMinEnds()) {
+                    return false;
+                }
+                val = Math.min(val, left.minEnd);
+            }
+            if (!right.isNil()) {
+                if (!right.hasConsistentMinEnds()) {
+                    return false;
+                }
+                val = Math.min(val, right.minEnd);
+            }
+            return minEnd == val;
+        }
+        
         /**
          * Whether or not the subtree rooted at this Node has consistent maxEnd
          * values.
@@ -1111,7 +2104,6 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
     /**
      * An Iterator which walks along this IntervalTree's Nodes in ascending order.
      */
-    @SuppressWarnings("unused")
     private class TreeNodeIterator implements Iterator<Node> {
 
         private Node next;
@@ -1138,7 +2130,7 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
 
     /**
      * An Iterator which walks along this IntervalTree's Intervals in ascending
-     * order.
+     * order, from a given Node.
      */
     private class TreeIterator implements Iterator<T> {
         
@@ -1146,8 +2138,8 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
         private Node currentNode;
         private Node nextNode;
         
-        private TreeIterator(Node root) {
-            currentNode = root.minimumNode();
+        private TreeIterator(Node first) {
+            currentNode = first;
             nextNode = currentNode.successor();
             iter = currentNode.iterator();
         }
@@ -1177,11 +2169,13 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
     private class OverlappingNodeIterator implements Iterator<Node> {
         
         private Node next;
-        private T interval;
+        private int start;
+        private int end;
         
-        private OverlappingNodeIterator(Node root, T t) {
-            interval = t;
-            next = root.minimumOverlappingNode(interval);
+        private OverlappingNodeIterator(Node root, int start, int end) {
+            this.start = start;
+            this.end = end;
+            next = root.minimumOverlappingNode(start, end);
         }
         
         @Override
@@ -1195,7 +2189,7 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
                 throw new NoSuchElementException("Interval tree has no more overlapping elements.");
             }
             Node rtrn = next;
-            next = rtrn.nextOverlappingNode(interval);
+            next = rtrn.nextOverlappingNode(start, end);
             return rtrn;
         }
     }
@@ -1212,12 +2206,14 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
         private Iterator<T> iter;
         private Node currentNode;
         private Node nextNode;
-        private T t;
+        private int start;
+        private int end;
         
-        private OverlapperIterator(Node root, T t) {
-            this.t = t;
-            currentNode = root.minimumOverlappingNode(t);
-            nextNode = currentNode.nextOverlappingNode(t);
+        private OverlapperIterator(Node root, int start, int end) {
+            this.start = start;
+            this.end = end;
+            currentNode = root.minimumOverlappingNode(start, end);
+            nextNode = currentNode.nextOverlappingNode(start, end);
             iter = currentNode.iterator();
         }
 
@@ -1232,13 +2228,132 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
                 return iter.next();
             } else {
                 currentNode = nextNode;
-                nextNode = currentNode.nextOverlappingNode(t);
+                nextNode = currentNode.nextOverlappingNode(start, end);
                 iter = currentNode.iterator();
                 return iter.next();
             }
         }
     }
 
+    /**
+     * An Iterator which walks along this IntervalSetTree's Nodes that end at or
+     * before a given position, in descending order of end.
+     * <p>
+     * The queue holds both subtrees still to be searched and Nodes already
+     * known to end at or before the position. A subtree is queued by the
+     * least of its maxEnd and the position, which bounds the end of any Node
+     * in it that could be returned, and a Node by its own end. When a Node
+     * reaches the head of the queue, no Node still to be found can end after
+     * it. The bound of a subtree is exact unless it holds a Node ending after
+     * the position, as the best end at or before the position cannot be
+     * maintained as the tree is modified.
+     */
+    private class PrecedingNodeIterator implements Iterator<Node> {
+        
+        private final int position;
+        private final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        private Node next;
+        
+        private PrecedingNodeIterator(Node root, int position) {
+            this.position = position;
+            addSubtree(root);
+            next = findNext();
+        }
+        
+        /**
+         * Queues the subtree rooted at n, unless no Node in it ends at or
+         * before the position.
+         */
+        private void addSubtree(Node n) {
+            if (!n.isNil() && n.minEnd <= position) {
+                queue.add(new Candidate(n, true, Math.min(n.maxEnd, position)));
+            }
+        }
+        
+        private Node findNext() {
+            while (!queue.isEmpty()) {
+                Candidate c = queue.poll();
+                if (!c.isSubtree) {
+                    return c.node;
+                }
+                Node n = c.node;
+                if (n.getEnd() <= position) {
+                    queue.add(new Candidate(n, false, n.getEnd()));
+                }
+                addSubtree(n.left);
+                if (n.getStart() <= position) { // Nodes to the right start at
+                    addSubtree(n.right);        // or after n, so can only end at
+                }                               // or before the position if n
+                                                // starts at or before it.
+            }
+            return nil;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return !next.isNil();
+        }
+        
+        @Override
+        public Node next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Interval tree has no more preceding elements.");
+            }
+            Node rtrn = next;
+            next = findNext();
+            return rtrn;
+        }
+    }
+    
+    /**
+     * A subtree or single Node queued by a PrecedingNodeIterator, with the
+     * greatest end it can contribute.
+     */
+    private class Candidate implements Comparable<Candidate> {
+        
+        private final Node node;
+        private final boolean isSubtree;
+        private final int bound;
+        
+        private Candidate(Node node, boolean isSubtree, int bound) {
+            this.node = node;
+            this.isSubtree = isSubtree;
+            this.bound = bound;
+        }
+        
+        @Override
+        public int compareTo(Candidate o) {
+            return Integer.compare(o.bound, bound);     // Greatest bound first
+        }
+    }
+    
+    /**
+     * An Iterator which walks along this IntervalSetTree's Intervals that end
+     * at or before a given position, in descending order of end.
+     */
+    private class PrecedingIterator implements Iterator<T> {
+        
+        private final PrecedingNodeIterator nodeIter;
+        private Iterator<T> iter = Collections.emptyIterator();
+        
+        private PrecedingIterator(Node root, int position) {
+            nodeIter = new PrecedingNodeIterator(root, position);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext() || nodeIter.hasNext();
+        }
+        
+        @Override
+        public T next() {
+            if (!iter.hasNext()) {
+                iter = nodeIter.next().iterator();
+            }
+            return iter.next();
+        }
+    }
+    
     ///////////////////////////////
     // Tree -- Debugging methods //
     ///////////////////////////////
@@ -1310,4 +2425,18 @@ public class IntervalSetTree<T extends Interval> implements Iterable<T> {
     private boolean hasConsistentMaxEnds() {
         return root.hasConsistentMaxEnds();
     }
+    
+    /**
+     * Whether or not this IntervalSetTree has consistent minEnd values.
+     * <p>
+     * This method will only return true if each Node's minEnd is the least
+     * end in its subtree.
+     * <p>
+     * This method is used for debugging only, and its access is changed in
+     * testing.
+     */
+    @SuppressWarnings("unused")
+    private boolean hasConsistentMinEnds() {
+        return root.isNil() || root.hasConsistentMinEnds();
+    }
 }
\ No newline at end of file
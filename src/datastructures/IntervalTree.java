@@ -1,10 +1,20 @@
 package datastructures;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Optional;
-import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A balanced binary-search tree keyed by Interval objects.
@@ -14,7 +24,7 @@ import java.util.Set;
  * extensions mentioned in section 14.3
  * @param <I> - the type of Interval this tree contains
  */
-public class IntervalTree<T extends Interval> implements Iterable<T> {
+public class IntervalTree<T extends Interval> implements IntervalIndex<T> {
 
     private Node root;  // The root Node.
     private Node nil;   // The sentinel Node to represent the absence of a node.
@@ -40,6 +50,48 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
         root.blacken();
         size = 1;
     }
+    
+    /**
+     * Constructs an IntervalTree containing the given intervals.
+     * <p>
+     * The tree is built bottom-up in linear time, so none of the rebalancing
+     * performed by repeated calls to insert() is necessary. The intervals
+     * are expected to be in ascending order (as they would be when read from
+     * a sorted BED file, for example); if they are not, they are sorted
+     * first. As with insert(), only the first of several intervals with
+     * identical coordinates is kept.
+     * @param c - the intervals to add to the tree
+     */
+    public IntervalTree(Collection<? extends T> c) {
+        nil = new Node();
+
+        Interval[] a = c.toArray(new Interval[c.size()]);
+        if (!isSorted(a)) {
+            Arrays.sort(a);
+        }
+
+        List<Node> nodes = new ArrayList<>(a.length);
+        for (Interval i : a) {
+            @SuppressWarnings("unchecked")
+            T t = (T) i;
+            if (nodes.isEmpty() || t.compareTo(nodes.get(nodes.size() - 1)) != 0) {
+                nodes.add(new Node(t));
+            }
+        }
+
+        root = buildSubtree(nodes, 0, nodes.size(), 0, redDepth(nodes.size()));
+        size = nodes.size();
+    }
+    
+    /**
+     * Constructs an IntervalTree containing the intervals of the given
+     * Stream.
+     * @param s - the intervals to add to the tree
+     * @see #IntervalTree(Collection)
+     */
+    public IntervalTree(Stream<? extends T> s) {
+        this(s.collect(Collectors.toList()));
+    }
 
     ///////////////////////////////////
     // Tree -- General query methods //
@@ -143,7 +195,7 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
      * An Iterator which traverses the tree in ascending order.
      */
     public Iterator<T> iterator() {
-        return new TreeIterator(root);
+        return new TreeIterator(root.minimumNode());
     }
     
     /**
@@ -152,7 +204,18 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
      * @param t - the overlapping Interval
      */
     public Iterator<T> overlappers(T t) {
-        return root.overlappers(t);
+        return root.overlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * An Iterator over the Intervals in this IntervalTree that overlap
+     * [start, end), in ascending order
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public Iterator<T> overlappers(int start, int end) {
+        return root.overlappers(start, end);
     }
     
     /**
@@ -164,13 +227,34 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
         return !root.anyOverlappingNode(t).isNil();
     }
     
+    /**
+     * Whether or not any of the Intervals in this IntervalTree overlap
+     * [start, end)
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    @Override
+    public boolean overlaps(int start, int end) {
+        return !root.anyOverlappingNode(start, end).isNil();
+    }
+    
     /**
      * The number of Intervals in this IntervalTree that overlap the given
      * Interval
      * @param t - the overlapping Interval
      */
     public int numOverlappers(T t) {
-        return root.numOverlappingNodes(t);
+        return root.numOverlappingNodes(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * The number of Intervals in this IntervalTree that overlap [start, end)
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public int numOverlappers(int start, int end) {
+        return root.numOverlappingNodes(start, end);
     }
     
     /**
@@ -181,10 +265,128 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
      * is no overlap), an empty Optional
      */
     public Optional<T> minimumOverlapper(T t) {
-        Node n = root.minimumOverlappingNode(t);
+        Node n = root.minimumOverlappingNode(t.getStart(), t.getEnd());
         return n.isNil() ? Optional.empty() : Optional.of(n.interval());
     }
     
+    /**
+     * Passes each Interval in this IntervalTree that overlaps [start, end) to the
+     * given visitor, in ascending order, until the visitor returns false.
+     * <p>
+     * This method walks the tree directly and does not allocate an Iterator.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor) {
+        for (Node n = root.minimumOverlappingNode(start, end); !n.isNil();
+                n = n.nextOverlappingNode(start, end)) {
+            if (!visitor.test(n.interval)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * An Iterator over the Intervals in this IntervalTree which end at or
+     * before the given position, nearest first, i.e., in descending order of
+     * end.
+     * <p>
+     * This is a best-first search of the tree. A subtree is entered only if
+     * its minimum end is at or before the position, and the subtrees and Nodes
+     * found so far are kept in a priority queue by the greatest end they can
+     * contain, bounded by their maxEnd. A subtree holding an Interval which
+     * contains the position can only be bounded by the position itself, so
+     * every such subtree is searched before any Interval is returned. The
+     * first k Intervals are therefore found in O((k + c + 1) log^2 n) time,
+     * where c is the number of Intervals containing the position.
+     * @param position - the position the Intervals must end at or before
+     */
+    @Override
+    public Iterator<T> preceding(int position) {
+        return new PrecedingIterator(root, position);
+    }
+    
+    /**
+     * An Iterator over the Intervals in this IntervalTree which start at or
+     * after the given position, nearest first, i.e., in ascending order.
+     * <p>
+     * The first such Interval is found in O(log n) time, and each following
+     * one in amortized constant time.
+     * @param position - the position the Intervals must start at or after
+     */
+    @Override
+    public Iterator<T> following(int position) {
+        return new TreeIterator(root.ceilingNode(position));
+    }
+    
+    /**
+     * A Spliterator over the Intervals in this IntervalTree, in ascending
+     * order.
+     * <p>
+     * The Spliterator is SIZED and SUBSIZED. It splits its range of Intervals
+     * in half by rank, which for the whole tree is the boundary between the
+     * root's subtrees, so a parallel Stream over it divides its work evenly.
+     * Locating the first Interval of a split takes O(log n) time. This
+     * IntervalTree must not be modified while the Spliterator is in use.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new TreeSpliterator(0, size);
+    }
+    
+    /**
+     * A sequential Stream of the Intervals in this IntervalTree, in
+     * ascending order.
+     * <p>
+     * The Stream is backed by {@link #spliterator()}, so calling parallel()
+     * on it splits the work across the tree.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    /**
+     * A sequential Stream of the Intervals in this IntervalTree that overlap
+     * the given Interval, in ascending order.
+     * @param t - the overlapping Interval
+     * @see #overlapperStream(int, int)
+     */
+    public Stream<T> overlapperStream(T t) {
+        return overlapperStream(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * A sequential Stream of the Intervals in this IntervalTree that overlap
+     * [start, end), in ascending order.
+     * <p>
+     * Only the Intervals which start before end can overlap. The Stream's
+     * Spliterator splits the range of ranks from the least overlapper to the
+     * last of these in half, so calling parallel() on the Stream divides a
+     * large result set across the tree. As the number of overlappers in each
+     * half is not known in advance, the Spliterator is not SIZED.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    public Stream<T> overlapperStream(int start, int end) {
+        return StreamSupport.stream(new OverlapperSpliterator(start, end), false);
+    }
+    
+    /**
+     * An immutable, array-backed snapshot of this IntervalTree.
+     * <p>
+     * A FrozenIntervalTree answers the same overlap queries as this tree,
+     * but stores its Intervals in flat arrays rather than in Nodes. Use it
+     * for trees which are no longer modified once loaded.
+     */
+    public FrozenIntervalTree<T> freeze() {
+        return new FrozenIntervalTree<>(this);
+    }
+    
     ///////////////////////////////
     // Tree -- Insertion methods //
     ///////////////////////////////
@@ -207,11 +409,16 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
 
         while (!x.isNil()) {                         // Traverse the tree down to a leaf.
             y = x;
-            x.maxEnd = Math.max(x.maxEnd, z.maxEnd); // Update maxEnd on the way down.
+            x.maxEnd = Math.max(x.maxEnd, z.maxEnd); // Update maxEnd and minEnd on
+            x.minEnd = Math.min(x.minEnd, z.minEnd); // the way down.
             int cmp = z.compareTo(x);
-            if (cmp == 0) {
-                return false;                        // Value already in tree. Do nothing.
+            if (cmp == 0) {                          // Value already in tree. Undo the
+                for (Node n = x.parent; !n.isNil(); n = n.parent) {   // size updates
+                    n.subtreeSize--;                 // and do nothing.
+                }
+                return false;
             }
+            x.subtreeSize++;                         // Update subtreeSize on the way down.
             x = cmp == -1 ? x.left : x.right;
         }
 
@@ -284,24 +491,466 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
      * unchanged.
      * @param t - the overlapping Interval
      * @return whether or not an Interval was removed from this IntervalTree
+     * @see #deleteOverlappers(int, int)
      */
     public boolean deleteOverlappers(T t) {
-        // TODO 
-        // Replacing the line
-        //    s.forEach(n -> delete(n.interval()))
-        // with
-        //    s.forEach(n -> n.delete())
-        // causes a NullPointerException in resetMaxEnd(). Why?!
-        //
-        // As it stands, every deletion operation causes the tree
-        // to be searched. Fix this, please.
+        return deleteOverlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * Deletes all Intervals that overlap [start, end) from this IntervalTree.
+     * <p>
+     * The overlapping Intervals which start within [start, end) are adjacent
+     * in the tree, so rather than being deleted one at a time, they are cut
+     * out all at once: the tree is split just before and just after them,
+     * and the two remaining pieces are joined back together, in O(log n)
+     * time however many Intervals are removed. The overlapping Intervals
+     * which start before start (that is, those which contain it) are deleted
+     * individually, as the walk over the overlappers reaches them. Deleting
+     * any number of Intervals, c of which contain start, therefore takes
+     * O((c + 1) log n) time.
+     * <p>
+     * If there are no overlapping Intervals, this IntervalTree remains
+     * unchanged.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @return whether or not an Interval was removed from this IntervalTree
+     */
+    public boolean deleteOverlappers(int start, int end) {
+        boolean changed = deleteContaining(start, end);
+        if (start < end) {
+            changed |= deleteStartingIn(start, end);
+        }
+        return changed;
+    }
+    
+    /**
+     * Deletes the Nodes which overlap [start, end) but start before start,
+     * i.e., which contain start, as the walk over the overlappers finds them.
+     * <p>
+     * A Node with two children is deleted by moving the Interval which
+     * follows it into it, so the walk then looks at the same Node again.
+     * Otherwise, the next overlapping Node is found before the Node is
+     * deleted. No Node is searched for from the root.
+     * @return whether or not an Interval was removed from this IntervalTree
+     */
+    private boolean deleteContaining(int start, int end) {
+        boolean changed = false;
+        Node n = root.minimumOverlappingNode(start, end);
+        while (!n.isNil() && n.getStart() < start) {
+            changed = true;
+            if (n.hasTwoChildren()) {
+                n.delete();
+                if (!n.overlaps(start, end)) {
+                    n = n.nextOverlappingNode(start, end);
+                }
+            } else {
+                Node next = n.nextOverlappingNode(start, end);
+                n.delete();
+                n = next;
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Cuts the Nodes which start in [start, end) out of this IntervalTree and
+     * deletes their Intervals, except for any empty Intervals which do not
+     * overlap [start, end).
+     * <p>
+     * Only empty Intervals which start at start can be such Intervals, and
+     * they would be in the first Node cut. That Node is taken off the cut and
+     * joined back between the two remaining pieces of the tree, rather than
+     * being inserted again.
+     * @return whether or not an Interval was removed from this IntervalTree
+     */
+    private boolean deleteStartingIn(int start, int end) {
+        Node n = detachRoot();
+        Split before = split(n, start);
+        Split after = split(before.right, end);
 
-        Set<Node> s = new HashSet<Node>();
-        Iterator<Node> iter = new OverlappingNodeIterator(root, t);
-        iter.forEachRemaining(s::add);
-        return s.stream()
-                .map(n -> delete(n.interval))
-                .reduce(false, (a, b) -> a || b);
+        Node cut = after.left;
+        Node first = cut.minimumNode();
+        if (!first.isNil() && !first.overlaps(start, end)) {
+            cut = removeMinimum(cut);
+            root = join(before.left, first, after.right);
+        } else {
+            root = join(before.left, after.right);
+        }
+        root.blacken();
+
+        size -= cut.subtreeSize;
+        return !cut.isNil();
+    }
+
+    //////////////////////////////////
+    // Tree -- Bulk-loading methods //
+    //////////////////////////////////
+    
+    /**
+     * Whether or not the given intervals are in ascending order.
+     */
+    private static boolean isSorted(Interval[] a) {
+        for (int i = 1; i < a.length; i++) {
+            if (a[i - 1].compareTo(a[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * The depth at which the nodes of a bulk-loaded tree are colored red.
+     * <p>
+     * A tree of n nodes built by repeatedly splitting at the midpoint has
+     * floor(log2(n + 1)) completely filled levels. Coloring those levels
+     * black and the partially filled level beneath them red gives every
+     * root-to-leaf path the same black-height.
+     * @param n - the number of nodes in the tree
+     */
+    private static int redDepth(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n + 1);
+    }
+    
+    /**
+     * Links the given Nodes, which must be in ascending order, into a
+     * balanced subtree.
+     * @param nodes - the Nodes to link
+     * @param lo - the index of the first Node in the subtree, inclusive
+     * @param hi - the index of the last Node in the subtree, exclusive
+     * @param depth - the depth of the subtree's root
+     * @param redDepth - the depth at which Nodes are colored red
+     * @return the root of the subtree, or the sentinel Node if it is empty
+     */
+    private Node buildSubtree(List<Node> nodes, int lo, int hi, int depth, int redDepth) {
+        if (lo >= hi) {
+            return nil;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        Node n = nodes.get(mid);
+
+        n.left = buildSubtree(nodes, lo, mid, depth + 1, redDepth);
+        if (!n.left.isNil()) {
+            n.left.parent = n;
+        }
+
+        n.right = buildSubtree(nodes, mid + 1, hi, depth + 1, redDepth);
+        if (!n.right.isNil()) {
+            n.right.parent = n;
+        }
+
+        if (depth == redDepth) {
+            n.redden();
+        } else {
+            n.blacken();
+        }
+        n.resetMaxEnd();
+        n.subtreeSize = hi - lo;
+        return n;
+    }
+
+    ////////////////////////////////////
+    // Tree -- Split and join methods //
+    ////////////////////////////////////
+    
+    /**
+     * Splits this IntervalTree at the given position.
+     * <p>
+     * The Intervals which start at or after the position are removed from
+     * this IntervalTree and returned in a new IntervalTree; those which start
+     * before it remain. This IntervalTree is split in place, in O(log n)
+     * time. Every Node belongs to the tree which created it, though, so the
+     * Nodes split off cannot be moved to the new IntervalTree: it is built
+     * bottom-up from new Nodes, as by the constructor, but without sorting
+     * or checking for duplicates. Splitting off m Intervals therefore takes
+     * O(m + log n) time in all, which is cheap near the end of the tree
+     * but costs as much as a copy near its start.
+     * @param position - the position at which to split this IntervalTree
+     * @return a new IntervalTree containing the Intervals which start at or
+     * after the given position
+     */
+    public IntervalTree<T> split(int position) {
+        Node n = detachRoot();
+        Split s = split(n, position);
+        root = s.left;
+        root.blacken();
+        size = root.subtreeSize;
+
+        IntervalTree<T> upper = new IntervalTree<>();
+        List<Node> nodes = new ArrayList<>(s.right.subtreeSize);
+        new TreeIterator(s.right.minimumNode()).forEachRemaining(t -> nodes.add(upper.new Node(t)));
+        upper.root = upper.buildSubtree(nodes, 0, nodes.size(), 0, redDepth(nodes.size()));
+        upper.size = nodes.size();
+        return upper;
+    }
+    
+    /**
+     * Adds the Intervals of the given IntervalTree to this IntervalTree.
+     * <p>
+     * As with insert(), an Interval is not added if this IntervalTree already
+     * contains an Interval with identical coordinates. The given IntervalTree
+     * remains unchanged.
+     * <p>
+     * Rather than inserting the other tree's Intervals one at a time, this
+     * method copies them into a tree of new Nodes, in linear time, and merges
+     * the two trees by recursively splitting and joining them. Adding m
+     * Intervals to a tree of n Intervals therefore takes O(m log(n/m + 1))
+     * time, which is much less than O(m log(m + n)) when m is small or the
+     * two trees' Intervals are largely disjoint.
+     * @param other - the IntervalTree whose Intervals to add
+     * @return whether or not this IntervalTree changed
+     * @see - Blelloch, Ferizovic and Sun, "Just Join for Parallel Ordered
+     * Sets", SPAA 2016.
+     */
+    public boolean union(IntervalTree<? extends T> other) {
+        List<Node> nodes = new ArrayList<>(other.size());
+        other.forEach(t -> nodes.add(new Node(t)));
+        Node copy = buildSubtree(nodes, 0, nodes.size(), 0, redDepth(nodes.size()));
+        copy.detach(blackHeight(copy));
+
+        Node n = detachRoot();
+        root = union(n, copy);
+        root.blacken();
+        
+        int oldSize = size;
+        size = root.subtreeSize;
+        return size != oldSize;
+    }
+    
+    /**
+     * The two subtrees a subtree is split into. Each is detached, i.e., its
+     * root has no parent, and either may be empty.
+     */
+    private class Split {
+        
+        private Node left;
+        private Node right;
+        
+        private Split(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+    
+    /**
+     * Splits the given detached subtree into the Nodes which start before the
+     * given coordinate and the Nodes which do not.
+     * <p>
+     * The subtree is taken apart along the search path for the coordinate,
+     * and the pieces hanging off either side of the path are joined back
+     * together. Each join takes time proportional to the difference between
+     * the black heights of the subtrees it joins, and these differences sum
+     * to O(log n) down the path, so the split takes O(log n) time.
+     * @param n - the root of the subtree to split
+     * @param coord - the coordinate at which to split the subtree
+     */
+    private Split split(Node n, int coord) {
+        if (n.isNil()) {
+            return new Split(nil, nil);
+        }
+
+        Node l = n.left;
+        Node r = n.right;
+        detachChildren(n);
+
+        if (n.getStart() < coord) {
+            Split s = split(r, coord);
+            s.left = join(l, n, s.left);
+            return s;
+        }
+        Split s = split(l, coord);
+        s.right = join(s.right, n, r);
+        return s;
+    }
+    
+    /**
+     * Splits the given detached subtree into the Nodes which are less than
+     * the given key and the Nodes which are greater than it. A Node equal to
+     * the key is discarded.
+     * @param n - the root of the subtree to split
+     * @param key - the Interval at which to split the subtree
+     */
+    private Split split(Node n, Interval key) {
+        if (n.isNil()) {
+            return new Split(nil, nil);
+        }
+
+        Node l = n.left;
+        Node r = n.right;
+        detachChildren(n);
+
+        int cmp = n.compareTo(key);
+        if (cmp < 0) {
+            Split s = split(r, key);
+            s.left = join(l, n, s.left);
+            return s;
+        }
+        if (cmp > 0) {
+            Split s = split(l, key);
+            s.right = join(s.right, n, r);
+            return s;
+        }
+        return new Split(l, r);
+    }
+    
+    /**
+     * Merges two detached subtrees into a single detached subtree. Where the
+     * two subtrees have equal Nodes, the Node from a is kept.
+     * <p>
+     * The root of a splits b in two, and each half of b is merged with the
+     * corresponding child of a before the results are joined under a's root.
+     * @return the root of the merged subtree
+     */
+    private Node union(Node a, Node b) {
+        if (a.isNil()) {
+            return b;
+        }
+        if (b.isNil()) {
+            return a;
+        }
+
+        Node l = a.left;
+        Node r = a.right;
+        detachChildren(a);
+
+        Split s = split(b, a);
+        return join(union(l, s.left), a, union(r, s.right));
+    }
+    
+    /**
+     * Joins two detached subtrees, all of whose Nodes in l precede all of
+     * whose Nodes in r, into a single detached subtree.
+     * @return the root of the joined subtree
+     */
+    private Node join(Node l, Node r) {
+        if (l.isNil()) {
+            return r;
+        }
+        if (r.isNil()) {
+            return l;
+        }
+        Node k = r.minimumNode();
+        return join(l, k, removeMinimum(r));
+    }
+    
+    /**
+     * Joins two detached subtrees and a single Node into a single detached
+     * subtree, in which the Nodes of l precede k and the Nodes of r follow it.
+     * <p>
+     * The shorter subtree (by black-height) is hung, with k as its new parent,
+     * from the spine of the taller subtree at a black Node of the same
+     * black-height. k is colored red, so only a red-red violation can result,
+     * and it is repaired as after an insertion.
+     * <p>
+     * The black heights of l and r are recorded in their roots, rather than
+     * counted, so only the spine above k is walked and updated, and the join
+     * takes O(|lh - rh| + 1) time. The black height of the joined subtree is
+     * recorded in its root in turn.
+     * @return the root of the joined subtree
+     * @see - Tarjan, "Data Structures and Network Algorithms", pp. 52-53.
+     */
+    private Node join(Node l, Node k, Node r) {
+        l.blacken();
+        r.blacken();
+        int lh = l.blackHeight;
+        int rh = r.blackHeight;
+
+        k.parent = nil;
+        if (lh == rh) {
+            k.link(l, r);
+            k.blacken();
+            k.blackHeight = lh + 1;
+            return k;
+        }
+
+        Node p = nil;
+        Node c;
+        Node top;
+        if (lh > rh) {
+            c = l;
+            for (int h = lh; c.isRed() || h > rh; c = c.right) {
+                if (!c.isRed()) {
+                    h--;
+                }
+                p = c;
+            }
+            p.right = k;
+            k.link(c, r);
+            top = l;
+        } else {
+            c = r;
+            for (int h = rh; c.isRed() || h > lh; c = c.left) {
+                if (!c.isRed()) {
+                    h--;
+                }
+                p = c;
+            }
+            p.left = k;
+            k.link(l, c);
+            top = r;
+        }
+        k.parent = p;
+        k.redden();
+
+        for (Node x = k; !x.isNil(); x = x.parent) {    // Only the spine above
+            x.resetMaxEnd();                            // k, up to the top of
+            x.resetSubtreeSize();                       // the taller subtree
+        }
+        k.insertFixup();
+        while (!top.parent.isNil()) {   // A rotation at the top lifts a Node
+            top = top.parent;           // above it
+        }
+        int h = Math.max(lh, rh);       // Unless the fixup reddened the top
+        top.blackHeight = top.isRed() ? h + 1 : h;
+        return top;
+    }
+    
+    /**
+     * Removes the least Node from the given detached subtree.
+     * @return the root of the remaining subtree, detached
+     */
+    private Node removeMinimum(Node n) {
+        Node l = n.left;
+        Node r = n.right;
+        detachChildren(n);
+        return l.isNil() ? r : join(removeMinimum(l), n, r);
+    }
+    
+    /**
+     * Detaches the root of this tree, leaving the tree empty, so that it can
+     * be split or joined. Its black height is found once, here, and is passed
+     * down from each detached subtree to the subtrees split from it.
+     * @return the root, detached
+     */
+    private Node detachRoot() {
+        Node n = root;
+        root = nil;     // The pieces are detached until they are rejoined
+        n.detach(blackHeight(n));
+        return n;
+    }
+    
+    /**
+     * Detaches both children of the given Node, itself the root of a detached
+     * subtree, and records their black heights.
+     */
+    private void detachChildren(Node n) {
+        n.left.detach(n.blackHeight - 1);
+        n.right.detach(n.blackHeight - 1);
+    }
+    
+    /**
+     * The number of black Nodes on any path from the given Node down to a
+     * leaf, including the Node itself.
+     */
+    private int blackHeight(Node n) {
+        int height = 0;
+        for (; !n.isNil(); n = n.left) {
+            if (!n.isRed()) {
+                height++;
+            }
+        }
+        return height;
     }
 
     /**
@@ -320,6 +969,9 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
         private Node right;
         private boolean isBlack;
         private int maxEnd;
+        private int minEnd;       // Least end in this Node's subtree
+        private int subtreeSize;  // Number of Nodes in this Node's subtree
+        private int blackHeight;  // Of this Node's subtree, while detached
 
         /**
          * Constructs a Node with no data.
@@ -345,6 +997,8 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
             left = nil;
             right = nil;
             maxEnd = interval.getEnd();
+            minEnd = maxEnd;
+            subtreeSize = 1;
             redden();
         }
         
@@ -463,10 +1117,37 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
             return y;
         }
         
+        /**
+         * The least Node in this Node's subtree which starts at or after the
+         * given position.
+         * @return the least such Node, if one exists; otherwise, the sentinel
+         * Node
+         */
+        private Node ceilingNode(int position) {
+            Node rtrn = nil;
+            Node x = this;
+            while (!x.isNil()) {
+                if (x.getStart() >= position) {
+                    rtrn = x;
+                    x = x.left;
+                } else {
+                    x = x.right;
+                }
+            }
+            return rtrn;
+        }
+        
         ///////////////////////////////////////
         // Node -- Overlapping query methods //
         ///////////////////////////////////////
         
+        /**
+         * Whether or not this Node overlaps [start, end).
+         */
+        private boolean overlaps(int start, int end) {
+            return getStart() < end && start < getEnd();
+        }
+        
         /**
          * Returns a Node from this Node's subtree that overlaps the given
          * Interval.
@@ -489,20 +1170,36 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
         }
         
         /**
-         * Returns the minimum Node from this Node's subtree that overlaps the
-         * given Interval.
-         * @param t - the given Interval
-         * @return the minimum Node from this Node's subtree that overlaps the
-         * Interval t, if one exists; otherwise, the sentinel Node
+         * Returns a Node from this Node's subtree that overlaps [start, end).
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
+         * @return an overlapping Node from this Node's subtree, if one exists;
+         * otherwise the sentinel Node
+         */
+        private Node anyOverlappingNode(int start, int end) {
+            Node x = this;
+            while (!x.isNil() && !x.overlaps(start, end)) {
+                x = !x.left.isNil() && x.left.maxEnd > start ? x.left : x.right;
+            }
+            return x;
+        }
+        
+        /**
+         * Returns the minimum Node from this Node's subtree that overlaps
+         * [start, end).
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
+         * @return the minimum Node from this Node's subtree that overlaps
+         * [start, end), if one exists; otherwise, the sentinel Node
          */
-        private Node minimumOverlappingNode(T t) {
+        private Node minimumOverlappingNode(int start, int end) {
 
             Node result = nil;
             Node n = this;
 
-            if (!n.isNil() && n.maxEnd > t.getStart()) {
+            if (!n.isNil() && n.maxEnd > start) {
                 while (true) {
-                    if (n.overlaps(t)) {
+                    if (n.overlaps(start, end)) {
 
                         // This node overlaps. There may be a lesser overlapper
                         // down the left subtree. No need to consider the right
@@ -511,7 +1208,7 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
                         result = n;
                         n = n.left;
 
-                        if (n.isNil() || n.maxEnd <= t.getStart()) {
+                        if (n.isNil() || n.maxEnd <= start) {
                             // Either no left subtree, or nodes can't overlap.
                             break;
                         }
@@ -521,20 +1218,20 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
                         // Check the left subtree if an overlapper may be there
 
                         Node left = n.left;
-                        if (!left.isNil() && left.maxEnd > t.getStart()) {
+                        if (!left.isNil() && left.maxEnd > start) {
                             n = left;
                         } else {
                             
                         // Left subtree cannot contain an overlapper. Check the
                         // right sub-tree.
                         
-                            if (n.getStart() >= t.getEnd()) {
+                            if (n.getStart() >= end) {
                                 // Nothing in the right subtree can overlap
                                 break;
                             }
 
                             n = n.right;
-                            if (n.isNil() || n.maxEnd <= t.getStart()) {
+                            if (n.isNil() || n.maxEnd <= start) {
                                 // No right subtree, or nodes can't overlap.
                                 break;
                             }
@@ -547,36 +1244,37 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
         }
         
         /**
-         * An Iterator over all values in this Node's subtree that overlap the
-         * given Interval t.
-         * @param t - the overlapping Interval
+         * An Iterator over all values in this Node's subtree that overlap
+         * [start, end).
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
          */
-        private Iterator<T> overlappers(T t) {
-            return new OverlapperIterator(this, t);
+        private Iterator<T> overlappers(int start, int end) {
+            return new OverlapperIterator(this, start, end);
         }
         
         /**
-         * The next Node (relative to this Node) which overlaps the given
-         * Interval t
-         * @param t - the overlapping Interval
-         * @return the next Node that overlaps the Interval t, if one exists;
+         * The next Node (relative to this Node) which overlaps [start, end)
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
+         * @return the next Node that overlaps [start, end), if one exists;
          * otherwise, the sentinel Node
          */
-        private Node nextOverlappingNode(T t) {
+        private Node nextOverlappingNode(int start, int end) {
             Node x = this;
             Node rtrn = nil;
 
             // First, check the right subtree for its minimum overlapper.
             if (!right.isNil()) {
-                rtrn = x.right.minimumOverlappingNode(t);
+                rtrn = x.right.minimumOverlappingNode(start, end);
             }
             
             // If we didn't find it in the right subtree, walk up the tree and
             // check the parents of left-children as well as their right subtrees.
             while (!x.parent.isNil() && rtrn.isNil()) {
                 if (x.isLeftChild()) {
-                    rtrn = x.parent.overlaps(t) ? x.parent
-                                                : x.parent.right.minimumOverlappingNode(t);
+                    rtrn = x.parent.overlaps(start, end) ? x.parent
+                                                : x.parent.right.minimumOverlappingNode(start, end);
                 }
                 x = x.parent;
             }
@@ -584,19 +1282,20 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
         }
         
         /**
-         * The number of Nodes in this Node's subtree that overlap the given
-         * Interval t.
+         * The number of Nodes in this Node's subtree that overlap
+         * [start, end).
          * <p>
-         * This number includes this Node if this Node overlaps t. This method
+         * This number includes this Node if this Node overlaps [start, end). This method
          * iterates over all overlapping Nodes, so if you ultimately need to
          * inspect the Nodes, it will be more efficient to simply create the
          * Iterator yourself.
-         * @param t - the overlapping Interval
+         * @param start - the start of the overlapping interval
+         * @param end - the end of the overlapping interval
          * @return the number of overlapping Nodes
          */
-        private int numOverlappingNodes(T t) {
+        private int numOverlappingNodes(int start, int end) {
             int count = 0;
-            Iterator<Node> iter = new OverlappingNodeIterator(this, t);
+            Iterator<Node> iter = new OverlappingNodeIterator(this, start, end);
             
             while (iter.hasNext()) {
                 iter.next();
@@ -642,6 +1341,10 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
 
             x.parent = y.parent;
 
+            for (Node n = y.parent; !n.isNil(); n = n.parent) {
+                n.subtreeSize--;
+            }
+
             if (y.isRoot()) {
                 root = x;
             } else if (y.isLeftChild()) {
@@ -745,7 +1448,8 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
          * <li>the maxEnd value of this node's right child, if not null
          * </ul><p>
          * This method will be correct only if the left and right children have
-         * correct maxEnd values.
+         * correct maxEnd values. The minEnd value, the lowest end in this
+         * Node's subtree, is set in the same way.
          */
         private void resetMaxEnd() {
             int val = interval.getEnd();
@@ -756,6 +1460,15 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
                 val = Math.max(val, right.maxEnd);
             }
             maxEnd = val;
+            
+            val = getEnd();
+            if (!left.isNil()) {
+                val = Math.min(val, left.minEnd);
+            }
+            if (!right.isNil()) {
+                val = Math.min(val, right.minEnd);
+            }
+            minEnd = val;
         }
         
         /**
@@ -771,6 +1484,45 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
             }
         }
         
+        /**
+         * Sets the subtreeSize value for this Node from the subtreeSize values
+         * of its children.
+         */
+        private void resetSubtreeSize() {
+            subtreeSize = left.subtreeSize + right.subtreeSize + 1;
+        }
+        
+        /**
+         * Makes this Node the root of a detached subtree, and records the
+         * black height the subtree will have once this Node is blackened.
+         * The sentinel Node is left unchanged; its black height is always 0.
+         * @param height - the number of black Nodes on any path from this
+         * Node down to a leaf, including this Node
+         */
+        private void detach(int height) {
+            if (!isNil()) {
+                parent = nil;
+                blackHeight = isRed() ? height + 1 : height;
+            }
+        }
+        
+        /**
+         * Makes the given Nodes the children of this Node, and resets this
+         * Node's maxEnd and subtreeSize values from them.
+         */
+        private void link(Node l, Node r) {
+            left = l;
+            right = r;
+            if (!l.isNil()) {
+                l.parent = this;
+            }
+            if (!r.isNil()) {
+                r.parent = this;
+            }
+            resetMaxEnd();
+            resetSubtreeSize();
+        }
+        
         /**
          * Performs a left-rotation on this Node.
          * @see - Cormen et al. "Introduction to Algorithms", 2nd ed, pp. 277-279.
@@ -786,7 +1538,9 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
             y.parent = parent;
             
             if (parent.isNil()) {
-                root = y;
+                if (this == root) {     // Not the top of a detached subtree
+                    root = y;
+                }
             } else if (isLeftChild()) {
                 parent.left = y;
             } else {
@@ -798,6 +1552,8 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
             
             resetMaxEnd();
             y.resetMaxEnd();
+            y.subtreeSize = subtreeSize;
+            resetSubtreeSize();
         }
         
         /**
@@ -815,7 +1571,9 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
             y.parent = parent;
             
             if (parent.isNil()) {
-                root = y;
+                if (this == root) {     // Not the top of a detached subtree
+                    root = y;
+                }
             } else if (isLeftChild()) {
                 parent.left = y;
             } else {
@@ -827,6 +1585,8 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
             
             resetMaxEnd();
             y.resetMaxEnd();
+            y.subtreeSize = subtreeSize;
+            resetSubtreeSize();
         }
 
         /**
@@ -1015,6 +1775,30 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
             }
         }
         
+        /**
+         * Whether or not the subtree rooted at this Node has consistent minEnd
+         * values.
+         * <p>
+         * The minEnd value of a Node is equal to the minimum of the end-values
+         * of all intervals contained in the Node's subtree.
+         */
+        private boolean hasConsistentMinEnds() {
+            int val = getEnd();
+            if (!left.isNil()) {
+                if (!left.hasConsistentMinEnds()) {
+                    return false;
+                }
+                val = Math.min(val, left.minEnd);
+            }
+            if (!right.isNil()) {
+                if (!right.hasConsistentMinEnds()) {
+                    return false;
+                }
+                val = Math.min(val, right.minEnd);
+            }
+            return minEnd == val;
+        }
+        
         /**
          * Whether or not the subtree rooted at this Node has consistent maxEnd
          * values.
@@ -1049,6 +1833,22 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
                 }
             }
         }
+        
+        /**
+         * Whether or not the subtree rooted at this Node has consistent
+         * subtreeSize values.
+         * <p>
+         * The subtreeSize value of a Node is one more than the sum of the
+         * subtreeSize values of its children. The sentinel's is zero.
+         */
+        private boolean hasConsistentSizes() {
+            if (isNil()) {
+                return subtreeSize == 0;
+            }
+            return subtreeSize == left.subtreeSize + right.subtreeSize + 1 &&
+                   left.hasConsistentSizes() &&
+                   right.hasConsistentSizes();
+        }
     }
     
     ///////////////////////
@@ -1056,14 +1856,15 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
     ///////////////////////
     
     /**
-     * An Iterator which walks along this IntervalTree's Nodes in ascending order.
+     * An Iterator which walks along this IntervalTree's Nodes in ascending
+     * order, from a given Node.
      */
     private class TreeNodeIterator implements Iterator<Node> {
 
         private Node next;
         
-        private TreeNodeIterator(Node root) {
-            next = root.minimumNode();
+        private TreeNodeIterator(Node first) {
+            next = first;
         }
         
         @Override
@@ -1084,7 +1885,7 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
 
     /**
      * An Iterator which walks along this IntervalTree's Intervals in ascending
-     * order.
+     * order, from a given Node.
      * <p>
      * This class just wraps a TreeNodeIterator and extracts each Node's Interval.
      */
@@ -1092,8 +1893,8 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
         
         private TreeNodeIterator nodeIter;
         
-        private TreeIterator(Node root) {
-            nodeIter = new TreeNodeIterator(root);
+        private TreeIterator(Node first) {
+            nodeIter = new TreeNodeIterator(first);
         }
 
         @Override
@@ -1114,11 +1915,13 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
     private class OverlappingNodeIterator implements Iterator<Node> {
         
         private Node next;
-        private T interval;
+        private int start;
+        private int end;
         
-        private OverlappingNodeIterator(Node root, T t) {
-            interval = t;
-            next = root.minimumOverlappingNode(interval);
+        private OverlappingNodeIterator(Node root, int start, int end) {
+            this.start = start;
+            this.end = end;
+            next = root.minimumOverlappingNode(start, end);
         }
         
         @Override
@@ -1132,7 +1935,7 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
                 throw new NoSuchElementException("Interval tree has no more overlapping elements.");
             }
             Node rtrn = next;
-            next = rtrn.nextOverlappingNode(interval);
+            next = rtrn.nextOverlappingNode(start, end);
             return rtrn;
         }
     }
@@ -1148,8 +1951,8 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
         
         private OverlappingNodeIterator nodeIter;
         
-        private OverlapperIterator(Node root, T t) {
-            nodeIter = new OverlappingNodeIterator(root, t);
+        private OverlapperIterator(Node root, int start, int end) {
+            nodeIter = new OverlappingNodeIterator(root, start, end);
         }
 
         @Override
@@ -1163,6 +1966,334 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
         }
     }
 
+    /**
+     * An Iterator which walks along this IntervalTree's Nodes that end at or
+     * before a given position, in descending order of end.
+     * <p>
+     * The queue holds both subtrees still to be searched and Nodes already
+     * known to end at or before the position. A subtree is queued by the
+     * least of its maxEnd and the position, which bounds the end of any Node
+     * in it that could be returned, and a Node by its own end. When a Node
+     * reaches the head of the queue, no Node still to be found can end after
+     * it. The bound of a subtree is exact unless it holds a Node ending after
+     * the position, as the best end at or before the position cannot be
+     * maintained as the tree is modified.
+     */
+    private class PrecedingNodeIterator implements Iterator<Node> {
+        
+        private final int position;
+        private final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        private Node next;
+        
+        private PrecedingNodeIterator(Node root, int position) {
+            this.position = position;
+            addSubtree(root);
+            next = findNext();
+        }
+        
+        /**
+         * Queues the subtree rooted at n, unless no Node in it ends at or
+         * before the position.
+         */
+        private void addSubtree(Node n) {
+            if (!n.isNil() && n.minEnd <= position) {
+                queue.add(new Candidate(n, true, Math.min(n.maxEnd, position)));
+            }
+        }
+        
+        private Node findNext() {
+            while (!queue.isEmpty()) {
+                Candidate c = queue.poll();
+                if (!c.isSubtree) {
+                    return c.node;
+                }
+                Node n = c.node;
+                if (n.getEnd() <= position) {
+                    queue.add(new Candidate(n, false, n.getEnd()));
+                }
+                addSubtree(n.left);
+                if (n.getStart() <= position) { // Nodes to the right start at
+                    addSubtree(n.right);        // or after n, so can only end at
+                }                               // or before the position if n
+                                                // starts at or before it.
+            }
+            return nil;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return !next.isNil();
+        }
+        
+        @Override
+        public Node next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Interval tree has no more preceding elements.");
+            }
+            Node rtrn = next;
+            next = findNext();
+            return rtrn;
+        }
+    }
+    
+    /**
+     * A subtree or single Node queued by a PrecedingNodeIterator, with the
+     * greatest end it can contribute.
+     */
+    private class Candidate implements Comparable<Candidate> {
+        
+        private final Node node;
+        private final boolean isSubtree;
+        private final int bound;
+        
+        private Candidate(Node node, boolean isSubtree, int bound) {
+            this.node = node;
+            this.isSubtree = isSubtree;
+            this.bound = bound;
+        }
+        
+        @Override
+        public int compareTo(Candidate o) {
+            return Integer.compare(o.bound, bound);     // Greatest bound first
+        }
+    }
+    
+    /**
+     * An Iterator which walks along this IntervalTree's Intervals that end at
+     * or before a given position, in descending order of end.
+     * <p>
+     * This class just wraps a PrecedingNodeIterator and extracts each Node's
+     * Interval.
+     */
+    private class PrecedingIterator implements Iterator<T> {
+        
+        private PrecedingNodeIterator nodeIter;
+        
+        private PrecedingIterator(Node root, int position) {
+            nodeIter = new PrecedingNodeIterator(root, position);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return nodeIter.hasNext();
+        }
+        
+        @Override
+        public T next() {
+            return nodeIter.next().interval;
+        }
+    }
+    
+    //////////////////////////
+    // Tree -- Rank methods //
+    //////////////////////////
+    
+    /**
+     * The Node with the given rank, i.e., the Node preceded by rank Nodes.
+     * @param rank - the rank of the Node, from zero
+     * @return the Node with the given rank, if rank is less than the size of
+     * this tree; otherwise, the sentinel Node
+     */
+    private Node select(int rank) {
+        Node x = root;
+        while (!x.isNil()) {
+            int leftSize = x.left.subtreeSize;
+            if (rank < leftSize) {
+                x = x.left;
+            } else if (rank > leftSize) {
+                rank -= leftSize + 1;
+                x = x.right;
+            } else {
+                break;
+            }
+        }
+        return x;
+    }
+    
+    /**
+     * The rank of the given Node, i.e., the number of Nodes preceding it.
+     * @param n - a Node in this tree
+     */
+    private int rank(Node n) {
+        int rank = n.left.subtreeSize;
+        while (!n.isRoot()) {
+            if (n.isRightChild()) {
+                rank += n.parent.left.subtreeSize + 1;
+            }
+            n = n.parent;
+        }
+        return rank;
+    }
+    
+    /**
+     * The number of Nodes which start before the given coordinate.
+     */
+    private int numStartingBefore(int coord) {
+        int count = 0;
+        Node x = root;
+        while (!x.isNil()) {
+            if (x.getStart() < coord) {
+                count += x.left.subtreeSize + 1;
+                x = x.right;
+            } else {
+                x = x.left;
+            }
+        }
+        return count;
+    }
+    
+    //////////////////////////
+    // Tree -- Spliterators //
+    //////////////////////////
+    
+    /**
+     * A Spliterator over the Intervals of this IntervalTree with ranks in
+     * [lo, hi).
+     * <p>
+     * The first Node is located lazily, so that a Spliterator which is split
+     * before it is traversed does not search the tree needlessly.
+     */
+    private class TreeSpliterator implements Spliterator<T> {
+        
+        private int lo;
+        private final int hi;
+        private Node next;  // The Node with rank lo, or null if not yet located
+        
+        private TreeSpliterator(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (lo >= hi) {
+                return false;
+            }
+            if (next == null) {
+                next = select(lo);
+            }
+            action.accept(next.interval);
+            next = next.successor();
+            lo++;
+            return true;
+        }
+        
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            while (tryAdvance(action));
+        }
+        
+        @Override
+        public Spliterator<T> trySplit() {
+            if (hi - lo < 2) {
+                return null;
+            }
+            int mid = (lo + hi) >>> 1;
+            TreeSpliterator prefix = new TreeSpliterator(lo, mid);
+            prefix.next = next;
+            lo = mid;
+            next = null;
+            return prefix;
+        }
+        
+        @Override
+        public long estimateSize() {
+            return hi - lo;
+        }
+        
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+        }
+        
+        @Override
+        public Comparator<? super T> getComparator() {
+            return null;    // Intervals are Comparable
+        }
+    }
+    
+    /**
+     * A Spliterator over the Intervals of this IntervalTree that overlap
+     * [start, end), and that precede the fence Node.
+     * <p>
+     * The ranks lo and hi bound the remaining overlappers, and are used to
+     * estimate the size of and to split this Spliterator.
+     */
+    private class OverlapperSpliterator implements Spliterator<T> {
+        
+        private final int start;
+        private final int end;
+        private Node next;          // The next overlapping Node
+        private final Node fence;   // The first Node not covered, or the sentinel
+        private int lo;             // The rank of next
+        private final int hi;       // No Node from rank hi onwards overlaps
+        
+        private OverlapperSpliterator(int start, int end) {
+            this.start = start;
+            this.end = end;
+            next = root.minimumOverlappingNode(start, end);
+            fence = nil;
+            lo = next.isNil() ? 0 : rank(next);
+            hi = next.isNil() ? 0 : numStartingBefore(end);
+        }
+        
+        private OverlapperSpliterator(OverlapperSpliterator s, Node fence, int hi) {
+            start = s.start;
+            end = s.end;
+            next = s.next;
+            lo = s.lo;
+            this.fence = fence;
+            this.hi = hi;
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (next.isNil() || !fence.isNil() && next.compareTo(fence) >= 0) {
+                return false;
+            }
+            action.accept(next.interval);
+            next = next.nextOverlappingNode(start, end);
+            lo++;   // A lower bound on the rank of next
+            return true;
+        }
+        
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            while (tryAdvance(action));
+        }
+        
+        @Override
+        public Spliterator<T> trySplit() {
+            if (next.isNil() || hi - lo < 2) {
+                return null;
+            }
+            int mid = (lo + hi) >>> 1;
+            Node m = select(mid);
+            if (m.isNil() || m.compareTo(next) <= 0) {
+                return null;
+            }
+            OverlapperSpliterator prefix = new OverlapperSpliterator(this, m, mid);
+            next = m.overlaps(start, end) ? m : m.nextOverlappingNode(start, end);
+            lo = mid;
+            return prefix;
+        }
+        
+        @Override
+        public long estimateSize() {
+            return Math.max(hi - lo, 0);
+        }
+        
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL;
+        }
+        
+        @Override
+        public Comparator<? super T> getComparator() {
+            return null;    // Intervals are Comparable
+        }
+    }
+    
     ///////////////////////////////
     // Tree -- Debugging methods //
     ///////////////////////////////
@@ -1234,4 +2365,32 @@ public class IntervalTree<T extends Interval> implements Iterable<T> {
     private boolean hasConsistentMaxEnds() {
         return root.hasConsistentMaxEnds();
     }
+    
+    /**
+     * Whether or not this IntervalTree has consistent minEnd values.
+     * <p>
+     * This method will only return true if each Node's minEnd is the least
+     * end in its subtree.
+     * <p>
+     * This method is used for debugging only, and its access is changed in
+     * testing.
+     */
+    @SuppressWarnings("unused")
+    private boolean hasConsistentMinEnds() {
+        return root.isNil() || root.hasConsistentMinEnds();
+    }
+    
+    /**
+     * Whether or not this IntervalTree has consistent subtree sizes.
+     * <p>
+     * This method will only return true if each Node's subtreeSize is the
+     * number of Nodes in its subtree, and the root's is the size of the tree.
+     * <p>
+     * This method is used for debugging only, and its access is changed in
+     * testing.
+     */
+    @SuppressWarnings("unused")
+    private boolean hasConsistentSizes() {
+        return root.hasConsistentSizes() && root.subtreeSize == size;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,479 @@
+package datastructures;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * An immutable Nested Containment List (NCList) of Intervals.
+ * <p>
+ * An NCList partitions its Intervals into lists in which no Interval contains
+ * another. Every Interval that is contained in some other Interval is stored
+ * in the sublist of the most recent Interval containing it. Because the
+ * Intervals of a list are sorted by both start and end, the first overlapper
+ * of a list can be found by binary search, and the overlappers that follow it
+ * are contiguous. For nested or sparsely overlapping data, such as
+ * transcript annotations, this is both smaller and faster than an augmented
+ * tree.
+ * <p>
+ * The lists are stored one after another in parallel int arrays. The list of
+ * top-level Intervals comes first, followed by each sublist.
+ * <p>
+ * Reference: Alekseyenko, A.V. and Lee, C.J. "Nested Containment List
+ * (NCList): a new algorithm for accelerating interval query of genome
+ * alignment and interval databases." Bioinformatics 23(11), 2007.
+ * @param <T> - the type of Interval this list contains
+ */
+public class NCList<T extends Interval> implements IntervalIndex<T> {
+
+    private static final Comparator<Interval> CONTAINERS_FIRST =
+            Comparator.comparingInt(Interval::getStart)
+                      .thenComparing(Comparator.comparingInt(Interval::getEnd).reversed());
+
+    private final int size;         // Number of Intervals
+    private final int topEnd;       // The top-level list occupies [0, topEnd)
+    private final int[] starts;     // Start of the Interval at each position
+    private final int[] ends;       // End of the Interval at each position
+    private final int[] subStarts;  // Each position's sublist occupies
+    private final int[] subEnds;    // [subStarts[i], subEnds[i])
+    private final int[] containers; // Position whose sublist holds each
+                                    // position, or -1 for the top level
+    private final Object[] values;  // The Interval at each position
+    private volatile IntervalCounter counter;   // Built by the first count
+
+    /**
+     * Constructs an NCList containing the given Intervals.
+     * <p>
+     * The NCList is built in a single pass over its Intervals sorted by
+     * ascending start and descending end. Input already in ascending order
+     * of start (a sorted BED file, for example) is nearly in this order and is
+     * sorted in close to linear time. Duplicates are retained.
+     * @param c - the Intervals to add to this NCList
+     */
+    public NCList(Collection<? extends T> c) {
+        Interval[] a = c.toArray(new Interval[c.size()]);
+        Arrays.sort(a, CONTAINERS_FIRST);
+
+        size = a.length;
+        starts = new int[size];
+        ends = new int[size];
+        subStarts = new int[size];
+        subEnds = new int[size];
+        containers = new int[size];
+        values = new Object[size];
+
+        // Find the parent of each Interval, i.e., the most recent Interval
+        // containing it. Any Interval on the stack which does not contain
+        // the current one cannot contain any later Interval either.
+        int[] parents = new int[size];
+        int[] numChildren = new int[size];
+        int[] stack = new int[size];
+        int top = 0;
+        int numTopLevel = 0;
+
+        for (int i = 0; i < size; i++) {
+            while (top > 0 && a[stack[top - 1]].getEnd() < a[i].getEnd()) {
+                top--;
+            }
+            if (top == 0) {
+                parents[i] = -1;
+                numTopLevel++;
+            } else {
+                parents[i] = stack[top - 1];
+                numChildren[parents[i]]++;
+            }
+            stack[top++] = i;
+        }
+
+        // Lay out the sublists after the top-level list. The stack is reused
+        // to hold the next free position in each Interval's sublist.
+        topEnd = numTopLevel;
+        int next = numTopLevel;
+        for (int i = 0; i < size; i++) {
+            stack[i] = next;
+            next += numChildren[i];
+        }
+
+        int nextTopLevel = 0;
+        for (int i = 0; i < size; i++) {
+            int pos = parents[i] == -1 ? nextTopLevel++ : stack[parents[i]]++;
+            starts[pos] = a[i].getStart();
+            ends[pos] = a[i].getEnd();
+            values[pos] = a[i];
+            subStarts[pos] = stack[i];
+            subEnds[pos] = stack[i] + numChildren[i];
+        }
+
+        Arrays.fill(containers, 0, topEnd, -1);
+        for (int pos = 0; pos < size; pos++) {
+            Arrays.fill(containers, subStarts[pos], subEnds[pos], pos);
+        }
+    }
+    
+    /**
+     * The number of Intervals stored in this NCList.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * An Iterator over all Intervals in this NCList.
+     * <p>
+     * Intervals are returned in ascending order of start, and Intervals with
+     * the same start in descending order of end. This is a depth-first walk
+     * of the lists, as every Interval in a sublist sorts after its container
+     * and before its container's next sibling.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new OverlapperIterator(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * An Iterator over the Intervals in this NCList that overlap the given
+     * Interval.
+     * <p>
+     * Overlappers are returned in depth-first order: each overlapper is
+     * followed by the overlappers it contains, before its next sibling.
+     * Overlappers are therefore not necessarily in ascending order.
+     * @param t - the overlapping Interval
+     */
+    @Override
+    public Iterator<T> overlappers(T t) {
+        return overlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * An Iterator over the Intervals in this NCList that overlap [start, end),
+     * in the same order as overlappers(T).
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public Iterator<T> overlappers(int start, int end) {
+        return new OverlapperIterator(start, end);
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this NCList overlap the given
+     * Interval.
+     * <p>
+     * Only the top-level list needs to be searched, since any Interval
+     * overlapping a contained Interval also overlaps its container.
+     * @param t - the potentially overlapping Interval
+     */
+    @Override
+    public boolean overlaps(T t) {
+        return overlaps(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this NCList overlap [start, end).
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    @Override
+    public boolean overlaps(int start, int end) {
+        int pos = firstEndingAfter(0, topEnd, start);
+        return pos < topEnd && starts[pos] < end;
+    }
+    
+    /**
+     * The number of Intervals in this NCList that overlap the given Interval.
+     * @param t - the overlapping Interval
+     */
+    @Override
+    public int numOverlappers(T t) {
+        return numOverlappers(t.getStart(), t.getEnd());
+    }
+    
+    /**
+     * The number of Intervals in this NCList that overlap [start, end).
+     * <p>
+     * Unless end is at or before start, this takes O(log n) time, regardless
+     * of the number of overlappers. The first such call also builds an
+     * {@link IntervalCounter}, in O(n log n) time, which holds sorted copies
+     * of the starts and ends of the Intervals.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public int numOverlappers(int start, int end) {
+        if (start < end) {
+            return counter().count(start, end);
+        }
+
+        int count = 0;
+        Iterator<T> iter = overlappers(start, end);
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * The IntervalCounter over the Intervals in this NCList, which is built
+     * when it is first needed, so that a list which is never counted does
+     * not hold sorted copies of its coordinates.
+     * <p>
+     * Two threads may both build it, but the counters they build are
+     * identical, so it does not matter which one is kept.
+     */
+    private IntervalCounter counter() {
+        IntervalCounter c = counter;
+        if (c == null) {
+            c = new IntervalCounter(starts, ends);
+            counter = c;
+        }
+        return c;
+    }
+    
+    /**
+     * Passes each Interval in this NCList that overlaps [start, end) to the
+     * given visitor, in depth-first order, until the visitor returns false.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor) {
+        return forEachOverlapper(start, end, null, null, visitor);
+    }
+    
+    /**
+     * Passes each Interval in this NCList that overlaps [start, end), and
+     * which the given filter accepts, to the given visitor, in depth-first
+     * order, until the visitor returns false.
+     * <p>
+     * Each position knows the position whose sublist holds it, so a
+     * finished sublist is left for the next sibling of its container without
+     * a stack. Nothing is allocated, and deeply nested Intervals, such as a
+     * pile-up of identical reads, cannot overflow the call stack.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param query - passed to the filter with each overlapping Interval
+     * @param filter - whether or not to visit an overlapping Interval
+     * @param visitor - called with each accepted Interval; returns whether or
+     * not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public <Q> boolean forEachOverlapper(int start, int end, Q query,
+            OverlapFilter<? super Q, ? super T> filter, Predicate<? super T> visitor) {
+        int container = -1;
+        int pos = firstEndingAfter(0, topEnd, start);
+        int limit = topEnd;
+
+        while (true) {
+            if (pos >= limit || starts[pos] >= end) {
+                if (container == -1) {
+                    return true;
+                }
+                pos = container + 1;
+                container = containers[container];
+                limit = container == -1 ? topEnd : subEnds[container];
+                continue;
+            }
+            T t = value(pos);
+            if ((filter == null || filter.test(query, start, end, t)) && !visitor.test(t)) {
+                return false;
+            }
+            if (subStarts[pos] < subEnds[pos]) {
+                container = pos;
+                limit = subEnds[pos];
+                pos = firstEndingAfter(subStarts[pos], limit, start);
+            } else {
+                pos++;
+            }
+        }
+    }
+    
+    /**
+     * An Iterator over the Intervals in this NCList which end at or before the
+     * given position, nearest first, i.e., in descending order of end.
+     * <p>
+     * This is a best-first search of the lists. Since the ends of a list are
+     * increasing, and every Interval ends at or after the Intervals in its
+     * sublist, the last Interval of a list ending at or before the position
+     * bounds everything before it in the list, and is found by binary search.
+     * Only the sublists of Intervals containing the position must be searched
+     * without such a bound. The first k Intervals are found in
+     * O((k + c + 1) log n) time, where c is the number of Intervals
+     * containing the position.
+     * @param position - the position the Intervals must end at or before
+     */
+    @Override
+    public Iterator<T> preceding(int position) {
+        return new PrecedingIterator(position);
+    }
+    
+    /**
+     * The Interval at the given position.
+     */
+    @SuppressWarnings("unchecked")
+    private T value(int pos) {
+        return (T) values[pos];
+    }
+    
+    /**
+     * The first position in the list [lo, hi) whose Interval ends after the
+     * given coordinate, or hi if there is none.
+     * <p>
+     * The ends of a list are strictly increasing, since no Interval in a list
+     * contains another.
+     */
+    private int firstEndingAfter(int lo, int hi, int coord) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ends[mid] > coord) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+    
+    /**
+     * An Iterator which walks this NCList's Intervals that overlap [start,
+     * end) depth-first.
+     * <p>
+     * Each stack frame holds the next position to consider in a list, and the
+     * end of that list.
+     */
+    private class OverlapperIterator implements Iterator<T> {
+
+        private final int start;
+        private final int end;
+        private int[] positions = new int[8];
+        private int[] limits = new int[8];
+        private int top = 0;
+        private int next;
+        
+        private OverlapperIterator(int start, int end) {
+            this.start = start;
+            this.end = end;
+            push(0, topEnd);
+            next = findNext();
+        }
+        
+        private void push(int lo, int hi) {
+            if (top == positions.length) {
+                positions = Arrays.copyOf(positions, 2 * top);
+                limits = Arrays.copyOf(limits, 2 * top);
+            }
+            positions[top] = firstEndingAfter(lo, hi, start);
+            limits[top] = hi;
+            top++;
+        }
+        
+        private int findNext() {
+            while (top > 0) {
+                int pos = positions[top - 1];
+                if (pos < limits[top - 1] && starts[pos] < end) {
+                    positions[top - 1]++;
+                    if (subStarts[pos] < subEnds[pos]) {
+                        push(subStarts[pos], subEnds[pos]);
+                    }
+                    return pos;
+                }
+                top--;
+            }
+            return -1;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != -1;
+        }
+        
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("NCList has no more overlapping elements.");
+            }
+            int rtrn = next;
+            next = findNext();
+            return value(rtrn);
+        }
+    }
+    
+    /**
+     * An Iterator which walks along this NCList's Intervals that end at or
+     * before a given position, in descending order of end.
+     * <p>
+     * The queue holds ranges of lists still to be searched, each with the
+     * greatest end it can contribute: the end of its last Interval, or the
+     * position if that is less. A range whose last Interval ends at or before
+     * the position is bounded exactly, so when it reaches the head of the
+     * queue, its last Interval is the next to return.
+     */
+    private class PrecedingIterator implements Iterator<T> {
+
+        private final int position;
+        private final PriorityQueue<int[]> queue =     // {bound, lo, hi}
+                new PriorityQueue<>((a, b) -> Integer.compare(b[0], a[0]));
+        private int next;
+        
+        private PrecedingIterator(int position) {
+            this.position = position;
+            addRange(0, topEnd);
+            next = findNext();
+        }
+        
+        /**
+         * Queues the range [lo, hi) of a list, unless it is empty.
+         */
+        private void addRange(int lo, int hi) {
+            if (lo < hi) {
+                queue.add(new int[] {Math.min(ends[hi - 1], position), lo, hi});
+            }
+        }
+        
+        private int findNext() {
+            while (!queue.isEmpty()) {
+                int[] c = queue.poll();
+                int lo = c[1];
+                int hi = c[2];
+                int k = firstEndingAfter(lo, hi, position);
+                if (k == hi) {
+                    addRange(lo, hi - 1);
+                    addRange(subStarts[hi - 1], subEnds[hi - 1]);
+                    return hi - 1;
+                }
+                // The Intervals in [k, hi) end after the position, but those
+                // which start at or before it may contain Intervals which do
+                // not.
+                for (int i = k; i < hi && starts[i] <= position; i++) {
+                    addRange(subStarts[i], subEnds[i]);
+                }
+                addRange(lo, k);
+            }
+            return -1;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != -1;
+        }
+        
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("NCList has no more preceding elements.");
+            }
+            int rtrn = next;
+            next = findNext();
+            return value(rtrn);
+        }
+    }
+}
@@ -0,0 +1,759 @@
+package datastructures;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A balanced binary-search tree keyed by Interval objects, which can be read
+ * from any number of threads while it is being modified.
+ * <p>
+ * Like an {@link IntervalSetTree}, this tree does not store exact duplicates,
+ * but Intervals with identical coordinates which are not equal share a Node.
+ * <p>
+ * The tree is persistent: its Nodes are never modified once constructed.
+ * Instead, insert() and delete() copy the Nodes on the path from the root to
+ * the changed Node, share every other Node with the previous version of the
+ * tree, and publish the new root with a single volatile write. A reader
+ * obtains the current version with a single volatile read, by calling
+ * {@link #snapshot()}, and is never blocked by, and never observes a partial
+ * effect of, a concurrent modification. Modifications are serialized with
+ * each other.
+ * <p>
+ * Each query method of the tree itself operates on the version current when
+ * the query began. Callers which must make several consistent queries should
+ * query a single snapshot instead.
+ * <p>
+ * The underlying data-structure is an AVL tree, which needs no parent
+ * pointers (which path copying cannot maintain) and no color bits, augmented
+ * with the maximum end of each subtree as in CLRS (Introduction to
+ * Algorithms, 2nd edition) section 14.3. Each modification copies
+ * O(log n) Nodes.
+ * @param <T> - the type of Interval this tree contains
+ */
+public class PersistentIntervalSetTree<T extends Interval> implements IntervalIndex<T> {
+
+    private volatile Snapshot<T> current;  // The latest version of the tree
+
+    /**
+     * Constructs an empty PersistentIntervalSetTree.
+     */
+    public PersistentIntervalSetTree() {
+        current = new Snapshot<>(null);
+    }
+    
+    /**
+     * Constructs a PersistentIntervalSetTree containing the given Intervals.
+     * <p>
+     * The tree is built bottom-up in O(n log n) time, or linear time if the
+     * Intervals are already in ascending order. Intervals with identical
+     * coordinates share a Node, exactly as if they had been inserted one at
+     * a time.
+     * @param c - the Intervals to add to this PersistentIntervalSetTree
+     */
+    public PersistentIntervalSetTree(Collection<? extends T> c) {
+        Interval[] a = c.toArray(new Interval[c.size()]);
+        Arrays.sort(a);
+
+        // Group the Intervals with identical coordinates, dropping duplicates
+        Node[] nodes = new Node[a.length];
+        int n = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (n > 0 && a[i].compareTo(nodes[n - 1]) == 0) {
+                Node last = nodes[n - 1];
+                if (indexOf(last.values, a[i]) == -1) {
+                    nodes[n - 1] = last.withValues(append(last.values, a[i]));
+                }
+            } else {
+                nodes[n++] = new Node(a[i].getStart(), a[i].getEnd(),
+                        new Object[] {a[i]}, null, null);
+            }
+        }
+
+        current = new Snapshot<>(buildSubtree(nodes, 0, n));
+    }
+    
+    /**
+     * Constructs a PersistentIntervalSetTree containing the Intervals of the
+     * given Stream.
+     * @param s - the Intervals to add to this PersistentIntervalSetTree
+     * @see #PersistentIntervalSetTree(Collection)
+     */
+    public PersistentIntervalSetTree(Stream<? extends T> s) {
+        this(s.collect(Collectors.toList()));
+    }
+    
+    /**
+     * An immutable view of the current contents of this
+     * PersistentIntervalSetTree.
+     * <p>
+     * The snapshot is unaffected by later modifications to this tree, and
+     * may be queried from any thread without synchronization. Taking a
+     * snapshot takes constant time and copies nothing.
+     */
+    public IntervalIndex<T> snapshot() {
+        return current;
+    }
+
+    ///////////////////////////////////
+    // Tree -- General query methods //
+    ///////////////////////////////////
+
+    /**
+     * The number of Intervals stored in this PersistentIntervalSetTree.
+     */
+    @Override
+    public int size() {
+        return current.size();
+    }
+    
+    /**
+     * Whether or not this PersistentIntervalSetTree contains the given
+     * Interval.
+     * @param t - the Interval to search for
+     */
+    public boolean contains(T t) {
+        Node n = search(current.root, t.getStart(), t.getEnd());
+        return n != null && indexOf(n.values, t) != -1;
+    }
+    
+    /**
+     * An Iterator which traverses the tree in ascending order.
+     * <p>
+     * The Iterator traverses the version of the tree current when this method
+     * was called, and so never throws a ConcurrentModificationException.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return current.iterator();
+    }
+    
+    /**
+     * An Iterator over the Intervals in this PersistentIntervalSetTree that
+     * overlap the given Interval, in ascending order.
+     * @param t - the overlapping Interval
+     */
+    @Override
+    public Iterator<T> overlappers(T t) {
+        return current.overlappers(t);
+    }
+    
+    /**
+     * An Iterator over the Intervals in this PersistentIntervalSetTree that
+     * overlap [start, end), in ascending order.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public Iterator<T> overlappers(int start, int end) {
+        return current.overlappers(start, end);
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this PersistentIntervalSetTree
+     * overlap the given Interval.
+     * @param t - the potentially overlapping Interval
+     */
+    @Override
+    public boolean overlaps(T t) {
+        return current.overlaps(t);
+    }
+    
+    /**
+     * Whether or not any of the Intervals in this PersistentIntervalSetTree
+     * overlap [start, end).
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    @Override
+    public boolean overlaps(int start, int end) {
+        return current.overlaps(start, end);
+    }
+    
+    /**
+     * The number of Intervals in this PersistentIntervalSetTree that overlap
+     * the given Interval.
+     * @param t - the overlapping Interval
+     */
+    @Override
+    public int numOverlappers(T t) {
+        return current.numOverlappers(t);
+    }
+    
+    /**
+     * The number of Intervals in this PersistentIntervalSetTree that overlap
+     * [start, end).
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public int numOverlappers(int start, int end) {
+        return current.numOverlappers(start, end);
+    }
+    
+    /**
+     * Passes each Interval in this PersistentIntervalSetTree that overlaps
+     * [start, end) to the given visitor, in ascending order, until the visitor
+     * returns false.
+     * <p>
+     * Intervals sharing a Node are visited in the order they were inserted.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping Interval; returns whether
+     * or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor) {
+        return current.forEachOverlapper(start, end, visitor);
+    }
+    
+    /**
+     * Passes each Interval in this PersistentIntervalSetTree that overlaps
+     * [start, end), and which the given filter accepts, to the given visitor,
+     * in ascending order, until the visitor returns false.
+     * <p>
+     * The filter is applied in the walk of the tree, so nothing is allocated.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param query - passed to the filter with each overlapping Interval
+     * @param filter - whether or not to visit an overlapping Interval
+     * @param visitor - called with each accepted Interval; returns whether or
+     * not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public <Q> boolean forEachOverlapper(int start, int end, Q query,
+            OverlapFilter<? super Q, ? super T> filter, Predicate<? super T> visitor) {
+        return current.forEachOverlapper(start, end, query, filter, visitor);
+    }
+
+    //////////////////////////////////
+    // Tree -- Modification methods //
+    //////////////////////////////////
+
+    /**
+     * Inserts the given Interval into this PersistentIntervalSetTree.
+     * <p>
+     * If the Interval already exists within the tree, the tree remains
+     * unchanged. Otherwise, the new version of the tree is visible to every
+     * snapshot taken after this method returns.
+     * @param t - the Interval to insert
+     * @return whether or not the tree was changed
+     */
+    @Override
+    public synchronized boolean insert(T t) {
+        Node root = current.root;
+        Node newRoot = insert(root, t);
+        if (newRoot == root) {
+            return false;
+        }
+        current = new Snapshot<>(newRoot);
+        return true;
+    }
+    
+    /**
+     * Deletes the given Interval from this PersistentIntervalSetTree.
+     * <p>
+     * If the Interval does not exist, the tree remains unchanged. Otherwise,
+     * the new version of the tree is visible to every snapshot taken after
+     * this method returns.
+     * @param t - the Interval to delete
+     * @return whether or not an Interval was removed from the tree
+     */
+    public synchronized boolean delete(T t) {
+        Node root = current.root;
+        Node newRoot = delete(root, t);
+        if (newRoot == root) {
+            return false;
+        }
+        current = new Snapshot<>(newRoot);
+        return true;
+    }
+    
+    /**
+     * The root of a copy of the subtree rooted at n which contains the given
+     * Interval, or n itself if the subtree already contains it.
+     */
+    private static Node insert(Node n, Interval t) {
+        if (n == null) {
+            return new Node(t.getStart(), t.getEnd(), new Object[] {t}, null, null);
+        }
+
+        int cmp = t.compareTo(n);
+        if (cmp == 0) {
+            return indexOf(n.values, t) == -1 ? n.withValues(append(n.values, t)) : n;
+        } else if (cmp < 0) {
+            Node left = insert(n.left, t);
+            return left == n.left ? n : balance(n, left, n.right);
+        } else {
+            Node right = insert(n.right, t);
+            return right == n.right ? n : balance(n, n.left, right);
+        }
+    }
+    
+    /**
+     * The root of a copy of the subtree rooted at n which does not contain
+     * the given Interval, or n itself if the subtree does not contain it.
+     */
+    private static Node delete(Node n, Interval t) {
+        if (n == null) {
+            return null;
+        }
+
+        int cmp = t.compareTo(n);
+        if (cmp < 0) {
+            Node left = delete(n.left, t);
+            return left == n.left ? n : balance(n, left, n.right);
+        } else if (cmp > 0) {
+            Node right = delete(n.right, t);
+            return right == n.right ? n : balance(n, n.left, right);
+        }
+
+        int i = indexOf(n.values, t);
+        if (i == -1) {
+            return n;
+        } else if (n.values.length > 1) {
+            return n.withValues(remove(n.values, i));
+        } else if (n.left == null) {        // The Node itself must be removed.
+            return n.right;                 // If it has two children, it is
+        } else if (n.right == null) {       // replaced by its successor.
+            return n.left;
+        }
+
+        Node successor = n.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor, n.left, deleteMinimum(n.right));
+    }
+    
+    /**
+     * The root of a copy of the subtree rooted at n without its minimum Node.
+     */
+    private static Node deleteMinimum(Node n) {
+        if (n.left == null) {
+            return n.right;
+        }
+        return balance(n, deleteMinimum(n.left), n.right);
+    }
+    
+    /**
+     * A Node with the key and values of the given Node and the given
+     * children, rotated if necessary so that the heights of its subtrees
+     * differ by at most one.
+     * <p>
+     * The heights of left and right must differ by at most two, as they do
+     * after a single insertion or deletion.
+     */
+    private static Node balance(Node n, Node left, Node right) {
+        int diff = height(left) - height(right);
+        if (diff > 1) {
+            if (height(left.left) < height(left.right)) {         // Left-right case
+                left = rotateLeft(left);
+            }
+            return left.withChildren(left.left,                 // Left-left case
+                    n.withChildren(left.right, right));
+        } else if (diff < -1) {
+            if (height(right.right) < height(right.left)) {       // Right-left case
+                right = rotateRight(right);
+            }
+            return right.withChildren(n.withChildren(left, right.left),
+                    right.right);                                 // Right-right case
+        }
+        return n.withChildren(left, right);
+    }
+    
+    /**
+     * A copy of the subtree rooted at n, rotated left.
+     */
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        return r.withChildren(n.withChildren(n.left, r.left), r.right);
+    }
+    
+    /**
+     * A copy of the subtree rooted at n, rotated right.
+     */
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        return l.withChildren(l.left, n.withChildren(l.right, n.right));
+    }
+    
+    /**
+     * The height of the subtree rooted at n, which is zero if n is null.
+     */
+    private static int height(Node n) {
+        return n == null ? 0 : n.height;
+    }
+    
+    /**
+     * The Node in the subtree rooted at n with the given coordinates, or null
+     * if there is none.
+     */
+    private static Node search(Node n, int start, int end) {
+        while (n != null) {
+            if (start < n.start || start == n.start && end < n.end) {
+                n = n.left;
+            } else if (start > n.start || end > n.end) {
+                n = n.right;
+            } else {
+                return n;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * A balanced subtree of the given Nodes, which must be in ascending order
+     * and have no children.
+     * @param nodes - the Nodes to link
+     * @param lo - the index of the first Node in the subtree, inclusive
+     * @param hi - the index of the last Node in the subtree, exclusive
+     */
+    private static Node buildSubtree(Node[] nodes, int lo, int hi) {
+        if (lo >= hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        return nodes[mid].withChildren(buildSubtree(nodes, lo, mid),
+                buildSubtree(nodes, mid + 1, hi));
+    }
+    
+    /**
+     * The index of the element of a equal to o, or -1 if there is none.
+     */
+    private static int indexOf(Object[] a, Object o) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i].equals(o)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * A copy of a with o appended.
+     */
+    private static Object[] append(Object[] a, Object o) {
+        Object[] rtrn = Arrays.copyOf(a, a.length + 1);
+        rtrn[a.length] = o;
+        return rtrn;
+    }
+    
+    /**
+     * A copy of a without the element at index i.
+     */
+    private static Object[] remove(Object[] a, int i) {
+        Object[] rtrn = new Object[a.length - 1];
+        System.arraycopy(a, 0, rtrn, 0, i);
+        System.arraycopy(a, i + 1, rtrn, i, a.length - i - 1);
+        return rtrn;
+    }
+    
+    /**
+     * An immutable Node of a PersistentIntervalSetTree.
+     * <p>
+     * The absence of a Node is represented by null. Since Nodes are shared
+     * between versions of the tree, a Node has no parent pointer, and stores
+     * the number of Intervals in its subtree so that a version's size need
+     * not be tracked separately.
+     */
+    private static final class Node implements Interval {
+
+        private final int start;
+        private final int end;
+        private final Object[] values;  // The Intervals with these coordinates
+        private final Node left;
+        private final Node right;
+        private final int height;
+        private final int maxEnd;
+        private final int size;         // Number of Intervals in this subtree
+
+        private Node(int start, int end, Object[] values, Node left, Node right) {
+            this.start = start;
+            this.end = end;
+            this.values = values;
+            this.left = left;
+            this.right = right;
+            height = Math.max(PersistentIntervalSetTree.height(left),
+                    PersistentIntervalSetTree.height(right)) + 1;
+            int m = end;
+            int s = values.length;
+            if (left != null) {
+                m = Math.max(m, left.maxEnd);
+                s += left.size;
+            }
+            if (right != null) {
+                m = Math.max(m, right.maxEnd);
+                s += right.size;
+            }
+            maxEnd = m;
+            size = s;
+        }
+        
+        /**
+         * A copy of this Node with the given children.
+         */
+        private Node withChildren(Node left, Node right) {
+            return new Node(start, end, values, left, right);
+        }
+        
+        /**
+         * A copy of this Node with the given Intervals.
+         */
+        private Node withValues(Object[] values) {
+            return new Node(start, end, values, left, right);
+        }
+        
+        @Override
+        public int getStart() {
+            return start;
+        }
+        
+        @Override
+        public int getEnd() {
+            return end;
+        }
+        
+        /**
+         * Whether or not this Node overlaps [start, end).
+         */
+        private boolean overlaps(int start, int end) {
+            return this.start < end && this.end > start;
+        }
+    }
+    
+    /**
+     * A single version of a PersistentIntervalSetTree.
+     */
+    private static final class Snapshot<T extends Interval> implements IntervalIndex<T> {
+
+        private final Node root;
+        
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+        
+        @Override
+        public int size() {
+            return root == null ? 0 : root.size;
+        }
+        
+        @Override
+        public Iterator<T> iterator() {
+            return new OverlapperIterator<>(root, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        
+        @Override
+        public Iterator<T> overlappers(T t) {
+            return overlappers(t.getStart(), t.getEnd());
+        }
+        
+        @Override
+        public Iterator<T> overlappers(int start, int end) {
+            return new OverlapperIterator<>(root, start, end);
+        }
+        
+        @Override
+        public boolean overlaps(T t) {
+            return overlaps(t.getStart(), t.getEnd());
+        }
+        
+        /**
+         * If the left subtree could contain an overlapper but does not, then
+         * the right subtree does not contain one either (CLRS Theorem 14.2),
+         * so a single path from the root need be searched.
+         */
+        @Override
+        public boolean overlaps(int start, int end) {
+            Node n = root;
+            while (n != null && !n.overlaps(start, end)) {
+                n = n.left != null && n.left.maxEnd > start ? n.left : n.right;
+            }
+            return n != null;
+        }
+        
+        @Override
+        public int numOverlappers(T t) {
+            return numOverlappers(t.getStart(), t.getEnd());
+        }
+        
+        @Override
+        public int numOverlappers(int start, int end) {
+            int[] count = new int[1];
+            forEachOverlapper(start, end, t -> {
+                count[0]++;
+                return true;
+            });
+            return count[0];
+        }
+        
+        @Override
+        public boolean forEachOverlapper(int start, int end, Predicate<? super T> visitor) {
+            return forEachOverlapper(root, start, end, null, null, visitor);
+        }
+        
+        @Override
+        public <Q> boolean forEachOverlapper(int start, int end, Q query,
+                OverlapFilter<? super Q, ? super T> filter, Predicate<? super T> visitor) {
+            return forEachOverlapper(root, start, end, query, filter, visitor);
+        }
+        
+        /**
+         * Passes each Interval in the subtree rooted at n that overlaps
+         * [start, end), and which the given filter accepts, or every such
+         * Interval if the filter is null, to the given visitor, in ascending
+         * order.
+         * @return false if the visitor stopped the visit early; otherwise, true
+         */
+        @SuppressWarnings("unchecked")
+        private <Q> boolean forEachOverlapper(Node n, int start, int end, Q query,
+                OverlapFilter<? super Q, ? super T> filter, Predicate<? super T> visitor) {
+            if (n == null || n.maxEnd <= start) {
+                return true;
+            }
+            if (!forEachOverlapper(n.left, start, end, query, filter, visitor)) {
+                return false;
+            }
+            if (n.start >= end) {
+                return true;
+            }
+            if (n.end > start) {
+                for (Object o : n.values) {
+                    T t = (T) o;
+                    if ((filter == null || filter.test(query, start, end, t))
+                            && !visitor.test(t)) {
+                        return false;
+                    }
+                }
+            }
+            return forEachOverlapper(n.right, start, end, query, filter, visitor);
+        }
+    }
+
+    ///////////////////////
+    // Tree -- Iterators //
+    ///////////////////////
+
+    /**
+     * An Iterator which walks the Intervals of a single version of a
+     * PersistentIntervalSetTree that overlap [start, end), in ascending order.
+     * <p>
+     * Without parent pointers, the path from the root to the current Node is
+     * held on a stack, which is no deeper than the height of the tree.
+     * Subtrees which end at or before start, and right subtrees of Nodes
+     * which start at or after end, are never entered.
+     */
+    private static final class OverlapperIterator<T extends Interval> implements Iterator<T> {
+
+        private final int start;
+        private final int end;
+        private final Node[] stack;
+        private int top = 0;
+        private Node node;      // The Node whose values are being returned
+        private int index;      // The index of the next value of node
+
+        private OverlapperIterator(Node root, int start, int end) {
+            this.start = start;
+            this.end = end;
+            stack = new Node[height(root)];
+            pushLeft(root);
+            advance();
+        }
+        
+        /**
+         * Pushes n and its chain of left descendants which may contain
+         * overlappers onto the stack.
+         */
+        private void pushLeft(Node n) {
+            while (n != null && n.maxEnd > start) {
+                stack[top++] = n;
+                n = n.left;
+            }
+        }
+        
+        /**
+         * Sets node to the next overlapping Node, or null if there is none.
+         */
+        private void advance() {
+            node = null;
+            index = 0;
+            while (top > 0) {
+                Node n = stack[--top];
+                if (n.start >= end) {
+                    top = 0;    // All remaining Nodes start at or after n
+                    return;
+                }
+                pushLeft(n.right);
+                if (n.end > start) {
+                    node = n;
+                    return;
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return node != null;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Interval tree has no more overlapping elements.");
+            }
+            T rtrn = (T) node.values[index++];
+            if (index == node.values.length) {
+                advance();
+            }
+            return rtrn;
+        }
+    }
+
+    ///////////////////////////////
+    // Tree -- Debugging methods //
+    ///////////////////////////////
+
+    /**
+     * Whether or not this PersistentIntervalSetTree is a valid binary-search
+     * tree, whose subtrees' heights differ by at most one, and whose height,
+     * maxEnd and size values are consistent.
+     * <p>
+     * This method is used for debugging only, and its access is changed in
+     * testing.
+     */
+    @SuppressWarnings("unused")
+    private boolean isValid() {
+        return isValid(current.root, null, null);
+    }
+    
+    /**
+     * Whether or not the subtree rooted at n is valid, and lies strictly
+     * between the given Nodes (either of which may be null to indicate no
+     * bound).
+     */
+    private static boolean isValid(Node n, Node min, Node max) {
+        if (n == null) {
+            return true;
+        }
+        if (min != null && n.compareTo(min) <= 0 || max != null && n.compareTo(max) >= 0) {
+            return false;
+        }
+        if (n.values.length == 0 || Math.abs(height(n.left) - height(n.right)) > 1) {
+            return false;
+        }
+        return n.height == Math.max(height(n.left), height(n.right)) + 1 &&
+               n.maxEnd == Math.max(n.end, Math.max(n.left == null ? n.end : n.left.maxEnd,
+                       n.right == null ? n.end : n.right.maxEnd)) &&
+               n.size == n.values.length + (n.left == null ? 0 : n.left.size) +
+                       (n.right == null ? 0 : n.right.size) &&
+               isValid(n.left, min, n) &&
+               isValid(n.right, n, max);
+    }
+}
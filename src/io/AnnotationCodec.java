@@ -0,0 +1,157 @@
+package io;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import annotation.Annotation;
+import annotation.BEDFileRecord;
+import annotation.BEDFileRecord.BEDBuilder;
+import annotation.Block;
+import annotation.BlockedAnnotation.BlockedBuilder;
+import annotation.Gene;
+import annotation.Strand;
+
+/**
+ * Encodes <code>Annotation</code>s as fixed-layout binary records, and decodes
+ * them again, for {@link GenomeTreeSnapshot}.
+ * <p>
+ * A record holds no reference name, since every record in a section of a
+ * snapshot is on the same reference. Each record is laid out as:
+ * <ul>
+ * <li>kind (byte): one of BLOCK, BLOCKED, GENE or BED
+ * <li>strand (byte): the ordinal of the <code>Strand</code>
+ * <li>start, end (int, int)
+ * <li>number of blocks (int), followed by the start and end of each block
+ * if there is more than one
+ * <li>GENE and BED only: name (int length, then UTF-8 bytes), coding start
+ * and coding end (int, int)
+ * <li>BED only: score (double) and RGB color (int)
+ * </ul>
+ * <code>Annotation</code>s of any other kind are decoded as
+ * <code>BlockedAnnotation</code>s.
+ */
+final class AnnotationCodec {
+
+    private static final byte BLOCK = 0;
+    private static final byte BLOCKED = 1;
+    private static final byte GENE = 2;
+    private static final byte BED = 3;
+    
+    private static final Strand[] STRANDS = Strand.values();
+    
+    private AnnotationCodec() {}
+
+    /**
+     * Writes the given <code>Annotation</code>, without its reference name,
+     * to the given output.
+     * @param a - the <code>Annotation</code> to write
+     * @param out - the output to write to
+     * @throws IOException if the output cannot be written to
+     */
+    static void write(Annotation a, DataOutput out) throws IOException {
+        byte kind = a instanceof BEDFileRecord ? BED
+                  : a instanceof Gene ? GENE
+                  : a instanceof Block ? BLOCK
+                  : BLOCKED;
+
+        out.writeByte(kind);
+        out.writeByte(a.getStrand().ordinal());
+        out.writeInt(a.getStart());
+        out.writeInt(a.getEnd());
+        int numBlocks = a.getNumberOfBlocks();
+        out.writeInt(numBlocks);
+        if (numBlocks > 1) {
+            Iterator<Block> blocks = a.getBlocks();
+            while (blocks.hasNext()) {
+                Block b = blocks.next();
+                out.writeInt(b.getStart());
+                out.writeInt(b.getEnd());
+            }
+        }
+
+        if (kind == GENE || kind == BED) {
+            Gene g = (Gene) a;
+            writeString(g.getName(), out);
+            out.writeInt(g.getCodingStart());
+            out.writeInt(g.getCodingEnd());
+        }
+        if (kind == BED) {
+            BEDFileRecord r = (BEDFileRecord) a;
+            out.writeDouble(r.getScore());
+            out.writeInt(r.getColor().getRGB());
+        }
+    }
+    
+    /**
+     * Reads the next <code>Annotation</code> from the given buffer.
+     * @param ref - the reference name of the <code>Annotation</code>
+     * @param buf - the buffer to read from, positioned at the start of a
+     * record
+     * @throws IllegalArgumentException if the buffer does not hold a valid
+     * record
+     */
+    static Annotation read(String ref, ByteBuffer buf) {
+        byte kind = buf.get();
+        Strand strand = STRANDS[buf.get()];
+        int start = buf.getInt();
+        int end = buf.getInt();
+        int numBlocks = buf.getInt();
+
+        List<Block> blocks = new ArrayList<>(numBlocks);
+        if (numBlocks > 1) {
+            for (int i = 0; i < numBlocks; i++) {
+                blocks.add(new Block(ref, buf.getInt(), buf.getInt(), strand));
+            }
+        } else {
+            blocks.add(new Block(ref, start, end, strand));
+        }
+
+        switch (kind) {
+        case BLOCK:
+            return blocks.get(0);
+        case BLOCKED:
+            return new BlockedBuilder().addBlocks(blocks).build();
+        case GENE:
+            return new Gene(new BlockedBuilder().addBlocks(blocks).build(),
+                    readString(buf), buf.getInt(), buf.getInt());
+        case BED:
+            BEDBuilder bb = new BEDBuilder().addBlocks(blocks).addName(readString(buf));
+            int cdsStart = buf.getInt();
+            int cdsEnd = buf.getInt();
+            if (cdsStart != cdsEnd) {
+                bb.addCodingRegion(cdsStart, cdsEnd);
+            }
+            return bb.addScore(buf.getDouble())
+                     .addColor(buf.getInt())
+                     .build();
+        default:
+            throw new IllegalArgumentException("Attempted to read an " +
+                    "Annotation record of unknown kind " + kind + ".");
+        }
+    }
+    
+    /**
+     * Writes the given <code>String</code> to the given output as UTF-8,
+     * prefixed by its length in bytes.
+     */
+    static void writeString(String s, DataOutput out) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    /**
+     * Reads a length-prefixed UTF-8 <code>String</code> from the given
+     * buffer.
+     */
+    static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
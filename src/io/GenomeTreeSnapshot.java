@@ -0,0 +1,299 @@
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import annotation.Annotation;
+import datastructures.GenomeTree;
+import datastructures.GenomeTree.Backend;
+
+/**
+ * Writes a {@link GenomeTree} to a compact binary file, and reads it back,
+ * so that a <code>GenomeTree</code> can be restored without parsing the
+ * text files it was originally built from.
+ * <p>
+ * A snapshot holds one section per reference. Each section holds the
+ * <code>Annotation</code>s on its reference as an implicit interval tree over
+ * records with no reference name (see {@link MappedAnnotationIndex}). A
+ * directory at the end of the file gives the name, position, length and
+ * number of records of each section. The file is laid out as:
+ * <pre>
+ * <code>
+ * header:    magic (int), version (int)
+ * sections:  implicit tree, records...
+ * directory: number of sections (int), then for each section: name (int
+ *            length, then UTF-8 bytes), offset (long), length (long),
+ *            number of records (int)
+ * trailer:   offset of the directory (long), magic (int)
+ * </code>
+ * </pre>
+ * Reading a snapshot memory-maps each section, decodes the sections in
+ * parallel, and bulk-loads each reference's index from its records, which
+ * are already sorted. Neither step parses text or sorts, so reading is
+ * bound by I/O rather than by computation.
+ * <p>
+ * Alternatively, a snapshot can be mapped with {@link #map(Path)}, which
+ * decodes nothing up front, and instead queries each section in place.
+ */
+public final class GenomeTreeSnapshot {
+
+    private static final int MAGIC = 0x4754534E;    // "GTSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int TRAILER_LENGTH = 12;
+    
+    private GenomeTreeSnapshot() {}
+
+    /**
+     * Writes a snapshot of the given <code>GenomeTree</code> to the given
+     * file, replacing the file if it exists.
+     * <p>
+     * The <code>GenomeTree</code> must not be modified while it is being
+     * written.
+     * @param tree - the <code>GenomeTree</code> to write
+     * @param p - the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(GenomeTree tree, Path p) throws IOException {
+        if (p == null) {
+            throw new IllegalArgumentException("Attempted to write a " +
+                    "GenomeTree snapshot to a null path.");
+        }
+
+        List<Section> directory = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(p, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            for (String ref : new TreeSet<>(tree.getReferenceNames())) {
+                List<Annotation> annotations = new ArrayList<>();
+                tree.getAnnotations(ref).forEachRemaining(annotations::add);
+                if (annotations.isEmpty()) {
+                    continue;
+                }
+
+                out.flush();            // Brings the channel's position up to date
+                long offset = channel.position();
+                MappedAnnotationIndex.write(annotations, out);
+                out.flush();
+                directory.add(new Section(ref, offset, channel.position() - offset,
+                        annotations.size()));
+            }
+
+            out.flush();
+            long directoryOffset = channel.position();
+            out.writeInt(directory.size());
+            for (Section s : directory) {
+                AnnotationCodec.writeString(s.ref, out);
+                out.writeLong(s.offset);
+                out.writeLong(s.length);
+                out.writeInt(s.count);
+            }
+            out.writeLong(directoryOffset);
+            out.writeInt(MAGIC);
+        }
+    }
+    
+    /**
+     * Reads a <code>GenomeTree</code> from the given snapshot, storing each
+     * reference in an {@link datastructures.IntervalSetTree}.
+     * @param p - the snapshot to read
+     * @throws IOException if the file cannot be read, or is not a valid
+     * snapshot
+     */
+    public static GenomeTree read(Path p) throws IOException {
+        return read(p, Backend.INTERVAL_SET_TREE);
+    }
+    
+    /**
+     * Reads a <code>GenomeTree</code> from the given snapshot, storing each
+     * reference in the given {@link Backend}.
+     * <p>
+     * Reading with {@link Backend#MAPPED} is the same as {@link #map(Path)}.
+     * Reading with {@link Backend#PAGED} is the same as
+     * {@link #openPaged(Path, long)} with no limit on the budget, so each
+     * reference is loaded when it is first queried and is never evicted.
+     * @param p - the snapshot to read
+     * @param backend - the kind of index to store each reference in
+     * @throws IOException if the file cannot be read, or is not a valid
+     * snapshot
+     */
+    public static GenomeTree read(Path p, Backend backend) throws IOException {
+        if (backend == Backend.MAPPED) {
+            return map(p);
+        }
+        if (backend == Backend.PAGED) {
+            return openPaged(p, Long.MAX_VALUE);
+        }
+
+        Map<String, MappedAnnotationIndex> indexes = open(p);
+        Map<String, List<Annotation>> references;
+        try {
+            references = indexes.entrySet()
+                                .parallelStream()
+                                .collect(Collectors.toConcurrentMap(Map.Entry::getKey,
+                                        e -> e.getValue().decodeAll()));
+        } catch (RuntimeException e) {
+            throw new IOException(p + " is a corrupt GenomeTree snapshot.", e);
+        }
+        return GenomeTree.fromSorted(references, backend);
+    }
+    
+    /**
+     * Maps the given snapshot into memory as a read-only
+     * <code>GenomeTree</code>, backed by {@link Backend#MAPPED}.
+     * <p>
+     * Nothing is decoded when the snapshot is mapped. Each query walks the
+     * coordinates in the file directly, and decodes only the
+     * <code>Annotation</code>s it returns, so the <code>GenomeTree</code> is
+     * ready to query at once, and keeps no <code>Annotation</code>s on the
+     * heap. The file is shared, through the page cache, with every other
+     * process which maps it. It must not be modified while it is mapped.
+     * @param p - the snapshot to map
+     * @throws IOException if the file cannot be read, or is not a valid
+     * snapshot
+     */
+    public static GenomeTree map(Path p) throws IOException {
+        return GenomeTree.fromIndexes(open(p), Backend.MAPPED);
+    }
+    
+    /**
+     * Opens the given snapshot as a read-only <code>GenomeTree</code>, backed
+     * by {@link Backend#PAGED}, which holds at most the given number of
+     * <code>Annotation</code>s on the heap.
+     * <p>
+     * The snapshot is mapped into memory, but nothing is decoded until a
+     * reference is first queried. The <code>Annotation</code>s on that
+     * reference are then loaded into an {@link datastructures.IntervalSetTree},
+     * which serves every later query of the reference. Once the loaded
+     * references hold more than the given number of
+     * <code>Annotation</code>s in total, the least recently queried ones are
+     * evicted, to be loaded again when they are next queried. The reference
+     * being queried is never evicted, even if it alone exceeds the budget.
+     * <p>
+     * A workload which is sorted by coordinate queries one reference at a
+     * time, so it loads each reference about once. The file must not be
+     * modified while it is open.
+     * @param p - the snapshot to open
+     * @param maxResidentAnnotations - the number of <code>Annotation</code>s
+     * the loaded references may hold in total
+     * @throws IOException if the file cannot be read, or is not a valid
+     * snapshot
+     */
+    public static GenomeTree openPaged(Path p, long maxResidentAnnotations)
+            throws IOException {
+        if (maxResidentAnnotations < 0) {
+            throw new IllegalArgumentException("Attempted to open a GenomeTree " +
+                    "snapshot with a negative budget of " + maxResidentAnnotations +
+                    " Annotations.");
+        }
+
+        PagedAnnotationIndex.Pager pager = new PagedAnnotationIndex.Pager(maxResidentAnnotations);
+        Map<String, PagedAnnotationIndex> indexes = new HashMap<>();
+        open(p).forEach((ref, index) -> indexes.put(ref, new PagedAnnotationIndex(index, pager)));
+        return GenomeTree.fromIndexes(indexes, Backend.PAGED);
+    }
+    
+    /**
+     * Maps each section of the given snapshot into memory, as an index of
+     * the <code>Annotation</code>s on its reference.
+     * @throws IOException if the file cannot be read, or is not a valid
+     * snapshot
+     */
+    private static Map<String, MappedAnnotationIndex> open(Path p) throws IOException {
+        if (p == null) {
+            throw new IllegalArgumentException("Attempted to read a " +
+                    "GenomeTree snapshot from a null path.");
+        }
+
+        Map<String, MappedAnnotationIndex> indexes = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_LENGTH + TRAILER_LENGTH) {
+                throw new IOException(p + " is not a GenomeTree snapshot.");
+            }
+
+            ByteBuffer header = map(channel, 0, HEADER_LENGTH, p);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(p + " is not a GenomeTree snapshot.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(p + " is a GenomeTree snapshot of " +
+                        "unsupported version " + version + ".");
+            }
+
+            ByteBuffer trailer = map(channel, size - TRAILER_LENGTH, TRAILER_LENGTH, p);
+            long directoryOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC) {
+                throw new IOException(p + " is a truncated GenomeTree snapshot.");
+            }
+
+            // The mapped sections remain valid after the channel is closed.
+            ByteBuffer directory = map(channel, directoryOffset,
+                    size - TRAILER_LENGTH - directoryOffset, p);
+            int numSections = directory.getInt();
+            for (int i = 0; i < numSections; i++) {
+                String ref = AnnotationCodec.readString(directory);
+                long offset = directory.getLong();
+                long length = directory.getLong();
+                int count = directory.getInt();
+                indexes.put(ref, new MappedAnnotationIndex(ref,
+                        map(channel, offset, length, p), count));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException(p + " is a corrupt GenomeTree snapshot.", e);
+        }
+        return indexes;
+    }
+    
+    /**
+     * Maps the given region of the given file as read-only.
+     * @throws IOException if the region does not lie within the file, or
+     * cannot be mapped
+     */
+    private static ByteBuffer map(FileChannel channel, long offset, long length, Path p)
+            throws IOException {
+        if (offset < 0 || length < 0 || length > Integer.MAX_VALUE ||
+                offset + length > channel.size()) {
+            throw new IOException(p + " is a corrupt GenomeTree snapshot.");
+        }
+        return channel.map(MapMode.READ_ONLY, offset, length);
+    }
+    
+    /**
+     * An entry in the directory of a snapshot: the section holding the
+     * <code>Annotation</code>s on one reference.
+     */
+    private static class Section {
+
+        private final String ref;
+        private final long offset;
+        private final long length;
+        private final int count;
+        
+        private Section(String ref, long offset, long length, int count) {
+            this.ref = ref;
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+        }
+    }
+}
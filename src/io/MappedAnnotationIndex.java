@@ -0,0 +1,556 @@
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+import annotation.Annotation;
+import datastructures.IntervalIndex;
+
+/**
+ * A read-only index of the <code>Annotation</code>s on one reference, which
+ * works directly on a section of a memory-mapped {@link GenomeTreeSnapshot}.
+ * <p>
+ * The section is laid out as an implicit interval tree, in the same way as a
+ * {@link datastructures.FrozenIntervalTree}: the coordinates of the
+ * <code>Annotation</code>s are stored in Eytzinger (breadth-first) order, in
+ * which the root is at index 1 and the children of the index k are at
+ * indices 2k and 2k + 1, together with the maxEnd of each implicit subtree.
+ * The section holds, one after another:
+ * <ul>
+ * <li>the start (int) of the <code>Annotation</code> at each index
+ * <li>the end (int) of the <code>Annotation</code> at each index
+ * <li>the greatest end (int) in the subtree at each index
+ * <li>the offset (int) of the record of the <code>Annotation</code> at each
+ * index, relative to the first record
+ * <li>the records themselves (see {@link AnnotationCodec}), in ascending
+ * order
+ * </ul>
+ * Queries walk the coordinates without decoding any records, and decode the
+ * record of an <code>Annotation</code> only when returning it. Nothing but
+ * the mapping itself is held on the heap. Opening an index reads nothing but
+ * the offsets of the records, to check that each lies within the section.
+ * <p>
+ * Each query decodes a new <code>Annotation</code>, so two queries which
+ * return the same <code>Annotation</code> return equal, but not identical,
+ * objects. Queries may be run from any number of threads at once.
+ */
+public class MappedAnnotationIndex implements IntervalIndex<Annotation> {
+
+    private final String ref;       // Reference name of every Annotation
+    private final ByteBuffer buf;   // The section
+    private final int size;         // Number of Annotations. Valid indices are [1..size]
+    private final int height;       // Number of levels in the implicit tree
+    private final int recordsStart; // Position in the section of the first record
+    
+    private static final int MIN_RECORD_LENGTH = 14;   // Kind, strand, start, end
+                                                        // and number of blocks
+
+    /**
+     * Constructs an index over the given section of a snapshot.
+     * @param ref - the reference name of the <code>Annotation</code>s
+     * @param section - the section, as written by
+     * {@link #write(List, DataOutput)}
+     * @param size - the number of <code>Annotation</code>s in the section
+     * @throws IllegalArgumentException if the section is too short to hold
+     * the given number of <code>Annotation</code>s, or the offset of any
+     * record lies outside it
+     */
+    MappedAnnotationIndex(String ref, ByteBuffer section, int size) {
+        if (size < 0 || section.capacity() < 16L * size) {
+            throw new IllegalArgumentException("Attempted to construct a " +
+                    "MappedAnnotationIndex of " + size + " Annotations over a " +
+                    "section of " + section.capacity() + " bytes.");
+        }
+        this.ref = ref;
+        this.buf = section;
+        this.size = size;
+        height = 32 - Integer.numberOfLeadingZeros(size);
+        recordsStart = 16 * size;
+
+        long maxOffset = (long) section.capacity() - recordsStart - MIN_RECORD_LENGTH;
+        for (int k = 1; k <= size; k++) {
+            int offset = recordOffset(k);
+            if (offset < 0 || offset > maxOffset) {
+                throw new IllegalArgumentException("Attempted to construct a " +
+                        "MappedAnnotationIndex with a record at offset " + offset +
+                        " outside a section of " + section.capacity() + " bytes.");
+            }
+        }
+    }
+    
+    /**
+     * Writes a section holding the given <code>Annotation</code>s to the
+     * given output.
+     * @param annotations - the <code>Annotation</code>s to write, all on the
+     * same reference and in ascending order
+     * @param out - the output to write to
+     * @throws IOException if the output cannot be written to
+     */
+    static void write(List<Annotation> annotations, DataOutput out) throws IOException {
+        int n = annotations.size();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(bytes);
+        int[] recordOffsets = new int[n];
+        for (int i = 0; i < n; i++) {
+            recordOffsets[i] = records.size();
+            AnnotationCodec.write(annotations.get(i), records);
+        }
+
+        // The position in ascending order of the Annotation at each index
+        int[] positions = new int[n + 1];
+        fill(positions, 1, 0);
+
+        int[] maxEnds = new int[n + 1];
+        for (int k = n; k > 0; k--) {
+            int maxEnd = annotations.get(positions[k]).getEnd();
+            if (2 * k <= n) {
+                maxEnd = Math.max(maxEnd, maxEnds[2 * k]);
+            }
+            if (2 * k + 1 <= n) {
+                maxEnd = Math.max(maxEnd, maxEnds[2 * k + 1]);
+            }
+            maxEnds[k] = maxEnd;
+        }
+
+        for (int k = 1; k <= n; k++) {
+            out.writeInt(annotations.get(positions[k]).getStart());
+        }
+        for (int k = 1; k <= n; k++) {
+            out.writeInt(annotations.get(positions[k]).getEnd());
+        }
+        for (int k = 1; k <= n; k++) {
+            out.writeInt(maxEnds[k]);
+        }
+        for (int k = 1; k <= n; k++) {
+            out.writeInt(recordOffsets[positions[k]]);
+        }
+        out.write(bytes.toByteArray());
+    }
+    
+    /**
+     * Assigns ascending positions, starting at the given one, to the implicit
+     * subtree rooted at index k with an in-order traversal.
+     * @return the next unassigned position
+     */
+    private static int fill(int[] positions, int k, int next) {
+        if (k >= positions.length) {
+            return next;
+        }
+        next = fill(positions, 2 * k, next);
+        positions[k] = next++;
+        return fill(positions, 2 * k + 1, next);
+    }
+
+    ////////////////////////////////////
+    // Index -- General query methods //
+    ////////////////////////////////////
+
+    /**
+     * The number of <code>Annotation</code>s in this index.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * An Iterator over the <code>Annotation</code>s in this index, in
+     * ascending order.
+     */
+    @Override
+    public Iterator<Annotation> iterator() {
+        return new IndexIterator(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE);
+    }
+    
+    /**
+     * An Iterator over the <code>Annotation</code>s in this index that overlap
+     * the given <code>Annotation</code>, in ascending order.
+     * @param a - the overlapping <code>Annotation</code>
+     */
+    @Override
+    public Iterator<Annotation> overlappers(Annotation a) {
+        return overlappers(a.getStart(), a.getEnd());
+    }
+    
+    /**
+     * An Iterator over the <code>Annotation</code>s in this index that overlap
+     * [start, end), in ascending order.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public Iterator<Annotation> overlappers(int start, int end) {
+        return new IndexIterator(start, end, Integer.MIN_VALUE);
+    }
+    
+    /**
+     * Decodes every <code>Annotation</code> in this index.
+     * @return a new list of the <code>Annotation</code>s, in ascending order
+     */
+    List<Annotation> decodeAll() {
+        List<Annotation> l = new ArrayList<>(size);
+        iterator().forEachRemaining(l::add);
+        return l;
+    }
+    
+    /**
+     * Whether or not any of the <code>Annotation</code>s in this index overlap
+     * the given <code>Annotation</code>.
+     * @param a - the potentially overlapping <code>Annotation</code>
+     */
+    @Override
+    public boolean overlaps(Annotation a) {
+        return overlaps(a.getStart(), a.getEnd());
+    }
+    
+    /**
+     * Whether or not any of the <code>Annotation</code>s in this index overlap
+     * [start, end).
+     * <p>
+     * No records are decoded.
+     * @param start - the start of the potentially overlapping interval
+     * @param end - the end of the potentially overlapping interval
+     */
+    @Override
+    public boolean overlaps(int start, int end) {
+        int k = 1;
+        while (k <= size && !overlaps(k, start, end)) {
+            k = 2 * k <= size && maxEnd(2 * k) > start ? 2 * k : 2 * k + 1;
+        }
+        return k <= size;
+    }
+    
+    /**
+     * The number of <code>Annotation</code>s in this index that overlap the
+     * given <code>Annotation</code>.
+     * @param a - the overlapping <code>Annotation</code>
+     */
+    @Override
+    public int numOverlappers(Annotation a) {
+        return numOverlappers(a.getStart(), a.getEnd());
+    }
+    
+    /**
+     * The number of <code>Annotation</code>s in this index that overlap
+     * [start, end).
+     * <p>
+     * No records are decoded.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     */
+    @Override
+    public int numOverlappers(int start, int end) {
+        return numOverlappers(1, start, end);
+    }
+    
+    /**
+     * Passes each <code>Annotation</code> in this index that overlaps [start,
+     * end) to the given visitor, in ascending order, until the visitor returns
+     * false.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param visitor - called with each overlapping <code>Annotation</code>;
+     * returns whether or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public boolean forEachOverlapper(int start, int end, Predicate<? super Annotation> visitor) {
+        return forEachOverlapper(1, start, end, null, null, visitor);
+    }
+    
+    /**
+     * Passes each <code>Annotation</code> in this index that overlaps [start,
+     * end), and which the given filter accepts, to the given visitor, in
+     * ascending order, until the visitor returns false.
+     * <p>
+     * The filter is applied in the walk of the implicit tree, so nothing is
+     * allocated beyond the decoded <code>Annotation</code>s.
+     * @param start - the start of the overlapping interval
+     * @param end - the end of the overlapping interval
+     * @param query - passed to the filter with each overlapping
+     * <code>Annotation</code>
+     * @param filter - whether or not to visit an overlapping
+     * <code>Annotation</code>
+     * @param visitor - called with each accepted <code>Annotation</code>;
+     * returns whether or not to continue visiting
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    @Override
+    public <Q> boolean forEachOverlapper(int start, int end, Q query,
+            OverlapFilter<? super Q, ? super Annotation> filter,
+            Predicate<? super Annotation> visitor) {
+        return forEachOverlapper(1, start, end, query, filter, visitor);
+    }
+    
+    /**
+     * An Iterator over the <code>Annotation</code>s in this index which end at
+     * or before the given position, nearest first, i.e., in descending order
+     * of end.
+     * <p>
+     * As in a {@link datastructures.FrozenIntervalTree}, this is a
+     * best-first search of the implicit tree, with subtrees queued by the
+     * least of their maxEnd and the position, and each record is decoded only
+     * when the Iterator reaches it. The first k <code>Annotation</code>s are
+     * found in O((k + c + 1) log^2 n) time, where c is the number of
+     * <code>Annotation</code>s containing the position.
+     * @param position - the position the <code>Annotation</code>s must end at
+     * or before
+     */
+    @Override
+    public Iterator<Annotation> preceding(int position) {
+        return new PrecedingIterator(position);
+    }
+    
+    /**
+     * An Iterator over the <code>Annotation</code>s in this index which start
+     * at or after the given position, nearest first, i.e., in ascending order
+     * of start.
+     * @param position - the position the <code>Annotation</code>s must start
+     * at or after
+     */
+    @Override
+    public Iterator<Annotation> following(int position) {
+        return new IndexIterator(Integer.MIN_VALUE, Integer.MAX_VALUE, position);
+    }
+
+    //////////////////////////////////
+    // Index -- Index-level methods //
+    //////////////////////////////////
+
+    private int start(int k) {
+        return buf.getInt(4 * (k - 1));
+    }
+    
+    private int end(int k) {
+        return buf.getInt(4 * (size + k - 1));
+    }
+    
+    private int maxEnd(int k) {
+        return buf.getInt(4 * (2 * size + k - 1));
+    }
+    
+    /**
+     * The offset of the record of the <code>Annotation</code> at index k,
+     * relative to the first record.
+     */
+    private int recordOffset(int k) {
+        return buf.getInt(4 * (3 * size + k - 1));
+    }
+    
+    /**
+     * Decodes the <code>Annotation</code> at index k.
+     * <p>
+     * The record is read through a duplicate of the section, so that
+     * concurrent queries do not share a position.
+     */
+    private Annotation value(int k) {
+        ByteBuffer record = buf.duplicate();
+        record.position(recordsStart + recordOffset(k));
+        return AnnotationCodec.read(ref, record);
+    }
+    
+    /**
+     * Whether or not the <code>Annotation</code> at index k overlaps [start,
+     * end).
+     */
+    private boolean overlaps(int k, int start, int end) {
+        return start(k) < end && start < end(k);
+    }
+    
+    /**
+     * The number of <code>Annotation</code>s in the implicit subtree rooted at
+     * index k that overlap [start, end).
+     */
+    private int numOverlappers(int k, int start, int end) {
+        if (k > size || maxEnd(k) <= start) {
+            return 0;
+        }
+        int count = numOverlappers(2 * k, start, end);
+        if (start(k) >= end) {
+            return count;   // Nothing in the right subtree can overlap
+        }
+        if (start < end(k)) {
+            count++;
+        }
+        return count + numOverlappers(2 * k + 1, start, end);
+    }
+    
+    /**
+     * Passes each <code>Annotation</code> in the implicit subtree rooted at
+     * index k that overlaps [start, end), and which the given filter accepts,
+     * or every such <code>Annotation</code> if the filter is null, to the
+     * given visitor, with an in-order traversal.
+     * @return false if the visitor stopped the visit early; otherwise, true
+     */
+    private <Q> boolean forEachOverlapper(int k, int start, int end, Q query,
+            OverlapFilter<? super Q, ? super Annotation> filter,
+            Predicate<? super Annotation> visitor) {
+        if (k > size || maxEnd(k) <= start) {
+            return true;
+        }
+        if (!forEachOverlapper(2 * k, start, end, query, filter, visitor)) {
+            return false;
+        }
+        if (start(k) >= end) {
+            return true;    // Nothing in the right subtree can overlap
+        }
+        if (start < end(k)) {
+            Annotation a = value(k);
+            if ((filter == null || filter.test(query, start, end, a)) && !visitor.test(a)) {
+                return false;
+            }
+        }
+        return forEachOverlapper(2 * k + 1, start, end, query, filter, visitor);
+    }
+
+    ////////////////////////
+    // Index -- Iterators //
+    ////////////////////////
+
+    /**
+     * An Iterator which walks along this index's <code>Annotation</code>s
+     * that overlap [start, end) and start at or after a given position, in
+     * ascending order.
+     * <p>
+     * This is an in-order traversal of the implicit tree which skips any
+     * subtree whose maxEnd cannot reach the query, or which lies wholly
+     * before the position, and stops at the first index which starts at or
+     * after the end of the query.
+     */
+    private class IndexIterator implements Iterator<Annotation> {
+
+        private final int start;
+        private final int end;
+        private final int from;
+        private final int[] stack;
+        private int top;
+        private int next;
+        
+        private IndexIterator(int start, int end, int from) {
+            this.start = start;
+            this.end = end;
+            this.from = from;
+            stack = new int[height + 1];
+            top = 0;
+            pushLeft(1);
+            next = findNext();
+        }
+        
+        private void pushLeft(int k) {
+            while (k <= size && maxEnd(k) > start) {
+                if (start(k) >= from) {
+                    stack[top++] = k;
+                    k = 2 * k;
+                } else {
+                    k = 2 * k + 1;  // Skip this index and its left
+                }                   // subtree, which start too early
+            }
+        }
+        
+        private int findNext() {
+            while (top > 0) {
+                int k = stack[--top];
+                if (start(k) >= end) {
+                    top = 0;
+                    break;
+                }
+                pushLeft(2 * k + 1);
+                if (start < end(k)) {
+                    return k;
+                }
+            }
+            return 0;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != 0;
+        }
+        
+        @Override
+        public Annotation next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Interval tree has no more overlapping elements.");
+            }
+            int rtrn = next;
+            next = findNext();
+            return value(rtrn);
+        }
+    }
+    
+    /**
+     * An Iterator which walks along this index's <code>Annotation</code>s
+     * that end at or before a given position, in descending order of end.
+     * <p>
+     * The queue holds both subtrees still to be searched and indices already
+     * known to end at or before the position, each packed into a long with
+     * the greatest end it can contribute in the high bits, so that the
+     * greatest bound is at the head of the queue.
+     */
+    private class PrecedingIterator implements Iterator<Annotation> {
+
+        private final int position;
+        private final PriorityQueue<Long> queue = new PriorityQueue<>(Comparator.reverseOrder());
+        private int next;
+        
+        private PrecedingIterator(int position) {
+            this.position = position;
+            addSubtree(1);
+            next = findNext();
+        }
+        
+        private void addSubtree(int k) {
+            if (k <= size) {
+                queue.add(candidate(Math.min(maxEnd(k), position), k, true));
+            }
+        }
+        
+        private int findNext() {
+            while (!queue.isEmpty()) {
+                int c = queue.poll().intValue();
+                int k = c >>> 1;
+                if ((c & 1) == 0) {
+                    return k;
+                }
+                if (end(k) <= position) {
+                    queue.add(candidate(end(k), k, false));
+                }
+                addSubtree(2 * k);
+                if (start(k) <= position) {     // Indices to the right start at
+                    addSubtree(2 * k + 1);      // or after k
+                }
+            }
+            return 0;
+        }
+        
+        private long candidate(int bound, int k, boolean isSubtree) {
+            return (long) bound << 32 | (long) k << 1 | (isSubtree ? 1 : 0);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != 0;
+        }
+        
+        @Override
+        public Annotation next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Interval tree has no more preceding elements.");
+            }
+            int rtrn = next;
+            next = findNext();
+            return value(rtrn);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package io;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import annotation.Annotation;
+import datastructures.IntervalIndex;
+import datastructures.IntervalSetTree;
+
+/**
+ * A read-only index of the <code>Annotation</code>s on one reference, which
+ * loads them from a section of a memory-mapped {@link GenomeTreeSnapshot}
+ * into an {@link IntervalSetTree} when it is first queried.
+ * <p>
+ * The indexes of a snapshot share a {@link Pager}, which holds the loaded
+ * trees and evicts the least recently used ones once they hold more
+ * <code>Annotation</code>s than its budget allows. An evicted index is loaded
+ * again when it is next queried. An Iterator returned before an eviction
+ * remains valid, since it holds on to the tree it walks.
+ */
+class PagedAnnotationIndex implements IntervalIndex<Annotation> {
+
+    private final MappedAnnotationIndex section;
+    private final Pager pager;
+    
+    /**
+     * Constructs an index which loads the given section through the given
+     * pager.
+     * @param section - the section of the snapshot holding the
+     * <code>Annotation</code>s
+     * @param pager - the pager shared by the indexes of the snapshot
+     */
+    PagedAnnotationIndex(MappedAnnotationIndex section, Pager pager) {
+        this.section = section;
+        this.pager = pager;
+    }
+    
+    /**
+     * The number of <code>Annotation</code>s in this index.
+     * <p>
+     * This does not load the index.
+     */
+    @Override
+    public int size() {
+        return section.size();
+    }
+    
+    @Override
+    public Iterator<Annotation> iterator() {
+        return tree().iterator();
+    }
+    
+    @Override
+    public Iterator<Annotation> overlappers(Annotation a) {
+        return tree().overlappers(a);
+    }
+    
+    @Override
+    public Iterator<Annotation> overlappers(int start, int end) {
+        return tree().overlappers(start, end);
+    }
+    
+    @Override
+    public boolean overlaps(Annotation a) {
+        return tree().overlaps(a);
+    }
+    
+    @Override
+    public boolean overlaps(int start, int end) {
+        return tree().overlaps(start, end);
+    }
+    
+    @Override
+    public int numOverlappers(Annotation a) {
+        return tree().numOverlappers(a);
+    }
+    
+    @Override
+    public int numOverlappers(int start, int end) {
+        return tree().numOverlappers(start, end);
+    }
+    
+    @Override
+    public boolean forEachOverlapper(int start, int end, Predicate<? super Annotation> visitor) {
+        return tree().forEachOverlapper(start, end, visitor);
+    }
+    
+    @Override
+    public <Q> boolean forEachOverlapper(int start, int end, Q query,
+            OverlapFilter<? super Q, ? super Annotation> filter,
+            Predicate<? super Annotation> visitor) {
+        return tree().forEachOverlapper(start, end, query, filter, visitor);
+    }
+    
+    @Override
+    public Iterator<Annotation> preceding(int position) {
+        return tree().preceding(position);
+    }
+    
+    @Override
+    public Iterator<Annotation> following(int position) {
+        return tree().following(position);
+    }
+    
+    /**
+     * The tree holding the <code>Annotation</code>s of this index, which is
+     * loaded if it is not already.
+     */
+    private IntervalSetTree<Annotation> tree() {
+        return pager.load(this);
+    }
+    
+    /**
+     * The trees loaded by the indexes of one snapshot, which are evicted in
+     * least-recently-used order to stay within a budget.
+     * <p>
+     * The budget is a number of <code>Annotation</code>s rather than of
+     * bytes, since the footprint of a tree is roughly proportional to the
+     * number of <code>Annotation</code>s in it. A pager is safe for use by
+     * several threads. Finding a tree which is already loaded takes no lock,
+     * so threads querying loaded references never wait for one another; only
+     * loading a tree locks the pager, so trees are loaded one at a time.
+     */
+    static class Pager {
+
+        private final long maxResident;     // Budget, in Annotations
+        private long numResident;           // Annotations in the loaded trees.
+                                            // Guarded by this
+        private final ConcurrentMap<PagedAnnotationIndex, Page> pages =
+                new ConcurrentHashMap<>();
+        private final AtomicLong clock = new AtomicLong();  // Ticks on each use
+
+        /**
+         * Constructs a pager which holds at most the given number of
+         * <code>Annotation</code>s, besides those of the most recently used
+         * tree.
+         * @param maxResident - the budget, in <code>Annotation</code>s
+         */
+        Pager(long maxResident) {
+            this.maxResident = maxResident;
+        }
+        
+        /**
+         * The tree of the given index, which is loaded if it is not already,
+         * and becomes the most recently used tree.
+         */
+        IntervalSetTree<Annotation> load(PagedAnnotationIndex index) {
+            Page page = pages.get(index);
+            if (page == null) {
+                page = loadMissing(index);
+            }
+            page.lastUsed = clock.incrementAndGet();
+            return page.tree;
+        }
+        
+        /**
+         * The page of the given index, which is loaded unless another thread
+         * loaded it first.
+         */
+        private synchronized Page loadMissing(PagedAnnotationIndex index) {
+            Page page = pages.get(index);
+            if (page == null) {
+                page = new Page(new IntervalSetTree<>(index.section.decodeAll()));
+                page.lastUsed = clock.incrementAndGet();
+                pages.put(index, page);
+                numResident += page.tree.size();
+                evict(index);
+            }
+            return page;
+        }
+        
+        /**
+         * Evicts trees, least recently used first, until the loaded trees are
+         * within the budget or only the given index's tree is left.
+         * <p>
+         * This takes O(m log m) time for m loaded trees, which is small next
+         * to the cost of loading the tree which made room necessary.
+         */
+        private void evict(PagedAnnotationIndex keep) {
+            if (numResident <= maxResident) {
+                return;
+            }
+            List<Map.Entry<PagedAnnotationIndex, Page>> lru = new ArrayList<>(pages.entrySet());
+            lru.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+            Iterator<Map.Entry<PagedAnnotationIndex, Page>> iter = lru.iterator();
+            while (numResident > maxResident && iter.hasNext()) {
+                Map.Entry<PagedAnnotationIndex, Page> e = iter.next();
+                if (e.getKey() != keep) {
+                    numResident -= e.getValue().tree.size();
+                    pages.remove(e.getKey());
+                }
+            }
+        }
+        
+        /**
+         * Whether or not the tree of the given index is loaded. For testing.
+         */
+        private boolean isLoaded(PagedAnnotationIndex index) {
+            return pages.containsKey(index);
+        }
+        
+        /**
+         * The number of <code>Annotation</code>s in the loaded trees. For
+         * testing.
+         */
+        private synchronized long numResident() {
+            return numResident;
+        }
+    }
+    
+    /**
+     * A loaded tree, and when it was last used.
+     */
+    private static class Page {
+        
+        private final IntervalSetTree<Annotation> tree;
+        private volatile long lastUsed;     // Tick of the Pager's clock
+        
+        private Page(IntervalSetTree<Annotation> tree) {
+            this.tree = tree;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import annotation.Annotation;
+import annotation.Block;
+import annotation.BlockedAnnotation.BlockedBuilder;
+import annotation.Strand;
+
+public class TestAnnotationImpl {
+
+    private static final Strand[] STRANDS = {Strand.POSITIVE, Strand.NEGATIVE, Strand.BOTH};
+    
+    private Random rand;
+    private int randomUpperBound = 200;
+    private int numRandomPairs = 20000;
+    
+    @Before
+    public void setup() {
+        rand = new Random();
+    }
+    
+    /**
+     * A random Annotation on chr1 of one to five blocks, which never touch.
+     */
+    private Annotation randomAnnotation() {
+        Strand strand = STRANDS[rand.nextInt(STRANDS.length)];
+        int numBlocks = 1 + rand.nextInt(5);
+        int start = rand.nextInt(randomUpperBound);
+        if (numBlocks == 1) {
+            return new Block("chr1", start, start + 1 + rand.nextInt(40), strand);
+        }
+        BlockedBuilder b = new BlockedBuilder();
+        for (int i = 0; i < numBlocks; i++) {
+            int end = start + 1 + rand.nextInt(20);
+            b.addBlock(new Block("chr1", start, end, strand));
+            start = end + 1 + rand.nextInt(20);
+        }
+        return b.build();
+    }
+    
+    /**
+     * The positions covered by the blocks of the given Annotation.
+     */
+    private static BitSet positions(Annotation a) {
+        BitSet positions = new BitSet();
+        a.getBlocks().forEachRemaining(b -> positions.set(b.getStart(), b.getEnd()));
+        return positions;
+    }
+    
+    private static boolean strandsIntersect(Strand s, Strand t) {
+        return s == t || s == Strand.BOTH || t == Strand.BOTH;
+    }
+    
+    /**
+     * Asserts that the result of a set operation covers exactly the expected
+     * positions, on the expected strand, with its blocks in ascending order
+     * and never touching.
+     */
+    private static void assertResult(String reason, Optional<Annotation> actual,
+            BitSet expected, Strand strand) {
+        assertThat(reason, actual.isPresent(), is(!expected.isEmpty()));
+        if (!actual.isPresent()) {
+            return;
+        }
+        Annotation a = actual.get();
+        assertThat(reason, positions(a), is(expected));
+        assertThat(reason, a.getStrand(), is(strand));
+        assertThat(reason, a.getReferenceName(), is("chr1"));
+        assertThat(reason, a.getStart(), is(expected.nextSetBit(0)));
+        assertThat(reason, a.getEnd(), is(expected.length()));
+        assertThat(reason, a.getSize(), is(expected.cardinality()));
+
+        List<Block> blocks = a.getBlockStream().collect(Collectors.toList());
+        assertThat(reason, a.getNumberOfBlocks(), is(blocks.size()));
+        for (int i = 0; i < blocks.size(); i++) {
+            assertThat(reason, blocks.get(i).getStrand(), is(strand));
+            if (i > 0) {
+                assertThat(reason, blocks.get(i - 1).getEnd() < blocks.get(i).getStart(), is(true));
+            }
+        }
+    }
+    
+    /**
+     * An Annotation which is not an AnnotationImpl, so that its blocks can
+     * only be read through getBlocks().
+     */
+    private static class Foreign implements Annotation {
+
+        private final Annotation a;
+        
+        private Foreign(Annotation a) {
+            this.a = a;
+        }
+        
+        @Override
+        public String getReferenceName() {
+            return a.getReferenceName();
+        }
+        
+        @Override
+        public int getStart() {
+            return a.getStart();
+        }
+        
+        @Override
+        public int getEnd() {
+            return a.getEnd();
+        }
+        
+        @Override
+        public int getNumberOfBlocks() {
+            return a.getNumberOfBlocks();
+        }
+        
+        @Override
+        public int getSize() {
+            return a.getSize();
+        }
+        
+        @Override
+        public int getSpan() {
+            return a.getSpan();
+        }
+        
+        @Override
+        public Strand getStrand() {
+            return a.getStrand();
+        }
+        
+        @Override
+        public Annotation reverseComplement() {
+            return new Foreign(a.reverseComplement());
+        }
+        
+        @Override
+        public Iterator<Block> getBlocks() {
+            return a.getBlocks();
+        }
+        
+        @Override
+        public Stream<Block> getBlockStream() {
+            return a.getBlockStream();
+        }
+        
+        @Override
+        public boolean overlaps(Annotation other) {
+            return a.overlaps(other);
+        }
+        
+        @Override
+        public Optional<Annotation> minus(Annotation other) {
+            return a.minus(other);
+        }
+        
+        @Override
+        public Annotation union(Annotation other) {
+            return a.union(other);
+        }
+        
+        @Override
+        public Optional<Annotation> intersection(Annotation other) {
+            return a.intersection(other);
+        }
+        
+        @Override
+        public Optional<Annotation> xor(Annotation other) {
+            return a.xor(other);
+        }
+    }
+
+    /////////////////////////
+    // Size and span tests //
+    /////////////////////////
+    
+    @Test
+    public void testSpanIncludesGaps() {
+        Annotation a = new BlockedBuilder()
+                .addBlock(new Block("chr1", 0, 10, Strand.POSITIVE))
+                .addBlock(new Block("chr1", 20, 30, Strand.POSITIVE))
+                .addBlock(new Block("chr1", 45, 50, Strand.POSITIVE))
+                .build();
+        assertThat(a.getSize(), is(25));
+        assertThat(a.getSpan(), is(50));
+    }
+    
+    @Test
+    public void testSpanOfSingleBlock() {
+        Annotation a = new Block("chr1", 5, 12, Strand.NEGATIVE);
+        assertThat(a.getSize(), is(7));
+        assertThat(a.getSpan(), is(7));
+    }
+    
+    @Test
+    public void testSpanMatchesPositions() {
+        for (int i = 0; i < numRandomPairs; i++) {
+            Annotation a = randomAnnotation();
+            BitSet positions = positions(a);
+            assertThat(a.toString(), a.getSize(), is(positions.cardinality()));
+            assertThat(a.toString(), a.getSpan(), is(positions.length() - positions.nextSetBit(0)));
+        }
+    }
+    
+    ///////////////////
+    // Overlap tests //
+    ///////////////////
+
+    @Test
+    public void testOverlapsMatchesPositions() {
+        for (int i = 0; i < numRandomPairs; i++) {
+            Annotation a = randomAnnotation();
+            Annotation b = randomAnnotation();
+            boolean expected = strandsIntersect(a.getStrand(), b.getStrand())
+                    && positions(a).intersects(positions(b));
+            assertThat(a + " " + b, a.overlaps(b), is(expected));
+            assertThat(b + " " + a, b.overlaps(a), is(expected));
+        }
+    }
+    
+    @Test
+    public void testOverlapsMatchesIntersection() {
+        for (int i = 0; i < numRandomPairs; i++) {
+            Annotation a = randomAnnotation();
+            Annotation b = randomAnnotation();
+            assertThat(a + " " + b, a.overlaps(b), is(a.intersection(b).isPresent()));
+        }
+    }
+    
+    @Test
+    public void testOverlapsForeignAnnotation() {
+        for (int i = 0; i < numRandomPairs; i++) {
+            Annotation a = randomAnnotation();
+            Annotation b = randomAnnotation();
+            assertThat(a + " " + b, a.overlaps(new Foreign(b)), is(a.overlaps(b)));
+        }
+    }
+    
+    @Test
+    public void testOverlapsSingleBlocks() {
+        Block a = new Block("chr1", 0, 10, Strand.POSITIVE);
+        assertThat(a.overlaps(new Block("chr1", 9, 20, Strand.POSITIVE)), is(true));
+        assertThat(a.overlaps(new Block("chr1", 10, 20, Strand.POSITIVE)), is(false));
+        assertThat(a.overlaps(new Block("chr1", 5, 8, Strand.NEGATIVE)), is(false));
+        assertThat(a.overlaps(new Block("chr1", 5, 8, Strand.BOTH)), is(true));
+        assertThat(a.overlaps(null), is(false));
+    }
+    
+    @Test
+    public void testOverlapsWithinGap() {
+        Annotation a = new BlockedBuilder()
+                .addBlock(new Block("chr1", 0, 10, Strand.POSITIVE))
+                .addBlock(new Block("chr1", 20, 30, Strand.POSITIVE))
+                .build();
+        assertThat(a.overlaps(new Block("chr1", 10, 20, Strand.POSITIVE)), is(false));
+        assertThat(a.overlaps(new Block("chr1", 10, 21, Strand.POSITIVE)), is(true));
+        assertThat(new Block("chr1", 12, 18, Strand.BOTH).overlaps(a), is(false));
+    }
+    
+    /////////////////////////
+    // Set operation tests //
+    /////////////////////////
+    
+    @Test
+    public void testMinusMatchesPositions() {
+        for (int i = 0; i < numRandomPairs; i++) {
+            Annotation a = randomAnnotation();
+            Annotation b = randomAnnotation();
+            BitSet expected = positions(a);
+            if (strandsIntersect(a.getStrand(), b.getStrand())) {
+                expected.andNot(positions(b));
+            }
+            assertResult(a + " - " + b, a.minus(b), expected, a.getStrand());
+            assertResult(a + " - " + b, a.minus(new Foreign(b)), expected, a.getStrand());
+        }
+    }
+    
+    @Test
+    public void testUnionMatchesPositions() {
+        for (int i = 0; i < numRandomPairs; i++) {
+            Annotation a = randomAnnotation();
+            Annotation b = randomAnnotation();
+            BitSet expected = positions(a);
+            expected.or(positions(b));
+            Strand strand = a.getStrand() == b.getStrand() ? a.getStrand() : Strand.BOTH;
+            assertResult(a + " + " + b, Optional.of(a.union(b)), expected, strand);
+            assertResult(a + " + " + b, Optional.of(a.union(new Foreign(b))), expected, strand);
+        }
+    }
+    
+    @Test
+    public void testIntersectionMatchesPositions() {
+        for (int i = 0; i < numRandomPairs; i++) {
+            Annotation a = randomAnnotation();
+            Annotation b = randomAnnotation();
+            BitSet expected = positions(a);
+            Strand strand = a.getStrand() == Strand.BOTH ? b.getStrand() : a.getStrand();
+            if (strandsIntersect(a.getStrand(), b.getStrand())) {
+                expected.and(positions(b));
+            } else {
+                expected.clear();
+            }
+            assertResult(a + " & " + b, a.intersection(b), expected, strand);
+            assertResult(a + " & " + b, a.intersection(new Foreign(b)), expected, strand);
+        }
+    }
+    
+    @Test
+    public void testXorMatchesPositions() {
+        for (int i = 0; i < numRandomPairs; i++) {
+            Annotation a = randomAnnotation();
+            Annotation b = randomAnnotation();
+            BitSet expected = positions(a);
+            expected.xor(positions(b));
+            Strand strand = a.getStrand() == b.getStrand() ? a.getStrand() : Strand.BOTH;
+            assertResult(a + " ^ " + b, a.xor(b), expected, strand);
+            assertResult(a + " ^ " + b, a.xor(new Foreign(b)), expected, strand);
+        }
+    }
+    
+    @Test
+    public void testSetOperationsWithNull() {
+        Annotation a = randomAnnotation();
+        assertThat(a.minus(null).get(), is(a));
+        assertThat(a.union(null), is(a));
+        assertThat(a.intersection(null).isPresent(), is(false));
+        assertThat(a.xor(null).get(), is(a));
+    }
+    
+    @Test
+    public void testMinusOppositeStrandUnchanged() {
+        Annotation a = new Block("chr1", 0, 10, Strand.POSITIVE);
+        assertThat(a.minus(new Block("chr1", 0, 10, Strand.NEGATIVE)).get(), is(a));
+        assertThat(a.minus(new Block("chr1", 0, 10, Strand.BOTH)).isPresent(), is(false));
+        assertThat(new Block("chr1", 0, 10, Strand.BOTH)
+                .minus(new Block("chr1", 0, 10, Strand.POSITIVE)).isPresent(), is(false));
+    }
+    
+    @Test
+    public void testUnionOfAdjacentBlocksIsOneBlock() {
+        Annotation a = new Block("chr1", 0, 10, Strand.POSITIVE);
+        Annotation b = new Block("chr1", 10, 20, Strand.POSITIVE);
+        Annotation union = a.union(b);
+        assertThat(union.getNumberOfBlocks(), is(1));
+        assertThat(union.getStart(), is(0));
+        assertThat(union.getEnd(), is(20));
+    }
+}
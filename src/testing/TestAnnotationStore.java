@@ -0,0 +1,277 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import annotation.Annotation;
+import annotation.AnnotationStore;
+import annotation.AnnotationStore.Record;
+import annotation.BEDFileRecord;
+import annotation.BEDFileRecord.BEDBuilder;
+import annotation.Block;
+import annotation.Gene.GeneBuilder;
+import annotation.Strand;
+
+public class TestAnnotationStore {
+
+    private static final Strand[] STRANDS = {Strand.POSITIVE, Strand.NEGATIVE, Strand.BOTH};
+    private static final String[] REFS = {"chr1", "chr2", "chrX"};
+    private static final String[] NAMES = {"", "gene1", "gene2", "transcript\u00e9"};
+    
+    private Random rand;
+    private int randomUpperBound = 300;
+    private int numRandomRecords = 400;
+    private List<BEDFileRecord> records;
+    private AnnotationStore store;
+    
+    @Before
+    public void setup() {
+        rand = new Random();
+        records = new ArrayList<>();
+        for (int i = 0; i < numRandomRecords; i++) {
+            records.add(randomRecord(REFS[rand.nextInt(REFS.length)]));
+        }
+        store = new AnnotationStore(records);
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    /**
+     * A random BEDFileRecord of one to five blocks on the given reference,
+     * with or without a coding region. Its score is exact as a float.
+     */
+    private BEDFileRecord randomRecord(String ref) {
+        Strand strand = STRANDS[rand.nextInt(STRANDS.length)];
+        int numBlocks = 1 + rand.nextInt(5);
+        int start = rand.nextInt(randomUpperBound);
+        BEDBuilder b = new BEDBuilder();
+        int end = start;
+        for (int i = 0; i < numBlocks; i++) {
+            end = start + 1 + rand.nextInt(20);
+            b.addBlock(new Block(ref, start, end, strand));
+            start = end + 1 + rand.nextInt(20);
+        }
+        int first = b.build().getStart();
+        if (rand.nextBoolean()) {
+            int cdsStart = first + rand.nextInt(end - first);
+            b.addCodingRegion(cdsStart, cdsStart + 1 + rand.nextInt(end - cdsStart));
+        }
+        return b.addName(NAMES[rand.nextInt(NAMES.length)])
+                .addScore(rand.nextInt(2000) / 2.0)
+                .addColor(rand.nextInt(0x1000000))
+                .build();
+    }
+    
+    private static List<Block> blocks(Annotation a) {
+        return a.getBlockStream().collect(Collectors.toList());
+    }
+    
+    /**
+     * Asserts that the results of the same set operation, through views and
+     * through the original records, have the same blocks on the same strand.
+     */
+    private static void assertSameResult(String reason, Optional<Annotation> actual,
+            Optional<Annotation> expected) {
+        assertThat(reason, actual.isPresent(), is(expected.isPresent()));
+        if (actual.isPresent()) {
+            assertThat(reason, blocks(actual.get()), is(blocks(expected.get())));
+            assertThat(reason, actual.get().getStrand(), is(expected.get().getStrand()));
+        }
+    }
+
+    /////////////////
+    // Field tests //
+    /////////////////
+
+    @Test
+    public void testSize() {
+        assertThat(store.size(), is(numRandomRecords));
+        assertThat(store.isEmpty(), is(false));
+        assertThat(new AnnotationStore().isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testMultiBlockRecords() {
+        for (int i = 0; i < store.size(); i++) {
+            Record r = store.get(i);
+            BEDFileRecord expected = records.get(i);
+            assertThat(r.getIndex(), is(i));
+            assertThat(r.getReferenceName(), is(expected.getReferenceName()));
+            assertThat(r.getStrand(), is(expected.getStrand()));
+            assertThat(r.getStart(), is(expected.getStart()));
+            assertThat(r.getEnd(), is(expected.getEnd()));
+            assertThat(r.getNumberOfBlocks(), is(expected.getNumberOfBlocks()));
+            assertThat(r.getSize(), is(expected.getSize()));
+            assertThat(r.getSpan(), is(expected.getEnd() - expected.getStart()));
+            assertThat(blocks(r), is(blocks(expected)));
+        }
+    }
+    
+    @Test
+    public void testToBEDFileRecordRoundTrip() {
+        for (int i = 0; i < store.size(); i++) {
+            Record r = store.get(i);
+            BEDFileRecord expected = records.get(i);
+            assertThat(r.getName(), is(expected.getName()));
+            assertThat(r.getScore(), is(expected.getScore()));
+            assertThat(r.getColor(), is(expected.getColor()));
+            assertThat(r.getCodingStart(), is(expected.getCodingStart()));
+            assertThat(r.getCodingEnd(), is(expected.getCodingEnd()));
+            assertThat(r.hasNoCodingRegion(), is(expected.hasNoCodingRegion()));
+            assertThat(r.toBEDFileRecord(), is(expected));
+            assertThat(r.toBEDFileRecord().toFormattedString(),
+                    is(expected.toFormattedString()));
+        }
+    }
+    
+    @Test
+    public void testOtherAnnotationsStoredWithDefaults() {
+        AnnotationStore s = new AnnotationStore();
+        s.add(new Block("chr1", 10, 20, Strand.NEGATIVE));
+        s.add(new GeneBuilder()
+                .addBlock(new Block("chr1", 30, 40, Strand.POSITIVE))
+                .addBlock(new Block("chr1", 50, 60, Strand.POSITIVE))
+                .addName("gene")
+                .addCodingRegion(35, 55)
+                .build());
+
+        Record block = s.get(0);
+        assertThat(block.getName(), is(""));
+        assertThat(block.getScore(), is(0.0));
+        assertThat(block.getColor(), is(Color.BLACK));
+        assertThat(block.hasNoCodingRegion(), is(true));
+        assertThat(blocks(block), is(blocks(new Block("chr1", 10, 20, Strand.NEGATIVE))));
+
+        Record gene = s.get(1);
+        assertThat(gene.getName(), is("gene"));
+        assertThat(gene.getCodingStart(), is(35));
+        assertThat(gene.getCodingEnd(), is(55));
+        assertThat(gene.getScore(), is(0.0));
+        assertThat(gene.getNumberOfBlocks(), is(2));
+    }
+    
+    @Test
+    public void testTrimToSizeThenAdd() {
+        store.trimToSize();
+        List<BEDFileRecord> more = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            more.add(randomRecord(i % 2 == 0 ? "chr1" : "chrNew"));
+        }
+        more.forEach(store::add);
+        records.addAll(more);
+
+        assertThat(store.size(), is(records.size()));
+        for (int i = 0; i < store.size(); i++) {
+            assertThat(store.get(i).toBEDFileRecord(), is(records.get(i)));
+        }
+    }
+    
+    @Test
+    public void testGetOutOfBounds() {
+        thrown.expect(IndexOutOfBoundsException.class);
+        store.get(store.size());
+    }
+
+    ///////////////////////////////////
+    // Flyweight set operation tests //
+    ///////////////////////////////////
+
+    @Test
+    public void testOverlapsThroughViews() {
+        for (int n = 0; n < 20000; n++) {
+            int i = rand.nextInt(store.size());
+            int j = rand.nextInt(store.size());
+            if (!records.get(i).getReferenceName().equals(records.get(j).getReferenceName())) {
+                continue;
+            }
+            boolean expected = records.get(i).overlaps(records.get(j));
+            assertThat(i + " " + j, store.get(i).overlaps(store.get(j)), is(expected));
+            assertThat(i + " " + j, store.get(i).overlaps(records.get(j)), is(expected));
+            assertThat(i + " " + j, records.get(i).overlaps(store.get(j)), is(expected));
+        }
+    }
+    
+    @Test
+    public void testMinusThroughViews() {
+        for (int n = 0; n < 20000; n++) {
+            int i = rand.nextInt(store.size());
+            int j = rand.nextInt(store.size());
+            if (!records.get(i).getReferenceName().equals(records.get(j).getReferenceName())) {
+                continue;
+            }
+            Optional<Annotation> expected = records.get(i).minus(records.get(j));
+            assertSameResult(i + " " + j, store.get(i).minus(store.get(j)), expected);
+            assertSameResult(i + " " + j, store.get(i).minus(records.get(j)), expected);
+            assertSameResult(i + " " + j, records.get(i).minus(store.get(j)), expected);
+        }
+    }
+    
+    @Test
+    public void testUnionAndIntersectionThroughViews() {
+        for (int n = 0; n < 20000; n++) {
+            int i = rand.nextInt(store.size());
+            int j = rand.nextInt(store.size());
+            if (!records.get(i).getReferenceName().equals(records.get(j).getReferenceName())) {
+                continue;
+            }
+            assertSameResult(i + " " + j, Optional.of(store.get(i).union(store.get(j))),
+                    Optional.of(records.get(i).union(records.get(j))));
+            assertSameResult(i + " " + j, store.get(i).intersection(store.get(j)),
+                    records.get(i).intersection(records.get(j)));
+        }
+    }
+
+    ////////////////////
+    // Equality tests //
+    ////////////////////
+
+    @Test
+    public void testViewsOfSameIndexEqual() {
+        for (int i = 0; i < store.size(); i++) {
+            assertThat(store.get(i), is(store.get(i)));
+            assertThat(store.get(i).hashCode(), is(store.get(i).hashCode()));
+        }
+    }
+    
+    @Test
+    public void testViewsOfEqualAnnotationsNotEqual() {
+        AnnotationStore s = new AnnotationStore();
+        s.add(records.get(0));
+        s.add(records.get(0));
+        assertThat(s.get(0).equals(s.get(1)), is(false));
+        assertThat(s.get(0).toBEDFileRecord(), is(s.get(1).toBEDFileRecord()));
+    }
+    
+    @Test
+    public void testViewsOfOtherStoresNotEqual() {
+        AnnotationStore copy = new AnnotationStore(records);
+        assertThat(store.get(0).equals(copy.get(0)), is(false));
+        assertThat(store.get(0).equals(records.get(0)), is(false));
+    }
+    
+    @Test
+    public void testSetOfViewsKeepsDuplicates() {
+        AnnotationStore s = new AnnotationStore();
+        for (int i = 0; i < 10; i++) {
+            s.add(records.get(0));
+        }
+        Set<Record> views = new HashSet<>();
+        s.forEach(views::add);
+        assertThat(views.size(), is(10));
+    }
+}
@@ -0,0 +1,279 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import annotation.Annotation;
+import annotation.Annotations;
+import annotation.Block;
+import annotation.BlockedAnnotation.BlockedBuilder;
+import annotation.Strand;
+
+public class TestAnnotations {
+
+    private static final Strand[] STRANDS = {Strand.POSITIVE, Strand.NEGATIVE, Strand.BOTH};
+    private static final String[] REFS = {"chr1", "chr10", "chr2"};    // In natural order
+
+    private static final int UNION = 0;
+    private static final int INTERSECTION = 1;
+    private static final int MINUS = 2;
+    
+    private Random rand;
+    private int randomUpperBound = 500;
+    private int numRandomAnnotations = 60;     // In each track
+    private int numRandomTrials = 200;
+    
+    @Before
+    public void setup() {
+        rand = new Random();
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    /**
+     * A random Annotation of one to four blocks, which never touch, on the
+     * given strand.
+     */
+    private Annotation randomAnnotation(String ref, Strand strand) {
+        int numBlocks = 1 + rand.nextInt(4);
+        int start = rand.nextInt(randomUpperBound);
+        if (numBlocks == 1) {
+            return new Block(ref, start, start + 1 + rand.nextInt(40), strand);
+        }
+        BlockedBuilder b = new BlockedBuilder();
+        for (int i = 0; i < numBlocks; i++) {
+            int end = start + 1 + rand.nextInt(20);
+            b.addBlock(new Block(ref, start, end, strand));
+            start = end + 1 + rand.nextInt(20);
+        }
+        return b.build();
+    }
+    
+    /**
+     * A random track, sorted by reference name, then start, on the given
+     * strands.
+     */
+    private List<Annotation> randomTrack(Strand... strands) {
+        List<Annotation> track = new ArrayList<>();
+        for (int i = 0; i < numRandomAnnotations; i++) {
+            track.add(randomAnnotation(REFS[rand.nextInt(REFS.length)],
+                    strands[rand.nextInt(strands.length)]));
+        }
+        Collections.sort(track, Comparator.comparing(Annotation::getReferenceName)
+                                          .thenComparing(Annotation::getStart));
+        return track;
+    }
+    
+    private static List<Stream<Annotation>> streams(List<List<Annotation>> tracks) {
+        return tracks.stream().map(List::stream).collect(Collectors.toList());
+    }
+    
+    /**
+     * The positions on the given reference and strand (0 for positive, 1 for
+     * negative) covered by the given track.
+     */
+    private static BitSet positions(List<Annotation> track, String ref, int strand) {
+        BitSet positions = new BitSet();
+        for (Annotation a : track) {
+            Strand s = a.getStrand();
+            if (a.getReferenceName().equals(ref) && (s == Strand.BOTH ||
+                    s == (strand == 0 ? Strand.POSITIVE : Strand.NEGATIVE))) {
+                a.getBlocks().forEachRemaining(b -> positions.set(b.getStart(), b.getEnd()));
+            }
+        }
+        return positions;
+    }
+    
+    /**
+     * The result of the given operation on the given tracks, computed one
+     * reference and one strand at a time with bit sets, as maximal runs of
+     * positions on the same strands.
+     */
+    private static List<Annotation> reference(List<List<Annotation>> tracks, int op) {
+        List<Annotation> rtrn = new ArrayList<>();
+        for (String ref : REFS) {
+            BitSet[] result = new BitSet[2];
+            for (int s = 0; s < 2; s++) {
+                result[s] = positions(tracks.get(0), ref, s);
+                for (List<Annotation> track : tracks.subList(1, tracks.size())) {
+                    BitSet other = positions(track, ref, s);
+                    if (op == UNION) {
+                        result[s].or(other);
+                    } else if (op == INTERSECTION) {
+                        result[s].and(other);
+                    } else {
+                        result[s].andNot(other);
+                    }
+                }
+            }
+
+            int length = Math.max(result[0].length(), result[1].length());
+            int runStart = 0;
+            int runStrands = 0;
+            for (int i = 0; i <= length; i++) {
+                int strands = (result[0].get(i) ? 1 : 0) | (result[1].get(i) ? 2 : 0);
+                if (strands != runStrands) {
+                    if (runStrands != 0) {
+                        rtrn.add(new Block(ref, runStart, i, runStrands == 1 ? Strand.POSITIVE
+                                : runStrands == 2 ? Strand.NEGATIVE : Strand.BOTH));
+                    }
+                    runStart = i;
+                    runStrands = strands;
+                }
+            }
+        }
+        return rtrn;
+    }
+
+    /////////////////////////////
+    // Bit-set reference tests //
+    /////////////////////////////
+
+    @Test
+    public void testMergeMatchesReference() {
+        for (int i = 0; i < numRandomTrials; i++) {
+            List<List<Annotation>> tracks = Arrays.asList(randomTrack(STRANDS));
+            assertThat(Annotations.merge(tracks.get(0).stream()).collect(Collectors.toList()),
+                    is(reference(tracks, UNION)));
+        }
+    }
+    
+    @Test
+    public void testUnionMatchesReference() {
+        for (int i = 0; i < numRandomTrials; i++) {
+            List<List<Annotation>> tracks = Arrays.asList(randomTrack(STRANDS),
+                    randomTrack(STRANDS), randomTrack(STRANDS));
+            assertThat(Annotations.union(streams(tracks)).collect(Collectors.toList()),
+                    is(reference(tracks, UNION)));
+        }
+    }
+    
+    @Test
+    public void testIntersectionMatchesReference() {
+        for (int i = 0; i < numRandomTrials; i++) {
+            List<List<Annotation>> tracks = Arrays.asList(randomTrack(STRANDS),
+                    randomTrack(STRANDS), randomTrack(STRANDS));
+            assertThat(Annotations.intersection(streams(tracks)).collect(Collectors.toList()),
+                    is(reference(tracks, INTERSECTION)));
+        }
+    }
+    
+    @Test
+    public void testMinusMatchesReference() {
+        for (int i = 0; i < numRandomTrials; i++) {
+            List<List<Annotation>> tracks = Arrays.asList(randomTrack(STRANDS),
+                    randomTrack(STRANDS), randomTrack(STRANDS));
+            List<Stream<Annotation>> streams = streams(tracks);
+            assertThat(Annotations.minus(streams.get(0), streams.subList(1, 3))
+                                  .collect(Collectors.toList()),
+                    is(reference(tracks, MINUS)));
+        }
+    }
+    
+    @Test
+    public void testSingleStrandAgreesWithAnnotationImpl() {
+        for (int i = 0; i < numRandomTrials; i++) {
+            List<Annotation> a = randomTrack(Strand.NEGATIVE);
+            List<Annotation> b = randomTrack(Strand.NEGATIVE);
+            for (String ref : REFS) {
+                Annotation union = null;
+                Annotation minus = null;
+                for (Annotation x : a) {
+                    if (x.getReferenceName().equals(ref)) {
+                        union = x.union(union);
+                        minus = x.union(minus);
+                    }
+                }
+                for (Annotation x : b) {
+                    if (x.getReferenceName().equals(ref)) {
+                        union = x.union(union);
+                        minus = minus == null ? null : minus.minus(x).orElse(null);
+                    }
+                }
+
+                List<List<Annotation>> tracks = Arrays.asList(a, b);
+                List<Annotation> expectedUnion = new ArrayList<>();
+                List<Annotation> expectedMinus = new ArrayList<>();
+                if (union != null) {
+                    union.getBlocks().forEachRemaining(expectedUnion::add);
+                }
+                if (minus != null) {
+                    minus.getBlocks().forEachRemaining(expectedMinus::add);
+                }
+                assertThat(Annotations.union(streams(tracks))
+                                      .filter(x -> x.getReferenceName().equals(ref))
+                                      .collect(Collectors.toList()),
+                        is(expectedUnion));
+                List<Stream<Annotation>> streams = streams(tracks);
+                assertThat(Annotations.minus(streams.get(0), streams.subList(1, 2))
+                                      .filter(x -> x.getReferenceName().equals(ref))
+                                      .collect(Collectors.toList()),
+                        is(expectedMinus));
+            }
+        }
+    }
+
+    ////////////////////////
+    // Strand model tests //
+    ////////////////////////
+
+    @Test
+    public void testUnionOfOppositeStrandsIsPerStrand() {
+        List<Annotation> result = Annotations.union(Arrays.asList(
+                Stream.of(new Block("chr1", 0, 10, Strand.POSITIVE)),
+                Stream.of(new Block("chr1", 5, 15, Strand.NEGATIVE))))
+                .collect(Collectors.toList());
+        assertThat(result, is(Arrays.asList(
+                new Block("chr1", 0, 5, Strand.POSITIVE),
+                new Block("chr1", 5, 10, Strand.BOTH),
+                new Block("chr1", 10, 15, Strand.NEGATIVE))));
+    }
+    
+    @Test
+    public void testMinusFromBothStrandsLeavesOtherStrand() {
+        List<Annotation> result = Annotations.minus(
+                Stream.of(new Block("chr1", 0, 10, Strand.BOTH)),
+                Arrays.asList(Stream.of(new Block("chr1", 0, 10, Strand.POSITIVE))))
+                .collect(Collectors.toList());
+        assertThat(result, is(Arrays.asList(new Block("chr1", 0, 10, Strand.NEGATIVE))));
+    }
+    
+    @Test
+    public void testMinusOppositeStrandUnchanged() {
+        List<Annotation> result = Annotations.minus(
+                Stream.of(new Block("chr1", 0, 10, Strand.POSITIVE)),
+                Arrays.asList(Stream.of(new Block("chr1", 0, 10, Strand.NEGATIVE))))
+                .collect(Collectors.toList());
+        assertThat(result, is(Arrays.asList(new Block("chr1", 0, 10, Strand.POSITIVE))));
+    }
+    
+    @Test
+    public void testIntersectionOfNoTracksIsEmpty() {
+        assertThat(Annotations.intersection(new ArrayList<Stream<Annotation>>()).count(), is(0L));
+    }
+    
+    @Test
+    public void testOutOfOrderTrack() {
+        Stream<Annotation> track = Stream.of(new Block("chr1", 20, 30, Strand.POSITIVE),
+                new Block("chr1", 0, 10, Strand.POSITIVE));
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("which is not sorted by reference name, then start");
+        Annotations.merge(track).count();
+    }
+}
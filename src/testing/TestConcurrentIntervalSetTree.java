@@ -0,0 +1,320 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import datastructures.ConcurrentIntervalSetTree;
+import datastructures.Interval;
+import datastructures.IntervalSetTree;
+
+public class TestConcurrentIntervalSetTree {
+
+    private ConcurrentIntervalSetTree<Impl> emptyTree;
+    
+    private ConcurrentIntervalSetTree<Impl> randomTree;
+    private IntervalSetTree<Impl> expectedTree;     // The same Intervals
+    private List<Impl> randomIntervals;
+    private int randomUpperBound = 3000;
+    private int numRandomIntervals = 5000;
+    private int numRandomQueries = 500;
+    
+    private Random rand;
+    
+    @Before
+    public void setup() {
+        emptyTree = new ConcurrentIntervalSetTree<Impl>();
+
+        rand = new Random();
+        randomIntervals = new ArrayList<>();
+        for (int i = 0; i < numRandomIntervals; i++) {
+            randomIntervals.add(randomInterval(randomUpperBound));
+        }
+        randomTree = new ConcurrentIntervalSetTree<Impl>(randomIntervals);
+        expectedTree = new IntervalSetTree<Impl>(randomIntervals);
+    }
+    
+    private Impl randomInterval(int upperBound) {
+        int r = 0;
+        int s = 0;
+        while (s <= r) {
+            r = rand.nextInt(upperBound);
+            s = rand.nextInt(upperBound);
+        }
+        return new Impl(r, s);
+    }
+    
+    private static List<Impl> list(Iterator<Impl> iter) {
+        List<Impl> l = new ArrayList<>();
+        iter.forEachRemaining(l::add);
+        return l;
+    }
+    
+    //////////////////////
+    // Empty tree tests //
+    //////////////////////
+    
+    @Test
+    public void testEmptyTreeIsEmpty() {
+        assertThat(emptyTree.isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testEmptyTreeOverlaps() {
+        assertThat(emptyTree.overlaps(new Impl(1, 10)), is(false));
+    }
+    
+    @Test
+    public void testEmptyTreeMinimumOverlappers() {
+        assertThat(emptyTree.minimumOverlappers(new Impl(1, 10)).hasNext(), is(false));
+    }
+    
+    ///////////////////////
+    // Random tree tests //
+    ///////////////////////
+    
+    @Test
+    public void testRandomTreeSize() {
+        assertThat(randomTree.size(), is(expectedTree.size()));
+    }
+    
+    @Test
+    public void testRandomTreeIterator() {
+        assertThat(list(randomTree.iterator()), is(list(expectedTree.iterator())));
+    }
+    
+    @Test
+    public void testRandomTreeContains() {
+        for (Impl i : randomIntervals) {
+            assertThat(randomTree.contains(i), is(true));
+        }
+        assertThat(randomTree.contains(new Impl(-10, -5)), is(false));
+    }
+    
+    @Test
+    public void testRandomTreeOverlappers() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(list(randomTree.overlappers(query)),
+                    is(list(expectedTree.overlappers(query))));
+            assertThat(randomTree.overlaps(query), is(expectedTree.overlaps(query)));
+            assertThat(randomTree.numOverlappers(query), is(expectedTree.numOverlappers(query)));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeMinimumOverlappers() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(list(randomTree.minimumOverlappers(query)),
+                    is(list(expectedTree.minimumOverlappers(query))));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeVisitorMayModifyTree() {
+        Impl query = new Impl(1000, 2000);
+        int numOverlappers = randomTree.numOverlappers(query);
+        assertThat(randomTree.forEachOverlapper(query, randomTree::delete), is(true));
+        assertThat(randomTree.size(), is(expectedTree.size() - numOverlappers));
+        assertThat(randomTree.overlaps(query), is(false));
+    }
+    
+    @Test
+    public void testRandomTreeIteratorUnaffectedByModification() {
+        Iterator<Impl> iter = randomTree.iterator();
+        randomTree.deleteOverlappers(new Impl(0, randomUpperBound));
+        assertThat(randomTree.isEmpty(), is(true));
+        assertThat(list(iter), is(list(expectedTree.iterator())));
+    }
+    
+    @Test
+    public void testConcurrentReadersDuringModification() throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Impl> stable = Collections.singletonList(new Impl(-100, -50));
+        randomTree.insert(stable.get(0));   // Never deleted, so always found
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            readers.add(new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        if (!list(randomTree.overlappers(-80, -60)).equals(stable)) {
+                            failure.set(new AssertionError("Lost the stable Interval"));
+                        }
+                        randomTree.numOverlappers(1000, 2000);
+                        randomTree.iterator();
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+        for (Impl i : randomIntervals) {
+            randomTree.delete(i);
+            randomTree.insert(randomInterval(randomUpperBound));
+        }
+        done.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+
+        assertThat(failure.get() == null, is(true));
+    }
+    
+    @Test(timeout = 60000)
+    public void testReadsTerminateDuringRotations() throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Impl stable = new Impl(-100, -50);
+        List<Impl> expected = Collections.singletonList(stable);
+        randomTree.insert(stable);      // Never deleted, so always found
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            readers.add(new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        boolean found = randomTree.contains(stable) &&
+                                randomTree.overlaps(-80, -60) &&
+                                randomTree.numOverlappers(-80, -60) == 1 &&
+                                list(randomTree.overlappers(-80, -60)).equals(expected) &&
+                                list(randomTree.minimumOverlappers(new Impl(-80, -60)))
+                                        .equals(expected) &&
+                                randomTree.iterator().next().equals(stable) &&
+                                randomTree.size() > 0;
+                        if (!found) {
+                            failure.set(new AssertionError("Lost the stable Interval"));
+                        }
+                        randomTree.numOverlappers(0, randomUpperBound);
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+
+        // Many small modifications in a narrow range rotate the tree near its
+        // root over and over.
+        List<Impl> inserted = new ArrayList<>(randomIntervals);
+        for (int i = 0; i < 200000; i++) {
+            if (rand.nextBoolean() || inserted.isEmpty()) {
+                Impl t = randomInterval(randomUpperBound);
+                randomTree.insert(t);
+                inserted.add(t);
+            } else {
+                randomTree.delete(inserted.remove(rand.nextInt(inserted.size())));
+            }
+        }
+        done.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+
+        assertThat(failure.get() == null, is(true));
+    }
+    
+    @Test
+    public void testIntervalsSharingCoordinates() {
+        // Enough Intervals with the same coordinates that their Node keeps
+        // them in a Set, which is only read under the read lock.
+        List<Impl> shared = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            shared.add(new Named(-100, -50, "name" + i));
+        }
+        shared.forEach(randomTree::insert);
+
+        assertThat(randomTree.contains(shared.get(7)), is(true));
+        assertThat(randomTree.numOverlappers(-80, -60), is(shared.size()));
+        assertThat(new HashSet<>(list(randomTree.overlappers(-80, -60))),
+                is(new HashSet<>(shared)));
+        assertThat(new HashSet<>(list(randomTree.minimumOverlappers(new Impl(-80, -60)))),
+                is(new HashSet<>(shared)));
+        assertThat(randomTree.size(), is(expectedTree.size() + shared.size()));
+    }
+    
+    /**
+     * Simple implementation of Interval for testing
+     */
+    private static class Impl implements Interval {
+
+        private final int start;
+        private final int end;
+        
+        public Impl(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        public int getStart() {
+            return start;
+        }
+        
+        @Override
+        public int getEnd() {
+            return end;
+        }
+        
+        @Override
+        public String toString() {
+            return "start: " + start + " end: " + end;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Impl)) {
+                return false;
+            }
+
+            return start == ((Impl) other).start && end == ((Impl) other).end;
+        }
+        
+        @Override
+        public int hashCode() {
+            int result = 17;
+            result = 31 * result + start;
+            result = 31 * result + end;
+            return result;
+        }
+    }
+    
+    /**
+     * An Interval with a name, which is not equal to an Interval with the
+     * same coordinates but a different name
+     */
+    private static class Named extends Impl {
+
+        private final String name;
+        
+        public Named(int start, int end, String name) {
+            super(start, end);
+            this.name = name;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Named && super.equals(other) &&
+                    name.equals(((Named) other).name);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * super.hashCode() + name.hashCode();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import datastructures.ConcurrentIntervalSkipList;
+import datastructures.Interval;
+import datastructures.IntervalTree;
+
+public class TestConcurrentIntervalSkipList {
+
+    private ConcurrentIntervalSkipList<Impl> emptyList;
+    
+    private ConcurrentIntervalSkipList<Impl> randomList;
+    private IntervalTree<Impl> expectedTree;    // The same Intervals
+    private List<Impl> randomIntervals;
+    private int randomUpperBound = 3000;
+    private int numRandomIntervals = 5000;
+    private int numRandomQueries = 500;
+    
+    private Random rand;
+    
+    @Before
+    public void setup() {
+        emptyList = new ConcurrentIntervalSkipList<Impl>();
+
+        rand = new Random();
+        randomIntervals = new ArrayList<>();
+        for (int i = 0; i < numRandomIntervals; i++) {
+            randomIntervals.add(randomInterval(randomUpperBound));
+        }
+        randomList = new ConcurrentIntervalSkipList<Impl>(randomIntervals);
+        expectedTree = new IntervalTree<Impl>(randomIntervals);
+    }
+    
+    private Impl randomInterval(int upperBound) {
+        int r = 0;
+        int s = 0;
+        while (s <= r) {
+            r = rand.nextInt(upperBound);
+            s = rand.nextInt(upperBound);
+        }
+        return new Impl(r, s);
+    }
+    
+    private static List<Impl> list(Iterator<Impl> iter) {
+        List<Impl> l = new ArrayList<>();
+        iter.forEachRemaining(l::add);
+        return l;
+    }
+    
+    //////////////////////
+    // Empty list tests //
+    //////////////////////
+    
+    @Test
+    public void testEmptyListIsEmpty() {
+        assertThat(emptyList.isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testEmptyListOverlaps() {
+        assertThat(emptyList.overlaps(new Impl(1, 10)), is(false));
+        assertThat(emptyList.overlappers(new Impl(1, 10)).hasNext(), is(false));
+    }
+    
+    @Test
+    public void testEmptyListDelete() {
+        assertThat(emptyList.delete(new Impl(1, 10)), is(false));
+    }
+    
+    ///////////////////////
+    // Random list tests //
+    ///////////////////////
+    
+    @Test
+    public void testRandomListSize() {
+        assertThat(randomList.size(), is(expectedTree.size()));
+    }
+    
+    @Test
+    public void testRandomListInsertDuplicate() {
+        assertThat(randomList.insert(new Impl(randomIntervals.get(0))), is(false));
+        assertThat(randomList.size(), is(expectedTree.size()));
+    }
+    
+    @Test
+    public void testRandomListIterator() {
+        assertThat(list(randomList.iterator()), is(list(expectedTree.iterator())));
+    }
+    
+    @Test
+    public void testRandomListOverlappers() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(list(randomList.overlappers(query)),
+                    is(list(expectedTree.overlappers(query))));
+            assertThat(randomList.overlaps(query), is(expectedTree.overlaps(query)));
+            assertThat(randomList.numOverlappers(query), is(expectedTree.numOverlappers(query)));
+            assertThat(randomList.minimumOverlapper(query), is(expectedTree.minimumOverlapper(query)));
+        }
+    }
+    
+    @Test
+    public void testRandomListOverlappersAfterDeletingLongest() {
+        Impl longest = new Impl(0, randomUpperBound + 1000);
+        randomList.insert(longest);
+        randomList.delete(longest);
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(list(randomList.overlappers(query)),
+                    is(list(expectedTree.overlappers(query))));
+        }
+    }
+    
+    @Test
+    public void testRandomListDeleteOverlappers() {
+        Impl query = new Impl(1000, 2000);
+        randomList.deleteOverlappers(query);
+        expectedTree.deleteOverlappers(query);
+        assertThat(randomList.size(), is(expectedTree.size()));
+        assertThat(randomList.overlaps(query), is(false));
+        assertThat(list(randomList.iterator()), is(list(expectedTree.iterator())));
+    }
+    
+    @Test
+    public void testRandomListMinimumOverlapperNone() {
+        assertThat(randomList.minimumOverlapper(new Impl(-10, -5)), is(Optional.empty()));
+    }
+    
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        int numProducers = 4;
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < numProducers; p++) {
+            int offset = p;
+            producers.add(new Thread(() -> {
+                try {
+                    for (int i = offset; i < numRandomIntervals; i += numProducers) {
+                        emptyList.insert(new Impl(i, i + 1 + i % 100));
+                        emptyList.numOverlappers(i, i + 1);
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread t : producers) {
+            t.join();
+        }
+
+        assertThat(failure.get() == null, is(true));
+        assertThat(emptyList.size(), is(numRandomIntervals));
+        assertThat(emptyList.numOverlappers(new Impl(1000, 1001)), is(51));   // 950-1000
+    }
+    
+    @Test
+    public void testOneLongIntervalDoesNotWidenQueries() {
+        AtomicLong reads = new AtomicLong();
+        ConcurrentIntervalSkipList<Impl> list = new ConcurrentIntervalSkipList<>();
+        for (int i = 0; i < 100000; i++) {
+            list.insert(new Counted(i, i + 1, reads));
+        }
+        Impl longest = new Counted(0, 1000000, reads);
+        list.insert(longest);
+
+        reads.set(0);
+        assertThat(list.numOverlappers(50000, 50001), is(2));
+        assertThat(list(list.overlappers(50000, 50001)),
+                is(Arrays.asList(longest, new Impl(50000, 50001))));
+        // Scanning back to the long Interval's start would read every
+        // Interval before the query.
+        assertThat(reads.get() < 1000, is(true));
+    }
+    
+    @Test
+    public void testRandomListMixedLengths() {
+        Impl empty = new Impl(1500, 1500);
+        List<Impl> longer = Arrays.asList(new Impl(-100000, 100000),
+                new Impl(1000, 20000), empty, new Impl(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        longer.forEach(randomList::insert);
+        longer.forEach(expectedTree::insert);
+        assertThat(list(randomList.iterator()), is(list(expectedTree.iterator())));
+        assertThat(randomList.contains(empty), is(true));
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(list(randomList.overlappers(query)),
+                    is(list(expectedTree.overlappers(query))));
+            assertThat(randomList.numOverlappers(query), is(expectedTree.numOverlappers(query)));
+        }
+    }
+    
+    /**
+     * Simple implementation of Interval for testing
+     */
+    private static class Impl implements Interval {
+
+        private final int start;
+        private final int end;
+        
+        public Impl(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+        
+        public Impl(Impl i) {
+            this.start = i.getStart();
+            this.end = i.getEnd();
+        }
+        
+        @Override
+        public int getStart() {
+            return start;
+        }
+        
+        @Override
+        public int getEnd() {
+            return end;
+        }
+        
+        @Override
+        public String toString() {
+            return "start: " + start + " end: " + end;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Impl)) {
+                return false;
+            }
+
+            return start == ((Impl) other).start && end == ((Impl) other).end;
+        }
+        
+        @Override
+        public int hashCode() {
+            int result = 17;
+            result = 31 * result + start;
+            result = 31 * result + end;
+            return result;
+        }
+    }
+    
+    /**
+     * An Interval which counts the reads of its end
+     */
+    private static class Counted extends Impl {
+
+        private final AtomicLong reads;
+        
+        public Counted(int start, int end, AtomicLong reads) {
+            super(start, end);
+            this.reads = reads;
+        }
+        
+        @Override
+        public int getEnd() {
+            reads.incrementAndGet();
+            return super.getEnd();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import datastructures.FrozenIntervalTree;
+import datastructures.Interval;
+import datastructures.IntervalTree;
+
+public class TestFrozenIntervalTree {
+
+    private FrozenIntervalTree<Impl> emptyTree;
+    
+    private IntervalTree<Impl> randomTree;
+    private FrozenIntervalTree<Impl> frozenRandomTree;
+    private int randomUpperBound = 3000;
+    private int numRandomIntervals = 5000;
+    private int numRandomQueries = 500;
+    private Random rand;
+    
+    @Before
+    public void setup() {
+        emptyTree = new IntervalTree<Impl>().freeze();
+
+        rand = new Random();
+        randomTree = new IntervalTree<Impl>();
+        for (int i = 0; i < numRandomIntervals; i++) {
+            randomTree.insert(randomInterval(randomUpperBound));
+        }
+        frozenRandomTree = randomTree.freeze();
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    private Impl randomInterval(int upperBound) {
+        int r = 0;
+        int s = 0;
+        while (s <= r) {
+            r = rand.nextInt(upperBound);
+            s = rand.nextInt(upperBound);
+        }
+        return new Impl(r, s);
+    }
+    
+    private static <T> List<T> toList(Iterator<T> iter) {
+        List<T> l = new ArrayList<>();
+        iter.forEachRemaining(l::add);
+        return l;
+    }
+    
+    //////////////////////
+    // Empty tree tests //
+    //////////////////////
+    
+    @Test
+    public void testEmptyTreeIsEmpty() {
+        assertThat(emptyTree.isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testEmptyTreeOverlaps() {
+        assertThat(emptyTree.overlaps(new Impl(1, 10)), is(false));
+    }
+    
+    @Test
+    public void testEmptyTreeMinimumOverlapper() {
+        assertThat(emptyTree.minimumOverlapper(new Impl(1, 10)).isPresent(), is(false));
+    }
+    
+    @Test
+    public void testEmptyTreeOverlappersNext() {
+        thrown.expect(NoSuchElementException.class);
+        thrown.expectMessage("Interval tree has no more overlapping elements.");
+        emptyTree.overlappers(new Impl(1, 3)).next();
+    }
+    
+    ///////////////////////
+    // Random tree tests //
+    ///////////////////////
+    
+    @Test
+    public void testRandomTreeSize() {
+        assertThat(frozenRandomTree.size(), is(randomTree.size()));
+    }
+    
+    @Test
+    public void testRandomTreeIterator() {
+        assertThat(toList(frozenRandomTree.iterator()), is(toList(randomTree.iterator())));
+    }
+    
+    @Test
+    public void testRandomTreeOverlappers() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(toList(frozenRandomTree.overlappers(query)),
+                    is(toList(randomTree.overlappers(query))));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeForEachOverlapper() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            List<Impl> visited = new ArrayList<>();
+            frozenRandomTree.forEachOverlapper(query, visited::add);
+            assertThat(visited, is(toList(randomTree.overlappers(query))));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeOverlaps() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(frozenRandomTree.overlaps(query), is(randomTree.overlaps(query)));
+        }
+        assertThat(frozenRandomTree.overlaps(new Impl(-1000, 0)), is(false));
+    }
+    
+    @Test
+    public void testRandomTreeNumOverlappers() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(frozenRandomTree.numOverlappers(query), is(randomTree.numOverlappers(query)));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeMinimumOverlapper() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(frozenRandomTree.minimumOverlapper(query), is(randomTree.minimumOverlapper(query)));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeUnchangedByLaterInsertion() {
+        int size = frozenRandomTree.size();
+        randomTree.insert(new Impl(randomUpperBound + 1, randomUpperBound + 2));
+        assertThat(frozenRandomTree.size(), is(size));
+    }
+    
+    @Test
+    public void testRandomTreePreceding() {
+        List<Impl> intervals = toList(randomTree.iterator());
+        for (int i = 0; i < numRandomQueries; i++) {
+            int p = rand.nextInt(randomUpperBound + 100);
+            List<Impl> preceding = toList(frozenRandomTree.preceding(p));
+            for (int j = 1; j < preceding.size(); j++) {
+                assertThat(preceding.get(j - 1).getEnd() >= preceding.get(j).getEnd(), is(true));
+            }
+            assertThat(new HashSet<>(preceding),
+                    is(intervals.stream()
+                                .filter(t -> t.getEnd() <= p)
+                                .collect(Collectors.toSet())));
+        }
+    }
+    
+    @Test
+    public void testEmptyTreePreceding() {
+        assertThat(emptyTree.preceding(0).hasNext(), is(false));
+    }
+    
+    /**
+     * Simple implementation of Interval for testing
+     */
+    private static class Impl implements Interval {
+
+        private final int start;
+        private final int end;
+        
+        public Impl(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        public int getStart() {
+            return start;
+        }
+        
+        @Override
+        public int getEnd() {
+            return end;
+        }
+        
+        @Override
+        public String toString() {
+            return "start: " + start + " end: " + end;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Impl)) {
+                return false;
+            }
+
+            return start == ((Impl) other).start && end == ((Impl) other).end;
+        }
+        
+        @Override
+        public int hashCode() {
+            int result = 17;
+            result = 31 * result + start;
+            result = 31 * result + end;
+            return result;
+        }
+    }
+}
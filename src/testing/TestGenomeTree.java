@@ -0,0 +1,454 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import annotation.Annotation;
+import annotation.Block;
+import annotation.Strand;
+import datastructures.GenomeTree;
+import datastructures.GenomeTree.Backend;
+import datastructures.GenomeTree.Overlap;
+
+public class TestGenomeTree {
+
+    private static final Backend[] BUILDABLE_BACKENDS = {Backend.INTERVAL_SET_TREE,
+            Backend.PERSISTENT, Backend.NCLIST, Backend.AILIST};
+    private static final String[] REFERENCES = {"chr1", "chr2", "chr3"};
+    private static final Strand[] STRANDS = {Strand.POSITIVE, Strand.NEGATIVE, Strand.BOTH};
+    
+    private List<Annotation> randomAnnotations;
+    private int randomUpperBound = 3000;
+    private int numRandomAnnotations = 3000;
+    private int numRandomQueries = 1000;
+    
+    private Random rand;
+    
+    @Before
+    public void setup() {
+        rand = new Random();
+        randomAnnotations = new ArrayList<>();
+        for (int i = 0; i < numRandomAnnotations; i++) {
+            randomAnnotations.add(randomAnnotation(REFERENCES, 100));
+        }
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    /**
+     * A random Annotation of one or two blocks on one of the given
+     * references, each block at most maxLength long.
+     */
+    private Annotation randomAnnotation(String[] refs, int maxLength) {
+        String ref = refs[rand.nextInt(refs.length)];
+        Strand strand = STRANDS[rand.nextInt(STRANDS.length)];
+        int start = rand.nextInt(randomUpperBound);
+        int end = start + 1 + rand.nextInt(maxLength);
+        Annotation a = new Block(ref, start, end, strand);
+        if (rand.nextBoolean()) {
+            int gap = 1 + rand.nextInt(maxLength);
+            a = a.union(new Block(ref, end + gap, end + gap + 1 + rand.nextInt(maxLength), strand));
+        }
+        return a;
+    }
+    
+    /**
+     * Random queries, sorted by reference name and start, including queries
+     * on a reference with no Annotations.
+     */
+    private List<Annotation> randomQueries(int maxLength) {
+        String[] refs = {"chr1", "chr2", "chr3", "chrX"};
+        List<Annotation> queries = new ArrayList<>();
+        for (int i = 0; i < numRandomQueries; i++) {
+            queries.add(randomAnnotation(refs, maxLength));
+        }
+        Collections.sort(queries, Comparator.comparing(Annotation::getReferenceName)
+                                            .thenComparingInt(Annotation::getStart));
+        return queries;
+    }
+    
+    /**
+     * A description of the coordinates of an Annotation, for comparing
+     * results which may be in any order.
+     */
+    private static String key(Annotation a) {
+        StringBuilder sb = new StringBuilder(a.getReferenceName());
+        Iterator<Block> blocks = a.getBlocks();
+        while (blocks.hasNext()) {
+            Block b = blocks.next();
+            sb.append(":" + b.getStart() + "-" + b.getEnd());
+        }
+        return sb.append(":" + a.getStrand()).toString();
+    }
+    
+    private static List<String> keys(Iterator<Annotation> iter) {
+        List<String> keys = new ArrayList<>();
+        iter.forEachRemaining(a -> keys.add(key(a)));
+        Collections.sort(keys);
+        return keys;
+    }
+    
+    /**
+     * The distinct Annotations on the given reference, by coordinates.
+     */
+    private static List<String> expectedKeys(List<Annotation> annotations, String ref) {
+        return annotations.stream()
+                          .filter(a -> a.getReferenceName().equals(ref))
+                          .map(TestGenomeTree::key)
+                          .distinct()
+                          .sorted()
+                          .collect(Collectors.toList());
+    }
+    
+    /**
+     * The distinct Annotations which overlap the given query, by coordinates.
+     */
+    private static List<String> expectedOverlapperKeys(List<Annotation> annotations,
+            Annotation query) {
+        return annotations.stream()
+                          .filter(a -> a.getReferenceName().equals(query.getReferenceName()))
+                          .filter(a -> a.overlaps(query))
+                          .map(TestGenomeTree::key)
+                          .distinct()
+                          .sorted()
+                          .collect(Collectors.toList());
+    }
+    
+    /**
+     * Asserts that the given GenomeTree holds exactly the given Annotations,
+     * and returns the same overlappers for random queries.
+     */
+    private void assertContainsExactly(GenomeTree tree, List<Annotation> annotations) {
+        Set<String> refs = annotations.stream()
+                                      .map(Annotation::getReferenceName)
+                                      .collect(Collectors.toSet());
+        assertThat(tree.getReferenceNames(), is(refs));
+        int size = 0;
+        for (String ref : refs) {
+            List<String> expected = expectedKeys(annotations, ref);
+            assertThat(keys(tree.getAnnotations(ref)), is(expected));
+            size += expected.size();
+        }
+        assertThat(tree.getSize(), is(size));
+        for (Annotation q : randomQueries(100).subList(0, 100)) {
+            assertThat(keys(tree.getOverlappers(q)), is(expectedOverlapperKeys(annotations, q)));
+        }
+    }
+    
+    private static List<String> joinKeys(GenomeTree tree, List<Annotation> queries) {
+        List<String> keys = new ArrayList<>();
+        Iterator<Overlap> iter = tree.joinOverlappers(queries.iterator());
+        while (iter.hasNext()) {
+            Overlap o = iter.next();
+            keys.add(key(o.getQuery()) + " " + key(o.getHit()));
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+    
+    private static List<String> expectedJoinKeys(GenomeTree tree, List<Annotation> queries) {
+        List<String> keys = new ArrayList<>();
+        for (Annotation q : queries) {
+            tree.getOverlappers(q).forEachRemaining(hit -> keys.add(key(q) + " " + key(hit)));
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+    
+    /////////////////////
+    // Bulk load tests //
+    /////////////////////
+    
+    @Test
+    public void testConstructorMultipleReferences() {
+        for (Backend backend : BUILDABLE_BACKENDS) {
+            assertContainsExactly(new GenomeTree(randomAnnotations, backend), randomAnnotations);
+        }
+    }
+    
+    @Test
+    public void testConstructorRemovesDuplicates() {
+        List<Annotation> annotations = new ArrayList<>(randomAnnotations);
+        annotations.addAll(randomAnnotations.subList(0, 100));
+        Collections.shuffle(annotations, rand);
+        for (Backend backend : BUILDABLE_BACKENDS) {
+            assertContainsExactly(new GenomeTree(annotations, backend), randomAnnotations);
+        }
+    }
+    
+    @Test
+    public void testFromSortedMultipleReferences() {
+        Map<String, List<Annotation>> references = new TreeMap<>();
+        for (String ref : REFERENCES) {
+            Set<String> seen = new HashSet<>();
+            references.put(ref, randomAnnotations.stream()
+                                                 .filter(a -> a.getReferenceName().equals(ref))
+                                                 .filter(a -> seen.add(key(a)))
+                                                 .sorted()
+                                                 .collect(Collectors.toList()));
+        }
+        for (Backend backend : BUILDABLE_BACKENDS) {
+            assertContainsExactly(GenomeTree.fromSorted(references, backend), randomAnnotations);
+        }
+    }
+    
+    @Test
+    public void testEmptyGenomeTreeIsEmpty() {
+        for (Backend backend : BUILDABLE_BACKENDS) {
+            GenomeTree tree = new GenomeTree(Collections.emptyList(), backend);
+            assertThat(tree.isEmpty(), is(true));
+            assertThat(tree.getSize(), is(0));
+        }
+    }
+    
+    //////////////////
+    // Insert tests //
+    //////////////////
+    
+    @Test
+    public void testInsertAllIntoEmptyTree() {
+        for (Backend backend : Arrays.asList(Backend.INTERVAL_SET_TREE, Backend.PERSISTENT)) {
+            GenomeTree tree = new GenomeTree(backend);
+            assertThat(tree.insertAll(randomAnnotations.stream()), is(true));
+            assertContainsExactly(tree, randomAnnotations);
+        }
+    }
+    
+    @Test
+    public void testInsertAllIntoExistingReferences() {
+        List<Annotation> first = randomAnnotations.subList(0, numRandomAnnotations / 2);
+        List<Annotation> second = randomAnnotations.subList(numRandomAnnotations / 2,
+                numRandomAnnotations);
+        for (Backend backend : Arrays.asList(Backend.INTERVAL_SET_TREE, Backend.PERSISTENT)) {
+            GenomeTree tree = new GenomeTree(first, backend);
+            assertThat(tree.insertAll(second.stream()), is(true));
+            assertContainsExactly(tree, randomAnnotations);
+        }
+    }
+    
+    @Test
+    public void testInsertAllNothingNew() {
+        GenomeTree tree = new GenomeTree(randomAnnotations, Backend.INTERVAL_SET_TREE);
+        assertThat(tree.insertAll(randomAnnotations.stream()), is(false));
+        assertContainsExactly(tree, randomAnnotations);
+    }
+    
+    @Test
+    public void testInsertAllUnmodifiableBackend() {
+        GenomeTree tree = new GenomeTree(randomAnnotations, Backend.NCLIST);
+        thrown.expect(UnsupportedOperationException.class);
+        tree.insertAll(randomAnnotations.stream());
+    }
+    
+    @Test(timeout = 60000)
+    public void testConcurrentInsertAll() throws InterruptedException {
+        GenomeTree tree = new GenomeTree(Backend.PERSISTENT);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        int numThreads = 4;
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            // Every thread loads every reference, so they race to add each one.
+            List<Annotation> part = new ArrayList<>();
+            for (int j = i; j < numRandomAnnotations; j += numThreads) {
+                part.add(randomAnnotations.get(j));
+            }
+            writers.add(new Thread(() -> {
+                try {
+                    tree.insertAll(part.stream());
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread t : writers) {
+            t.join();
+        }
+
+        assertThat(failure.get() == null, is(true));
+        assertContainsExactly(tree, randomAnnotations);
+    }
+    
+    @Test(timeout = 60000)
+    public void testConcurrentInsertAndQuery() throws InterruptedException {
+        GenomeTree tree = new GenomeTree(Backend.PERSISTENT);
+        Annotation stable = new Block("chr1", -100, -50, Strand.POSITIVE);
+        tree.insert(stable);    // Always found
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Annotation> queries = randomQueries(100);
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            readers.add(new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        if (!keys(tree.getOverlappers(stable)).equals(
+                                Collections.singletonList(key(stable)))) {
+                            failure.set(new AssertionError("Lost the stable Annotation"));
+                        }
+                        for (Annotation q : queries) {
+                            Iterator<Annotation> iter = tree.getOverlappers(q);
+                            while (iter.hasNext()) {
+                                if (!iter.next().overlaps(q)) {
+                                    failure.set(new AssertionError("Found a non-overlapper"));
+                                }
+                            }
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+        for (Annotation a : randomAnnotations) {
+            tree.insert(a);
+        }
+        done.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+
+        assertThat(failure.get() == null, is(true));
+        List<Annotation> expected = new ArrayList<>(randomAnnotations);
+        expected.add(stable);
+        assertContainsExactly(tree, expected);
+    }
+    
+    ///////////////////
+    // Visitor tests //
+    ///////////////////
+    
+    @Test
+    public void testForEachOverlapperMatchesGetOverlappers() {
+        List<Annotation> queries = randomQueries(100);
+        for (Backend backend : BUILDABLE_BACKENDS) {
+            GenomeTree tree = new GenomeTree(randomAnnotations, backend);
+            for (Annotation q : queries) {
+                List<Annotation> visited = new ArrayList<>();
+                assertThat(tree.forEachOverlapper(q, visited::add), is(true));
+                assertThat(keys(visited.iterator()), is(keys(tree.getOverlappers(q))));
+
+                visited.clear();
+                assertThat(tree.forEachOverlapper(q.getReferenceName(), q.getStart(), q.getEnd(),
+                        q.getStrand(), visited::add), is(true));
+                assertThat(keys(visited.iterator()), is(keys(tree.getOverlappers(
+                        q.getReferenceName(), q.getStart(), q.getEnd(), q.getStrand()))));
+            }
+        }
+    }
+    
+    @Test
+    public void testForEachOverlapperStopsEarly() {
+        Annotation query = new Block("chr1", 0, randomUpperBound, Strand.BOTH);
+        for (Backend backend : BUILDABLE_BACKENDS) {
+            GenomeTree tree = new GenomeTree(randomAnnotations, backend);
+            List<Annotation> visited = new ArrayList<>();
+            boolean completed = tree.forEachOverlapper(query, a -> {
+                visited.add(a);
+                return visited.size() < 10;
+            });
+            assertThat(completed, is(false));
+            assertThat(visited.size(), is(10));
+        }
+    }
+    
+    ////////////////
+    // Join tests //
+    ////////////////
+    
+    @Test
+    public void testJoinOverlappersEmptyTree() {
+        GenomeTree tree = new GenomeTree();
+        assertThat(tree.joinOverlappers(randomQueries(100).iterator()).hasNext(), is(false));
+    }
+    
+    @Test
+    public void testJoinOverlappersNoQueries() {
+        GenomeTree tree = new GenomeTree(randomAnnotations, Backend.INTERVAL_SET_TREE);
+        assertThat(tree.joinOverlappers(Collections.<Annotation>emptyIterator()).hasNext(),
+                is(false));
+    }
+    
+    @Test
+    public void testJoinOverlappersMatchesGetOverlappers() {
+        List<Annotation> queries = randomQueries(100);
+        for (Backend backend : BUILDABLE_BACKENDS) {
+            GenomeTree tree = new GenomeTree(randomAnnotations, backend);
+            assertThat(joinKeys(tree, queries), is(expectedJoinKeys(tree, queries)));
+        }
+    }
+    
+    @Test
+    public void testJoinOverlappersLongQueryThenShortQueries() {
+        List<Annotation> queries = new ArrayList<>();
+        queries.add(new Block("chr1", 0, randomUpperBound, Strand.BOTH));
+        for (int i = 0; i < randomUpperBound; i += 7) {
+            queries.add(new Block("chr1", i, i + 3, STRANDS[rand.nextInt(STRANDS.length)]));
+        }
+        GenomeTree tree = new GenomeTree(randomAnnotations, Backend.INTERVAL_SET_TREE);
+        assertThat(joinKeys(tree, queries), is(expectedJoinKeys(tree, queries)));
+    }
+    
+    @Test
+    public void testJoinOverlappersLongValueThenShortValues() {
+        List<Annotation> annotations = new ArrayList<>(randomAnnotations);
+        annotations.add(new Block("chr2", 0, randomUpperBound, Strand.POSITIVE));
+        GenomeTree tree = new GenomeTree(annotations, Backend.INTERVAL_SET_TREE);
+        List<Annotation> queries = randomQueries(10);
+        assertThat(joinKeys(tree, queries), is(expectedJoinKeys(tree, queries)));
+    }
+    
+    @Test
+    public void testJoinOverlappersStream() {
+        List<Annotation> queries = randomQueries(100);
+        GenomeTree tree = new GenomeTree(randomAnnotations, Backend.NCLIST);
+        assertThat(tree.joinOverlappers(queries.stream()).count(),
+                is((long) expectedJoinKeys(tree, queries).size()));
+    }
+    
+    @Test
+    public void testJoinOverlappersUnsortedQueries() {
+        GenomeTree tree = new GenomeTree(randomAnnotations, Backend.INTERVAL_SET_TREE);
+        List<Annotation> queries = new ArrayList<>();
+        queries.add(new Block("chr1", 100, 200, Strand.POSITIVE));
+        queries.add(new Block("chr1", 50, 60, Strand.POSITIVE));
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("not sorted by start");
+        tree.joinOverlappers(queries.iterator()).forEachRemaining(o -> { });
+    }
+    
+    @Test
+    public void testJoinOverlappersUngroupedQueries() {
+        GenomeTree tree = new GenomeTree(randomAnnotations, Backend.INTERVAL_SET_TREE);
+        List<Annotation> queries = new ArrayList<>();
+        queries.add(new Block("chr1", 100, 200, Strand.POSITIVE));
+        queries.add(new Block("chr2", 100, 200, Strand.POSITIVE));
+        queries.add(new Block("chr1", 300, 400, Strand.POSITIVE));
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("not grouped by reference");
+        tree.joinOverlappers(queries.iterator()).forEachRemaining(o -> { });
+    }
+}
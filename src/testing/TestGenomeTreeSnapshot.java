@@ -0,0 +1,288 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import annotation.Annotation;
+import annotation.BEDFileRecord.BEDBuilder;
+import annotation.Block;
+import annotation.BlockedAnnotation.BlockedBuilder;
+import annotation.Gene.GeneBuilder;
+import annotation.Strand;
+import datastructures.GenomeTree;
+import datastructures.GenomeTree.Backend;
+import io.GenomeTreeSnapshot;
+
+public class TestGenomeTreeSnapshot {
+
+    private static final Backend[] READABLE_BACKENDS = {Backend.INTERVAL_SET_TREE,
+            Backend.PERSISTENT, Backend.NCLIST, Backend.AILIST, Backend.MAPPED};
+    
+    private List<Annotation> annotations;   // One of each kind of record
+    private GenomeTree tree;
+    private Path snapshot;
+    
+    @Before
+    public void setup() throws IOException {
+        annotations = Arrays.asList(
+                new Block("chr1", 100, 200, Strand.POSITIVE),
+                new BlockedBuilder()
+                        .addBlock(new Block("chr1", 150, 250, Strand.NEGATIVE))
+                        .addBlock(new Block("chr1", 300, 400, Strand.NEGATIVE))
+                        .addBlock(new Block("chr1", 500, 520, Strand.NEGATIVE))
+                        .build(),
+                new GeneBuilder()
+                        .addBlock(new Block("chr1", 120, 180, Strand.BOTH))
+                        .addBlock(new Block("chr1", 190, 260, Strand.BOTH))
+                        .addName("gene\u00e9")
+                        .addCodingRegion(130, 200)
+                        .build(),
+                new GeneBuilder()
+                        .addBlock(new Block("chr2", 10, 20, Strand.POSITIVE))
+                        .addName("noncoding")
+                        .build(),
+                new BEDBuilder()
+                        .addBlock(new Block("chr2", 5, 50, Strand.NEGATIVE))
+                        .addBlock(new Block("chr2", 60, 90, Strand.NEGATIVE))
+                        .addName("coding")
+                        .addCodingRegion(30, 70)
+                        .addScore(0.54321)
+                        .addColor(200, 100, 50)
+                        .build(),
+                new BEDBuilder()
+                        .addBlock(new Block("chr2", 15, 25, Strand.BOTH))
+                        .addName("")
+                        .addScore(-3)
+                        .addColor(0x00ff7f)
+                        .build(),
+                new BEDBuilder()
+                        .addBlock(new Block("chrM", 0, 16569, Strand.POSITIVE))
+                        .build());
+        tree = new GenomeTree(annotations, Backend.INTERVAL_SET_TREE);
+        snapshot = Files.createTempFile("TestGenomeTreeSnapshot", ".gts");
+    }
+    
+    @After
+    public void teardown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    private static List<Annotation> annotations(GenomeTree tree) {
+        List<Annotation> l = new ArrayList<>();
+        for (String ref : tree.getReferenceNames()) {
+            tree.getAnnotations(ref).forEachRemaining(l::add);
+        }
+        return l;
+    }
+    
+    private static List<Annotation> overlappers(GenomeTree tree, Annotation query) {
+        List<Annotation> l = new ArrayList<>();
+        tree.getOverlappers(query).forEachRemaining(l::add);
+        return l;
+    }
+    
+    /**
+     * Asserts that the given GenomeTree holds exactly the expected
+     * Annotations, each decoded as the same class it was written as.
+     */
+    private static void assertRoundTrip(GenomeTree read, List<Annotation> expected) {
+        List<Annotation> actual = annotations(read);
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(read.getSize(), is(expected.size()));
+        for (Annotation a : expected) {
+            boolean found = false;
+            for (Annotation b : actual) {
+                found |= a.equals(b) && b.equals(a) && a.getClass() == b.getClass();
+            }
+            assertThat(a.toString(), found, is(true));
+        }
+    }
+    
+    /**
+     * Overwrites the int at the given position of the snapshot.
+     */
+    private void overwriteInt(long position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(4).putInt(value);
+            buf.flip();
+            channel.write(buf, position);
+        }
+    }
+    
+    /**
+     * Cuts the snapshot down to the given number of bytes.
+     */
+    private void truncate(long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+    
+    //////////////////////
+    // Round-trip tests //
+    //////////////////////
+    
+    @Test
+    public void testRoundTripEachBackend() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        for (Backend backend : READABLE_BACKENDS) {
+            assertRoundTrip(GenomeTreeSnapshot.read(snapshot, backend), annotations);
+        }
+    }
+    
+    @Test
+    public void testRoundTripDefaultBackend() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        assertRoundTrip(GenomeTreeSnapshot.read(snapshot), annotations);
+    }
+    
+    @Test
+    public void testRoundTripMapped() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        GenomeTree mapped = GenomeTreeSnapshot.map(snapshot);
+        assertRoundTrip(mapped, annotations);
+
+        Annotation query = new Block("chr1", 190, 310, Strand.BOTH);
+        List<Annotation> expected = new ArrayList<>();
+        tree.getOverlappers(query).forEachRemaining(expected::add);
+        assertRoundTrip(new GenomeTree(overlappers(mapped, query), Backend.INTERVAL_SET_TREE),
+                expected);
+    }
+    
+    @Test
+    public void testRoundTripPaged() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        assertRoundTrip(GenomeTreeSnapshot.openPaged(snapshot, 0), annotations);
+    }
+    
+    @Test
+    public void testRoundTripOfSnapshot() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        GenomeTree read = GenomeTreeSnapshot.read(snapshot);
+        GenomeTreeSnapshot.write(read, snapshot);
+        assertRoundTrip(GenomeTreeSnapshot.read(snapshot), annotations);
+    }
+    
+    @Test
+    public void testRoundTripEmptyTree() throws IOException {
+        GenomeTreeSnapshot.write(new GenomeTree(), snapshot);
+        assertThat(GenomeTreeSnapshot.read(snapshot).isEmpty(), is(true));
+        assertThat(GenomeTreeSnapshot.map(snapshot).isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testRoundTripManyRecords() throws IOException {
+        List<Annotation> many = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            int start = (i * 37) % 100000;
+            many.add(new BEDBuilder()
+                    .addBlock(new Block("chr" + i % 5, start, start + 10 + i % 50, Strand.POSITIVE))
+                    .addBlock(new Block("chr" + i % 5, start + 100, start + 120, Strand.POSITIVE))
+                    .addName("name" + i)
+                    .addScore(i)
+                    .addColor(i)
+                    .build());
+        }
+        GenomeTreeSnapshot.write(new GenomeTree(many, Backend.INTERVAL_SET_TREE), snapshot);
+        assertRoundTrip(GenomeTreeSnapshot.read(snapshot), many);
+        assertRoundTrip(GenomeTreeSnapshot.map(snapshot), many);
+    }
+    
+    ////////////////////////
+    // Corrupt file tests //
+    ////////////////////////
+    
+    @Test
+    public void testReadBadMagic() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        overwriteInt(0, 0x12345678);
+        thrown.expect(IOException.class);
+        thrown.expectMessage("is not a GenomeTree snapshot");
+        GenomeTreeSnapshot.read(snapshot);
+    }
+    
+    @Test
+    public void testMapBadMagic() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        overwriteInt(0, 0x12345678);
+        thrown.expect(IOException.class);
+        GenomeTreeSnapshot.map(snapshot);
+    }
+    
+    @Test
+    public void testReadBadVersion() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        overwriteInt(4, 99);
+        thrown.expect(IOException.class);
+        thrown.expectMessage("unsupported version 99");
+        GenomeTreeSnapshot.read(snapshot);
+    }
+    
+    @Test
+    public void testOpenPagedBadVersion() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        overwriteInt(4, 0);
+        thrown.expect(IOException.class);
+        GenomeTreeSnapshot.openPaged(snapshot, 100);
+    }
+    
+    @Test
+    public void testReadTruncatedTrailer() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        truncate(Files.size(snapshot) - 1);
+        thrown.expect(IOException.class);
+        GenomeTreeSnapshot.read(snapshot);
+    }
+    
+    @Test
+    public void testReadTruncatedToHalf() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        truncate(Files.size(snapshot) / 2);
+        thrown.expect(IOException.class);
+        GenomeTreeSnapshot.read(snapshot);
+    }
+    
+    @Test
+    public void testMapTruncatedToHeader() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        truncate(8);
+        thrown.expect(IOException.class);
+        thrown.expectMessage("is not a GenomeTree snapshot");
+        GenomeTreeSnapshot.map(snapshot);
+    }
+    
+    @Test
+    public void testReadEmptyFile() throws IOException {
+        thrown.expect(IOException.class);
+        GenomeTreeSnapshot.read(snapshot);
+    }
+    
+    @Test
+    public void testReadBadDirectoryOffset() throws IOException {
+        GenomeTreeSnapshot.write(tree, snapshot);
+        long size = Files.size(snapshot);
+        overwriteInt(size - 12, 0x7fffffff);    // High half of the offset
+        thrown.expect(IOException.class);
+        thrown.expectMessage("is a corrupt GenomeTree snapshot");
+        GenomeTreeSnapshot.read(snapshot);
+    }
+}
@@ -0,0 +1,341 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import datastructures.IntIntervalTree;
+
+public class TestIntIntervalTree {
+
+    private IntIntervalTree<String> emptyTree;
+    
+    private IntIntervalTree<String> randomTree;
+    private List<Entry> randomEntries;
+    private int randomUpperBound = 3000;
+    private int numRandomIntervals = 5000;
+    private int numRandomQueries = 500;
+    
+    private Random rand;
+    
+    // Private debugging methods.
+    private Method mIsBST;
+    private Method mHasValidRedColoring;
+    private Method mIsBalanced;
+    private Method mHasConsistentMaxEnds;
+    
+    @Before
+    public void setup() throws NoSuchMethodException, SecurityException {
+
+        mIsBST = IntIntervalTree.class.getDeclaredMethod("isBST");
+        mIsBST.setAccessible(true);
+        
+        mIsBalanced = IntIntervalTree.class.getDeclaredMethod("isBalanced");
+        mIsBalanced.setAccessible(true);
+        
+        mHasValidRedColoring = IntIntervalTree.class.getDeclaredMethod("hasValidRedColoring");
+        mHasValidRedColoring.setAccessible(true);
+        
+        mHasConsistentMaxEnds = IntIntervalTree.class.getDeclaredMethod("hasConsistentMaxEnds");
+        mHasConsistentMaxEnds.setAccessible(true);
+        
+        emptyTree = new IntIntervalTree<String>();
+
+        rand = new Random();
+        randomTree = new IntIntervalTree<String>();
+        randomEntries = new ArrayList<>();
+        for (int i = 0; i < numRandomIntervals; i++) {
+            Entry e = randomEntry(randomUpperBound);
+            e.id = randomTree.insert(e.start, e.end, e.value);
+            randomEntries.add(e);
+        }
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    private Entry randomEntry(int upperBound) {
+        int r = 0;
+        int s = 0;
+        while (s <= r) {
+            r = rand.nextInt(upperBound);
+            s = rand.nextInt(upperBound);
+        }
+        return new Entry(r, s, r + "-" + s + "-" + rand.nextInt(3));
+    }
+    
+    private void assertValid(IntIntervalTree<String> tree) throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        assertThat(mIsBST.invoke(tree), is(true));
+        assertThat(mIsBalanced.invoke(tree), is(true));
+        assertThat(mHasValidRedColoring.invoke(tree), is(true));
+        assertThat(mHasConsistentMaxEnds.invoke(tree), is(true));
+    }
+    
+    private List<String> expectedOverlappers(int start, int end) {
+        List<String> l = new ArrayList<>();
+        for (Entry e : randomEntries) {
+            if (e.start < end && start < e.end) {
+                l.add(e.value);
+            }
+        }
+        Collections.sort(l);
+        return l;
+    }
+    
+    private List<String> actualOverlappers(int start, int end) {
+        List<String> l = new ArrayList<>();
+        randomTree.overlappers(start, end).forEachRemaining(l::add);
+        Collections.sort(l);
+        return l;
+    }
+    
+    //////////////////////
+    // Empty tree tests //
+    //////////////////////
+    
+    @Test
+    public void testEmptyTreeIsEmpty() {
+        assertThat(emptyTree.isEmpty(), is(true));
+        assertThat(emptyTree.size(), is(0));
+    }
+    
+    @Test
+    public void testEmptyTreeOverlaps() {
+        assertThat(emptyTree.overlaps(1, 10), is(false));
+        assertThat(emptyTree.numOverlappers(1, 10), is(0));
+        assertThat(emptyTree.minimumOverlapperId(1, 10), is(-1));
+    }
+    
+    @Test
+    public void testEmptyTreeOverlappersNext() {
+        thrown.expect(NoSuchElementException.class);
+        thrown.expectMessage("Interval tree has no more overlapping elements.");
+        emptyTree.overlappers(1, 3).next();
+    }
+    
+    @Test
+    public void testEmptyTreeDelete() {
+        assertThat(emptyTree.delete(1, 3, "a"), is(false));
+    }
+    
+    @Test
+    public void testInsertEmptyInterval() {
+        thrown.expect(IllegalArgumentException.class);
+        emptyTree.insert(3, 3, "a");
+    }
+    
+    @Test
+    public void testInsertDuplicates() {
+        int a = emptyTree.insert(1, 3, "a");
+        int b = emptyTree.insert(1, 3, "a");
+        assertThat(a == b, is(false));
+        assertThat(emptyTree.size(), is(2));
+        assertThat(emptyTree.numOverlappers(0, 2), is(2));
+    }
+    
+    @Test
+    public void testDeletedIdIsReused() {
+        emptyTree.insert(1, 3, "a");
+        int b = emptyTree.insert(5, 7, "b");
+        emptyTree.delete(b);
+        assertThat(emptyTree.insert(9, 11, "c"), is(b));
+        assertThat(emptyTree.getValue(b), is("c"));
+    }
+    
+    @Test
+    public void testDeleteSentinelId() {
+        emptyTree.insert(1, 3, "a");
+        thrown.expect(IllegalArgumentException.class);
+        emptyTree.delete(0);
+    }
+    
+    @Test
+    public void testDeleteUnallocatedId() {
+        int a = emptyTree.insert(1, 3, "a");
+        thrown.expect(IllegalArgumentException.class);
+        emptyTree.delete(a + 1);
+    }
+    
+    @Test
+    public void testDeleteNegativeId() {
+        thrown.expect(IllegalArgumentException.class);
+        emptyTree.delete(-1);
+    }
+    
+    @Test
+    public void testDeleteDeletedId() {
+        emptyTree.insert(1, 3, "a");
+        int b = emptyTree.insert(5, 7, "b");
+        emptyTree.delete(b);
+        thrown.expect(IllegalArgumentException.class);
+        emptyTree.delete(b);
+    }
+    
+    @Test
+    public void testFailedDeleteLeavesTreeUnchanged() {
+        int a = emptyTree.insert(1, 3, "a");
+        emptyTree.insert(5, 7, "b");
+        emptyTree.delete(a);
+        try {
+            emptyTree.delete(a);
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        assertThat(emptyTree.size(), is(1));
+        assertThat(emptyTree.insert(9, 11, "c"), is(a));
+        assertThat(emptyTree.insert(13, 15, "d") == a, is(false));
+        assertThat(emptyTree.numOverlappers(0, 20), is(3));
+    }
+    
+    ///////////////////////
+    // Random tree tests //
+    ///////////////////////
+    
+    @Test
+    public void testRandomTreeSize() {
+        assertThat(randomTree.size(), is(numRandomIntervals));
+    }
+    
+    @Test
+    public void testRandomTreeIsValid() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        assertValid(randomTree);
+    }
+    
+    @Test
+    public void testRandomTreeIteratorAscending() {
+        Iterator<String> iter = randomTree.iterator();
+        PrimitiveIterator.OfInt ids = randomTree.overlapperIds(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        int count = 0;
+        int prevStart = Integer.MIN_VALUE;
+        int prevEnd = Integer.MIN_VALUE;
+        while (ids.hasNext()) {
+            int id = ids.nextInt();
+            int start = randomTree.getStart(id);
+            int end = randomTree.getEnd(id);
+            assertThat(start > prevStart || start == prevStart && end >= prevEnd, is(true));
+            assertThat(iter.next(), is(randomTree.getValue(id)));
+            prevStart = start;
+            prevEnd = end;
+            count++;
+        }
+        assertThat(iter.hasNext(), is(false));
+        assertThat(count, is(numRandomIntervals));
+    }
+    
+    @Test
+    public void testRandomTreeOverlappers() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Entry query = randomEntry(randomUpperBound + 100);
+            List<String> expected = expectedOverlappers(query.start, query.end);
+            assertThat(actualOverlappers(query.start, query.end), is(expected));
+            assertThat(randomTree.numOverlappers(query.start, query.end), is(expected.size()));
+            assertThat(randomTree.overlaps(query.start, query.end), is(!expected.isEmpty()));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeMinimumOverlapper() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Entry query = randomEntry(randomUpperBound + 100);
+            int id = randomTree.minimumOverlapperId(query.start, query.end);
+            PrimitiveIterator.OfInt ids = randomTree.overlapperIds(query.start, query.end);
+            assertThat(id, is(ids.hasNext() ? ids.nextInt() : -1));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeDeleteById() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        Collections.shuffle(randomEntries);
+        int numDeletions = numRandomIntervals / 2;
+        for (int i = 0; i < numDeletions; i++) {
+            randomTree.delete(randomEntries.remove(randomEntries.size() - 1).id);
+        }
+        assertThat(randomTree.size(), is(numRandomIntervals - numDeletions));
+        assertValid(randomTree);
+        
+        for (int i = 0; i < numRandomQueries; i++) {
+            Entry query = randomEntry(randomUpperBound + 100);
+            assertThat(actualOverlappers(query.start, query.end),
+                    is(expectedOverlappers(query.start, query.end)));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeDeleteByValue() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        Collections.shuffle(randomEntries);
+        for (Entry e : new ArrayList<>(randomEntries)) {
+            assertThat(randomTree.delete(e.start, e.end, e.value), is(true));
+            randomEntries.remove(e);
+        }
+        assertThat(randomTree.isEmpty(), is(true));
+        assertValid(randomTree);
+    }
+    
+    @Test
+    public void testRandomTreeDeleteAbsentValue() {
+        Entry e = randomEntries.get(0);
+        assertThat(randomTree.delete(e.start, e.end, "absent"), is(false));
+        assertThat(randomTree.size(), is(numRandomIntervals));
+    }
+    
+    @Test
+    public void testRandomTreeInterleavedInsertAndDelete() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        for (int i = 0; i < numRandomIntervals; i++) {
+            if (rand.nextBoolean()) {
+                Entry e = randomEntry(randomUpperBound);
+                e.id = randomTree.insert(e.start, e.end, e.value);
+                randomEntries.add(e);
+            } else {
+                int idx = rand.nextInt(randomEntries.size());
+                Entry e = randomEntries.get(idx);
+                randomEntries.set(idx, randomEntries.get(randomEntries.size() - 1));
+                randomEntries.remove(randomEntries.size() - 1);
+                randomTree.delete(e.id);
+            }
+        }
+        assertThat(randomTree.size(), is(randomEntries.size()));
+        assertValid(randomTree);
+        
+        for (int i = 0; i < numRandomQueries; i++) {
+            Entry query = randomEntry(randomUpperBound + 100);
+            assertThat(actualOverlappers(query.start, query.end),
+                    is(expectedOverlappers(query.start, query.end)));
+        }
+    }
+    
+    /**
+     * An entry in an IntIntervalTree, for testing
+     */
+    private static class Entry {
+        
+        private final int start;
+        private final int end;
+        private final String value;
+        private int id;
+        
+        public Entry(int start, int end, String value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import datastructures.Interval;
+import datastructures.IntervalCounter;
+import datastructures.IntervalTree;
+
+public class TestIntervalCounter {
+
+    private IntervalCounter emptyCounter;
+    
+    private IntervalCounter randomCounter;
+    private List<Impl> randomIntervals;
+    private int randomUpperBound = 3000;
+    private int numRandomIntervals = 5000;
+    private int numRandomQueries = 500;
+    
+    private Random rand;
+    
+    @Before
+    public void setup() {
+        emptyCounter = new IntervalCounter(Collections.emptyList());
+
+        rand = new Random();
+        randomIntervals = new ArrayList<>();
+        for (int i = 0; i < numRandomIntervals; i++) {
+            randomIntervals.add(randomInterval(randomUpperBound));
+        }
+        randomCounter = new IntervalCounter(randomIntervals);
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    private Impl randomInterval(int upperBound) {
+        int r = 0;
+        int s = 0;
+        while (s <= r) {
+            r = rand.nextInt(upperBound);
+            s = rand.nextInt(upperBound);
+        }
+        return new Impl(r, s);
+    }
+    
+    private int expectedCount(Impl query) {
+        return (int) randomIntervals.stream()
+                                    .filter(i -> i.overlaps(query))
+                                    .count();
+    }
+    
+    @Test
+    public void testEmptyCounter() {
+        assertThat(emptyCounter.size(), is(0));
+        assertThat(emptyCounter.count(1, 10), is(0));
+    }
+    
+    @Test
+    public void testEmptyQuery() {
+        thrown.expect(IllegalArgumentException.class);
+        randomCounter.count(10, 10);
+    }
+    
+    @Test
+    public void testRandomCounterSize() {
+        assertThat(randomCounter.size(), is(numRandomIntervals));
+    }
+    
+    @Test
+    public void testRandomCounterCount() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(randomCounter.count(query.getStart(), query.getEnd()),
+                    is(expectedCount(query)));
+        }
+    }
+    
+    @Test
+    public void testRandomCounterDepth() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            int pos = rand.nextInt(randomUpperBound);
+            assertThat(randomCounter.count(pos, pos + 1), is(expectedCount(new Impl(pos, pos + 1))));
+        }
+    }
+    
+    @Test
+    public void testCounterOverTree() {
+        IntervalTree<Impl> tree = new IntervalTree<>(randomIntervals);
+        IntervalCounter counter = new IntervalCounter(tree);
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(counter.count(query.getStart(), query.getEnd()), is(tree.numOverlappers(query)));
+        }
+    }
+    
+    /**
+     * Simple implementation of Interval for testing
+     */
+    private static class Impl implements Interval {
+
+        private final int start;
+        private final int end;
+        
+        public Impl(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        public int getStart() {
+            return start;
+        }
+
+        @Override
+        public int getEnd() {
+            return end;
+        }
+        
+        @Override
+        public String toString() {
+            return "start: " + start + " end: " + end;
+        }
+    }
+}
@@ -59,6 +59,7 @@ public class TestIntervalSetTree {
     private Method mHasValidRedColoring;
     private Method mIsBalanced;
     private Method mHasConsistentMaxEnds;
+    private Method mHasConsistentMinEnds;
 
     @Before
     public void setup() throws NoSuchMethodException, SecurityException,
@@ -80,6 +81,9 @@ public class TestIntervalSetTree {
         mHasConsistentMaxEnds = IntervalSetTree.class.getDeclaredMethod("hasConsistentMaxEnds");
         mHasConsistentMaxEnds.setAccessible(true);
         
+        mHasConsistentMinEnds = IntervalSetTree.class.getDeclaredMethod("hasConsistentMinEnds");
+        mHasConsistentMinEnds.setAccessible(true);
+        
         emptyTree = new IntervalSetTree<Impl>();
         singletonTree = new IntervalSetTree<Impl>(singletonValue);
         
@@ -1095,6 +1099,44 @@ public class TestIntervalSetTree {
         assertThat((long) randomTree.numOverlappers(i), is(count));
     }
     
+    @Test
+    public void testRandomTreeOverlappersByCoordinates() {
+        Impl i = overlapsRandomTree;
+        
+        List<Impl> expected = new ArrayList<>();
+        randomTree.overlappers(i).forEachRemaining(expected::add);
+        
+        List<Impl> actual = new ArrayList<>();
+        randomTree.overlappers(i.getStart(), i.getEnd()).forEachRemaining(actual::add);
+        
+        assertThat(actual, is(expected));
+        assertThat(randomTree.numOverlappers(i.getStart(), i.getEnd()), is(expected.size()));
+        assertThat(randomTree.overlaps(i.getStart(), i.getEnd()), is(!expected.isEmpty()));
+    }
+    
+    @Test
+    public void testRandomTreeForEachOverlapper() {
+        Impl i = overlapsRandomTree;
+        
+        List<Impl> expected = new ArrayList<>();
+        randomTree.overlappers(i).forEachRemaining(expected::add);
+        
+        List<Impl> visited = new ArrayList<>();
+        assertThat(randomTree.forEachOverlapper(i, visited::add), is(true));
+        assertThat(visited, is(expected));
+    }
+    
+    @Test
+    public void testRandomTreeForEachOverlapperStopsEarly() {
+        List<Impl> visited = new ArrayList<>();
+        boolean completed = randomTree.forEachOverlapper(overlapsRandomTree, t -> {
+            visited.add(t);
+            return visited.size() < 10;
+        });
+        assertThat(completed, is(false));
+        assertThat(visited.size(), is(10));
+    }
+    
     @Test
     public void testRandomTreeSizeAfterDeleteOverlappers() {
         Impl i = new Impl(1000, 2000);
@@ -1121,6 +1163,74 @@ public class TestIntervalSetTree {
         }
     }
 
+    @Test
+    public void testRandomTreeIsValidAfterRepeatedDeleteOverlappers() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        Random rand = new Random();
+        Set<Impl> expected = new HashSet<>(randomIntervals);
+        
+        while (!randomTree.isEmpty()) {
+            int start = rand.nextInt(randomUpperBound + 100) - 50;
+            int end = start + rand.nextInt(200) + 1;
+            Impl query = new Impl(start, end);
+            
+            boolean changed = expected.removeIf(i -> i.overlaps(query));
+            assertThat(randomTree.deleteOverlappers(start, end), is(changed));
+            assertThat(randomTree.size(), is(expected.size()));
+            assertThat(mIsBST.invoke(randomTree), is(true));
+            assertThat(mIsBalanced.invoke(randomTree), is(true));
+            assertThat(mHasValidRedColoring.invoke(randomTree), is(true));
+            assertThat(mHasConsistentMaxEnds.invoke(randomTree), is(true));
+            assertThat(mHasConsistentMinEnds.invoke(randomTree), is(true));
+        }
+        assertThat(expected.isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testRandomTreeContentsAfterDeleteOverlappers() {
+        Set<Impl> expected = randomIntervals.stream()
+                .filter(i -> !i.overlaps(overlapsRandomTree))
+                .collect(Collectors.toSet());
+        
+        randomTree.deleteOverlappers(overlapsRandomTree);
+        Set<Impl> actual = new HashSet<>();
+        randomTree.forEach(actual::add);
+        assertThat(actual, is(expected));
+    }
+    
+    @Test
+    public void testDeleteOverlappersKeepsEmptyIntervals() {
+        emptyTree.insert(new Impl(5, 5, 1));
+        emptyTree.insert(new Impl(5, 5, 2));
+        emptyTree.insert(new Impl(5, 10, 1));
+        emptyTree.insert(new Impl(2, 6, 1));
+        emptyTree.insert(new Impl(8, 9, 1));
+        
+        assertThat(emptyTree.deleteOverlappers(5, 8), is(true));
+        assertThat(emptyTree.size(), is(3));
+        assertThat(emptyTree.contains(new Impl(5, 5, 1)), is(true));
+        assertThat(emptyTree.contains(new Impl(5, 5, 2)), is(true));
+        assertThat(emptyTree.contains(new Impl(8, 9, 1)), is(true));
+    }
+    
+    @Test
+    public void testDeleteOverlappersManyContaining() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        for (int i = 0; i < 100; i++) {
+            emptyTree.insert(new Impl(i, 300 - i, 1));  // Each contains 150
+            emptyTree.insert(new Impl(i, 300 - i, 2));
+            emptyTree.insert(new Impl(i, i + 1, 1));    // None contains 150
+        }
+        
+        assertThat(emptyTree.deleteOverlappers(150, 151), is(true));
+        assertThat(emptyTree.size(), is(100));
+        assertThat(emptyTree.overlaps(new Impl(150, 151, 1)), is(false));
+        assertThat(mIsBST.invoke(emptyTree), is(true));
+        assertThat(mIsBalanced.invoke(emptyTree), is(true));
+        assertThat(mHasValidRedColoring.invoke(emptyTree), is(true));
+        assertThat(mHasConsistentMaxEnds.invoke(emptyTree), is(true));
+    }
+    
     @Test
     public void testRandomTreeSizeAfterRepeatedDeletions() throws
     IllegalAccessException, IllegalArgumentException, InvocationTargetException {
@@ -1190,6 +1300,265 @@ public class TestIntervalSetTree {
         }
     }
     
+    ////////////////////////////
+    // Bulk-loaded tree tests //
+    ////////////////////////////
+    
+    @Test
+    public void testBulkLoadedTreeSize() {
+        List<Impl> randomIntervalList = new ArrayList<>(randomIntervals);
+        Collections.shuffle(randomIntervalList);
+        IntervalSetTree<Impl> tree = new IntervalSetTree<>(randomIntervalList);
+        assertThat(tree.size(), is(randomIntervals.size()));
+    }
+    
+    @Test
+    public void testBulkLoadedTreeSizeWithDuplicates() {
+        List<Impl> l = new ArrayList<>(randomIntervals);
+        l.addAll(randomIntervals);
+        IntervalSetTree<Impl> tree = new IntervalSetTree<>(l);
+        assertThat(tree.size(), is(randomIntervals.size()));
+    }
+    
+    @Test
+    public void testBulkLoadedTreeContainsAll() {
+        IntervalSetTree<Impl> tree = new IntervalSetTree<>(randomIntervals.stream());
+        for (Impl i : randomIntervals) {
+            assertThat(tree.contains(i), is(true));
+        }
+    }
+    
+    @Test
+    public void testBulkLoadedTreeNumOverlappers() {
+        IntervalSetTree<Impl> tree = new IntervalSetTree<>(randomIntervals);
+        Impl i = new Impl(20, 40);
+        assertThat(tree.numOverlappers(i), is(randomTree.numOverlappers(i)));
+    }
+    
+    @Test
+    public void testBulkLoadedTreeIsValid() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        List<Impl> l = new ArrayList<>();
+        for (int n = 0; n < 300; n++) {
+            IntervalSetTree<Impl> tree = new IntervalSetTree<>(l);
+            assertThat(tree.size(), is(n));
+            assertThat(mIsBST.invoke(tree), is(true));
+            assertThat(mIsBalanced.invoke(tree), is(true));
+            assertThat(mHasValidRedColoring.invoke(tree), is(true));
+            assertThat(mHasConsistentMaxEnds.invoke(tree), is(true));
+            l.add(new Impl(n / 2, n / 2 + 10 + (n % 7) * 100, n % 2));
+        }
+    }
+    
+    ///////////////////////
+    // Same-bounds tests //
+    ///////////////////////
+    
+    private int numSameBounds = 50;     // Enough to need a HashSet
+    
+    @Test
+    public void testInsertManySameBounds() {
+        for (int i = 0; i < numSameBounds; i++) {
+            assertThat(emptyTree.insert(new Impl(1, 3, i)), is(true));
+            assertThat(emptyTree.insert(new Impl(1, 3, i)), is(false));
+            assertThat(emptyTree.size(), is(i + 1));
+            for (int j = 0; j <= i; j++) {
+                assertThat(emptyTree.contains(new Impl(1, 3, j)), is(true));
+            }
+            assertThat(emptyTree.contains(new Impl(1, 3, i + 1)), is(false));
+        }
+        
+        Set<Impl> expected = new HashSet<>();
+        for (int i = 0; i < numSameBounds; i++) {
+            expected.add(new Impl(1, 3, i));
+        }
+        Set<Impl> actual = new HashSet<>();
+        emptyTree.minimum().forEachRemaining(actual::add);
+        assertThat(actual, is(expected));
+        assertThat(emptyTree.numOverlappers(new Impl(2, 3)), is(numSameBounds));
+    }
+    
+    @Test
+    public void testDeleteManySameBounds() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        List<Impl> l = new ArrayList<>();
+        for (int i = 0; i < numSameBounds; i++) {
+            l.add(new Impl(1, 3, i));
+            emptyTree.insert(new Impl(1, 3, i));
+        }
+        emptyTree.insert(new Impl(0, 2));
+        emptyTree.insert(new Impl(2, 4));
+        Collections.shuffle(l);
+        
+        for (int i = 0; i < numSameBounds; i++) {
+            Impl deleted = l.get(i);
+            assertThat(emptyTree.delete(deleted), is(true));
+            assertThat(emptyTree.delete(deleted), is(false));
+            assertThat(emptyTree.contains(deleted), is(false));
+            for (Impl remaining : l.subList(i + 1, numSameBounds)) {
+                assertThat(emptyTree.contains(remaining), is(true));
+            }
+            assertThat(emptyTree.size(), is(numSameBounds - i + 1));
+        }
+        assertThat(mIsBST.invoke(emptyTree), is(true));
+        assertThat(mIsBalanced.invoke(emptyTree), is(true));
+        assertThat(emptyTree.overlaps(new Impl(1, 2)), is(true));
+        assertThat(emptyTree.overlaps(new Impl(2, 3)), is(true));
+    }
+    
+    @Test
+    public void testBulkLoadManySameBounds() {
+        List<Impl> l = new ArrayList<>();
+        for (int i = 0; i < numSameBounds; i++) {
+            l.add(new Impl(1, 3, i));
+            l.add(new Impl(1, 3, i));
+        }
+        IntervalSetTree<Impl> tree = new IntervalSetTree<>(l);
+        assertThat(tree.size(), is(numSameBounds));
+        assertThat(tree.numOverlappers(new Impl(0, 10)), is(numSameBounds));
+        assertThat(tree.contains(new Impl(1, 3, numSameBounds - 1)), is(true));
+        assertThat(tree.contains(new Impl(1, 3, numSameBounds)), is(false));
+    }
+    
+    ///////////////////
+    // Nearest tests //
+    ///////////////////
+    
+    private static List<Impl> list(Iterator<Impl> iter) {
+        List<Impl> l = new ArrayList<>();
+        iter.forEachRemaining(l::add);
+        return l;
+    }
+    
+    private static int distance(Impl a, Impl b) {
+        return Math.max(0, Math.max(b.getStart() - a.getEnd(), a.getStart() - b.getEnd()));
+    }
+    
+    @Test
+    public void testGappedTreeConsistentMinEndsAfterInsertionsAndDeletions() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        assertThat(mHasConsistentMinEnds.invoke(gappedTree), is(true));
+        
+        List<Impl> gappedIntervalList = new ArrayList<>(gappedIntervals);
+        Collections.shuffle(gappedIntervalList);
+        for (Impl i : gappedIntervalList.subList(0, gappedIntervalList.size() / 2)) {
+            gappedTree.delete(i);
+        }
+        assertThat(mHasConsistentMinEnds.invoke(gappedTree), is(true));
+        
+        for (int i = 0; i < 100; i++) {
+            gappedTree.insert(new Impl(gappedUpperBound + i, gappedUpperBound + i + 1));
+        }
+        assertThat(mHasConsistentMinEnds.invoke(gappedTree), is(true));
+        
+        IntervalSetTree<Impl> bulkLoaded = new IntervalSetTree<>(gappedIntervalList);
+        assertThat(mHasConsistentMinEnds.invoke(bulkLoaded), is(true));
+    }
+    
+    @Test
+    public void testEmptyIntervalsPreceding() {
+        List<Impl> intervals = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            intervals.add(new Impl(i, i));
+            intervals.add(new Impl(i, i + 1 + i % 7));
+        }
+        Collections.shuffle(intervals);
+        IntervalSetTree<Impl> tree = new IntervalSetTree<Impl>();
+        intervals.forEach(tree::insert);
+        for (int p = 0; p < 1000; p += 37) {
+            int position = p;
+            List<Impl> preceding = list(tree.preceding(position));
+            List<Impl> expected = intervals.stream()
+                                           .filter(i -> i.getEnd() <= position)
+                                           .collect(Collectors.toList());
+            assertThat(new HashSet<>(preceding), is(new HashSet<>(expected)));
+            assertThat(preceding.size(), is(expected.size()));
+            assertThat(preceding.get(0).getEnd(), is(position));
+        }
+    }
+    
+    @Test
+    public void testGappedTreePreceding() {
+        for (int position = 0; position < gappedLowerBound + gappedUpperBound; position += 250) {
+            int p = position;
+            List<Impl> preceding = list(gappedTree.preceding(p));
+            List<Impl> expected = gappedIntervals.stream()
+                                                 .filter(i -> i.getEnd() <= p)
+                                                 .collect(Collectors.toList());
+            assertThat(new HashSet<>(preceding), is(new HashSet<>(expected)));
+            assertThat(preceding.size(), is(expected.size()));
+            for (int i = 1; i < preceding.size(); i++) {
+                assertThat(preceding.get(i - 1).getEnd() >= preceding.get(i).getEnd(), is(true));
+            }
+        }
+    }
+    
+    @Test
+    public void testGappedTreeFollowing() {
+        // Intervals with the same bounds may be visited in any order.
+        Comparator<Impl> order = Comparator.<Impl>naturalOrder().thenComparing(Impl::id);
+        for (int position = 0; position < gappedLowerBound + gappedUpperBound; position += 250) {
+            int p = position;
+            List<Impl> expected = gappedIntervals.stream()
+                                                 .filter(i -> i.getStart() >= p)
+                                                 .sorted(order)
+                                                 .collect(Collectors.toList());
+            List<Impl> following = list(gappedTree.following(p));
+            for (int i = 1; i < following.size(); i++) {
+                assertThat(following.get(i - 1).compareTo(following.get(i)) <= 0, is(true));
+            }
+            following.sort(order);
+            assertThat(following, is(expected));
+        }
+    }
+    
+    @Test
+    public void testGappedTreeNearestAcrossGap() {
+        Impl query = new Impl(gappedUpperBound + 100, gappedUpperBound + 200);
+        List<Impl> up = gappedTree.nearestUpstream(query, 5);
+        List<Impl> down = gappedTree.nearestDownstream(query, 5);
+        assertThat(up.size(), is(5));
+        assertThat(down.size(), is(5));
+        assertThat(up.get(0).getEnd(), is(gappedIntervals.stream()
+                .mapToInt(Impl::getEnd).filter(e -> e <= gappedUpperBound).max().getAsInt()));
+        assertThat(down.get(0).getStart(), is(gappedIntervals.stream()
+                .mapToInt(Impl::getStart).filter(s -> s >= gappedLowerBound).min().getAsInt()));
+        assertThat(gappedTree.nearest(query, 10, 50).isEmpty(), is(true));
+        assertThat(gappedTree.nearestUpstream(query, 10, 50).isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testGappedTreeNearestDistances() {
+        Random rand = new Random();
+        for (int n = 0; n < 100; n++) {
+            int start = rand.nextInt(gappedLowerBound + gappedUpperBound);
+            Impl query = new Impl(start, start + 1 + rand.nextInt(50));
+            int k = 1 + rand.nextInt(20);
+            List<Integer> expected = gappedIntervals.stream()
+                                                    .map(i -> distance(query, i))
+                                                    .sorted()
+                                                    .limit(k)
+                                                    .collect(Collectors.toList());
+            List<Integer> actual = gappedTree.nearest(query, k)
+                                             .stream()
+                                             .map(i -> distance(query, i))
+                                             .collect(Collectors.toList());
+            assertThat(actual, is(expected));
+        }
+    }
+    
+    @Test
+    public void testGappedTreeNearestUpstreamMaxDistance() {
+        Impl query = new Impl(gappedLowerBound + 500, gappedLowerBound + 600);
+        List<Impl> up = gappedTree.nearestUpstream(query, Integer.MAX_VALUE, 100);
+        List<Impl> expected = gappedIntervals.stream()
+                .filter(i -> i.getEnd() <= query.getStart() && i.getEnd() >= query.getStart() - 100)
+                .sorted(Comparator.comparingInt(Impl::getEnd).reversed())
+                .collect(Collectors.toList());
+        assertThat(new HashSet<>(up), is(new HashSet<>(expected)));
+        assertThat(up.size(), is(expected.size()));
+    }
+    
     ///////////////////////
     // Gapped tree tests //
     ///////////////////////
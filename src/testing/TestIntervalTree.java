@@ -7,12 +7,16 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import org.junit.Before;
@@ -48,6 +52,8 @@ public class TestIntervalTree {
     private Method mHasValidRedColoring;
     private Method mIsBalanced;
     private Method mHasConsistentMaxEnds;
+    private Method mHasConsistentMinEnds;
+    private Method mHasConsistentSizes;
 
     @Before
     public void setup() throws NoSuchMethodException, SecurityException,
@@ -69,6 +75,12 @@ public class TestIntervalTree {
         mHasConsistentMaxEnds = IntervalTree.class.getDeclaredMethod("hasConsistentMaxEnds");
         mHasConsistentMaxEnds.setAccessible(true);
         
+        mHasConsistentMinEnds = IntervalTree.class.getDeclaredMethod("hasConsistentMinEnds");
+        mHasConsistentMinEnds.setAccessible(true);
+        
+        mHasConsistentSizes = IntervalTree.class.getDeclaredMethod("hasConsistentSizes");
+        mHasConsistentSizes.setAccessible(true);
+        
         emptyTree = new IntervalTree<Impl>();
         singletonTree = new IntervalTree<Impl>(singletonValue);
         
@@ -919,6 +931,44 @@ public class TestIntervalTree {
         assertThat((long) randomTree.numOverlappers(i), is(count));
     }
     
+    @Test
+    public void testRandomTreeOverlappersByCoordinates() {
+        Impl i = new Impl(1000, 2000);
+        
+        List<Impl> expected = new ArrayList<>();
+        randomTree.overlappers(i).forEachRemaining(expected::add);
+        
+        List<Impl> actual = new ArrayList<>();
+        randomTree.overlappers(i.getStart(), i.getEnd()).forEachRemaining(actual::add);
+        
+        assertThat(actual, is(expected));
+        assertThat(randomTree.numOverlappers(i.getStart(), i.getEnd()), is(expected.size()));
+        assertThat(randomTree.overlaps(i.getStart(), i.getEnd()), is(!expected.isEmpty()));
+    }
+    
+    @Test
+    public void testRandomTreeForEachOverlapper() {
+        Impl i = new Impl(1000, 2000);
+        
+        List<Impl> expected = new ArrayList<>();
+        randomTree.overlappers(i).forEachRemaining(expected::add);
+        
+        List<Impl> visited = new ArrayList<>();
+        assertThat(randomTree.forEachOverlapper(i, visited::add), is(true));
+        assertThat(visited, is(expected));
+    }
+    
+    @Test
+    public void testRandomTreeForEachOverlapperStopsEarly() {
+        List<Impl> visited = new ArrayList<>();
+        boolean completed = randomTree.forEachOverlapper(1000, 2000, t -> {
+            visited.add(t);
+            return visited.size() < 10;
+        });
+        assertThat(completed, is(false));
+        assertThat(visited.size(), is(10));
+    }
+    
     @Test
     public void testRandomTreeSizeAfterDeleteOverlappers() {
         Impl i = new Impl(1000, 2000);
@@ -945,6 +995,91 @@ public class TestIntervalTree {
         }
     }
 
+    @Test
+    public void testRandomTreeIsValidAfterRepeatedDeleteOverlappers() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        Random rand = new Random();
+        Set<Impl> expected = new TreeSet<>(randomIntervals);
+        
+        while (!randomTree.isEmpty()) {
+            int start = rand.nextInt(randomUpperBound + 100) - 50;
+            int end = start + rand.nextInt(200) + 1;
+            Impl query = new Impl(start, end);
+            
+            boolean changed = expected.removeIf(i -> i.overlaps(query));
+            assertThat(randomTree.deleteOverlappers(start, end), is(changed));
+            assertThat(randomTree.size(), is(expected.size()));
+            assertThat(mIsBST.invoke(randomTree), is(true));
+            assertThat(mIsBalanced.invoke(randomTree), is(true));
+            assertThat(mHasValidRedColoring.invoke(randomTree), is(true));
+            assertThat(mHasConsistentMaxEnds.invoke(randomTree), is(true));
+            assertThat(mHasConsistentMinEnds.invoke(randomTree), is(true));
+            assertThat(mHasConsistentSizes.invoke(randomTree), is(true));
+        }
+        assertThat(expected.isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testRandomTreeContentsAfterDeleteOverlappers() {
+        Impl query = new Impl(1000, 1100);
+        List<Impl> expected = randomIntervals.stream()
+                .filter(i -> !i.overlaps(query))
+                .collect(Collectors.toList());
+        
+        randomTree.deleteOverlappers(query);
+        List<Impl> actual = new ArrayList<>();
+        randomTree.forEach(actual::add);
+        assertThat(actual, is(expected));
+    }
+    
+    @Test
+    public void testDeleteOverlappersKeepsEmptyIntervals() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        emptyTree.insert(new Impl(5, 5));
+        emptyTree.insert(new Impl(5, 10));
+        emptyTree.insert(new Impl(2, 6));
+        emptyTree.insert(new Impl(8, 9));
+        
+        assertThat(emptyTree.deleteOverlappers(5, 8), is(true));
+        assertThat(emptyTree.size(), is(2));
+        assertThat(emptyTree.contains(new Impl(5, 5)), is(true));
+        assertThat(emptyTree.contains(new Impl(8, 9)), is(true));
+        assertThat(mHasConsistentSizes.invoke(emptyTree), is(true));
+    }
+    
+    @Test
+    public void testDeleteOverlappersOnlyEmptyIntervalStartsInQuery() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        emptyTree.insert(new Impl(5, 5));
+        emptyTree.insert(new Impl(2, 3));
+        emptyTree.insert(new Impl(9, 12));
+        
+        assertThat(emptyTree.deleteOverlappers(5, 8), is(false));
+        assertThat(emptyTree.size(), is(3));
+        assertThat(emptyTree.contains(new Impl(5, 5)), is(true));
+        assertThat(mIsBST.invoke(emptyTree), is(true));
+        assertThat(mIsBalanced.invoke(emptyTree), is(true));
+        assertThat(mHasConsistentSizes.invoke(emptyTree), is(true));
+    }
+    
+    @Test
+    public void testDeleteOverlappersManyContaining() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        for (int i = 0; i < 100; i++) {
+            emptyTree.insert(new Impl(i, 300 - i));     // Each contains 150
+            emptyTree.insert(new Impl(i, i + 1));       // None contains 150
+        }
+        
+        assertThat(emptyTree.deleteOverlappers(150, 151), is(true));
+        assertThat(emptyTree.size(), is(100));
+        assertThat(emptyTree.overlaps(new Impl(150, 151)), is(false));
+        assertThat(mIsBST.invoke(emptyTree), is(true));
+        assertThat(mIsBalanced.invoke(emptyTree), is(true));
+        assertThat(mHasValidRedColoring.invoke(emptyTree), is(true));
+        assertThat(mHasConsistentMaxEnds.invoke(emptyTree), is(true));
+        assertThat(mHasConsistentSizes.invoke(emptyTree), is(true));
+    }
+    
     @Test
     public void testRandomTreeSizeAfterRepeatedDeletions() throws
     IllegalAccessException, IllegalArgumentException, InvocationTargetException {
@@ -1012,6 +1147,451 @@ public class TestIntervalTree {
         }
     }
     
+    ////////////////////////////
+    // Bulk-loaded tree tests //
+    ////////////////////////////
+    
+    @Test
+    public void testBulkLoadedTreeSize() {
+        List<Impl> randomIntervalList = new ArrayList<>(randomIntervals);
+        Collections.shuffle(randomIntervalList);
+        IntervalTree<Impl> tree = new IntervalTree<>(randomIntervalList);
+        assertThat(tree.size(), is(randomIntervals.size()));
+    }
+    
+    @Test
+    public void testBulkLoadedTreeSizeWithDuplicates() {
+        List<Impl> l = new ArrayList<>(randomIntervals);
+        l.addAll(randomIntervals);
+        IntervalTree<Impl> tree = new IntervalTree<>(l);
+        assertThat(tree.size(), is(randomIntervals.size()));
+    }
+    
+    @Test
+    public void testBulkLoadedTreeIteratesInOrder() {
+        List<Impl> randomIntervalList = new ArrayList<>(randomIntervals);
+        Collections.shuffle(randomIntervalList);
+        IntervalTree<Impl> tree = new IntervalTree<>(randomIntervalList);
+        
+        Iterator<Impl> expected = randomIntervals.iterator();
+        for (Impl i : tree) {
+            assertThat(i, is(expected.next()));
+        }
+        assertThat(expected.hasNext(), is(false));
+    }
+    
+    @Test
+    public void testBulkLoadedTreeNumOverlappers() {
+        IntervalTree<Impl> tree = new IntervalTree<>(randomIntervals.stream());
+        Impl i = new Impl(1000, 2000);
+        assertThat(tree.numOverlappers(i), is(randomTree.numOverlappers(i)));
+    }
+    
+    @Test
+    public void testBulkLoadedTreeIsValid() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        List<Impl> l = new ArrayList<>();
+        for (int n = 0; n < 300; n++) {
+            IntervalTree<Impl> tree = new IntervalTree<>(l);
+            assertThat(tree.size(), is(n));
+            assertThat(mIsBST.invoke(tree), is(true));
+            assertThat(mIsBalanced.invoke(tree), is(true));
+            assertThat(mHasValidRedColoring.invoke(tree), is(true));
+            assertThat(mHasConsistentMaxEnds.invoke(tree), is(true));
+            assertThat(mHasConsistentSizes.invoke(tree), is(true));
+            l.add(new Impl(n, n + 10 + (n % 7) * 100));
+        }
+    }
+    
+    @Test
+    public void testBulkLoadedTreeIsValidAfterRepeatedDeletions() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        IntervalTree<Impl> tree = new IntervalTree<>(randomIntervals);
+        List<Impl> randomIntervalList = new ArrayList<>(randomIntervals);
+        Collections.shuffle(randomIntervalList);
+        
+        for (Impl i : randomIntervalList.subList(0, randomIntervalList.size() / 2)) {
+            tree.delete(i);
+        }
+        assertThat(mIsBST.invoke(tree), is(true));
+        assertThat(mIsBalanced.invoke(tree), is(true));
+        assertThat(mHasValidRedColoring.invoke(tree), is(true));
+        assertThat(mHasConsistentMaxEnds.invoke(tree), is(true));
+    }
+    
+    ///////////////////////
+    // Tree stream tests //
+    ///////////////////////
+    
+    @Test
+    public void testEmptyTreeStream() {
+        assertThat(emptyTree.stream().count(), is(0L));
+        assertThat(emptyTree.overlapperStream(new Impl(1, 2)).count(), is(0L));
+    }
+    
+    @Test
+    public void testRandomTreeConsistentSizesAfterInsertionsAndDeletions() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        assertThat(mHasConsistentSizes.invoke(randomTree), is(true));
+        
+        for (Impl i : randomIntervals) {
+            randomTree.insert(i);   // All duplicates
+        }
+        assertThat(mHasConsistentSizes.invoke(randomTree), is(true));
+        
+        List<Impl> randomIntervalList = new ArrayList<>(randomIntervals);
+        Collections.shuffle(randomIntervalList);
+        for (Impl i : randomIntervalList.subList(0, randomIntervalList.size() / 2)) {
+            randomTree.delete(i);
+        }
+        assertThat(mHasConsistentSizes.invoke(randomTree), is(true));
+    }
+    
+    @Test
+    public void testRandomTreeStreamInOrder() {
+        List<Impl> expected = new ArrayList<>(randomIntervals);
+        assertThat(randomTree.stream().collect(Collectors.toList()), is(expected));
+    }
+    
+    @Test
+    public void testRandomTreeParallelStreamInOrder() {
+        List<Impl> expected = new ArrayList<>(randomIntervals);
+        assertThat(randomTree.stream().parallel().collect(Collectors.toList()), is(expected));
+    }
+    
+    @Test
+    public void testRandomTreeSpliteratorSplitsEvenly() {
+        Spliterator<Impl> suffix = randomTree.spliterator();
+        Spliterator<Impl> prefix = suffix.trySplit();
+        long total = randomIntervals.size();
+        assertThat(prefix.estimateSize() + suffix.estimateSize(), is(total));
+        assertThat(prefix.estimateSize(), is(total / 2));
+        
+        long count = 0;
+        while (prefix.tryAdvance(i -> {})) {
+            count++;
+        }
+        assertThat(count, is(total / 2));
+        
+        Impl first = randomIntervals.stream().skip(total / 2).findFirst().get();
+        suffix.tryAdvance(i -> assertThat(i, is(first)));
+    }
+    
+    @Test
+    public void testRandomTreeSpliteratorSizedAfterSplitting() {
+        Spliterator<Impl> s = randomTree.spliterator();
+        Spliterator<Impl> prefix = s.trySplit();
+        Spliterator<Impl> prefixOfPrefix = prefix.trySplit();
+        assertThat(s.hasCharacteristics(Spliterator.SIZED), is(true));
+        assertThat(prefix.hasCharacteristics(Spliterator.SUBSIZED), is(true));
+        assertThat(prefix.getExactSizeIfKnown() + prefixOfPrefix.getExactSizeIfKnown() +
+                s.getExactSizeIfKnown(), is((long) randomIntervals.size()));
+    }
+    
+    @Test
+    public void testRandomTreeOverlapperStream() {
+        Impl query = new Impl(1000, 2000);
+        List<Impl> expected = new ArrayList<>();
+        randomTree.overlappers(query).forEachRemaining(expected::add);
+        assertThat(randomTree.overlapperStream(query)
+                .collect(Collectors.toList()), is(expected));
+    }
+    
+    @Test
+    public void testRandomTreeParallelOverlapperStream() {
+        for (int start = 0; start < randomUpperBound; start += randomUpperBound / 10) {
+            Impl query = new Impl(start, start + randomUpperBound / 4);
+            List<Impl> expected = new ArrayList<>();
+            randomTree.overlappers(query).forEachRemaining(expected::add);
+            assertThat(randomTree.overlapperStream(query).parallel()
+                    .collect(Collectors.toList()), is(expected));
+        }
+    }
+    
+    @Test
+    public void testGappedTreeParallelOverlapperStreamAcrossGap() {
+        Impl query = new Impl(gappedUpperBound - 100, gappedLowerBound + 100);
+        List<Impl> expected = new ArrayList<>();
+        gappedTree.overlappers(query).forEachRemaining(expected::add);
+        assertThat(gappedTree.overlapperStream(query).parallel()
+                .collect(Collectors.toList()), is(expected));
+    }
+    
+    ///////////////////////////
+    // Split and union tests //
+    ///////////////////////////
+    
+    private boolean isValid(IntervalTree<Impl> tree) throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        return (boolean) mIsBST.invoke(tree)
+                && (boolean) mIsBalanced.invoke(tree)
+                && (boolean) mHasValidRedColoring.invoke(tree)
+                && (boolean) mHasConsistentMaxEnds.invoke(tree)
+                && (boolean) mHasConsistentMinEnds.invoke(tree)
+                && (boolean) mHasConsistentSizes.invoke(tree);
+    }
+    
+    private static List<Impl> toList(IntervalTree<Impl> tree) {
+        List<Impl> l = new ArrayList<>();
+        tree.forEach(l::add);
+        return l;
+    }
+    
+    @Test
+    public void testRandomTreeSplit() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        int position = randomUpperBound / 2;
+        IntervalTree<Impl> upper = randomTree.split(position);
+        
+        List<Impl> expectedLower = randomIntervals.stream()
+                .filter(i -> i.getStart() < position)
+                .collect(Collectors.toList());
+        List<Impl> expectedUpper = randomIntervals.stream()
+                .filter(i -> i.getStart() >= position)
+                .collect(Collectors.toList());
+        
+        assertThat(toList(randomTree), is(expectedLower));
+        assertThat(toList(upper), is(expectedUpper));
+        assertThat(randomTree.size(), is(expectedLower.size()));
+        assertThat(upper.size(), is(expectedUpper.size()));
+        assertThat(isValid(randomTree), is(true));
+        assertThat(isValid(upper), is(true));
+    }
+    
+    @Test
+    public void testRandomTreeRepeatedSplits() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        Random rand = new Random();
+        for (int i = 0; i < 20; i++) {
+            int position = rand.nextInt(randomUpperBound);
+            IntervalTree<Impl> upper = randomTree.split(position);
+            assertThat(isValid(randomTree), is(true));
+            assertThat(isValid(upper), is(true));
+            if (upper.size() > randomTree.size()) {
+                randomTree = upper;
+            }
+        }
+    }
+    
+    @Test
+    public void testSplitBeyondBounds() {
+        IntervalTree<Impl> all = randomTree.split(-1);
+        assertThat(randomTree.isEmpty(), is(true));
+        assertThat(all.size(), is(randomIntervals.size()));
+        
+        IntervalTree<Impl> none = all.split(randomUpperBound);
+        assertThat(none.isEmpty(), is(true));
+        assertThat(all.size(), is(randomIntervals.size()));
+    }
+    
+    @Test
+    public void testSplitThenUnionRestoresTree() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        List<Impl> expected = toList(randomTree);
+        IntervalTree<Impl> upper = randomTree.split(1000);
+        assertThat(randomTree.union(upper), is(true));
+        assertThat(toList(randomTree), is(expected));
+        assertThat(isValid(randomTree), is(true));
+    }
+    
+    @Test
+    public void testRandomTreeUnion() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        Random rand = new Random();
+        Set<Impl> expected = new TreeSet<>(randomIntervals);
+        IntervalTree<Impl> other = new IntervalTree<>();
+        for (int i = 0; i < 1000; i++) {
+            int start = rand.nextInt(randomUpperBound * 2);
+            Impl interval = new Impl(start, start + rand.nextInt(100) + 1);
+            other.insert(interval);
+            expected.add(interval);
+        }
+        int otherSize = other.size();
+        
+        randomTree.union(other);
+        assertThat(toList(randomTree), is(new ArrayList<>(expected)));
+        assertThat(randomTree.size(), is(expected.size()));
+        assertThat(isValid(randomTree), is(true));
+        assertThat(other.size(), is(otherSize));
+        assertThat(isValid(other), is(true));
+    }
+    
+    @Test
+    public void testRandomTreeInterleavedCutsAndInsertions() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        Random rand = new Random();
+        Set<Impl> expected = new TreeSet<>(randomIntervals);
+        for (int i = 0; i < 200; i++) {
+            int start = rand.nextInt(randomUpperBound);
+            Impl query = new Impl(start, start + rand.nextInt(100) + 1);
+            expected.removeIf(t -> t.overlaps(query));
+            randomTree.deleteOverlappers(query);
+            
+            IntervalTree<Impl> upper = randomTree.split(rand.nextInt(randomUpperBound));
+            int s = rand.nextInt(randomUpperBound);
+            Impl inserted = new Impl(s, s + rand.nextInt(100) + 1);
+            expected.add(inserted);
+            randomTree.insert(inserted);
+            randomTree.union(upper);
+            
+            assertThat(randomTree.size(), is(expected.size()));
+            assertThat(isValid(randomTree), is(true));
+        }
+        assertThat(toList(randomTree), is(new ArrayList<>(expected)));
+    }
+    
+    @Test
+    public void testUnionWithSubsetDoesNotChangeTree() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        IntervalTree<Impl> subset = new IntervalTree<>(randomIntervals.stream()
+                .filter(i -> i.getStart() % 3 == 0));
+        assertThat(randomTree.union(subset), is(false));
+        assertThat(randomTree.union(randomTree), is(false));
+        assertThat(randomTree.size(), is(randomIntervals.size()));
+        assertThat(isValid(randomTree), is(true));
+    }
+    
+    @Test
+    public void testUnionWithEmptyTree() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        assertThat(randomTree.union(emptyTree), is(false));
+        assertThat(emptyTree.union(randomTree), is(true));
+        assertThat(toList(emptyTree), is(toList(randomTree)));
+        assertThat(isValid(emptyTree), is(true));
+    }
+    
+    ///////////////////
+    // Nearest tests //
+    ///////////////////
+    
+    private static List<Impl> list(Iterator<Impl> iter) {
+        List<Impl> l = new ArrayList<>();
+        iter.forEachRemaining(l::add);
+        return l;
+    }
+    
+    private static int distance(Impl a, Impl b) {
+        return Math.max(0, Math.max(b.getStart() - a.getEnd(), a.getStart() - b.getEnd()));
+    }
+    
+    @Test
+    public void testGappedTreeConsistentMinEndsAfterInsertionsAndDeletions() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        assertThat(mHasConsistentMinEnds.invoke(gappedTree), is(true));
+        
+        List<Impl> gappedIntervalList = new ArrayList<>(gappedIntervals);
+        Collections.shuffle(gappedIntervalList);
+        for (Impl i : gappedIntervalList.subList(0, gappedIntervalList.size() / 2)) {
+            gappedTree.delete(i);
+        }
+        assertThat(mHasConsistentMinEnds.invoke(gappedTree), is(true));
+        
+        for (int i = 0; i < 100; i++) {
+            gappedTree.insert(new Impl(gappedUpperBound + i, gappedUpperBound + i + 1));
+        }
+        assertThat(mHasConsistentMinEnds.invoke(gappedTree), is(true));
+        
+        IntervalTree<Impl> bulkLoaded = new IntervalTree<>(gappedIntervalList);
+        assertThat(mHasConsistentMinEnds.invoke(bulkLoaded), is(true));
+    }
+    
+    @Test
+    public void testEmptyIntervalsPreceding() {
+        List<Impl> intervals = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            intervals.add(new Impl(i, i));
+            intervals.add(new Impl(i, i + 1 + i % 7));
+        }
+        Collections.shuffle(intervals);
+        IntervalTree<Impl> tree = new IntervalTree<Impl>();
+        intervals.forEach(tree::insert);
+        for (int p = 0; p < 1000; p += 37) {
+            int position = p;
+            List<Impl> preceding = list(tree.preceding(position));
+            List<Impl> expected = intervals.stream()
+                                           .filter(i -> i.getEnd() <= position)
+                                           .collect(Collectors.toList());
+            assertThat(new HashSet<>(preceding), is(new HashSet<>(expected)));
+            assertThat(preceding.size(), is(expected.size()));
+            assertThat(preceding.get(0).getEnd(), is(position));
+        }
+    }
+    
+    @Test
+    public void testGappedTreePreceding() {
+        for (int position = 0; position < gappedLowerBound + gappedUpperBound; position += 250) {
+            int p = position;
+            List<Impl> preceding = list(gappedTree.preceding(p));
+            List<Impl> expected = gappedIntervals.stream()
+                                                 .filter(i -> i.getEnd() <= p)
+                                                 .collect(Collectors.toList());
+            assertThat(new HashSet<>(preceding), is(new HashSet<>(expected)));
+            assertThat(preceding.size(), is(expected.size()));
+            for (int i = 1; i < preceding.size(); i++) {
+                assertThat(preceding.get(i - 1).getEnd() >= preceding.get(i).getEnd(), is(true));
+            }
+        }
+    }
+    
+    @Test
+    public void testGappedTreeFollowing() {
+        for (int position = 0; position < gappedLowerBound + gappedUpperBound; position += 250) {
+            int p = position;
+            List<Impl> expected = gappedIntervals.stream()
+                                                 .filter(i -> i.getStart() >= p)
+                                                 .sorted()
+                                                 .collect(Collectors.toList());
+            assertThat(list(gappedTree.following(p)), is(expected));
+        }
+    }
+    
+    @Test
+    public void testGappedTreeNearestAcrossGap() {
+        Impl query = new Impl(gappedUpperBound + 100, gappedUpperBound + 200);
+        List<Impl> up = gappedTree.nearestUpstream(query, 5);
+        List<Impl> down = gappedTree.nearestDownstream(query, 5);
+        assertThat(up.size(), is(5));
+        assertThat(down.size(), is(5));
+        assertThat(up.get(0).getEnd(), is(gappedIntervals.stream()
+                .mapToInt(Impl::getEnd).filter(e -> e <= gappedUpperBound).max().getAsInt()));
+        assertThat(down.get(0).getStart(), is(gappedIntervals.stream()
+                .mapToInt(Impl::getStart).filter(s -> s >= gappedLowerBound).min().getAsInt()));
+        assertThat(gappedTree.nearest(query, 10, 50).isEmpty(), is(true));
+        assertThat(gappedTree.nearestUpstream(query, 10, 50).isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testGappedTreeNearestDistances() {
+        Random rand = new Random();
+        for (int n = 0; n < 100; n++) {
+            int start = rand.nextInt(gappedLowerBound + gappedUpperBound);
+            Impl query = new Impl(start, start + 1 + rand.nextInt(50));
+            int k = 1 + rand.nextInt(20);
+            List<Integer> expected = gappedIntervals.stream()
+                                                    .map(i -> distance(query, i))
+                                                    .sorted()
+                                                    .limit(k)
+                                                    .collect(Collectors.toList());
+            List<Integer> actual = gappedTree.nearest(query, k)
+                                             .stream()
+                                             .map(i -> distance(query, i))
+                                             .collect(Collectors.toList());
+            assertThat(actual, is(expected));
+        }
+    }
+    
+    @Test
+    public void testGappedTreeNearestUpstreamMaxDistance() {
+        Impl query = new Impl(gappedLowerBound + 500, gappedLowerBound + 600);
+        List<Impl> up = gappedTree.nearestUpstream(query, Integer.MAX_VALUE, 100);
+        List<Impl> expected = gappedIntervals.stream()
+                .filter(i -> i.getEnd() <= query.getStart() && i.getEnd() >= query.getStart() - 100)
+                .sorted(Comparator.comparingInt(Impl::getEnd).reversed())
+                .collect(Collectors.toList());
+        assertThat(new HashSet<>(up), is(new HashSet<>(expected)));
+        assertThat(up.size(), is(expected.size()));
+    }
+    
     ///////////////////////
     // Gapped tree tests //
     ///////////////////////
@@ -0,0 +1,310 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import annotation.Annotation;
+import annotation.Block;
+import annotation.BlockedAnnotation.BlockedBuilder;
+import annotation.Strand;
+import datastructures.GenomeTree;
+import datastructures.GenomeTree.Backend;
+import datastructures.IntervalSetTree;
+import io.GenomeTreeSnapshot;
+import io.MappedAnnotationIndex;
+
+public class TestMappedAnnotationIndex {
+
+    private static final Strand[] STRANDS = {Strand.POSITIVE, Strand.NEGATIVE, Strand.BOTH};
+    
+    private IntervalSetTree<Annotation> oracle;     // The same Annotations, as
+    private List<Annotation> ascending;             // a tree and in order
+    private byte[] section;
+    private MappedAnnotationIndex index;
+    private int randomUpperBound = 2000;
+    private int numRandomAnnotations = 1500;
+    private int numQueries = 500;
+    
+    private Path snapshot;
+
+    // Package-private members of MappedAnnotationIndex
+    private Method mWrite;
+    private Constructor<MappedAnnotationIndex> cIndex;
+    
+    @Before
+    public void setup() throws Exception {
+
+        /////////////////////////////////////////////////////////
+        // Make private members accessible for easier testing. //
+        /////////////////////////////////////////////////////////
+
+        mWrite = MappedAnnotationIndex.class.getDeclaredMethod("write", List.class,
+                DataOutput.class);
+        mWrite.setAccessible(true);
+
+        cIndex = MappedAnnotationIndex.class.getDeclaredConstructor(String.class,
+                ByteBuffer.class, int.class);
+        cIndex.setAccessible(true);
+
+        Random rand = new Random();
+        oracle = new IntervalSetTree<>();
+        for (int i = 0; i < numRandomAnnotations; i++) {
+            oracle.insert(randomAnnotation(rand));
+        }
+        ascending = new ArrayList<>();
+        oracle.iterator().forEachRemaining(ascending::add);
+        section = write(ascending);
+        index = open(section, ascending.size());
+
+        snapshot = Files.createTempFile("TestMappedAnnotationIndex", ".gts");
+    }
+    
+    @After
+    public void teardown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    /**
+     * A random Annotation on chr1 of one to three blocks. Most are short,
+     * but some span much of the reference.
+     */
+    private Annotation randomAnnotation(Random rand) {
+        Strand strand = STRANDS[rand.nextInt(STRANDS.length)];
+        int start = rand.nextInt(randomUpperBound);
+        int length = rand.nextInt(10) == 0 ? rand.nextInt(randomUpperBound) : rand.nextInt(50);
+        Block first = new Block("chr1", start, start + length + 1, strand);
+        if (rand.nextBoolean()) {
+            return first;
+        }
+        BlockedBuilder b = new BlockedBuilder().addBlock(first);
+        int end = first.getEnd();
+        for (int i = rand.nextInt(2); i >= 0; i--) {
+            int blockStart = end + 1 + rand.nextInt(20);
+            end = blockStart + 1 + rand.nextInt(20);
+            b.addBlock(new Block("chr1", blockStart, end, strand));
+        }
+        return b.build();
+    }
+    
+    private byte[] write(List<Annotation> annotations) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        mWrite.invoke(null, annotations, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+    
+    private MappedAnnotationIndex open(byte[] bytes, int size) throws Exception {
+        try {
+            return cIndex.newInstance("chr1", ByteBuffer.wrap(bytes), size);
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+    
+    private static List<Annotation> list(Iterator<Annotation> iter) {
+        List<Annotation> l = new ArrayList<>();
+        iter.forEachRemaining(l::add);
+        return l;
+    }
+    
+    /**
+     * Asserts that the given lists hold the same Annotations, possibly in a
+     * different order.
+     */
+    private static void assertSameAnnotations(List<Annotation> actual,
+            List<Annotation> expected) {
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(new HashSet<>(actual), is(new HashSet<>(expected)));
+    }
+
+    ////////////////////////
+    // Oracle query tests //
+    ////////////////////////
+
+    @Test
+    public void testSize() {
+        assertThat(index.size(), is(oracle.size()));
+    }
+    
+    @Test
+    public void testIterator() {
+        List<Annotation> actual = list(index.iterator());
+        assertThat(actual, is(ascending));
+    }
+    
+    @Test
+    public void testOverlappers() {
+        Random rand = new Random();
+        for (int i = 0; i < numQueries; i++) {
+            int start = rand.nextInt(randomUpperBound * 2) - 100;
+            int end = start + 1 + rand.nextInt(200);
+            List<Annotation> actual = list(index.overlappers(start, end));
+            assertSameAnnotations(actual, list(oracle.overlappers(start, end)));
+            for (int j = 1; j < actual.size(); j++) {
+                assertThat(actual.get(j - 1).getStart() <= actual.get(j).getStart(), is(true));
+            }
+        }
+    }
+    
+    @Test
+    public void testNumOverlappers() {
+        Random rand = new Random();
+        for (int i = 0; i < numQueries; i++) {
+            int start = rand.nextInt(randomUpperBound * 2) - 100;
+            int end = start + 1 + rand.nextInt(200);
+            assertThat(index.numOverlappers(start, end), is(oracle.numOverlappers(start, end)));
+        }
+    }
+    
+    @Test
+    public void testOverlaps() {
+        Random rand = new Random();
+        for (int i = 0; i < numQueries; i++) {
+            int start = rand.nextInt(randomUpperBound * 2) - 100;
+            int end = start + 1 + rand.nextInt(5);
+            assertThat(index.overlaps(start, end), is(oracle.overlaps(start, end)));
+        }
+    }
+    
+    @Test
+    public void testOverlapsAnnotation() {
+        Random rand = new Random();
+        for (int i = 0; i < numQueries; i++) {
+            Annotation query = randomAnnotation(rand);
+            assertThat(index.overlaps(query), is(oracle.overlaps(query)));
+            assertThat(index.numOverlappers(query), is(oracle.numOverlappers(query)));
+        }
+    }
+    
+    @Test
+    public void testFollowing() {
+        Random rand = new Random();
+        for (int i = 0; i < numQueries; i++) {
+            int position = rand.nextInt(randomUpperBound * 2) - 100;
+            List<Annotation> actual = list(index.following(position));
+            assertSameAnnotations(actual, list(oracle.following(position)));
+            for (int j = 0; j < actual.size(); j++) {
+                assertThat(actual.get(j).getStart() >= position, is(true));
+                if (j > 0) {
+                    assertThat(actual.get(j - 1).getStart() <= actual.get(j).getStart(), is(true));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testFollowingFirstAnnotation() {
+        Random rand = new Random();
+        for (int i = 0; i < numQueries; i++) {
+            int position = rand.nextInt(randomUpperBound + 100);
+            Iterator<Annotation> actual = index.following(position);
+            Iterator<Annotation> expected = oracle.following(position);
+            assertThat(actual.hasNext(), is(expected.hasNext()));
+            if (actual.hasNext()) {
+                assertThat(actual.next().getStart(), is(expected.next().getStart()));
+            }
+        }
+    }
+    
+    @Test
+    public void testPreceding() {
+        Random rand = new Random();
+        for (int i = 0; i < numQueries; i++) {
+            int position = rand.nextInt(randomUpperBound * 2) - 100;
+            List<Annotation> actual = list(index.preceding(position));
+            assertSameAnnotations(actual, list(oracle.preceding(position)));
+            for (int j = 0; j < actual.size(); j++) {
+                assertThat(actual.get(j).getEnd() <= position, is(true));
+                if (j > 0) {
+                    assertThat(actual.get(j - 1).getEnd() >= actual.get(j).getEnd(), is(true));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testForEachOverlapperStopsEarly() {
+        int[] visited = {0};
+        boolean completed = index.forEachOverlapper(0, randomUpperBound * 2, a -> ++visited[0] < 10);
+        assertThat(completed, is(index.size() < 10));
+        assertThat(visited[0], is(Math.min(10, index.size())));
+    }
+    
+    @Test
+    public void testEmptyIndex() throws Exception {
+        MappedAnnotationIndex empty = open(write(new ArrayList<>()), 0);
+        assertThat(empty.size(), is(0));
+        assertThat(empty.iterator().hasNext(), is(false));
+        assertThat(empty.overlaps(0, 10), is(false));
+        assertThat(empty.numOverlappers(0, 10), is(0));
+        assertThat(empty.following(0).hasNext(), is(false));
+        assertThat(empty.preceding(0).hasNext(), is(false));
+    }
+
+    ///////////////////////////
+    // Corrupt section tests //
+    ///////////////////////////
+
+    @Test
+    public void testOpenTooFewBytes() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        open(new byte[16 * 3 - 1], 3);
+    }
+    
+    @Test
+    public void testOpenRecordOffsetPastEnd() throws Exception {
+        int size = ascending.size();
+        ByteBuffer.wrap(section).putInt(4 * (3 * size + size / 2), section.length);
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("outside a section of " + section.length + " bytes");
+        open(section, size);
+    }
+    
+    @Test
+    public void testOpenNegativeRecordOffset() throws Exception {
+        int size = ascending.size();
+        ByteBuffer.wrap(section).putInt(4 * 3 * size, -1);
+        thrown.expect(IllegalArgumentException.class);
+        open(section, size);
+    }
+    
+    @Test
+    public void testMapRecordOffsetPastEnd() throws Exception {
+        GenomeTreeSnapshot.write(new GenomeTree(ascending, Backend.INTERVAL_SET_TREE), snapshot);
+        long offsets = 8 + 4 * 3 * ascending.size();   // After the header
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE);
+            buf.flip();
+            channel.write(buf, offsets);
+        }
+        thrown.expect(IOException.class);
+        thrown.expectMessage("is a corrupt GenomeTree snapshot");
+        GenomeTreeSnapshot.map(snapshot);
+    }
+}
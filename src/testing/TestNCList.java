@@ -0,0 +1,328 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import datastructures.Interval;
+import datastructures.NCList;
+
+public class TestNCList {
+
+    private NCList<Impl> emptyList;
+    
+    private NCList<Impl> randomList;
+    private List<Impl> randomIntervals;
+    private int randomUpperBound = 3000;
+    private int numRandomIntervals = 5000;
+    private int numRandomQueries = 500;
+    
+    private NCList<Impl> nestedList;          // [0, 100), [1, 99), [2, 98), ...
+    private int numNestedIntervals = 50;
+    
+    private Random rand;
+    
+    @Before
+    public void setup() {
+        emptyList = new NCList<Impl>(Collections.emptyList());
+
+        rand = new Random();
+        randomIntervals = new ArrayList<>();
+        for (int i = 0; i < numRandomIntervals; i++) {
+            randomIntervals.add(randomInterval(randomUpperBound));
+        }
+        randomList = new NCList<Impl>(randomIntervals);
+        
+        List<Impl> nested = new ArrayList<>();
+        for (int i = 0; i < numNestedIntervals; i++) {
+            nested.add(new Impl(i, 2 * numNestedIntervals - i));
+        }
+        Collections.shuffle(nested);
+        nestedList = new NCList<Impl>(nested);
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    private Impl randomInterval(int upperBound) {
+        int r = 0;
+        int s = 0;
+        while (s <= r) {
+            r = rand.nextInt(upperBound);
+            s = rand.nextInt(upperBound);
+        }
+        return new Impl(r, s);
+    }
+    
+    private static List<Impl> sorted(Iterator<Impl> iter) {
+        List<Impl> l = new ArrayList<>();
+        iter.forEachRemaining(l::add);
+        Collections.sort(l);
+        return l;
+    }
+    
+    private List<Impl> expectedOverlappers(Impl query) {
+        return randomIntervals.stream()
+                              .filter(i -> i.overlaps(query))
+                              .sorted()
+                              .collect(Collectors.toList());
+    }
+    
+    private static void assertPreceding(Iterator<Impl> iter, List<Impl> intervals, int position) {
+        List<Impl> preceding = new ArrayList<>();
+        iter.forEachRemaining(preceding::add);
+        for (int i = 1; i < preceding.size(); i++) {
+            assertThat(preceding.get(i - 1).getEnd() >= preceding.get(i).getEnd(), is(true));
+        }
+        List<Impl> expected = intervals.stream()
+                                       .filter(t -> t.getEnd() <= position)
+                                       .sorted()
+                                       .collect(Collectors.toList());
+        Collections.sort(preceding);
+        assertThat(preceding, is(expected));
+    }
+    
+    //////////////////////
+    // Empty list tests //
+    //////////////////////
+    
+    @Test
+    public void testEmptyListIsEmpty() {
+        assertThat(emptyList.isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testEmptyListOverlaps() {
+        assertThat(emptyList.overlaps(new Impl(1, 10)), is(false));
+    }
+    
+    @Test
+    public void testEmptyListOverlappersNext() {
+        thrown.expect(NoSuchElementException.class);
+        thrown.expectMessage("NCList has no more overlapping elements.");
+        emptyList.overlappers(new Impl(1, 3)).next();
+    }
+    
+    @Test
+    public void testEmptyListInsert() {
+        thrown.expect(UnsupportedOperationException.class);
+        emptyList.insert(new Impl(1, 3));
+    }
+    
+    ///////////////////////
+    // Random list tests //
+    ///////////////////////
+    
+    @Test
+    public void testRandomListSize() {
+        assertThat(randomList.size(), is(numRandomIntervals));
+    }
+    
+    @Test
+    public void testRandomListIterator() {
+        List<Impl> expected = new ArrayList<>(randomIntervals);
+        Collections.sort(expected);
+        assertThat(sorted(randomList.iterator()), is(expected));
+    }
+    
+    @Test
+    public void testRandomListIteratorAscending() {
+        Iterator<Impl> iter = randomList.iterator();
+        Impl prev = iter.next();
+        while (iter.hasNext()) {
+            Impl curr = iter.next();
+            assertThat(prev.getStart() <= curr.getStart(), is(true));
+            prev = curr;
+        }
+    }
+    
+    @Test
+    public void testRandomListOverlappers() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(sorted(randomList.overlappers(query)), is(expectedOverlappers(query)));
+        }
+    }
+    
+    @Test
+    public void testRandomListForEachOverlapper() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            List<Impl> expected = new ArrayList<>();
+            randomList.overlappers(query).forEachRemaining(expected::add);
+            List<Impl> visited = new ArrayList<>();
+            assertThat(randomList.forEachOverlapper(query, visited::add), is(true));
+            assertThat(visited, is(expected));
+        }
+    }
+    
+    @Test
+    public void testRandomListForEachOverlapperStopsEarly() {
+        Impl query = new Impl(1000, 2000);
+        List<Impl> visited = new ArrayList<>();
+        boolean completed = randomList.forEachOverlapper(query, t -> {
+            visited.add(t);
+            return visited.size() < 10;
+        });
+        assertThat(completed, is(false));
+        assertThat(visited.size(), is(10));
+    }
+    
+    @Test
+    public void testRandomListOverlaps() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(randomList.overlaps(query), is(!expectedOverlappers(query).isEmpty()));
+        }
+        assertThat(randomList.overlaps(new Impl(-1000, 0)), is(false));
+    }
+    
+    @Test
+    public void testRandomListNumOverlappers() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100);
+            assertThat(randomList.numOverlappers(query), is(expectedOverlappers(query).size()));
+        }
+    }
+    
+    @Test
+    public void testRandomListPreceding() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            int position = rand.nextInt(randomUpperBound + 100);
+            assertPreceding(randomList.preceding(position), randomIntervals, position);
+        }
+    }
+    
+    @Test
+    public void testEmptyListPreceding() {
+        assertThat(emptyList.preceding(0).hasNext(), is(false));
+    }
+    
+    ///////////////////////
+    // Nested list tests //
+    ///////////////////////
+    
+    @Test
+    public void testNestedListNumOverlappers() {
+        assertThat(nestedList.numOverlappers(new Impl(numNestedIntervals - 1, numNestedIntervals + 1)),
+                is(numNestedIntervals));
+        assertThat(nestedList.numOverlappers(new Impl(0, 1)), is(1));
+        assertThat(nestedList.numOverlappers(new Impl(9, 10)), is(10));
+    }
+    
+    @Test
+    public void testIdenticalPileUpForEachOverlapper() {
+        List<Impl> pileUp = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            pileUp.add(new Impl(10, 20));
+        }
+        NCList<Impl> list = new NCList<>(pileUp);
+        int[] count = new int[1];
+        assertThat(list.forEachOverlapper(new Impl(15, 16), t -> {
+            count[0]++;
+            return true;
+        }), is(true));
+        assertThat(count[0], is(pileUp.size()));
+    }
+    
+    @Test
+    public void testNestedListForEachOverlapper() {
+        Impl query = new Impl(numNestedIntervals, numNestedIntervals + 1);
+        List<Impl> expected = new ArrayList<>();
+        nestedList.overlappers(query).forEachRemaining(expected::add);
+        List<Impl> visited = new ArrayList<>();
+        assertThat(nestedList.forEachOverlapper(query, visited::add), is(true));
+        assertThat(visited, is(expected));
+    }
+    
+    @Test
+    public void testNestedListContainersFirst() {
+        Iterator<Impl> iter = nestedList.overlappers(new Impl(numNestedIntervals, numNestedIntervals + 1));
+        Impl prev = iter.next();
+        while (iter.hasNext()) {
+            Impl curr = iter.next();
+            assertThat(prev.getStart() <= curr.getStart() && prev.getEnd() >= curr.getEnd(), is(true));
+            prev = curr;
+        }
+    }
+    
+    @Test
+    public void testNestedListPreceding() {
+        List<Impl> nested = new ArrayList<>();
+        nestedList.iterator().forEachRemaining(nested::add);
+        for (int position = 0; position <= 2 * numNestedIntervals + 1; position++) {
+            assertPreceding(nestedList.preceding(position), nested, position);
+        }
+    }
+    
+    @Test
+    public void testEmptyIntervalsPreceding() {
+        List<Impl> intervals = new ArrayList<>(randomIntervals);
+        for (int i = 0; i < 100; i++) {
+            int p = rand.nextInt(randomUpperBound);
+            intervals.add(new Impl(p, p));
+        }
+        NCList<Impl> list = new NCList<Impl>(intervals);
+        for (Impl t : intervals.subList(numRandomIntervals, intervals.size())) {
+            assertPreceding(list.preceding(t.getStart()), intervals, t.getStart());
+        }
+    }
+    
+    /**
+     * Simple implementation of Interval for testing
+     */
+    private static class Impl implements Interval {
+
+        private final int start;
+        private final int end;
+        
+        public Impl(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        public int getStart() {
+            return start;
+        }
+        
+        @Override
+        public int getEnd() {
+            return end;
+        }
+        
+        @Override
+        public String toString() {
+            return "start: " + start + " end: " + end;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Impl)) {
+                return false;
+            }
+
+            return start == ((Impl) other).start && end == ((Impl) other).end;
+        }
+        
+        @Override
+        public int hashCode() {
+            int result = 17;
+            result = 31 * result + start;
+            result = 31 * result + end;
+            return result;
+        }
+    }
+}
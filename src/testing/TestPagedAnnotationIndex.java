@@ -0,0 +1,255 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import annotation.Annotation;
+import annotation.Block;
+import annotation.Strand;
+import datastructures.GenomeTree;
+import datastructures.GenomeTree.Backend;
+import io.GenomeTreeSnapshot;
+
+public class TestPagedAnnotationIndex {
+
+    // Number of Annotations on each of chr1, chr2, chr3 and chr4
+    private static final int[] SIZES = {10, 20, 30, 5};
+    
+    private GenomeTree tree;
+    private Path snapshot;
+
+    // Private members of GenomeTree, PagedAnnotationIndex and its Pager
+    private Field fChroms;
+    private Field fPager;
+    private Method mIsLoaded;
+    private Method mNumResident;
+    
+    @Before
+    public void setup() throws Exception {
+
+        /////////////////////////////////////////////////////////
+        // Make private members accessible for easier testing. //
+        /////////////////////////////////////////////////////////
+
+        fChroms = GenomeTree.class.getDeclaredField("chroms");
+        fChroms.setAccessible(true);
+
+        Class<?> index = Class.forName("io.PagedAnnotationIndex");
+        fPager = index.getDeclaredField("pager");
+        fPager.setAccessible(true);
+
+        Class<?> pager = Class.forName("io.PagedAnnotationIndex$Pager");
+        mIsLoaded = pager.getDeclaredMethod("isLoaded", index);
+        mIsLoaded.setAccessible(true);
+        mNumResident = pager.getDeclaredMethod("numResident");
+        mNumResident.setAccessible(true);
+
+        List<Annotation> annotations = new ArrayList<>();
+        for (int i = 0; i < SIZES.length; i++) {
+            for (int j = 0; j < SIZES[i]; j++) {
+                annotations.add(new Block("chr" + (i + 1), 10 * j, 10 * j + 15, Strand.POSITIVE));
+            }
+        }
+        tree = new GenomeTree(annotations, Backend.INTERVAL_SET_TREE);
+        snapshot = Files.createTempFile("TestPagedAnnotationIndex", ".gts");
+        GenomeTreeSnapshot.write(tree, snapshot);
+    }
+    
+    @After
+    public void teardown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    /**
+     * Queries the given reference of the given paged GenomeTree, loading it.
+     */
+    private static void query(GenomeTree paged, String ref) {
+        assertThat(paged.getOverlappers(ref, 0, 20).hasNext(), is(true));
+    }
+    
+    private boolean isLoaded(GenomeTree paged, String ref) throws Exception {
+        Object index = ((Map<?, ?>) fChroms.get(paged)).get(ref);
+        return (Boolean) mIsLoaded.invoke(fPager.get(index), index);
+    }
+    
+    private long numResident(GenomeTree paged) throws Exception {
+        Object index = ((Map<?, ?>) fChroms.get(paged)).get("chr1");
+        return (Long) mNumResident.invoke(fPager.get(index));
+    }
+
+    ////////////////////
+    // Eviction tests //
+    ////////////////////
+
+    @Test
+    public void testNothingLoadedWhenOpened() throws Exception {
+        GenomeTree paged = GenomeTreeSnapshot.openPaged(snapshot, 100);
+        assertThat(paged.getSize(), is(65));
+        assertThat(numResident(paged), is(0L));
+        for (int i = 1; i <= SIZES.length; i++) {
+            assertThat(isLoaded(paged, "chr" + i), is(false));
+        }
+    }
+    
+    @Test
+    public void testWithinBudgetNothingEvicted() throws Exception {
+        GenomeTree paged = GenomeTreeSnapshot.openPaged(snapshot, 65);
+        for (int i = 1; i <= SIZES.length; i++) {
+            query(paged, "chr" + i);
+        }
+        assertThat(numResident(paged), is(65L));
+        for (int i = 1; i <= SIZES.length; i++) {
+            assertThat(isLoaded(paged, "chr" + i), is(true));
+        }
+    }
+    
+    @Test
+    public void testEvictsLeastRecentlyLoadedFirst() throws Exception {
+        GenomeTree paged = GenomeTreeSnapshot.openPaged(snapshot, 35);
+        query(paged, "chr1");
+        query(paged, "chr2");
+        assertThat(numResident(paged), is(30L));
+
+        query(paged, "chr3");   // 60 resident: chr1, then chr2, must go
+        assertThat(isLoaded(paged, "chr1"), is(false));
+        assertThat(isLoaded(paged, "chr2"), is(false));
+        assertThat(isLoaded(paged, "chr3"), is(true));
+        assertThat(numResident(paged), is(30L));
+    }
+    
+    @Test
+    public void testEvictsLeastRecentlyQueriedFirst() throws Exception {
+        GenomeTree paged = GenomeTreeSnapshot.openPaged(snapshot, 60);
+        query(paged, "chr1");
+        query(paged, "chr2");
+        query(paged, "chr3");
+        query(paged, "chr1");   // A hit makes chr1 the most recently used
+
+        query(paged, "chr4");   // 65 resident: only chr2 must go
+        assertThat(isLoaded(paged, "chr1"), is(true));
+        assertThat(isLoaded(paged, "chr2"), is(false));
+        assertThat(isLoaded(paged, "chr3"), is(true));
+        assertThat(isLoaded(paged, "chr4"), is(true));
+        assertThat(numResident(paged), is(45L));
+    }
+    
+    @Test
+    public void testEvictedReferenceLoadedAgain() throws Exception {
+        GenomeTree paged = GenomeTreeSnapshot.openPaged(snapshot, 30);
+        query(paged, "chr1");
+        query(paged, "chr3");
+        assertThat(isLoaded(paged, "chr1"), is(false));
+
+        query(paged, "chr1");
+        assertThat(isLoaded(paged, "chr1"), is(true));
+        assertThat(isLoaded(paged, "chr3"), is(false));
+        assertThat(numResident(paged), is(10L));
+    }
+    
+    @Test
+    public void testZeroBudgetKeepsQueriedReference() throws Exception {
+        GenomeTree paged = GenomeTreeSnapshot.openPaged(snapshot, 0);
+        query(paged, "chr3");
+        assertThat(isLoaded(paged, "chr3"), is(true));
+        assertThat(numResident(paged), is(30L));
+
+        query(paged, "chr2");
+        assertThat(isLoaded(paged, "chr3"), is(false));
+        assertThat(isLoaded(paged, "chr2"), is(true));
+        assertThat(numResident(paged), is(20L));
+    }
+    
+    @Test
+    public void testIteratorValidAfterEviction() throws Exception {
+        GenomeTree paged = GenomeTreeSnapshot.openPaged(snapshot, 0);
+        int count = 0;
+        for (Iterator<Annotation> iter = paged.getAnnotations("chr2"); iter.hasNext();
+                iter.next()) {
+            query(paged, "chr1");   // Evicts chr2
+            count++;
+        }
+        assertThat(count, is(20));
+    }
+    
+    @Test
+    public void testConcurrentQueriesStayWithinBudget() throws Exception {
+        GenomeTree paged = GenomeTreeSnapshot.openPaged(snapshot, 30);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            futures.add(pool.submit(() -> {
+                Random rand = new Random(seed);
+                for (int i = 0; i < 2000; i++) {
+                    int ref = rand.nextInt(SIZES.length);
+                    int start = 10 * rand.nextInt(SIZES[ref]);
+                    List<Annotation> actual = new ArrayList<>();
+                    List<Annotation> expected = new ArrayList<>();
+                    paged.getOverlappers("chr" + (ref + 1), start, start + 1)
+                         .forEachRemaining(actual::add);
+                    tree.getOverlappers("chr" + (ref + 1), start, start + 1)
+                        .forEachRemaining(expected::add);
+                    assertThat(actual, is(expected));
+                }
+                return null;
+            }));
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(60, TimeUnit.SECONDS), is(true));
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        assertThat(numResident(paged) <= 30, is(true));
+    }
+
+    ///////////////////
+    // Backend tests //
+    ///////////////////
+
+    @Test
+    public void testReadPagedOpensUnbounded() throws Exception {
+        GenomeTree paged = GenomeTreeSnapshot.read(snapshot, Backend.PAGED);
+        for (int i = 1; i <= SIZES.length; i++) {
+            query(paged, "chr" + i);
+        }
+        assertThat(numResident(paged), is(65L));
+    }
+    
+    @Test
+    public void testConstructPagedFails() {
+        thrown.expect(UnsupportedOperationException.class);
+        thrown.expectMessage("can only be opened from a snapshot file");
+        new GenomeTree(new ArrayList<>(), Backend.PAGED);
+    }
+    
+    @Test
+    public void testFromSortedMappedFails() {
+        thrown.expect(UnsupportedOperationException.class);
+        GenomeTree.fromSorted(new HashMap<>(), Backend.MAPPED);
+    }
+}
@@ -0,0 +1,357 @@
+package testing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import datastructures.Interval;
+import datastructures.IntervalIndex;
+import datastructures.PersistentIntervalSetTree;
+
+public class TestPersistentIntervalSetTree {
+
+    private PersistentIntervalSetTree<Impl> emptyTree;
+    
+    private PersistentIntervalSetTree<Impl> randomTree;
+    private List<Impl> randomIntervals;     // No duplicates
+    private int randomUpperBound = 3000;
+    private int numRandomIntervals = 5000;
+    private int numRandomQueries = 500;
+    
+    private Random rand;
+
+    // Private debugging methods.
+    private Method mIsValid;
+    
+    @Before
+    public void setup() throws NoSuchMethodException, SecurityException {
+        mIsValid = PersistentIntervalSetTree.class.getDeclaredMethod("isValid");
+        mIsValid.setAccessible(true);
+
+        emptyTree = new PersistentIntervalSetTree<Impl>();
+
+        rand = new Random();
+        randomIntervals = new ArrayList<>();
+        for (int i = 0; i < numRandomIntervals; i++) {
+            randomIntervals.add(randomInterval(randomUpperBound, "interval" + i));
+        }
+        randomTree = new PersistentIntervalSetTree<Impl>();
+        for (Impl i : randomIntervals) {
+            randomTree.insert(i);
+        }
+    }
+    
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    
+    private Impl randomInterval(int upperBound, String name) {
+        int r = 0;
+        int s = 0;
+        while (s <= r) {
+            r = rand.nextInt(upperBound);
+            s = rand.nextInt(upperBound);
+        }
+        return new Impl(r, s, name);
+    }
+    
+    private static List<Impl> sorted(Iterator<Impl> iter) {
+        List<Impl> l = new ArrayList<>();
+        iter.forEachRemaining(l::add);
+        Collections.sort(l, Impl.ORDER);
+        return l;
+    }
+    
+    private List<Impl> expectedOverlappers(Impl query) {
+        return randomIntervals.stream()
+                              .filter(i -> i.overlaps(query))
+                              .sorted(Impl.ORDER)
+                              .collect(Collectors.toList());
+    }
+
+    //////////////////////
+    // Empty tree tests //
+    //////////////////////
+
+    @Test
+    public void testEmptyTreeIsEmpty() {
+        assertThat(emptyTree.isEmpty(), is(true));
+        assertThat(emptyTree.snapshot().isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testEmptyTreeOverlaps() {
+        assertThat(emptyTree.overlaps(new Impl(1, 10, "a")), is(false));
+    }
+    
+    @Test
+    public void testEmptyTreeOverlappersNext() {
+        thrown.expect(NoSuchElementException.class);
+        thrown.expectMessage("Interval tree has no more overlapping elements.");
+        emptyTree.overlappers(new Impl(1, 3, "a")).next();
+    }
+    
+    @Test
+    public void testEmptyTreeDelete() {
+        assertThat(emptyTree.delete(new Impl(1, 3, "a")), is(false));
+    }
+
+    ////////////////////
+    // Same-key tests //
+    ////////////////////
+
+    @Test
+    public void testInsertSameBounds() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        assertThat(emptyTree.insert(new Impl(1, 3, "a")), is(true));
+        assertThat(emptyTree.insert(new Impl(1, 3, "b")), is(true));
+        assertThat(emptyTree.insert(new Impl(1, 3, "a")), is(false));
+        assertThat(emptyTree.size(), is(2));
+        assertThat(emptyTree.numOverlappers(2, 3), is(2));
+        assertThat(mIsValid.invoke(emptyTree), is(true));
+    }
+    
+    @Test
+    public void testDeleteSameBounds() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        emptyTree.insert(new Impl(1, 3, "a"));
+        emptyTree.insert(new Impl(1, 3, "b"));
+        assertThat(emptyTree.delete(new Impl(1, 3, "c")), is(false));
+        assertThat(emptyTree.delete(new Impl(1, 3, "a")), is(true));
+        assertThat(emptyTree.contains(new Impl(1, 3, "a")), is(false));
+        assertThat(emptyTree.contains(new Impl(1, 3, "b")), is(true));
+        assertThat(emptyTree.size(), is(1));
+        assertThat(mIsValid.invoke(emptyTree), is(true));
+    }
+    
+    @Test
+    public void testBulkLoadedTreeDropsDuplicates() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        List<Impl> l = new ArrayList<>(randomIntervals);
+        l.addAll(randomIntervals);
+        Collections.shuffle(l);
+        PersistentIntervalSetTree<Impl> tree = new PersistentIntervalSetTree<>(l);
+        assertThat(tree.size(), is(numRandomIntervals));
+        assertThat(mIsValid.invoke(tree), is(true));
+        assertThat(sorted(tree.iterator()), is(sorted(randomTree.iterator())));
+    }
+
+    ///////////////////////
+    // Random tree tests //
+    ///////////////////////
+
+    @Test
+    public void testRandomTreeSize() {
+        assertThat(randomTree.size(), is(numRandomIntervals));
+    }
+    
+    @Test
+    public void testRandomTreeIsValid() throws IllegalAccessException,
+    IllegalArgumentException, InvocationTargetException {
+        assertThat(mIsValid.invoke(randomTree), is(true));
+    }
+    
+    @Test
+    public void testRandomTreeIsValidAfterRepeatedDeletions() throws
+    IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        List<Impl> l = new ArrayList<>(randomIntervals);
+        Collections.shuffle(l);
+        int size = numRandomIntervals;
+        for (Impl i : l) {
+            assertThat(randomTree.delete(i), is(true));
+            assertThat(randomTree.size(), is(--size));
+            if (size % 100 == 0) {
+                assertThat(mIsValid.invoke(randomTree), is(true));
+            }
+        }
+        assertThat(randomTree.isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testRandomTreeIteratorAscending() {
+        Iterator<Impl> iter = randomTree.iterator();
+        Impl prev = iter.next();
+        int count = 1;
+        while (iter.hasNext()) {
+            Impl curr = iter.next();
+            assertThat(prev.compareTo(curr) <= 0, is(true));
+            prev = curr;
+            count++;
+        }
+        assertThat(count, is(numRandomIntervals));
+    }
+    
+    @Test
+    public void testRandomTreeOverlappers() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100, "query");
+            assertThat(sorted(randomTree.overlappers(query)), is(expectedOverlappers(query)));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeForEachOverlapper() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100, "query");
+            List<Impl> expected = new ArrayList<>();
+            randomTree.overlappers(query).forEachRemaining(expected::add);
+            List<Impl> visited = new ArrayList<>();
+            assertThat(randomTree.forEachOverlapper(query, visited::add), is(true));
+            assertThat(visited, is(expected));
+        }
+    }
+    
+    @Test
+    public void testRandomTreeOverlaps() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100, "query");
+            assertThat(randomTree.overlaps(query), is(!expectedOverlappers(query).isEmpty()));
+        }
+        assertThat(randomTree.overlaps(new Impl(-1000, 0, "query")), is(false));
+    }
+    
+    @Test
+    public void testRandomTreeNumOverlappers() {
+        for (int i = 0; i < numRandomQueries; i++) {
+            Impl query = randomInterval(randomUpperBound + 100, "query");
+            assertThat(randomTree.numOverlappers(query), is(expectedOverlappers(query).size()));
+        }
+    }
+
+    ////////////////////
+    // Snapshot tests //
+    ////////////////////
+
+    @Test
+    public void testSnapshotUnaffectedByModification() {
+        IntervalIndex<Impl> snapshot = randomTree.snapshot();
+        List<Impl> before = sorted(snapshot.iterator());
+
+        for (Impl i : randomIntervals.subList(0, numRandomIntervals / 2)) {
+            randomTree.delete(i);
+        }
+        for (int i = 0; i < numRandomIntervals; i++) {
+            randomTree.insert(randomInterval(randomUpperBound, "new" + i));
+        }
+
+        assertThat(snapshot.size(), is(numRandomIntervals));
+        assertThat(sorted(snapshot.iterator()), is(before));
+        assertThat(randomTree.size(), is(numRandomIntervals + numRandomIntervals / 2));
+    }
+    
+    @Test
+    public void testSnapshotIteratorDuringModification() {
+        Iterator<Impl> iter = randomTree.iterator();
+        int count = 0;
+        while (iter.hasNext()) {
+            randomTree.delete(iter.next());
+            count++;
+        }
+        assertThat(count, is(numRandomIntervals));
+        assertThat(randomTree.isEmpty(), is(true));
+    }
+    
+    @Test
+    public void testConcurrentReadersSeeConsistentSnapshots() throws InterruptedException {
+        PersistentIntervalSetTree<Impl> tree = new PersistentIntervalSetTree<>();
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        // Every snapshot taken while the writer runs holds the Intervals
+        // [0, 1), [1, 2), ... [n, n + 1) for some n, so their count must
+        // equal the snapshot's size.
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            readers.add(new Thread(() -> {
+                while (!done.get()) {
+                    IntervalIndex<Impl> snapshot = tree.snapshot();
+                    int size = snapshot.size();
+                    if (snapshot.numOverlappers(0, randomUpperBound) != size) {
+                        failure.set("Snapshot of size " + size + " is inconsistent");
+                    }
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+        for (int i = 0; i < randomUpperBound; i++) {
+            tree.insert(new Impl(i, i + 1, "a"));
+        }
+        done.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+
+        assertThat(failure.get() == null, is(true));
+        assertThat(tree.size(), is(randomUpperBound));
+    }
+    
+    /**
+     * Simple implementation of Interval for testing, which compares equal
+     * only to Impls with the same name.
+     */
+    private static class Impl implements Interval {
+
+        private static final Comparator<Impl> ORDER =
+                Comparator.<Impl>naturalOrder().thenComparing(i -> i.name);
+
+        private final int start;
+        private final int end;
+        private final String name;
+        
+        public Impl(int start, int end, String name) {
+            this.start = start;
+            this.end = end;
+            this.name = name;
+        }
+        
+        @Override
+        public int getStart() {
+            return start;
+        }
+        
+        @Override
+        public int getEnd() {
+            return end;
+        }
+        
+        @Override
+        public String toString() {
+            return name + " start: " + start + " end: " + end;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Impl)) {
+                return false;
+            }
+
+            Impl o = (Impl) other;
+            return start == o.start && end == o.end && name.equals(o.name);
+        }
+        
+        @Override
+        public int hashCode() {
+            int result = 17;
+            result = 31 * result + start;
+            result = 31 * result + end;
+            result = 31 * result + name.hashCode();
+            return result;
+        }
+    }
+}
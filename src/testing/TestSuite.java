@@ -5,8 +5,23 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    TestAIList.class,
+    TestAnnotationImpl.class,
+    TestAnnotations.class,
+    TestAnnotationStore.class,
+    TestConcurrentIntervalSetTree.class,
+    TestConcurrentIntervalSkipList.class,
+    TestFrozenIntervalTree.class,
+    TestGenomeTree.class,
+    TestGenomeTreeSnapshot.class,
+    TestIntIntervalTree.class,
+    TestIntervalCounter.class,
     TestIntervalSetTree.class,
-    TestIntervalTree.class
+    TestIntervalTree.class,
+    TestMappedAnnotationIndex.class,
+    TestNCList.class,
+    TestPagedAnnotationIndex.class,
+    TestPersistentIntervalSetTree.class
 })
 
 public class TestSuite{}